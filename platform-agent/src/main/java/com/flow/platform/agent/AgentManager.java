@@ -16,16 +16,30 @@
 
 package com.flow.platform.agent;
 
+import com.flow.platform.domain.AgentMetrics;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.Jsonable;
 import com.flow.platform.util.Logger;
 import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKMailbox;
 import com.flow.platform.util.zk.ZkException;
+import com.google.gson.JsonParseException;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
 import org.apache.curator.framework.recipes.cache.TreeCacheEvent.Type;
 import org.apache.curator.framework.recipes.cache.TreeCacheListener;
@@ -44,6 +58,12 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
     private final static int ZK_RECONNECT_TIME = 1;
     private final static int ZK_RETRY_PERIOD = 500;
 
+    // num of received cmd ids to keep for duplicated delivery check
+    private final static int RECEIVED_CMD_ID_SIZE = 1000;
+
+    // publish metrics after num of samples even not changed, as heartbeat of agent
+    private final static int METRICS_HEARTBEAT_SAMPLES = 12;
+
     private String zkHost;
     private int zkTimeout;
     private ZKClient zkClient;
@@ -57,8 +77,37 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
     private String zonePath;    // zone path, /flow-agents/{zone}
     private String nodePath;    // zk node path, /flow-agents/{zone}/{name}
 
+    private ZKMailbox mailbox; // cmd mailbox, /flow-agents-mailbox/{zone}/{name}
+
+    // id of agent process, cc resumes agent with same run id after zookeeper session lost
+    private final String runId = UUID.randomUUID().toString();
+
+    // connection been suspended or lost since node registered
+    private volatile boolean connectionLost = false;
+
     private List<Cmd> cmdHistory = new LinkedList<>();
 
+    private final MetricsSampler metricsSampler = new MetricsSampler(Config.workspace());
+
+    private final ScheduledExecutorService metricsScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "agent-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // latest published host metrics
+    private volatile AgentMetrics metrics;
+
+    private int numOfSkippedSamples = 0;
+
+    // cmd ids received recently, since cmd in mailbox might be delivered more than once
+    private final Set<String> receivedCmdIds = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECEIVED_CMD_ID_SIZE;
+        }
+    });
+
     public AgentManager(String zkHost, int zkTimeout, String zone, String name) throws IOException {
         this.zkHost = zkHost;
         this.zkTimeout = zkTimeout;
@@ -68,6 +117,9 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
         this.name = name;
         this.zonePath = ZKPaths.makePath(Config.ZK_ROOT, this.zone);
         this.nodePath = ZKPaths.makePath(this.zonePath, this.name);
+        this.mailbox = new ZKMailbox(zkClient, ZKPaths.makePath(Config.ZK_ROOT + ZKMailbox.ROOT_SUFFIX, zone, name));
+
+        CmdManager.getInstance().setSlotsListener(this::publishSlots);
     }
 
     public ZKClient getZkClient() {
@@ -86,6 +138,8 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
      * Stop agent
      */
     public void stop() {
+        metricsScheduler.shutdownNow();
+
         synchronized (STATUS_LOCKER) {
             STATUS_LOCKER.notifyAll();
         }
@@ -96,10 +150,22 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
         // init zookeeper
         zkClient.start();
 
-        // if node is exists, exit
-        checkNodePathExistAndExit();
+        // wait for node left by previous agent process removed, or exit if other agent is running
+        waitForNodeExpiredOrExit();
+
+        // cmds left by previous agent process are not belong to this one
+        mailbox.clear();
+
+        try {
+            registerZkNodeAndWatch();
+        } catch (ZkException e) {
+            exit();
+        }
 
-        registerZkNodeAndWatch();
+        int interval = Config.metricsInterval();
+        if (interval > 0) {
+            metricsScheduler.scheduleWithFixedDelay(this::sampleMetrics, 0, interval, TimeUnit.SECONDS);
+        }
 
         synchronized (STATUS_LOCKER) {
             try {
@@ -111,11 +177,26 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
     }
 
     /**
-     * if node exist , exit
+     * The node of agent restarted before zookeeper session expired is still exist,
+     * wait up to session timeout for it been removed, otherwise other agent is running with the same name
      */
-    private void checkNodePathExistAndExit() {
-        if (this.zkClient.exist(this.nodePath)) {
-            exit();
+    private void waitForNodeExpiredOrExit() {
+        long deadline = System.currentTimeMillis() + zkTimeout;
+
+        while (this.zkClient.exist(this.nodePath)) {
+            if (System.currentTimeMillis() > deadline) {
+                exit();
+                return;
+            }
+
+            LOGGER.trace("Agent node %s exist, wait for previous session expired", nodePath);
+            try {
+                Thread.sleep(ZK_RETRY_PERIOD);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exit();
+                return;
+            }
         }
     }
 
@@ -131,12 +212,19 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
 
         if (event.getType() == Type.CONNECTION_RECONNECTED) {
             LOGGER.traceMarker("ZK-Event", "========= Reconnect =========");
-            registerZkNodeAndWatch();
+            reRegisterZkNode();
+            return;
+        }
+
+        if (event.getType() == Type.CONNECTION_SUSPENDED) {
+            LOGGER.traceMarker("ZK-Event", "========= Suspended =========");
+            connectionLost = true;
             return;
         }
 
         if (event.getType() == Type.CONNECTION_LOST) {
             LOGGER.traceMarker("ZK-Event", "========= Lost =========");
+            connectionLost = true;
             return;
         }
 
@@ -152,12 +240,23 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
 
         if (event.getType() == Type.NODE_UPDATED) {
             LOGGER.traceMarker("ZK-Event", "========= Node Updated: %s =========", eventData.getPath());
-            onDataChanged(eventData.getPath());
             return;
         }
 
         if (event.getType() == Type.NODE_REMOVED) {
             LOGGER.traceMarker("ZK-Event", "========= Node Removed: %s =========", eventData.getPath());
+
+            // node been registered again after session expired
+            if (zkClient.exist(nodePath)) {
+                return;
+            }
+
+            // ephemeral node removed by session expired rather than deleted
+            if (connectionLost) {
+                reRegisterZkNode();
+                return;
+            }
+
             close();
             return;
         }
@@ -187,22 +286,53 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
         }
     }
 
-    private void onDataChanged(String path) {
-        final Cmd cmd;
+    /**
+     * Handle cmd mailbox event, cmds are received in the order been sent
+     */
+    private void onMailboxEvent(CuratorFramework client, PathChildrenCacheEvent event) {
+        PathChildrenCacheEvent.Type type = event.getType();
 
+        if (type == PathChildrenCacheEvent.Type.CHILD_ADDED
+            || type == PathChildrenCacheEvent.Type.INITIALIZED
+            || type == PathChildrenCacheEvent.Type.CONNECTION_RECONNECTED) {
+            receiveFromMailbox();
+        }
+    }
+
+    /**
+     * Read all cmds in mailbox and acknowledge each after been handled
+     */
+    private synchronized void receiveFromMailbox() {
         try {
-            final byte[] rawData = zkClient.getData(path);
-            if (rawData == null) {
-                LOGGER.warn("Zookeeper node data is null");
-                return;
+            for (String name : mailbox.list()) {
+                byte[] rawData = mailbox.read(name);
+                if (rawData != null) {
+                    onCmdReceived(rawData);
+                }
+                mailbox.ack(name).exceptionally(e -> {
+                    LOGGER.warn("Unable to ack cmd %s in mailbox: %s", name, e.getMessage());
+                    return null;
+                });
             }
+        } catch (ZkException e) {
+            // the left cmds will be received on next mailbox event
+            LOGGER.warn("Unable to receive cmd from mailbox: " + e.getMessage());
+        }
+    }
 
-            cmd = Jsonable.parse(rawData, Cmd.class);
+    private void onCmdReceived(byte[] rawData) {
+        try {
+            Cmd cmd = Jsonable.parse(rawData, Cmd.class);
             if (cmd == null) {
                 LOGGER.warn("Unable to parse cmd from zk node: " + new String(rawData));
                 return;
             }
 
+            if (cmd.getId() != null && !receivedCmdIds.add(cmd.getId())) {
+                LOGGER.trace("Duplicated command been ignored: " + cmd.getId());
+                return;
+            }
+
             cmdHistory.add(cmd);
             LOGGER.trace("Received command: " + cmd.toString());
             CmdManager.getInstance().execute(cmd);
@@ -214,22 +344,95 @@ public class AgentManager implements Runnable, TreeCacheListener, AutoCloseable
     }
 
     /**
-     * Register agent node to server
-     * Monitor data changed event
+     * Register agent node to server with slots, in-flight cmds and run id as node data,
+     * then monitor node event and cmd mailbox
      *
-     * @return path of zookeeper or null if failure
+     * @return path of zookeeper
      */
     private String registerZkNodeAndWatch() {
-        String path = null;
+        String path = nodePath;
+        AgentSlots slots = CmdManager.getInstance().getSlots();
+
         try {
-            path = zkClient.createEphemeral(nodePath);
-            zkClient.watchTree(path, this);
-        } catch (ZkException e) {
-            exit();
+            path = zkClient.createEphemeralOnly(nodePath, nodeData(slots));
+        } catch (ZkException.NodeExistException e) {
+            // node not removed since session not expired on reconnect
+            if (!isOwnNode()) {
+                throw e;
+            }
+            publishSlots(slots);
+        }
+
+        connectionLost = false;
+        zkClient.watchTree(path, this);
+
+        // receive cmds directly if mailbox been watched, ex: on reconnect
+        if (!mailbox.watch(this::onMailboxEvent)) {
+            receiveFromMailbox();
         }
         return path;
     }
 
+    /**
+     * Register node again after reconnected, the running cmds are kept since cc resumes the agent
+     * with the same run id within grace period
+     */
+    private synchronized void reRegisterZkNode() {
+        try {
+            registerZkNodeAndWatch();
+            LOGGER.trace("Agent node registered again with cmds %s", CmdManager.getInstance().getSlots().getCmds());
+        } catch (ZkException.NodeExistException e) {
+            exit();
+        } catch (ZkException e) {
+            // will be registered on next reconnected event
+            LOGGER.warn("Unable to register agent node again: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Sample host metrics and publish with slots only if metrics changed or heartbeat required
+     */
+    private void sampleMetrics() {
+        try {
+            AgentMetrics sampled = metricsSampler.sample();
+            if (!MetricsSampler.isChanged(metrics, sampled) && ++numOfSkippedSamples < METRICS_HEARTBEAT_SAMPLES) {
+                return;
+            }
+
+            numOfSkippedSamples = 0;
+            metrics = sampled;
+            publishSlots(CmdManager.getInstance().getSlots());
+        } catch (Throwable e) {
+            LOGGER.warn("Unable to publish host metrics: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Advertise slots and host metrics of agent by node data, cc dispatch cmds up to total slots
+     */
+    private void publishSlots(AgentSlots slots) {
+        zkClient.setDataAsync(nodePath, nodeData(slots), ZKClient.ANY_VERSION).exceptionally(e -> {
+            LOGGER.warn("Unable to publish slots %s: %s", slots, e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Node is created by this agent process if run id in node data is the same
+     */
+    private boolean isOwnNode() {
+        try {
+            AgentSlots slots = Jsonable.parse(zkClient.getData(nodePath), AgentSlots.class);
+            return slots != null && Objects.equals(runId, slots.getRunId());
+        } catch (ZkException | JsonParseException e) {
+            return false;
+        }
+    }
+
+    private byte[] nodeData(AgentSlots slots) {
+        return slots.withRunId(runId).withMetrics(metrics).toBytes();
+    }
+
     private void removeZkNode() {
         zkClient.deleteWithoutGuaranteed(nodePath, false);
     }
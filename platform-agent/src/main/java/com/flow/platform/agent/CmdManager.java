@@ -20,25 +20,33 @@ import com.flow.platform.cmd.CmdExecutor;
 import com.flow.platform.cmd.Log;
 import com.flow.platform.cmd.Log.Type;
 import com.flow.platform.cmd.ProcListener;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Jsonable;
 import com.flow.platform.util.Logger;
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Singleton class to handle command
@@ -65,6 +73,9 @@ public class CmdManager {
     // rejected cmd data
     private final Map<Cmd, CmdResult> rejected = Maps.newConcurrentMap();
 
+    // RUN_SHELL cmd in slots or waiting in local queue by cmd id
+    private final Map<String, TaskRunner> tasks = Maps.newConcurrentMap();
+
     // Make thread to Daemon thread, those threads exit while JVM exist
     private final ThreadFactory defaultFactory = r -> {
         Thread t = Executors.defaultThreadFactory().newThread(r);
@@ -72,7 +83,10 @@ public class CmdManager {
         return t;
     };
 
-    // Executor to execute command and shell
+    // num of cmds executing in slots
+    private final AtomicInteger executing = new AtomicInteger(0);
+
+    // Executor to execute command and shell, one thread for each slot
     private ThreadPoolExecutor cmdExecutor = createExecutor();
 
     // Executor to execute operations
@@ -81,6 +95,9 @@ public class CmdManager {
     // handle extra listeners
     private List<ProcListener> extraProcEventListeners = new ArrayList<>(5);
 
+    // listen slots usage changes
+    private volatile Consumer<AgentSlots> slotsListener;
+
     private CmdManager() {
     }
 
@@ -113,6 +130,25 @@ public class CmdManager {
         return extraProcEventListeners;
     }
 
+    public void setSlotsListener(Consumer<AgentSlots> slotsListener) {
+        this.slotsListener = slotsListener;
+    }
+
+    /**
+     * @return total slots, slots in use, num of cmds waiting in local queue and id of in-flight cmds,
+     * the finished cmds are in-flight until their reports acked, so they are not failed on resume
+     */
+    public AgentSlots getSlots() {
+        Set<String> cmds = new HashSet<>(tasks.keySet());
+        cmds.addAll(ReportManager.getInstance().getUnackedCmds());
+
+        return new AgentSlots(
+            cmdExecutor.getMaximumPoolSize(),
+            executing.get(),
+            cmdExecutor.getQueue().size(),
+            new ArrayList<>(cmds));
+    }
+
     /**
      * Stop all executing processes and exit agent
      */
@@ -147,23 +183,21 @@ public class CmdManager {
 
     /**
      * Execute command from Cmd object by thread executor
+     * RUN_SHELL cmd waits in local queue if all slots are in use, and rejected when queue is full
      *
      * @param cmd Cmd object
      */
     public void execute(final Cmd cmd) {
         if (cmd.getType() == CmdType.RUN_SHELL) {
-            // check max concurrent proc
-            int max = cmdExecutor.getMaximumPoolSize();
-            int cur = cmdExecutor.getActiveCount();
-            LOGGER.trace(" ===== CmdExecutor: max=%s, current=%s =====", max, cur);
+            LOGGER.trace(" ===== CmdExecutor: %s =====", getSlots());
 
-            // reach max proc number, reject this execute
-            if (max == cur) {
+            // all slots in use and local queue is full
+            if (tasks.size() >= cmdExecutor.getMaximumPoolSize() + Config.cmdQueueSize()) {
                 onReject(cmd);
                 return;
             }
 
-            cmdExecutor.execute(new TaskRunner(cmd) {
+            TaskRunner task = new TaskRunner(cmd) {
                 @Override
                 public void run() {
                     LOGGER.debug("start cmd ...");
@@ -171,28 +205,50 @@ public class CmdManager {
                     LogEventHandler logListener = new LogEventHandler(getCmd());
 
                     ProcEventHandler procEventHandler =
-                        new ProcEventHandler(getCmd(), extraProcEventListeners, running, finished);
+                        new ProcEventHandler(getCmd(), extraProcEventListeners, running, finished, this::finish);
+
+                    Path workspace = null;
 
                     try {
+                        // use managed workspace of flow if working dir not specified
+                        if (cmd.getWorkingDir() == null && Config.isManagedWorkspace()) {
+                            workspace = WorkspaceManager.getInstance().acquire(cmd);
+                        }
+
                         CmdExecutor executor = new CmdExecutor(
                             procEventHandler,
                             logListener,
-                            cmd.getInputs(),
-                            cmd.getWorkingDir(),
+                            inputs(cmd, workspace),
+                            workingDir(cmd, workspace),
                             cmd.getOutputEnvFilter(),
                             cmd.getTimeout(),
                             Lists.newArrayList(getCmd().getCmd()));
 
+                        // cmd been cancelled while waiting in queue
+                        if (!bind(executor)) {
+                            return;
+                        }
+
                         executor.run();
                     } catch (Throwable e) {
                         LOGGER.errorMarker("execute", "Cannot init CmdExecutor for cmd " + cmd, e);
                         CmdResult result = new CmdResult();
                         result.getExceptions().add(e);
                         procEventHandler.onException(result);
+                    } finally {
+                        tasks.remove(cmd.getId(), this);
+
+                        if (workspace != null) {
+                            WorkspaceManager.getInstance().release(cmd, workspace);
+                        }
                     }
                 }
-            });
+            };
 
+            tasks.put(cmd.getId(), task);
+            cmdExecutor.execute(task);
+
+            onSlotsChanged();
             return;
         }
 
@@ -205,9 +261,13 @@ public class CmdManager {
             return;
         }
 
-        // kill current running proc
+        // kill target cmd if cmd id given by cmd content, otherwise kill all cmds
         if (cmd.getType() == CmdType.KILL) {
-            defaultExecutor.execute(this::kill);
+            if (Strings.isNullOrEmpty(cmd.getCmd())) {
+                defaultExecutor.execute(this::kill);
+            } else {
+                defaultExecutor.execute(() -> cancel(cmd.getCmd()));
+            }
             return;
         }
 
@@ -225,6 +285,40 @@ public class CmdManager {
         }
     }
 
+    /**
+     * Cmd inputs with workspace and git cache envs if cmd run in managed workspace
+     */
+    private static Map<String, String> inputs(Cmd cmd, Path workspace) {
+        if (workspace == null) {
+            return cmd.getInputs();
+        }
+
+        Map<String, String> inputs = new HashMap<>();
+        if (cmd.getInputs() != null) {
+            inputs.putAll(cmd.getInputs());
+        }
+
+        inputs.put(WorkspaceManager.ENV_WORKSPACE, workspace.toString());
+        inputs.put(WorkspaceManager.ENV_GIT_CACHE, WorkspaceManager.getInstance().getGitCacheDir().toString());
+        return inputs;
+    }
+
+    /**
+     * Working dir of cmd, the managed workspace or default dir for flow cmd if not specified
+     */
+    private static String workingDir(Cmd cmd, Path workspace) {
+        if (cmd.getWorkingDir() != null) {
+            return cmd.getWorkingDir();
+        }
+
+        if (workspace != null) {
+            return workspace.toString();
+        }
+
+        boolean isFlowCmd = cmd.getInputs() != null && cmd.getInputs().containsKey(WorkspaceManager.ENV_WORKSPACE_KEY);
+        return isFlowCmd ? Config.DEFAULT_CMD_DIR : null;
+    }
+
     /**
      * collect agent info
      * @return
@@ -250,29 +344,83 @@ public class CmdManager {
     }
 
     /**
-     * Kill all current running process
+     * Kill all running and queued cmds, the processes are terminated in parallel
      */
     public synchronized void kill() {
-        cmdExecutor.shutdown();
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(tasks.size());
+        for (String cmdId : tasks.keySet()) {
+            futures.add(CompletableFuture.supplyAsync(() -> cancel(cmdId), defaultExecutor));
+        }
 
-        for (Map.Entry<Cmd, CmdResult> entry : running.entrySet()) {
-            CmdResult r = entry.getValue();
-            Cmd cmd = entry.getKey();
-            finished.put(cmd, r);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+        LOGGER.trace("Cmd terminated: %s", futures.size());
+    }
 
-            r.getProcess().destroy();
+    /**
+     * Cancel RUN_SHELL cmd by id, remove it from local queue if not started,
+     * otherwise terminate its process tree
+     *
+     * @return false if cmd not found or already finished
+     */
+    public boolean cancel(String cmdId) {
+        TaskRunner task = tasks.remove(cmdId);
+        if (task == null) {
+            return false;
+        }
 
-            ReportManager.getInstance().cmdReportSync(cmd.getId(), CmdStatus.KILLED, r);
-            LOGGER.trace("Kill process : %s", r.toString());
+        // process finished and its status been reported
+        if (!task.cancel()) {
+            return false;
         }
 
-        try {
-            cmdExecutor.shutdownNow();
-        } catch (Throwable ignore) {
+        Cmd cmd = task.getCmd();
+        CmdExecutor executor = task.getExecutor();
+        cmdExecutor.remove(task);
 
-        } finally {
-            cmdExecutor = createExecutor(); // reset cmd executor
-            LOGGER.trace("Cmd thread terminated");
+        CmdResult result = running.get(cmd);
+        if (executor != null) {
+            executor.kill();
+        }
+
+        onKilled(cmd, result);
+        onSlotsChanged();
+        return true;
+    }
+
+    private void onKilled(Cmd cmd, CmdResult result) {
+        ZonedDateTime now = ZonedDateTime.now();
+
+        // cmd not started
+        if (result == null) {
+            result = new CmdResult();
+            result.setStartTime(now);
+        }
+
+        if (result.getExitValue() == null) {
+            result.setExitValue(CmdResult.EXIT_VALUE_FOR_KILL);
+        }
+
+        if (result.getExecutedTime() == null) {
+            result.setExecutedTime(now);
+        }
+
+        running.remove(cmd);
+        finished.put(cmd, result);
+
+        ReportManager.getInstance().cmdReportSync(cmd.getId(), CmdStatus.KILLED, result);
+        LOGGER.trace("Kill process : %s", result.toString());
+    }
+
+    private void onSlotsChanged() {
+        Consumer<AgentSlots> listener = slotsListener;
+        if (listener == null) {
+            return;
+        }
+
+        try {
+            listener.accept(getSlots());
+        } catch (Throwable e) {
+            LOGGER.warn("Unable to notify slots change: %s", e.getMessage());
         }
     }
 
@@ -292,8 +440,8 @@ public class CmdManager {
 
     private ThreadPoolExecutor createExecutor() {
         return new ThreadPoolExecutor(
-            Config.concurrentThreadNum(),
-            Config.concurrentThreadNum(),
+            Config.slots(),
+            Config.slots(),
             0L,
             TimeUnit.SECONDS,
             new LinkedBlockingQueue<>(),
@@ -301,16 +449,36 @@ public class CmdManager {
             (r, executor) -> {
                 if (r instanceof TaskRunner) {
                     TaskRunner task = (TaskRunner) r;
+                    tasks.remove(task.getCmd().getId(), task);
                     onReject(task.getCmd());
                     LOGGER.warn("Reject cmd: %s", task.getCmd());
                 }
-            });
+            }) {
+
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                executing.incrementAndGet();
+                onSlotsChanged();
+            }
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                executing.decrementAndGet();
+                onSlotsChanged();
+            }
+        };
     }
 
     private abstract class TaskRunner implements Runnable {
 
         private final Cmd cmd;
 
+        private CmdExecutor executor;
+
+        private boolean cancelled = false;
+
+        private boolean finished = false;
+
         public TaskRunner(Cmd cmd) {
             this.cmd = cmd;
         }
@@ -318,5 +486,54 @@ public class CmdManager {
         public Cmd getCmd() {
             return cmd;
         }
+
+        /**
+         * Bind executor before run
+         *
+         * @return false if task been cancelled
+         */
+        synchronized boolean bind(CmdExecutor executor) {
+            if (cancelled) {
+                return false;
+            }
+
+            this.executor = executor;
+            return true;
+        }
+
+        /**
+         * Mark task finished by its process, only one of finish and cancel wins
+         *
+         * @return false if task been cancelled
+         */
+        synchronized boolean finish() {
+            if (cancelled) {
+                return false;
+            }
+
+            finished = true;
+            return true;
+        }
+
+        /**
+         * Mark task cancelled
+         *
+         * @return false if task been finished
+         */
+        synchronized boolean cancel() {
+            if (finished) {
+                return false;
+            }
+
+            cancelled = true;
+            return true;
+        }
+
+        /**
+         * @return executor to be killed, or null if task not started
+         */
+        synchronized CmdExecutor getExecutor() {
+            return executor;
+        }
     }
 }
@@ -18,6 +18,7 @@ package com.flow.platform.agent;
 
 import com.flow.platform.domain.AgentSettings;
 import com.flow.platform.domain.Jsonable;
+import com.flow.platform.domain.LogCodec;
 import com.flow.platform.util.ExceptionUtil;
 import com.flow.platform.util.Logger;
 import com.flow.platform.util.StringUtil;
@@ -41,15 +42,29 @@ public class Config {
 
     public final static String ZK_ROOT = "flow-agents";
 
+    /**
+     * Working dir of flow cmd if workspace not managed by agent
+     */
+    public final static String DEFAULT_CMD_DIR = "${HOME}/flow-agent-workspace";
+
     /* Config properties by using -Dxxx.xxx = xxx as JVM parameter */
     public final static String PROP_IS_DEBUG = "flow.agent.debug";
-    public final static String PROP_CONCURRENT_THREAD = "flow.agent.cmd.thread";
+    public final static String PROP_CONCURRENT_THREAD = "flow.agent.cmd.thread"; // deprecated, same as slots
+    public final static String PROP_SLOTS = "flow.agent.slots";
+    public final static String PROP_CMD_QUEUE = "flow.agent.cmd.queue";
     public final static String PROP_REPORT_STATUS = "flow.agent.cmd.report";
+    public final static String PROP_WORKSPACE = "flow.agent.workspace";
+    public final static String PROP_WORKSPACE_MANAGED = "flow.agent.workspace.managed";
+    public final static String PROP_WORKSPACE_QUOTA = "flow.agent.workspace.quota";
+    public final static String PROP_WORKSPACE_LEASE = "flow.agent.workspace.lease";
+    public final static String PROP_METRICS_INTERVAL = "flow.agent.metrics.interval";
 
     public final static String PROP_UPLOAD_AGENT_LOG = "flow.agent.log.upload";
     public final static String PROP_ENABLE_REALTIME_AGENT_LOG = "flow.agent.log.realtime";
     public final static String PROP_DEL_AGENT_LOG = "flow.agent.log.delete";
     public final static String PROP_LOG_DIR = "flow.agent.log.dir";
+    public final static String PROP_LOG_CODEC = "flow.agent.log.codec";
+    public final static String PROP_LOG_LEVEL = "flow.agent.log.level";
 
     public final static String PROP_ZK_TIMEOUT = "flow.agent.zk.timeout";
     public final static String PROP_SUDO_PASSWORD = "flow.agent.sudo.pwd";
@@ -136,8 +151,79 @@ public class Config {
         }
     }
 
-    public static int concurrentThreadNum() {
-        String intStr = System.getProperty(PROP_CONCURRENT_THREAD, "2");
+    /**
+     * Codec of cmd log file, gzip by default to upload log in chunks while cmd running
+     */
+    public static LogCodec logCodec() {
+        try {
+            return LogCodec.of(System.getProperty(PROP_LOG_CODEC, LogCodec.GZIP.getName()));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn(e.getMessage());
+            return LogCodec.GZIP;
+        }
+    }
+
+    /**
+     * Compression level of cmd log from 0 to 9, -1 for default level of codec
+     */
+    public static int logLevel() {
+        String intStr = System.getProperty(PROP_LOG_LEVEL, "-1");
+        return Math.min(Math.max(Integer.parseInt(intStr), -1), 9);
+    }
+
+    /**
+     * Num of cmds can be executed in parallel, advertised to cc as agent slots
+     */
+    public static int slots() {
+        String intStr = System.getProperty(PROP_SLOTS, System.getProperty(PROP_CONCURRENT_THREAD, "1"));
+        return Math.max(Integer.parseInt(intStr), 1);
+    }
+
+    /**
+     * Max num of cmds waiting for free slot, cmd will be rejected when queue is full
+     */
+    public static int cmdQueueSize() {
+        String intStr = System.getProperty(PROP_CMD_QUEUE, "5");
+        return Math.max(Integer.parseInt(intStr), 1);
+    }
+
+    /**
+     * Workspace of agent which free disk is sampled in host metrics, user home by default
+     */
+    public static Path workspace() {
+        String defaultPath = System.getProperty("user.home");
+        return Paths.get(System.getProperty(PROP_WORKSPACE, defaultPath));
+    }
+
+    /**
+     * Is flow workspace managed by agent, enabled by default
+     */
+    public static boolean isManagedWorkspace() {
+        String boolStr = System.getProperty(PROP_WORKSPACE_MANAGED, "true");
+        return Boolean.parseBoolean(boolStr);
+    }
+
+    /**
+     * Max total size of managed workspaces in MB, 10GB by default
+     */
+    public static long workspaceQuota() {
+        String longStr = System.getProperty(PROP_WORKSPACE_QUOTA, "10240");
+        return Long.parseLong(longStr);
+    }
+
+    /**
+     * Seconds to keep workspace for session after its last cmd finished, same as default session timeout
+     */
+    public static long workspaceLease() {
+        String longStr = System.getProperty(PROP_WORKSPACE_LEASE, "600");
+        return Long.parseLong(longStr);
+    }
+
+    /**
+     * Interval in seconds to sample host metrics, disabled if less than 1
+     */
+    public static int metricsInterval() {
+        String intStr = System.getProperty(PROP_METRICS_INTERVAL, "5");
         return Integer.parseInt(intStr);
     }
 
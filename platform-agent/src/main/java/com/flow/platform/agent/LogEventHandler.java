@@ -20,20 +20,28 @@ import com.flow.platform.cmd.Log;
 import com.flow.platform.cmd.LogListener;
 import com.flow.platform.domain.AgentSettings;
 import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.LogCodec;
 import com.flow.platform.util.Logger;
 import com.google.common.base.Strings;
-import java.io.FileOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.websocket.ClientEndpointConfig;
 import javax.websocket.Endpoint;
 import javax.websocket.EndpointConfig;
@@ -41,9 +49,12 @@ import javax.websocket.Session;
 import org.glassfish.tyrus.client.ClientManager;
 
 /**
- * Record log to $HOME/agent-log/{cmd id}.out.zip
+ * Record log to $HOME/agent-log/{cmd id}.out{codec extension}
  * Send log via web socket if real time log enabled and ws url provided
  * <p>
+ * Log lines are buffered and encoded in chunks on shared encoder threads rather than logging thread,
+ * the chunks are uploaded by shared uploader threads while cmd running if codec support chunk, otherwise
+ * full log uploaded when finished. The logging thread is blocked if too many chunks pending in memory
  *
  * @author gy@fir.im
  */
@@ -53,20 +64,62 @@ public class LogEventHandler implements LogListener {
 
     private final static Path DEFAULT_LOG_PATH = Config.logDir();
 
+    private final static int CHUNK_SIZE = 64 * 1024;
+
+    private final static int ENCODING_WAITING_SECONDS = 60;
+
+    // max num of raw or encoded chunks of single cmd kept in memory
+    private final static int MAX_PENDING_CHUNKS = 16;
+
+    private final static AtomicInteger THREAD_INDEX = new AtomicInteger(0);
+
+    // encoding runs on the caller thread if queue is full
+    private final static ExecutorService ENCODER = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(64), r -> newThread(r, "agent-log-encoder-"),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+
+    // uploading is blocking io, the queue is bounded by pending chunks of each cmd
+    private final static ExecutorService UPLOADER = Executors
+        .newFixedThreadPool(2, r -> newThread(r, "agent-log-uploader-"));
+
     private final Cmd cmd;
 
+    private final LogCodec codec = Config.logCodec();
+
+    private final int level = Config.logLevel();
+
     private Path stdoutLogPath;
-    private FileOutputStream stdoutLogStream;
-    private ZipOutputStream stdoutLogZipStream;
+    private OutputStream stdoutLogStream;
+
+    // encoder stream for codec not support chunk
+    private OutputStream stdoutLogEncoder;
+
+    // raw log lines not yet encoded, only accessed from logging thread
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(CHUNK_SIZE);
+
+    // released when chunk encoded or uploaded
+    private final Semaphore pendingChunks = new Semaphore(MAX_PENDING_CHUNKS);
+
+    // chunks are encoded in sequence by chaining on previous chunk
+    private CompletableFuture<Void> encoding = CompletableFuture.completedFuture(null);
+
+    // chunks are uploaded in sequence by chaining on previous chunk from encoding tasks
+    private volatile CompletableFuture<Void> uploading = CompletableFuture.completedFuture(null);
+
+    // only accessed by encoding tasks which run in sequence, and read after encoding finished
+    private int numOfChunks = 0;
+
+    // set by uploading tasks which run in sequence
+    private volatile boolean chunkUploadFailed = false;
 
     private Session wsSession;
 
     public LogEventHandler(Cmd cmd) {
         this.cmd = cmd;
 
-        // init zip log path
+        // init log path
         try {
-            initZipLogFile(this.cmd);
+            initLogFile(this.cmd);
         } catch (IOException e) {
             LOGGER.error("Fail to init cmd log file", e);
         }
@@ -93,7 +146,7 @@ public class LogEventHandler implements LogListener {
         sendRealTimeLog(log);
 
         // write stdout & stderr
-        writeZipStream(stdoutLogZipStream, log.getContent());
+        writeLog(log.getContent());
     }
 
     private void sendRealTimeLog(Log log) {
@@ -115,7 +168,20 @@ public class LogEventHandler implements LogListener {
         // close socket io
         closeWebSocket();
 
-        if (closeZipAndFileStream(stdoutLogZipStream, stdoutLogStream)) {
+        if (stdoutLogStream == null) {
+            return;
+        }
+
+        flushChunk();
+
+        try {
+            encoding.get(ENCODING_WAITING_SECONDS, TimeUnit.SECONDS);
+            uploading.get(ENCODING_WAITING_SECONDS, TimeUnit.SECONDS);
+        } catch (Throwable e) {
+            LOGGER.warn("Fail to wait log encoding and uploading: %s", e.getMessage());
+        }
+
+        if (closeLogStream()) {
             renameAndUpload(stdoutLogPath, Log.Type.STDOUT);
         }
     }
@@ -147,16 +213,21 @@ public class LogEventHandler implements LogListener {
 
 
     private void renameAndUpload(Path logPath, Log.Type logType) {
-        // rename xxx.out.tmp to xxx.out.zip and renameAndUpload to server
+        // rename xxx.out.tmp to xxx.out with codec extension and upload to server
         if (Files.exists(logPath)) {
             try {
                 Path target = Paths
                     .get(DEFAULT_LOG_PATH.toString(), getLogFileName(cmd, logType, false));
                 Files.move(logPath, target);
 
+                // full log upload not needed if all chunks uploaded
+                boolean uploaded = codec.isChunked() && numOfChunks > 0 && !chunkUploadFailed;
+                if (!uploaded) {
+                    uploaded = ReportManager.getInstance().cmdLogUploadSync(cmd.getId(), codec, target);
+                }
+
                 // delete if uploaded
-                ReportManager reportManager = ReportManager.getInstance();
-                if (reportManager.cmdLogUploadSync(cmd.getId(), target) && Config.isDeleteLog()) {
+                if (uploaded && Config.isDeleteLog()) {
                     Files.deleteIfExists(target);
                 }
             } catch (IOException warn) {
@@ -165,26 +236,23 @@ public class LogEventHandler implements LogListener {
         }
     }
 
-    private boolean closeZipAndFileStream(final ZipOutputStream zipStream, final FileOutputStream fileStream) {
+    private boolean closeLogStream() {
         try {
-            if (zipStream != null) {
-                zipStream.flush();
-                zipStream.closeEntry();
-                zipStream.close();
-                return true;
+            if (stdoutLogEncoder != null) {
+                stdoutLogEncoder.close();
             }
+            stdoutLogStream.close();
+            return true;
         } catch (IOException e) {
-            LOGGER.error("Exception while close zip stream", e);
-        } finally {
-            try {
-                if (fileStream != null) {
-                    fileStream.close();
-                }
-            } catch (IOException e) {
-                LOGGER.error("Exception while close log file", e);
-            }
+            LOGGER.error("Exception while close log file", e);
+            return false;
         }
-        return false;
+    }
+
+    private static Thread newThread(Runnable runnable, String prefix) {
+        Thread thread = new Thread(runnable, prefix + THREAD_INDEX.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
     }
 
     private void closeWebSocket() {
@@ -197,21 +265,88 @@ public class LogEventHandler implements LogListener {
         }
     }
 
-    private void writeZipStream(final ZipOutputStream stream, final String log) {
-        if (stream == null) {
+    private void writeLog(final String log) {
+        if (stdoutLogStream == null) {
             return;
         }
 
-        // write to zip output stream
         try {
-            stream.write(log.getBytes());
-            stream.write(Cmd.NEW_LINE.getBytes());
+            buffer.write(log.getBytes());
+            buffer.write(Cmd.NEW_LINE.getBytes());
         } catch (IOException e) {
             LOGGER.warn("Log cannot write : " + log);
         }
+
+        if (buffer.size() >= CHUNK_SIZE) {
+            flushChunk();
+        }
+    }
+
+    /**
+     * Move buffered log to encoder thread, wait if too many chunks pending
+     */
+    private void flushChunk() {
+        if (buffer.size() == 0) {
+            return;
+        }
+
+        final byte[] raw = buffer.toByteArray();
+        buffer.reset();
+
+        pendingChunks.acquireUninterruptibly();
+        encoding = encoding.thenRunAsync(() -> encodeChunk(raw), ENCODER);
+    }
+
+    /**
+     * Encode chunk and write to log file, all errors are caught to keep encoding the following chunks
+     */
+    private void encodeChunk(final byte[] raw) {
+        boolean toUpload = false;
+
+        try {
+            if (!codec.isChunked()) {
+                stdoutLogEncoder.write(raw);
+                return;
+            }
+
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(raw.length);
+            try (OutputStream encoder = codec.encode(encoded, level, cmd.getId() + ".out")) {
+                encoder.write(raw);
+            }
+
+            final byte[] chunk = encoded.toByteArray();
+            stdoutLogStream.write(chunk);
+
+            // upload chunks until first failure, full log will be uploaded when finished
+            final int index = numOfChunks++;
+            if (!chunkUploadFailed) {
+                uploading = uploading.thenRunAsync(() -> uploadChunk(index, chunk), UPLOADER);
+                toUpload = true;
+            }
+        } catch (Throwable e) {
+            LOGGER.warn("Log chunk cannot encode : " + e.getMessage());
+        } finally {
+            if (!toUpload) {
+                pendingChunks.release();
+            }
+        }
+    }
+
+    private void uploadChunk(final int index, final byte[] chunk) {
+        try {
+            if (!chunkUploadFailed) {
+                ReportManager reportManager = ReportManager.getInstance();
+                chunkUploadFailed = !reportManager.cmdLogChunkUploadSync(cmd.getId(), codec, index, chunk);
+            }
+        } catch (Throwable e) {
+            chunkUploadFailed = true;
+            LOGGER.warn("Log chunk cannot upload : " + e.getMessage());
+        } finally {
+            pendingChunks.release();
+        }
     }
 
-    private void initZipLogFile(final Cmd cmd) throws IOException {
+    private void initLogFile(final Cmd cmd) throws IOException {
         // init log directory
         try {
             Files.createDirectory(DEFAULT_LOG_PATH);
@@ -219,22 +354,22 @@ public class LogEventHandler implements LogListener {
             LOGGER.warn("Log path %s already exist", DEFAULT_LOG_PATH);
         }
 
-        // init zipped log file for tmp
+        // init log file for tmp
         Path stdoutPath = Paths.get(DEFAULT_LOG_PATH.toString(), getLogFileName(cmd, Log.Type.STDOUT, true));
         Files.deleteIfExists(stdoutPath);
 
         stdoutLogPath = Files.createFile(stdoutPath);
 
-        // init zip stream for stdout log
-        stdoutLogStream = new FileOutputStream(stdoutLogPath.toFile());
-        stdoutLogZipStream = new ZipOutputStream(stdoutLogStream);
-        ZipEntry outEntry = new ZipEntry(cmd.getId() + ".out");
-        stdoutLogZipStream.putNextEntry(outEntry);
+        // init encoder stream for stdout log, the chunks are encoded individually if codec support chunk
+        stdoutLogStream = new BufferedOutputStream(Files.newOutputStream(stdoutLogPath));
+        if (!codec.isChunked()) {
+            stdoutLogEncoder = codec.encode(stdoutLogStream, level, cmd.getId() + ".out");
+        }
     }
 
     private String getLogFileName(Cmd cmd, Log.Type logType, boolean isTemp) {
         String logTypeSuffix = logType == Log.Type.STDERR ? ".err" : ".out";
-        String tempSuffix = isTemp ? ".tmp" : ".zip";
+        String tempSuffix = isTemp ? ".tmp" : codec.getExtension();
 
         // replace / with - since cmd id may includes slash which the same as dir path
         return cmd.getId().replace('/', '-') + logTypeSuffix + tempSuffix;
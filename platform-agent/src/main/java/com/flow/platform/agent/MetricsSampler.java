@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent;
+
+import com.flow.platform.cmd.ProcIOExecutor;
+import com.flow.platform.domain.AgentMetrics;
+import com.flow.platform.util.Logger;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Sample host metrics from /proc on linux or from jvm os bean on others, each sample only reads
+ * the first lines of few proc files, so it's cheap enough to run every few seconds
+ *
+ * @author yang
+ */
+public class MetricsSampler {
+
+    private final static Logger LOGGER = new Logger(MetricsSampler.class);
+
+    private final static Path PROC_STAT = Paths.get("/proc/stat");
+
+    private final static Path PROC_LOADAVG = Paths.get("/proc/loadavg");
+
+    private final static Path PROC_MEMINFO = Paths.get("/proc/meminfo");
+
+    private final static long MB = 1024 * 1024;
+
+    private final static long KB_PER_MB = 1024;
+
+    /**
+     * Min change of cpu, memory and load usage in percent to publish metrics
+     */
+    private final static int USAGE_THRESHOLD = 5;
+
+    /**
+     * Min change of workspace free disk in MB to publish metrics
+     */
+    private final static long DISK_THRESHOLD = 512;
+
+    private final Path workspace;
+
+    private final boolean hasProc;
+
+    // cpu ticks from /proc/stat of previous sample
+    private long prevBusyTicks = -1;
+
+    private long prevTotalTicks = -1;
+
+    public MetricsSampler(Path workspace) {
+        this.workspace = workspace;
+        this.hasProc = Files.isReadable(PROC_STAT) && Files.isReadable(PROC_MEMINFO);
+    }
+
+    /**
+     * Is metrics changed enough to publish, small fluctuation is ignored to reduce zookeeper writes
+     */
+    public static boolean isChanged(AgentMetrics previous, AgentMetrics current) {
+        if (previous == null) {
+            return true;
+        }
+
+        return Math.abs(previous.getCpu() - current.getCpu()) >= USAGE_THRESHOLD
+            || Math.abs(previous.getMemUsage() - current.getMemUsage()) >= USAGE_THRESHOLD
+            || Math.abs(previous.getLoadUsage() - current.getLoadUsage()) >= USAGE_THRESHOLD
+            || Math.abs(previous.getDiskFree() - current.getDiskFree()) >= DISK_THRESHOLD
+            || previous.getIoOverflow() != current.getIoOverflow();
+    }
+
+    public synchronized AgentMetrics sample() {
+        AgentMetrics metrics = new AgentMetrics();
+        metrics.setCores(Runtime.getRuntime().availableProcessors());
+
+        if (Files.isDirectory(workspace)) {
+            metrics.setDiskFree(workspace.toFile().getUsableSpace() / MB);
+        }
+
+        ProcIOExecutor ioExecutor = ProcIOExecutor.getInstance();
+        metrics.setIoThreads(ioExecutor.getActiveCount());
+        metrics.setIoOverflow(ioExecutor.getOverflowCount());
+
+        try {
+            if (hasProc) {
+                sampleFromProc(metrics);
+            } else {
+                sampleFromJvm(metrics);
+            }
+        } catch (Throwable e) {
+            LOGGER.warn("Unable to sample host metrics: %s", e.getMessage());
+        }
+
+        return metrics;
+    }
+
+    private void sampleFromProc(AgentMetrics metrics) throws IOException {
+        // cpu  user nice system idle iowait irq softirq steal ...
+        String[] ticks = firstLine(PROC_STAT).trim().split("\\s+");
+        long total = 0;
+        for (int i = 1; i < Math.min(ticks.length, 9); i++) {
+            total += Long.parseLong(ticks[i]);
+        }
+        long busy = total - Long.parseLong(ticks[4]) - Long.parseLong(ticks[5]);
+
+        if (prevTotalTicks >= 0 && total > prevTotalTicks) {
+            metrics.setCpu((int) ((busy - prevBusyTicks) * 100 / (total - prevTotalTicks)));
+        }
+        prevBusyTicks = busy;
+        prevTotalTicks = total;
+
+        // 0.20 0.18 0.12 1/80 11206
+        if (Files.isReadable(PROC_LOADAVG)) {
+            String[] loadavg = firstLine(PROC_LOADAVG).trim().split("\\s+");
+            metrics.setLoad(Double.parseDouble(loadavg[0]));
+            // runnable/total scheduling entities
+            metrics.setProcs(Integer.parseInt(loadavg[3].substring(0, loadavg[3].indexOf('/'))));
+        }
+
+        // MemTotal:        8167848 kB
+        long memFree = 0;
+        try (BufferedReader reader = Files.newBufferedReader(PROC_MEMINFO)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("MemTotal:")) {
+                    metrics.setMemTotal(memInfoValue(line) / KB_PER_MB);
+                    continue;
+                }
+
+                if (line.startsWith("MemAvailable:")) {
+                    metrics.setMemFree(memInfoValue(line) / KB_PER_MB);
+                    break;
+                }
+
+                // for kernel not provide MemAvailable
+                if (line.startsWith("MemFree:") || line.startsWith("Buffers:") || line.startsWith("Cached:")) {
+                    memFree += memInfoValue(line);
+                }
+            }
+        }
+
+        if (metrics.getMemFree() == AgentMetrics.UNKNOWN) {
+            metrics.setMemFree(memFree / KB_PER_MB);
+        }
+    }
+
+    private void sampleFromJvm(AgentMetrics metrics) {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        metrics.setLoad(os.getSystemLoadAverage());
+
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean sunOs = (com.sun.management.OperatingSystemMXBean) os;
+
+            double cpuLoad = sunOs.getSystemCpuLoad();
+            if (cpuLoad >= 0) {
+                metrics.setCpu((int) (cpuLoad * 100));
+            }
+
+            metrics.setMemTotal(sunOs.getTotalPhysicalMemorySize() / MB);
+            metrics.setMemFree(sunOs.getFreePhysicalMemorySize() / MB);
+        }
+    }
+
+    private static String firstLine(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("Empty content of " + path);
+            }
+            return line;
+        }
+    }
+
+    private static long memInfoValue(String line) {
+        String[] items = line.trim().split("\\s+");
+        return Long.parseLong(items[1]);
+    }
+}
@@ -24,8 +24,11 @@ import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.util.Logger;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 /**
+ * The finish status is reported only if cmd not cancelled, since KILLED is reported by cancel
+ *
  * @author gy@fir.im
  */
 public class ProcEventHandler implements ProcListener {
@@ -36,16 +39,29 @@ public class ProcEventHandler implements ProcListener {
     private final Map<Cmd, CmdResult> running;
     private final Map<Cmd, CmdResult> finished;
     private final List<ProcListener> extraProcEventListeners;
+    private final BooleanSupplier finish;
     private final ReportManager reportManager = ReportManager.getInstance();
 
     public ProcEventHandler(Cmd cmd,
                             List<ProcListener> extraProcEventListeners,
                             Map<Cmd, CmdResult> running,
                             Map<Cmd, CmdResult> finished) {
+        this(cmd, extraProcEventListeners, running, finished, () -> true);
+    }
+
+    /**
+     * @param finish mark cmd finished, return false if cmd been cancelled
+     */
+    public ProcEventHandler(Cmd cmd,
+                            List<ProcListener> extraProcEventListeners,
+                            Map<Cmd, CmdResult> running,
+                            Map<Cmd, CmdResult> finished,
+                            BooleanSupplier finish) {
         this.cmd = cmd;
         this.extraProcEventListeners = extraProcEventListeners;
         this.running = running;
         this.finished = finished;
+        this.finish = finish;
     }
 
     @Override
@@ -63,7 +79,9 @@ public class ProcEventHandler implements ProcListener {
     @Override
     public void onExecuted(CmdResult result) {
         // report cmd sync since block current thread
-        reportManager.cmdReportSync(cmd.getId(), CmdStatus.EXECUTED, result);
+        if (finish.getAsBoolean()) {
+            reportManager.cmdReportSync(cmd.getId(), CmdStatus.EXECUTED, result);
+        }
 
         for (ProcListener listener : extraProcEventListeners) {
             listener.onExecuted(result);
@@ -74,11 +92,13 @@ public class ProcEventHandler implements ProcListener {
     public void onLogged(CmdResult result) {
         LOGGER.debug("got result...");
 
-        running.remove(cmd);
-        finished.put(cmd, result);
+        if (finish.getAsBoolean()) {
+            running.remove(cmd);
+            finished.put(cmd, result);
 
-        // report cmd sync since block current thread
-        reportManager.cmdReportSync(cmd.getId(), CmdStatus.LOGGED, result);
+            // report cmd sync since block current thread
+            reportManager.cmdReportSync(cmd.getId(), CmdStatus.LOGGED, result);
+        }
 
         for (ProcListener listener : extraProcEventListeners) {
             listener.onLogged(result);
@@ -87,11 +107,13 @@ public class ProcEventHandler implements ProcListener {
 
     @Override
     public void onException(CmdResult result) {
-        running.remove(cmd);
-        finished.put(cmd, result);
+        if (finish.getAsBoolean()) {
+            running.remove(cmd);
+            finished.put(cmd, result);
 
-        // report cmd sync since block current thread
-        reportManager.cmdReportSync(cmd.getId(), CmdStatus.EXCEPTION, result);
+            // report cmd sync since block current thread
+            reportManager.cmdReportSync(cmd.getId(), CmdStatus.EXCEPTION, result);
+        }
 
         for (ProcListener listener : extraProcEventListeners) {
             listener.onException(result);
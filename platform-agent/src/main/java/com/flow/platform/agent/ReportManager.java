@@ -19,13 +19,26 @@ package com.flow.platform.agent;
 import com.flow.platform.domain.CmdReport;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
+import com.flow.platform.domain.Jsonable;
+import com.flow.platform.domain.LogCodec;
 import com.flow.platform.util.ExceptionUtil;
 import com.flow.platform.util.Logger;
 import com.flow.platform.util.http.HttpClient;
 import com.flow.platform.util.http.HttpResponse;
 import java.nio.file.Path;
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
@@ -35,6 +48,9 @@ import org.apache.http.entity.mime.content.StringBody;
 /**
  * For reporting status
  * <p>
+ * Cmd status reports are collected and sent in batch with sequence number by single thread over
+ * keep alive connection, the unsent report of cmd is replaced by the later one of the same cmd.
+ * Reports are kept until acked by control center, and resent with backoff if failure
  *
  * @author gy@fir.im
  */
@@ -44,68 +60,242 @@ public class ReportManager {
 
     private final static ReportManager INSTANCE = new ReportManager();
 
+    private final static long FLUSH_INTERVAL = 200; // in millis
+
+    private final static long MAX_RETRY_INTERVAL = 10 * 1000; // in millis
+
+    private final static long SYNC_REPORT_TIMEOUT = 30; // in seconds
+
+    private final static int MAX_BATCH_SIZE = 1000; // same as control center
+
     public static ReportManager getInstance() {
         return INSTANCE;
     }
 
-    // Executor to execute report thread
-    private final ExecutorService executor = Executors.newFixedThreadPool(100);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cmd-report");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private ReportManager() {
+    private final AtomicLong seq = new AtomicLong(0);
+
+    /**
+     * Not acked reports by cmd id in report order, guarded by itself
+     */
+    private final Map<String, Report> pending = new LinkedHashMap<>();
 
+    /**
+     * Id of cmds which reports are sending, guarded by pending
+     */
+    private final Set<String> sending = new HashSet<>();
+
+    // only accessed from scheduler thread
+    private long retryInterval = 0;
+
+    private long nextFlushAt = 0;
+
+    private ReportManager() {
+        scheduler.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Report cmd status with result in async
      */
     public void cmdReport(final String cmdId, final CmdStatus status, final CmdResult result) {
-        executor.execute(() -> {
-            cmdReportSync(cmdId, status, result);
-        });
+        report(cmdId, status, result);
     }
 
     /**
-     * Report cmd status in sync
+     * Report cmd status and wait until it acked by control center,
+     * the report still be sent after timeout
      */
     public boolean cmdReportSync(final String cmdId, final CmdStatus status, final CmdResult result) {
+        try {
+            return report(cmdId, status, result).get(SYNC_REPORT_TIMEOUT, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Cmd %s report status %s not acked in %s seconds", cmdId, status, SYNC_REPORT_TIMEOUT);
+            return false;
+        } catch (Throwable e) {
+            LOGGER.warn("Fail to report cmd %s status since %s'", cmdId, ExceptionUtil.findRootCause(e).getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return id of cmds which reports are not acked by control center yet
+     */
+    public Set<String> getUnackedCmds() {
+        synchronized (pending) {
+            Set<String> cmds = new HashSet<>(pending.keySet());
+            cmds.addAll(sending);
+            return cmds;
+        }
+    }
+
+    private CompletableFuture<Boolean> report(String cmdId, CmdStatus status, CmdResult result) {
         if (!Config.isReportCmdStatus()) {
             LOGGER.trace("Cmd report toggle is disabled");
-            return true;
+            return CompletableFuture.completedFuture(true);
+        }
+
+        CmdReport cmdReport = new CmdReport(cmdId, status, result);
+        cmdReport.setSeq(seq.incrementAndGet());
+
+        Report report = new Report(cmdReport);
+        synchronized (pending) {
+            Report existed = pending.remove(cmdId);
+            pending.put(cmdId, existed == null ? report : existed.merge(report));
+        }
+        return report.future;
+    }
+
+    private void flush() {
+        if (System.currentTimeMillis() < nextFlushAt) {
+            return;
+        }
+
+        List<Report> batch = new ArrayList<>();
+        synchronized (pending) {
+            Iterator<Report> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                Report report = iterator.next();
+                batch.add(report);
+                sending.add(report.report.getId());
+                iterator.remove();
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // exception must be caught, otherwise the scheduled flush will be stopped
+        List<Report> failures;
+        try {
+            failures = send(batch);
+        } catch (Throwable e) {
+            LOGGER.warn("Fail to send cmd report batch since %s", ExceptionUtil.findRootCause(e).getMessage());
+            failures = batch;
+        }
+
+        if (failures.isEmpty()) {
+            synchronized (pending) {
+                sending.clear();
+            }
+            retryInterval = 0;
+            return;
+        }
+
+        // put back in front of reports which not yet sent and retry later
+        synchronized (pending) {
+            sending.clear();
+
+            Map<String, Report> reports = new LinkedHashMap<>();
+            for (Report failure : failures) {
+                reports.put(failure.report.getId(), failure);
+            }
+
+            for (Report report : pending.values()) {
+                Report existed = reports.remove(report.report.getId());
+                reports.put(report.report.getId(), existed == null ? report : existed.merge(report));
+            }
+
+            pending.clear();
+            pending.putAll(reports);
+        }
+
+        retryInterval = Math.min(Math.max(retryInterval * 2, FLUSH_INTERVAL), MAX_RETRY_INTERVAL);
+        nextFlushAt = System.currentTimeMillis() + retryInterval;
+    }
+
+    /**
+     * Send batch to control center, or send one by one if batch url not provided
+     *
+     * @return reports not acked
+     */
+    private List<Report> send(List<Report> batch) {
+        final String batchUrl = Config.agentSettings().getCmdStatusBatchUrl();
+
+        if (batchUrl == null) {
+            List<Report> failures = new ArrayList<>();
+            for (Report report : batch) {
+                if (send(Config.agentSettings().getCmdStatusUrl(), report.report.toJson()) == null) {
+                    failures.add(report);
+                    continue;
+                }
+                report.ack();
+            }
+            return failures;
+        }
+
+        List<CmdReport> reports = new ArrayList<>(batch.size());
+        for (Report report : batch) {
+            reports.add(report.report);
         }
 
-        // build post body
-        final CmdReport postCmd = new CmdReport(cmdId, status, result);
-        final String url = Config.agentSettings().getCmdStatusUrl();
+        String body = send(batchUrl, Jsonable.GSON_CONFIG.toJson(reports));
+        if (body == null) {
+            return batch;
+        }
+
+        long ack;
+        try {
+            ack = Long.parseLong(body.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Illegal ack of cmd report batch: %s", body);
+            return batch;
+        }
 
+        List<Report> failures = new ArrayList<>();
+        for (Report report : batch) {
+            if (report.report.getSeq() > ack) {
+                failures.add(report);
+                continue;
+            }
+            report.ack();
+        }
+
+        LOGGER.trace("Cmd report batch with %s reports acked to %s", batch.size() - failures.size(), ack);
+        return failures;
+    }
+
+    /**
+     * @return response body or null if failure
+     */
+    private String send(String url, String json) {
         try {
             HttpResponse<String> response = HttpClient.build(url)
-                .post(postCmd.toJson())
-                .retry(5)
+                .post(json)
+                .keepAlive()
                 .withContentType(ContentType.APPLICATION_JSON)
                 .bodyAsString();
 
             if (!response.hasSuccess()) {
                 LOGGER.warn("Fail to report cmd status to %s with status %s", url, response.getStatusCode());
-                return false;
+                return null;
             }
 
-            LOGGER.trace("Cmd %s report status %s with result %s", cmdId, status, result);
-            return true;
+            return response.getBody();
         } catch (Throwable e) {
-            LOGGER.warn("Fail to report cmd %s status since %s'", cmdId, ExceptionUtil.findRootCause(e).getMessage());
-            return false;
+            LOGGER.warn("Fail to report cmd status to %s since %s'", url, ExceptionUtil.findRootCause(e).getMessage());
+            return null;
         }
     }
 
-    public boolean cmdLogUploadSync(final String cmdId, final Path path) {
+    /**
+     * Upload full cmd log file
+     */
+    public boolean cmdLogUploadSync(final String cmdId, final LogCodec codec, final Path path) {
         if (!Config.isUploadLog()) {
             LOGGER.trace("Log upload toggle is disabled");
             return true;
         }
 
         HttpEntity entity = MultipartEntityBuilder.create()
-            .addPart("file", new FileBody(path.toFile(), ContentType.create("application/zip")))
+            .addPart("file", new FileBody(path.toFile(), ContentType.create(codec.getContentType())))
             .addPart("cmdId", new StringBody(cmdId, ContentType.TEXT_PLAIN))
+            .addPart("codec", new StringBody(codec.getName(), ContentType.TEXT_PLAIN))
             .setContentType(ContentType.MULTIPART_FORM_DATA)
             .build();
 
@@ -116,11 +306,83 @@ public class ReportManager {
             .bodyAsString();
 
         if (!response.hasSuccess()) {
-            LOGGER.warn("Fail to upload zipped cmd log to : %s ", url);
+            LOGGER.warn("Fail to upload cmd log to : %s ", url);
             return false;
         }
 
-        LOGGER.trace("Zipped cmd log uploaded %s", path);
+        LOGGER.trace("Cmd log uploaded %s", path);
         return true;
     }
+
+    /**
+     * Upload encoded chunk of cmd log while cmd running, the chunks must be uploaded in sequence
+     *
+     * @return false if chunk url not provided or upload failure
+     */
+    public boolean cmdLogChunkUploadSync(final String cmdId, final LogCodec codec, final int index, byte[] chunk) {
+        if (!Config.isUploadLog() || Config.agentSettings() == null) {
+            return false;
+        }
+
+        final String url = Config.agentSettings().getCmdLogChunkUrl();
+        if (url == null) {
+            return false;
+        }
+
+        HttpEntity entity = MultipartEntityBuilder.create()
+            .addBinaryBody("file", chunk, ContentType.create(codec.getContentType()), cmdId)
+            .addPart("cmdId", new StringBody(cmdId, ContentType.TEXT_PLAIN))
+            .addPart("codec", new StringBody(codec.getName(), ContentType.TEXT_PLAIN))
+            .addPart("index", new StringBody(Integer.toString(index), ContentType.TEXT_PLAIN))
+            .setContentType(ContentType.MULTIPART_FORM_DATA)
+            .build();
+
+        HttpResponse<String> response = HttpClient.build(url)
+            .post(entity)
+            .keepAlive()
+            .retry(2)
+            .bodyAsString();
+
+        if (!response.hasSuccess()) {
+            LOGGER.warn("Fail to upload chunk %s of cmd %s log to : %s ", index, cmdId, url);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Cmd report with futures of the reports it replaced
+     */
+    private final static class Report {
+
+        private CmdReport report;
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        private final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        Report(CmdReport report) {
+            this.report = report;
+            this.futures.add(future);
+        }
+
+        /**
+         * Merge later report of the same cmd, keep the report of higher status level,
+         * or the later one if same level
+         */
+        Report merge(Report later) {
+            if (later.report.getStatus().getLevel() >= report.getStatus().getLevel()) {
+                report = later.report;
+            }
+            futures.addAll(later.futures);
+            return this;
+        }
+
+        void ack() {
+            for (CompletableFuture<Boolean> item : futures) {
+                item.complete(true);
+            }
+        }
+    }
 }
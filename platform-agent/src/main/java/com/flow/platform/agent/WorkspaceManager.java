@@ -0,0 +1,434 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent;
+
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.util.Logger;
+import com.google.common.base.Strings;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Manage persistent workspaces of flows on agent, the workspace is kept after cmd finished so the
+ * checkout of previous job can be reused:
+ * - workspaces are keyed by flow name under {root}/flow-workspaces
+ * - cmds of one session share one workspace, cmd of other session running at the same time gets
+ *   another copy of flow workspace, ex: {flow}@1
+ * - git objects of workspaces are fetched to a shared bare repo {root}/flow-git-cache, which can be
+ *   used as clone reference by steps
+ * - the least recently used workspaces are deleted when total size is over the quota
+ *
+ * @author yang
+ */
+public class WorkspaceManager {
+
+    private final static Logger LOGGER = new Logger(WorkspaceManager.class);
+
+    /**
+     * Env of workspace path exposed to steps, it's owned by agent and not overlap the envs of flow
+     */
+    public final static String ENV_WORKSPACE = "FLOW_AGENT_FLOW_WORKSPACE";
+
+    /**
+     * Env of shared git object cache path exposed to steps,
+     * ex: git clone --reference-if-able $FLOW_AGENT_GIT_CACHE --dissociate {url}
+     */
+    public final static String ENV_GIT_CACHE = "FLOW_AGENT_GIT_CACHE";
+
+    /**
+     * Env of flow name from cmd inputs as workspace key
+     */
+    public final static String ENV_WORKSPACE_KEY = "FLOW_NAME";
+
+    private final static String WORKSPACES_DIR = "flow-workspaces";
+
+    private final static String GIT_CACHE_DIR = "flow-git-cache";
+
+    /**
+     * Prefix of workspace dir moved aside to be deleted
+     */
+    private final static String EVICTED_PREFIX = ".evicted-";
+
+    private final static long MB = 1024 * 1024;
+
+    private final static long GIT_TIMEOUT = 600; // seconds
+
+    private static WorkspaceManager INSTANCE;
+
+    public static synchronized WorkspaceManager getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new WorkspaceManager(Config.workspace(), Config.workspaceQuota(), Config.workspaceLease());
+        }
+        return INSTANCE;
+    }
+
+    private final Path workspacesDir;
+
+    private final Path gitCacheDir;
+
+    private final long quota; // in bytes
+
+    private final long leaseTimeout; // in millis
+
+    // workspace dir and the session or cmd holds it
+    private final Map<Path, Lease> leases = new HashMap<>();
+
+    private final ExecutorService maintainer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "agent-workspace");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // workspaces to fetch git objects from on next maintenance
+    private final List<Path> toFetch = new ArrayList<>();
+
+    private final AtomicBoolean maintaining = new AtomicBoolean(false);
+
+    private final Object evictLock = new Object();
+
+    private volatile boolean gitEnabled = true;
+
+    /**
+     * @param root root dir of workspaces and git cache
+     * @param quota max total size of workspaces in MB
+     * @param leaseTimeout seconds to keep workspace for session after its last cmd finished
+     */
+    public WorkspaceManager(Path root, long quota, long leaseTimeout) {
+        this.workspacesDir = root.resolve(WORKSPACES_DIR);
+        this.gitCacheDir = root.resolve(GIT_CACHE_DIR);
+        this.quota = quota * MB;
+        this.leaseTimeout = TimeUnit.SECONDS.toMillis(leaseTimeout);
+    }
+
+    public Path getGitCacheDir() {
+        return gitCacheDir;
+    }
+
+    /**
+     * Acquire workspace for cmd and mark it as most recently used
+     *
+     * @return workspace dir, or null if cmd not belong to a flow
+     */
+    public synchronized Path acquire(Cmd cmd) throws IOException {
+        String key = key(cmd);
+        if (key == null) {
+            return null;
+        }
+
+        String owner = owner(cmd);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; ; i++) {
+            Path dir = workspacesDir.resolve(i == 0 ? key : key + "@" + i);
+            Lease lease = leases.get(dir);
+
+            if (lease == null || lease.isExpired(now)) {
+                lease = new Lease(owner);
+                leases.put(dir, lease);
+            }
+
+            if (!lease.owner.equals(owner)) {
+                continue;
+            }
+
+            lease.running++;
+            Files.createDirectories(dir);
+            Files.setLastModifiedTime(dir, FileTime.fromMillis(now));
+            return dir;
+        }
+    }
+
+    /**
+     * Release workspace after cmd finished, the workspace is still held by session until lease timeout
+     */
+    public void release(Cmd cmd, Path dir) {
+        synchronized (this) {
+            Lease lease = leases.get(dir);
+            if (lease == null || !lease.owner.equals(owner(cmd))) {
+                return;
+            }
+
+            lease.running--;
+            lease.releasedAt = System.currentTimeMillis();
+
+            if (cmd.getSessionId() == null && lease.running <= 0) {
+                leases.remove(dir);
+            }
+
+            toFetch.add(dir);
+        }
+
+        maintain();
+    }
+
+    /**
+     * Fetch git objects of released workspaces to cache and evict workspaces over quota in background,
+     * the requests while maintaining are coalesced to the next round
+     */
+    public void maintain() {
+        if (!maintaining.compareAndSet(false, true)) {
+            return;
+        }
+
+        maintainer.execute(() -> {
+            try {
+                List<Path> dirs;
+                synchronized (this) {
+                    dirs = new ArrayList<>(toFetch);
+                    toFetch.clear();
+                }
+
+                for (Path dir : dirs) {
+                    fetchToGitCache(dir);
+                }
+
+                evict();
+            } catch (Throwable e) {
+                LOGGER.warn("Unable to maintain workspaces: %s", e.getMessage());
+            } finally {
+                maintaining.set(false);
+            }
+
+            synchronized (this) {
+                if (!toFetch.isEmpty()) {
+                    maintain();
+                }
+            }
+        });
+    }
+
+    /**
+     * Delete the least recently used workspaces not held by any session until total size under quota
+     */
+    public void evict() throws IOException {
+        synchronized (evictLock) {
+            if (Files.isDirectory(workspacesDir)) {
+                evictOverQuota();
+            }
+        }
+    }
+
+    private void evictOverQuota() throws IOException {
+        List<Path> dirs;
+        try (Stream<Path> list = Files.list(workspacesDir)) {
+            dirs = list.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+
+        // delete dirs left by previous eviction which failed to delete
+        for (Path dir : new ArrayList<>(dirs)) {
+            if (dir.getFileName().toString().startsWith(EVICTED_PREFIX)) {
+                dirs.remove(dir);
+                delete(dir);
+            }
+        }
+
+        Map<Path, Long> sizes = new HashMap<>(dirs.size());
+        long total = 0;
+        for (Path dir : dirs) {
+            long size = sizeOf(dir);
+            sizes.put(dir, size);
+            total += size;
+        }
+
+        if (total <= quota) {
+            return;
+        }
+
+        dirs.sort(Comparator.comparingLong(WorkspaceManager::lastModified));
+        long now = System.currentTimeMillis();
+
+        for (Path dir : dirs) {
+            if (total <= quota) {
+                break;
+            }
+
+            // move dir aside under lock, so acquire for the same flow gets a new dir while deleting
+            Path evicted = workspacesDir.resolve(EVICTED_PREFIX + dir.getFileName() + "-" + now);
+            synchronized (this) {
+                Lease lease = leases.get(dir);
+                if (lease != null && !lease.isExpired(now)) {
+                    continue;
+                }
+                leases.remove(dir);
+                Files.move(dir, evicted, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            delete(evicted);
+            total -= sizes.get(dir);
+            LOGGER.trace("Workspace %s been evicted", dir);
+        }
+    }
+
+    /**
+     * Fetch HEAD of git repos in workspace to shared bare repo, objects are fetched from local disk only
+     */
+    private void fetchToGitCache(Path workspace) {
+        if (!gitEnabled || !Files.isDirectory(workspace)) {
+            return;
+        }
+
+        List<Path> repos = new ArrayList<>();
+        try (Stream<Path> list = Files.list(workspace)) {
+            list.filter(dir -> Files.isDirectory(dir.resolve(".git"))).forEach(repos::add);
+        } catch (IOException e) {
+            return;
+        }
+
+        if (Files.isDirectory(workspace.resolve(".git"))) {
+            repos.add(workspace);
+        }
+
+        if (repos.isEmpty()) {
+            return;
+        }
+
+        if (!Files.exists(gitCacheDir) && !git(null, "init", "--bare", "--quiet", gitCacheDir.toString())) {
+            return;
+        }
+
+        for (Path repo : repos) {
+            String ref = String.format("+HEAD:refs/flow/%s/%s", workspace.getFileName(), repo.getFileName());
+            git(gitCacheDir, "fetch", "--quiet", "--no-tags", repo.toString(), ref);
+        }
+    }
+
+    private boolean git(Path gitDir, String... args) {
+        List<String> cmd = new ArrayList<>(args.length + 2);
+        cmd.add("git");
+        if (gitDir != null) {
+            cmd.add("--git-dir=" + gitDir);
+        }
+        for (String arg : args) {
+            cmd.add(arg);
+        }
+
+        try {
+            Process process = new ProcessBuilder(cmd)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.to(new File("/dev/null")))
+                .start();
+
+            if (!process.waitFor(GIT_TIMEOUT, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            // git not installed
+            gitEnabled = false;
+            LOGGER.warn("Git object cache disabled: %s", e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static String key(Cmd cmd) {
+        if (cmd.getInputs() == null) {
+            return null;
+        }
+
+        String flowName = cmd.getInputs().get(ENV_WORKSPACE_KEY);
+        if (Strings.isNullOrEmpty(flowName)) {
+            return null;
+        }
+
+        return flowName.replaceAll("[^A-Za-z0-9_.-]", "_");
+    }
+
+    private static String owner(Cmd cmd) {
+        return cmd.getSessionId() == null ? cmd.getId() : cmd.getSessionId();
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long sizeOf(Path dir) throws IOException {
+        final long[] size = {0};
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                size[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+
+    private static void delete(Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private class Lease {
+
+        private final String owner;
+
+        // num of cmds running in workspace
+        private int running = 0;
+
+        private long releasedAt = 0;
+
+        Lease(String owner) {
+            this.owner = owner;
+        }
+
+        boolean isExpired(long now) {
+            return running <= 0 && now - releasedAt > leaseTimeout;
+        }
+    }
+}
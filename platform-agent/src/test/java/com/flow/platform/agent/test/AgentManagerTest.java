@@ -17,10 +17,15 @@
 package com.flow.platform.agent.test;
 
 import com.flow.platform.agent.AgentManager;
+import com.flow.platform.agent.CmdManager;
 import com.flow.platform.agent.Config;
+import com.flow.platform.domain.AgentMetrics;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdType;
+import com.flow.platform.domain.Jsonable;
 import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKMailbox;
 import com.flow.platform.util.zk.ZkException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -83,6 +88,61 @@ public class AgentManagerTest extends TestBase {
         String agentNodePath = ZKPaths.makePath(ZK_ROOT, ZONE, MACHINE);
         Assert.assertEquals(true, zkClient.exist(agentNodePath));
         agent.stop();
+        agent.getZkClient().close();
+    }
+
+    @Test
+    public void should_agent_registered_after_node_of_previous_process_expired() throws Throwable {
+        // given: node left by previous agent process which session not expired
+        String agentNodePath = ZKPaths.makePath(ZK_ROOT, ZONE, MACHINE);
+        ZKClient previous = new ZKClient(server.getConnectString(), 1000, 1);
+        previous.start();
+        previous.createEphemeralOnly(agentNodePath, new AgentSlots(1, 0, 0).withRunId("previous-run").toBytes());
+
+        // when: start agent in thread
+        AgentManager agent = new AgentManager(server.getConnectString(), 20000, ZONE, MACHINE);
+        new Thread(agent).start();
+        Thread.sleep(2000);
+
+        // then: node of previous process not been overwritten
+        AgentSlots slots = Jsonable.parse(zkClient.getData(agentNodePath), AgentSlots.class);
+        Assert.assertEquals("previous-run", slots.getRunId());
+
+        // when: session of previous process expired
+        previous.close();
+        Thread.sleep(3000);
+
+        // then: node registered by agent with new run id
+        slots = Jsonable.parse(zkClient.getData(agentNodePath), AgentSlots.class);
+        Assert.assertNotNull(slots.getRunId());
+        Assert.assertNotEquals("previous-run", slots.getRunId());
+
+        agent.stop();
+        agent.getZkClient().close();
+    }
+
+    @Test
+    public void should_publish_host_metrics_with_slots() throws Throwable {
+        // when: start agent in thread
+        AgentManager agent = new AgentManager(server.getConnectString(), 20000, ZONE, MACHINE);
+        new Thread(agent).start();
+        Thread.sleep(5000); // wait for agent registration and first metrics sample
+
+        // then: node data contains slots and host metrics
+        byte[] data = zkClient.getData(ZKPaths.makePath(ZK_ROOT, ZONE, MACHINE));
+        AgentSlots slots = Jsonable.parse(data, AgentSlots.class);
+        Assert.assertEquals(CmdManager.getInstance().getSlots().getTotal(), slots.getTotal());
+        Assert.assertNotNull(slots.getRunId());
+
+        AgentMetrics metrics = slots.getMetrics();
+        Assert.assertNotNull(metrics);
+        Assert.assertTrue(metrics.getCores() > 0);
+        Assert.assertTrue(metrics.getMemTotal() > 0);
+        Assert.assertTrue(metrics.getMemFree() >= 0);
+        Assert.assertTrue(metrics.getDiskFree() > 0);
+
+        agent.stop();
+        agent.getZkClient().close();
     }
 
     @Test
@@ -91,21 +151,53 @@ public class AgentManagerTest extends TestBase {
         new Thread(agent).start();
         Thread.sleep(5000); // waitting for node created
 
-        // when: send command to agent
+        // when: send command to agent mailbox
+        ZKMailbox mailbox = new ZKMailbox(zkClient, ZKPaths.makePath(ZK_ROOT + ZKMailbox.ROOT_SUFFIX, ZONE, MACHINE));
         Cmd cmd = new Cmd(ZONE, MACHINE, CmdType.RUN_SHELL, "echo hello");
         cmd.setId("mock-cmd-id");
-        zkClient.setData(agent.getNodePath(), cmd.toBytes());
+        mailbox.post(cmd.toBytes());
         Thread.sleep(2000); // waitting for cmd recieved
 
         // then: check agent status when command received
         Assert.assertEquals(1, agent.getCmdHistory().size());
         Assert.assertEquals(cmd, agent.getCmdHistory().get(0));
+        Assert.assertEquals(0, mailbox.list().size());
+        agent.stop();
+        agent.getZkClient().close();
+    }
+
+    @Test
+    public void should_receive_commands_in_order_without_duplication() throws Throwable {
+        AgentManager agent = new AgentManager(server.getConnectString(), 20000, ZONE, MACHINE);
+        new Thread(agent).start();
+        Thread.sleep(5000); // waitting for node created
+
+        // when: send commands in burst and deliver the first one twice
+        ZKMailbox mailbox = new ZKMailbox(zkClient, ZKPaths.makePath(ZK_ROOT + ZKMailbox.ROOT_SUFFIX, ZONE, MACHINE));
+        for (int i = 0; i < 5; i++) {
+            Cmd cmd = new Cmd(ZONE, MACHINE, CmdType.SYSTEM_INFO, null);
+            cmd.setId("mock-cmd-id-" + i);
+            mailbox.post(cmd.toBytes());
+
+            if (i == 0) {
+                mailbox.post(cmd.toBytes());
+            }
+        }
+        Thread.sleep(2000); // waitting for cmd recieved
+
+        // then:
+        Assert.assertEquals(5, agent.getCmdHistory().size());
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("mock-cmd-id-" + i, agent.getCmdHistory().get(i).getId());
+        }
         agent.stop();
+        agent.getZkClient().close();
     }
 
     @After
     public void after() throws Throwable {
         zkClient.delete(ZKPaths.makePath(ZK_ROOT, ZONE, MACHINE), true);
+        zkClient.delete(ZKPaths.makePath(ZK_ROOT + ZKMailbox.ROOT_SUFFIX, ZONE, MACHINE), true);
         zkClient.close();
     }
 
@@ -19,6 +19,7 @@ package com.flow.platform.agent.test;
 import com.flow.platform.agent.CmdManager;
 import com.flow.platform.agent.Config;
 import com.flow.platform.cmd.ProcListener;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
@@ -28,7 +29,6 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
@@ -49,7 +49,8 @@ public class CmdManagerTest extends TestBase {
 
     @BeforeClass
     public static void beforeClass() throws IOException {
-        System.setProperty(Config.PROP_CONCURRENT_THREAD, "2");
+        System.setProperty(Config.PROP_SLOTS, "2");
+        System.setProperty(Config.PROP_CMD_QUEUE, "1");
         System.setProperty(Config.PROP_IS_DEBUG, "true");
         System.setProperty(Config.PROP_UPLOAD_AGENT_LOG, "false");
         System.setProperty(Config.PROP_REPORT_STATUS, "false");
@@ -60,12 +61,18 @@ public class CmdManagerTest extends TestBase {
     }
 
     @Before
-    public void beforeEach() {
+    public void beforeEach() throws InterruptedException {
         cmdManager.getExtraProcEventListeners().clear();
+        cmdManager.kill();
+
+        // wait for slots released by killed cmds
+        for (int i = 0; i < 100 && cmdManager.getSlots().getUsed() > 0; i++) {
+            Thread.sleep(100);
+        }
+
         cmdManager.getRunning().clear();
         cmdManager.getFinished().clear();
         cmdManager.getRejected().clear();
-        cmdManager.kill();
     }
 
     @Test
@@ -77,11 +84,32 @@ public class CmdManagerTest extends TestBase {
     public void should_has_cmd_log() throws Throwable {
         Cmd cmd = new Cmd("zone1", "agent1", CmdType.RUN_SHELL, resourcePath);
         cmd.setId(UUID.randomUUID().toString());
-        cmdManager.execute(cmd);
 
-        ThreadPoolExecutor cmdExecutor = cmdManager.getCmdExecutor();
-        cmdExecutor.shutdown();
-        cmdExecutor.awaitTermination(60, TimeUnit.SECONDS);
+        CountDownLatch finishLatch = new CountDownLatch(1);
+        cmdManager.getExtraProcEventListeners().add(new ProcListener() {
+            @Override
+            public void onStarted(CmdResult result) {
+
+            }
+
+            @Override
+            public void onExecuted(CmdResult result) {
+
+            }
+
+            @Override
+            public void onLogged(CmdResult result) {
+                finishLatch.countDown();
+            }
+
+            @Override
+            public void onException(CmdResult result) {
+
+            }
+        });
+
+        cmdManager.execute(cmd);
+        Assert.assertTrue(finishLatch.await(60, TimeUnit.SECONDS));
 
 //        Assert.assertTrue(Files.exists(Paths.get(TEMP_LOG_DIR.toString(), cmd.getId() + ".out.zip")));
 //        Assert.assertTrue(Files.exists(Paths.get(TEMP_LOG_DIR.toString(), cmd.getId() + ".err.zip")));
@@ -91,8 +119,8 @@ public class CmdManagerTest extends TestBase {
     public void running_process_should_be_recorded() throws InterruptedException {
         // given:
         CountDownLatch startLatch = new CountDownLatch(2);
-        CountDownLatch finishLatch = new CountDownLatch(2);
-        Assert.assertEquals(2, Config.concurrentThreadNum());
+        CountDownLatch finishLatch = new CountDownLatch(3);
+        Assert.assertEquals(2, Config.slots());
 
         cmdManager.getExtraProcEventListeners().add(new ProcListener() {
             @Override
@@ -142,23 +170,28 @@ public class CmdManagerTest extends TestBase {
         cmdManager.execute(cmd4);
         startLatch.await();
 
-        // then: check num of running proc and reject cmd
+        // then: check num of running proc, queued cmd and reject cmd
         Map<Cmd, CmdResult> runningCmd = cmdManager.getRunning();
         Assert.assertEquals(2, runningCmd.size());
         Assert.assertTrue(runningCmd.containsKey(cmd1));
         Assert.assertTrue(runningCmd.containsKey(cmd2));
 
+        AgentSlots slots = cmdManager.getSlots();
+        Assert.assertEquals(2, slots.getTotal());
+        Assert.assertEquals(2, slots.getUsed());
+        Assert.assertEquals(1, slots.getQueued());
+
         Map<Cmd, CmdResult> rejectedCmd = cmdManager.getRejected();
-        Assert.assertEquals(2, rejectedCmd.size());
-        Assert.assertTrue(rejectedCmd.containsKey(cmd3));
+        Assert.assertEquals(1, rejectedCmd.size());
         Assert.assertTrue(rejectedCmd.containsKey(cmd4));
 
-        // when: wait two command been finished
+        // when: wait queued command been executed after running commands
         finishLatch.await();
 
         // then: check
         Map<Cmd, CmdResult> finishedCmd = cmdManager.getFinished();
-        Assert.assertEquals(2, finishedCmd.size());
+        Assert.assertEquals(3, finishedCmd.size());
+        Assert.assertTrue(finishedCmd.containsKey(cmd3));
 
         for (Map.Entry<Cmd, CmdResult> entry : finishedCmd.entrySet()) {
             CmdResult r = entry.getValue();
@@ -214,8 +247,71 @@ public class CmdManagerTest extends TestBase {
         Assert.assertNotNull(result.getExecutedTime());
         Assert.assertNotNull(result.getExitValue());
         Assert.assertEquals(CmdResult.EXIT_VALUE_FOR_KILL, result.getExitValue());
+
+        // then: killed result not replaced by normal completion of process
+        Thread.sleep(1000);
+        Assert.assertSame(result, cmdManager.getFinished().get(cmd));
+        Assert.assertEquals(CmdResult.EXIT_VALUE_FOR_KILL, result.getExitValue());
     }
 
+    @Test
+    public void should_cancel_single_cmd_and_keep_others_running() throws Throwable {
+        // given: two running cmds and one queued
+        CountDownLatch startLatch = new CountDownLatch(2);
+        cmdManager.getExtraProcEventListeners().add(new ProcListener() {
+            @Override
+            public void onStarted(CmdResult result) {
+                startLatch.countDown();
+            }
+
+            @Override
+            public void onLogged(CmdResult result) {
+
+            }
+
+            @Override
+            public void onExecuted(CmdResult result) {
+
+            }
+
+            @Override
+            public void onException(CmdResult result) {
+
+            }
+        });
+
+        Cmd first = new Cmd("zone1", "agent1", CmdType.RUN_SHELL, "sleep 20");
+        first.setId(UUID.randomUUID().toString());
+
+        Cmd second = new Cmd("zone1", "agent1", CmdType.RUN_SHELL, "sleep 20");
+        second.setId(UUID.randomUUID().toString());
+
+        Cmd queued = new Cmd("zone1", "agent1", CmdType.RUN_SHELL, "sleep 20");
+        queued.setId(UUID.randomUUID().toString());
+
+        cmdManager.execute(first);
+        cmdManager.execute(second);
+        cmdManager.execute(queued);
+        Assert.assertTrue(startLatch.await(10, TimeUnit.SECONDS));
+
+        // when: cancel queued cmd
+        Assert.assertTrue(cmdManager.cancel(queued.getId()));
+
+        // then: removed from queue without started
+        Assert.assertEquals(0, cmdManager.getSlots().getQueued());
+        Assert.assertEquals(CmdResult.EXIT_VALUE_FOR_KILL, cmdManager.getFinished().get(queued).getExitValue());
+
+        // when: kill the first cmd by KILL cmd with target cmd id
+        Cmd kill = new Cmd("zone1", "agent1", CmdType.KILL, first.getId());
+        cmdManager.execute(kill);
+        Thread.sleep(2000);
+
+        // then: only the first cmd been killed
+        Assert.assertTrue(cmdManager.getFinished().containsKey(first));
+        Assert.assertEquals(1, cmdManager.getRunning().size());
+        Assert.assertTrue(cmdManager.getRunning().containsKey(second));
+        Assert.assertFalse(cmdManager.cancel(first.getId()));
+    }
 
     @Test
     public void should_success_run_sys_cmd() throws InterruptedException {
@@ -16,14 +16,27 @@
 
 package com.flow.platform.agent.test;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
 import com.flow.platform.agent.CmdManager;
 import com.flow.platform.agent.Config;
 import com.flow.platform.agent.LogEventHandler;
 import com.flow.platform.cmd.Log;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdType;
+import com.flow.platform.domain.LogCodec;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.UUID;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -45,6 +58,13 @@ public class LogEventHandlerTest extends TestBase {
         CmdManager.getInstance().kill();
     }
 
+    @After
+    public void after() {
+        System.clearProperty(Config.PROP_UPLOAD_AGENT_LOG);
+        System.clearProperty(Config.PROP_LOG_CODEC);
+        Config.agentSettings().setCmdLogChunkUrl(null);
+    }
+
     @Test
     public void should_get_correct_format_websocket() throws Throwable {
         // given:
@@ -62,4 +82,64 @@ public class LogEventHandlerTest extends TestBase {
                 mockLogContent);
         Assert.assertEquals(expect, socketIoData);
     }
+
+    @Test
+    public void should_encode_and_upload_log_in_chunks() throws Throwable {
+        // given:
+        System.setProperty(Config.PROP_UPLOAD_AGENT_LOG, "true");
+        System.setProperty(Config.PROP_LOG_CODEC, LogCodec.GZIP.getName());
+        Config.agentSettings().setCmdLogChunkUrl("http://localhost:8080/cmd/log/chunk");
+        stubFor(post(urlEqualTo("/cmd/log/chunk")).willReturn(aResponse().withStatus(200)));
+
+        Cmd cmd = new Cmd("TestZone", "TestAgent", CmdType.RUN_SHELL, "hello");
+        cmd.setId(UUID.randomUUID().toString());
+
+        // when: write log over single chunk size
+        String expected = writeLog(new LogEventHandler(cmd), 10000);
+
+        // then: chunks uploaded without full log
+        verify(4, postRequestedFor(urlEqualTo("/cmd/log/chunk")));
+        verify(0, postRequestedFor(urlEqualTo("/cmd/log/upload")));
+
+        // then: log file can be decoded by codec
+        Path logPath = TEMP_LOG_DIR.resolve(cmd.getId() + ".out" + LogCodec.GZIP.getExtension());
+        try (InputStream in = LogCodec.GZIP.decode(Files.newInputStream(logPath))) {
+            Assert.assertEquals(expected, new String(ByteStreams.toByteArray(in)));
+        }
+    }
+
+    @Test
+    public void should_upload_full_log_if_chunk_upload_failed() throws Throwable {
+        // given: chunk upload always failed
+        System.setProperty(Config.PROP_UPLOAD_AGENT_LOG, "true");
+        Config.agentSettings().setCmdLogChunkUrl("http://localhost:8080/cmd/log/chunk");
+        stubFor(post(urlEqualTo("/cmd/log/chunk")).willReturn(aResponse().withStatus(500)));
+        stubFor(post(urlEqualTo("/cmd/log/upload")).willReturn(aResponse().withStatus(200)));
+
+        Cmd cmd = new Cmd("TestZone", "TestAgent", CmdType.RUN_SHELL, "hello");
+        cmd.setId(UUID.randomUUID().toString());
+
+        // when: write log over single chunk size with default codec
+        String expected = writeLog(new LogEventHandler(cmd), 10000);
+
+        // then: full log uploaded when finished
+        verify(1, postRequestedFor(urlEqualTo("/cmd/log/upload")));
+
+        // then: all chunks still encoded to log file
+        Path logPath = TEMP_LOG_DIR.resolve(cmd.getId() + ".out" + Config.logCodec().getExtension());
+        try (InputStream in = Config.logCodec().decode(Files.newInputStream(logPath))) {
+            Assert.assertEquals(expected, new String(ByteStreams.toByteArray(in)));
+        }
+    }
+
+    private static String writeLog(LogEventHandler handler, int numOfLines) {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < numOfLines; i++) {
+            String line = "log line number " + i;
+            handler.onLog(new Log(Log.Type.STDOUT, line));
+            expected.append(line).append(Cmd.NEW_LINE);
+        }
+        handler.onFinish();
+        return expected.toString();
+    }
 }
@@ -16,9 +16,11 @@
 
 package com.flow.platform.agent.test;
 
+import com.flow.platform.agent.Config;
 import com.flow.platform.agent.ReportManager;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
+import com.flow.platform.domain.LogCodec;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import org.junit.Assert;
 import org.junit.FixMethodOrder;
@@ -59,6 +61,68 @@ public class ReportManagerTest extends TestBase {
         Assert.assertTrue(result);
     }
 
+    @Test
+    public void should_report_cmd_status_in_batch_with_latest_status() {
+        // given:
+        System.setProperty(Config.PROP_REPORT_STATUS, "true");
+        Config.agentSettings().setCmdStatusBatchUrl("http://localhost:8080/cmd/report/batch");
+
+        stubFor(post(urlEqualTo("/cmd/report/batch"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(Long.toString(Long.MAX_VALUE))));
+
+        try {
+            // when: report status of same cmd continuously
+            reportManager.cmdReport("cmdId-002", CmdStatus.RUNNING, new CmdResult());
+            boolean result = reportManager.cmdReportSync("cmdId-002", CmdStatus.EXECUTED, new CmdResult());
+
+            // then: only latest status been sent
+            Assert.assertTrue(result);
+            verify(1, postRequestedFor(urlEqualTo("/cmd/report/batch"))
+                    .withRequestBody(matchingJsonPath("$[0].seq"))
+                    .withRequestBody(matchingJsonPath("$[?(@.status == 'EXECUTED')]"))
+                    .withRequestBody(notMatching(".*RUNNING.*")));
+        } finally {
+            Config.agentSettings().setCmdStatusBatchUrl(null);
+        }
+    }
+
+    @Test
+    public void should_keep_cmd_unacked_until_report_acked() throws Throwable {
+        // given:
+        System.setProperty(Config.PROP_REPORT_STATUS, "true");
+        Config.agentSettings().setCmdStatusBatchUrl("http://localhost:8080/cmd/report/batch");
+
+        stubFor(post(urlEqualTo("/cmd/report/batch"))
+                .willReturn(aResponse()
+                        .withStatus(500)));
+
+        try {
+            // when: report of finished cmd failed to send
+            reportManager.cmdReport("cmdId-003", CmdStatus.LOGGED, new CmdResult());
+            Thread.sleep(500);
+
+            // then: cmd is unacked
+            Assert.assertTrue(reportManager.getUnackedCmds().contains("cmdId-003"));
+
+            // when: control center back and ack the report
+            stubFor(post(urlEqualTo("/cmd/report/batch"))
+                    .willReturn(aResponse()
+                            .withStatus(200)
+                            .withBody(Long.toString(Long.MAX_VALUE))));
+
+            for (int i = 0; i < 100 && reportManager.getUnackedCmds().contains("cmdId-003"); i++) {
+                Thread.sleep(100);
+            }
+
+            // then:
+            Assert.assertFalse(reportManager.getUnackedCmds().contains("cmdId-003"));
+        } finally {
+            Config.agentSettings().setCmdStatusBatchUrl(null);
+        }
+    }
+
     @Test
     public void should_upload_zipped_cmd_log() {
         // given:
@@ -70,7 +134,7 @@ public class ReportManagerTest extends TestBase {
         Path path = Paths.get(resource.getFile());
 
         // when:
-        boolean result = reportManager.cmdLogUploadSync("cmdId-001", path);
+        boolean result = reportManager.cmdLogUploadSync("cmdId-001", LogCodec.ZIP, path);
 
         // then:
         Assert.assertTrue(result);
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.agent.test;
+
+import com.flow.platform.agent.WorkspaceManager;
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdType;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class WorkspaceManagerTest extends TestBase {
+
+    private Path root;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("flow-agent-workspace-ut");
+    }
+
+    @Test
+    public void should_share_workspace_in_session_and_copy_for_other_session() throws Throwable {
+        WorkspaceManager manager = new WorkspaceManager(root, 1024, 0);
+
+        // when: acquire workspace by cmds of same session
+        Path first = manager.acquire(createCmd("cmd-1", "session-1"));
+        Path second = manager.acquire(createCmd("cmd-2", "session-1"));
+
+        // then: workspace keyed by flow name
+        Assert.assertEquals(root.resolve("flow-workspaces").resolve("flow-test"), first);
+        Assert.assertEquals(first, second);
+
+        // when: acquire workspace by cmd of other session while workspace in use
+        Cmd other = createCmd("cmd-3", "session-2");
+        Path copy = manager.acquire(other);
+
+        // then: got another copy of flow workspace
+        Assert.assertEquals(root.resolve("flow-workspaces").resolve("flow-test@1"), copy);
+
+        // when: release all cmds of first session
+        manager.release(createCmd("cmd-1", "session-1"), first);
+        manager.release(createCmd("cmd-2", "session-1"), second);
+        manager.release(other, copy);
+        Thread.sleep(10); // wait for lease timeout
+
+        // then: the workspace can be acquired by other session
+        Assert.assertEquals(first, manager.acquire(createCmd("cmd-4", "session-2")));
+
+        // then: cmd not belong to flow has no workspace
+        Assert.assertNull(manager.acquire(new Cmd("default", "agent", CmdType.RUN_SHELL, "echo hello")));
+    }
+
+    @Test
+    public void should_evict_least_recently_used_workspace_over_quota() throws Throwable {
+        WorkspaceManager manager = new WorkspaceManager(root, 3, 0);
+
+        // given: two workspaces with 2MB file, the first one is used earlier
+        Cmd first = createCmd("cmd-1", null);
+        first.getInputs().put(WorkspaceManager.ENV_WORKSPACE_KEY, "flow-first");
+        Path firstDir = manager.acquire(first);
+        Files.write(firstDir.resolve("data"), new byte[2 * 1024 * 1024]);
+        manager.release(first, firstDir);
+        Thread.sleep(1000);
+
+        Cmd second = createCmd("cmd-2", "session-2");
+        Path secondDir = manager.acquire(second);
+        Files.write(secondDir.resolve("data"), new byte[2 * 1024 * 1024]);
+
+        // when:
+        manager.evict();
+
+        // then: the least recently used workspace is deleted
+        Assert.assertFalse(Files.exists(firstDir));
+        Assert.assertTrue(Files.exists(secondDir));
+        try (Stream<Path> list = Files.list(root.resolve("flow-workspaces"))) {
+            Assert.assertEquals(1, list.count());
+        }
+
+        // when: acquire evicted workspace again
+        Path newDir = manager.acquire(first);
+
+        // then: got a new empty workspace
+        Assert.assertEquals(firstDir, newDir);
+        try (Stream<Path> list = Files.list(newDir)) {
+            Assert.assertEquals(0, list.count());
+        }
+        manager.release(first, newDir);
+
+        // when: workspace in use over quota
+        Files.write(secondDir.resolve("more"), new byte[2 * 1024 * 1024]);
+        manager.evict();
+
+        // then: workspace in use is not deleted
+        Assert.assertTrue(Files.exists(secondDir));
+    }
+
+    @Test
+    public void should_fetch_git_objects_of_workspace_to_cache() throws Throwable {
+        WorkspaceManager manager = new WorkspaceManager(root, 1024, 0);
+
+        // given: git repo in workspace
+        Cmd cmd = createCmd("cmd-1", "session-1");
+        Path workspace = manager.acquire(cmd);
+        Path repo = workspace.resolve("repo");
+        Files.createDirectories(repo);
+        Files.write(repo.resolve("README"), "hello".getBytes());
+
+        git(repo, "init", "--quiet");
+        git(repo, "add", "README");
+        git(repo, "-c", "user.name=flow", "-c", "user.email=flow@flow.ci", "commit", "--quiet", "-m", "init");
+
+        // when: release workspace
+        manager.release(cmd, workspace);
+        Thread.sleep(3000); // wait for maintenance
+
+        // then: head of repo been fetched to git cache
+        Assert.assertEquals(0, git(root, "--git-dir=" + manager.getGitCacheDir(),
+            "rev-parse", "--verify", "--quiet", "refs/flow/flow-test/repo"));
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static Cmd createCmd(String id, String sessionId) {
+        Cmd cmd = new Cmd("default", "agent", CmdType.RUN_SHELL, "echo hello");
+        cmd.setId(id);
+        cmd.setSessionId(sessionId);
+        cmd.setInputs(new HashMap<>(ImmutableMap.of(WorkspaceManager.ENV_WORKSPACE_KEY, "flow-test")));
+        return cmd;
+    }
+
+    private static int git(Path dir, String... args) throws Exception {
+        String[] cmd = new String[args.length + 1];
+        cmd[0] = "git";
+        System.arraycopy(args, 0, cmd, 1, args.length);
+        return new ProcessBuilder(cmd).directory(dir.toFile()).inheritIO().start().waitFor();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Cache manager publish evict, put and clear of caches to other api instances by cache bus.
+ * The value loaded to cache is not published, but every put is published since the entry on
+ * other instances might be loaded before data changed.
+ *
+ * The key is sent to other instances as string, so non-string key (ex: SimpleKey of multiple
+ * params) is cached by its string form on every instance
+ *
+ * @author yang
+ */
+public class BroadcastCacheManager implements CacheManager {
+
+    private final CacheManager target;
+
+    private final CacheBus cacheBus;
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public BroadcastCacheManager(CacheManager target, CacheBus cacheBus) {
+        this.target = target;
+        this.cacheBus = cacheBus;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, key -> {
+            Cache cache = target.getCache(name);
+            if (cache == null) {
+                return null;
+            }
+
+            cacheBus.register(name, cacheKey -> {
+                if (cacheKey == null) {
+                    cache.clear();
+                    return;
+                }
+                cache.evict(cacheKey);
+            });
+
+            return new BroadcastCache(cache);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return target.getCacheNames();
+    }
+
+    private static String toKey(Object key) {
+        if (key instanceof String) {
+            return (String) key;
+        }
+        return String.valueOf(key);
+    }
+
+    private class BroadcastCache implements Cache {
+
+        private final Cache cache;
+
+        BroadcastCache(Cache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public String getName() {
+            return cache.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return cache.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return cache.get(toKey(key));
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return cache.get(toKey(key), type);
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            return cache.get(toKey(key), valueLoader);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            String cacheKey = toKey(key);
+            cache.put(cacheKey, value);
+            cacheBus.publish(getName(), cacheKey);
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            String cacheKey = toKey(key);
+            ValueWrapper existed = cache.putIfAbsent(cacheKey, value);
+
+            // value been put
+            if (existed == null) {
+                cacheBus.publish(getName(), cacheKey);
+            }
+            return existed;
+        }
+
+        @Override
+        public void evict(Object key) {
+            String cacheKey = toKey(key);
+            cache.evict(cacheKey);
+            cacheBus.publish(getName(), cacheKey);
+        }
+
+        @Override
+        public void clear() {
+            cache.clear();
+            cacheBus.publish(getName(), null);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Broadcast keyed cache invalidation to other api instances
+ *
+ * @author yang
+ */
+public interface CacheBus {
+
+    /**
+     * Invalidate key of cache on other instances, the local cache is invalidated by caller
+     *
+     * @param key cache key, null to invalidate all keys of cache
+     */
+    void publish(String cache, String key);
+
+    /**
+     * Register handler of invalidation received from other instances, the key is null if all keys
+     * of cache should be invalidated
+     */
+    void register(String cache, Consumer<String> handler);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Cache bus for single api instance, nothing to broadcast
+ *
+ * @author yang
+ */
+public class LocalCacheBus implements CacheBus {
+
+    @Override
+    public void publish(String cache, String key) {
+        // ignore
+    }
+
+    @Override
+    public void register(String cache, Consumer<String> handler) {
+        // ignore
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.cache;
+
+import com.flow.platform.util.Logger;
+import com.flow.platform.util.zk.ZKBroadcast;
+import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZkException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cache bus on zookeeper, the invalidation is sent as broadcast message '{origin}\n{cache}\n{key}'
+ * and applied by other instances in milliseconds, all caches are invalidated after reconnected since
+ * messages might be missed
+ *
+ * @author yang
+ */
+public class ZKCacheBus implements CacheBus, ZKBroadcast.Listener, Closeable {
+
+    private final static Logger LOGGER = new Logger(ZKCacheBus.class);
+
+    private final static String SEPARATOR = "\n";
+
+    private final String id;
+
+    private final ZKClient zkClient;
+
+    private final ZKBroadcast broadcast;
+
+    private final Map<String, List<Consumer<String>>> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * @param host zookeeper host
+     * @param path zookeeper path of broadcast
+     * @param id unique id of api instance
+     */
+    public ZKCacheBus(String host, String path, String id) {
+        this.id = id;
+        this.zkClient = new ZKClient(host);
+        this.broadcast = new ZKBroadcast(zkClient, path);
+    }
+
+    public void start() {
+        if (!zkClient.start()) {
+            throw new ZkException("Unable to connect zookeeper for cache bus", null);
+        }
+
+        broadcast.start(this);
+        LOGGER.trace("Cache bus started on %s as %s", broadcast.getPath(), id);
+    }
+
+    @Override
+    public void close() {
+        broadcast.close();
+
+        try {
+            zkClient.close();
+        } catch (IOException e) {
+            LOGGER.warn("Fail to close zk client of cache bus: %s", e.getMessage());
+        }
+    }
+
+    @Override
+    public void publish(String cache, String key) {
+        String message = id + SEPARATOR + cache + SEPARATOR + (key == null ? "" : key);
+
+        // the write not failed since the cache will be expired anyway
+        try {
+            broadcast.send(message.getBytes(StandardCharsets.UTF_8));
+        } catch (ZkException e) {
+            LOGGER.warn("Unable to publish invalidation of %s '%s': %s", cache, key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void register(String cache, Consumer<String> handler) {
+        handlers.computeIfAbsent(cache, name -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    @Override
+    public void onMessage(byte[] data) {
+        String[] fields = new String(data, StandardCharsets.UTF_8).split(SEPARATOR, 3);
+        if (fields.length != 3 || id.equals(fields[0])) {
+            return;
+        }
+
+        String key = fields[2].isEmpty() ? null : fields[2];
+        invalidate(fields[1], key);
+    }
+
+    @Override
+    public void onReset() {
+        LOGGER.warn("Cache bus reconnected, invalidate all caches");
+
+        for (String cache : handlers.keySet()) {
+            invalidate(cache, null);
+        }
+    }
+
+    private void invalidate(String cache, String key) {
+        List<Consumer<String>> cacheHandlers = handlers.get(cache);
+        if (cacheHandlers == null) {
+            return;
+        }
+
+        for (Consumer<String> handler : cacheHandlers) {
+            try {
+                handler.accept(key);
+            } catch (Throwable e) {
+                LOGGER.warn("Unable to invalidate %s '%s': %s", cache, key, e.getMessage());
+            }
+        }
+    }
+}
@@ -16,8 +16,15 @@
 
 package com.flow.platform.api.config;
 
+import com.flow.platform.api.cache.BroadcastCacheManager;
+import com.flow.platform.api.cache.CacheBus;
+import com.flow.platform.api.cache.LocalCacheBus;
+import com.flow.platform.api.cache.ZKCacheBus;
+import com.flow.platform.util.Logger;
 import com.google.common.cache.CacheBuilder;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.guava.GuavaCacheManager;
@@ -31,6 +38,8 @@ import org.springframework.context.annotation.Configuration;
 @EnableCaching
 public class CachingConfig {
 
+    private final static Logger LOGGER = new Logger(CachingConfig.class);
+
     private final static int EXPIRE_CACHE_SECOND = 3600 * 24;
 
     private final static int MAX_CACHE_NUM = 100;
@@ -40,10 +49,34 @@ public class CachingConfig {
         .expireAfterAccess(EXPIRE_CACHE_SECOND, TimeUnit.SECONDS)
         .maximumSize(MAX_CACHE_NUM);
 
+    @Value("${cache.bus.enable}")
+    private Boolean cacheBusEnable;
+
+    @Value("${cache.bus.zk.host}")
+    private String cacheBusHost;
+
+    @Value("${cache.bus.zk.path}")
+    private String cacheBusPath;
+
+    /**
+     * Cache bus to invalidate caches of other api instances, it's enabled if multiple instances deployed
+     */
+    @Bean
+    public CacheBus cacheBus() {
+        if (!cacheBusEnable) {
+            return new LocalCacheBus();
+        }
+
+        ZKCacheBus cacheBus = new ZKCacheBus(cacheBusHost, cacheBusPath, UUID.randomUUID().toString());
+        cacheBus.start();
+        LOGGER.info("Cache bus connected at: %s", cacheBusHost);
+        return cacheBus;
+    }
+
     @Bean
     public CacheManager cacheManager() {
         GuavaCacheManager guavaCacheManager = new GuavaCacheManager();
         guavaCacheManager.setCacheBuilder(cacheBuilder);
-        return guavaCacheManager;
+        return new BroadcastCacheManager(guavaCacheManager, cacheBus());
     }
 }
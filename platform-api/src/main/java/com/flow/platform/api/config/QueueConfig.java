@@ -16,10 +16,10 @@
 
 package com.flow.platform.api.config;
 
-import com.flow.platform.api.service.SyncService;
 import com.flow.platform.core.queue.MemoryQueue;
 import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.queue.PlatformQueue;
+import com.flow.platform.queue.RetryPolicy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
 import org.springframework.context.annotation.Bean;
@@ -31,6 +31,11 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 @Configurable
 public class QueueConfig {
 
+    /**
+     * Backoff for cmd callback which job not ready since transaction not committed
+     */
+    public final static RetryPolicy CMD_CALLBACK_RETRY_POLICY = new RetryPolicy(200, 2.0, 5000, 5);
+
     @Autowired
     private ThreadPoolTaskExecutor taskExecutor;
 
@@ -39,11 +44,8 @@ public class QueueConfig {
      */
     @Bean
     public PlatformQueue<PriorityMessage> cmdCallbackQueue() {
-        return new MemoryQueue(taskExecutor, 50, "CmdCallbackQueue");
-    }
-
-    @Bean
-    public SyncService.QueueCreator syncQueueCreator() {
-        return name -> new MemoryQueue(taskExecutor, 50, name);
+        MemoryQueue queue = new MemoryQueue(taskExecutor, 50, "CmdCallbackQueue");
+        queue.setRetryPolicy(CMD_CALLBACK_RETRY_POLICY);
+        return queue;
     }
 }
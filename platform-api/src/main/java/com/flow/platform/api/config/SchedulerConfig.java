@@ -18,7 +18,9 @@ package com.flow.platform.api.config;
 
 import com.flow.platform.api.task.NodeCrontabTask;
 import com.flow.platform.core.exception.IllegalStatusException;
+import com.flow.platform.util.TimerWheel;
 import java.io.IOException;
+import java.math.BigInteger;
 import org.quartz.JobBuilder;
 import org.quartz.JobDetail;
 import org.quartz.Scheduler;
@@ -29,6 +31,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 
@@ -54,6 +57,15 @@ public class SchedulerConfig implements SchedulingConfigurer {
         return scheduler;
     }
 
+    /**
+     * Timer wheel with job id for job execution timeout in seconds precision,
+     * started by job service after pending timeouts loaded
+     */
+    @Bean(destroyMethod = "stop")
+    public TimerWheel<BigInteger> jobTimeoutWheel(ThreadPoolTaskExecutor taskExecutor) {
+        return new TimerWheel<>("job-timeout", taskExecutor, 1000);
+    }
+
     /**
      * Setup quartz scheduler
      */
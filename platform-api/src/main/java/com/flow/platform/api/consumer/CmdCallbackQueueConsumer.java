@@ -18,10 +18,8 @@ package com.flow.platform.api.consumer;
 
 import com.flow.platform.api.domain.CmdCallbackQueueItem;
 import com.flow.platform.api.service.job.JobService;
-import com.flow.platform.core.exception.FlowException;
 import com.flow.platform.core.exception.NotFoundException;
 import com.flow.platform.core.queue.PriorityMessage;
-import com.flow.platform.core.util.ThreadUtil;
 import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.queue.QueueListener;
 import com.flow.platform.util.Logger;
@@ -37,9 +35,6 @@ public class CmdCallbackQueueConsumer implements QueueListener<PriorityMessage>
 
     private final static Logger LOGGER = new Logger(CmdCallbackQueueConsumer.class);
 
-    // requeue 1 s
-    private final static int REQUEUE_DELAY_TIME = 1000;
-
     @Autowired
     private PlatformQueue<PriorityMessage> cmdCallbackQueue;
 
@@ -63,34 +58,32 @@ public class CmdCallbackQueueConsumer implements QueueListener<PriorityMessage>
             jobService.callback(item);
         } catch (NotFoundException notFoundException) {
 
-            // detect retry times is reach the limit or not
-            detectRetryTimes(item);
-
-            // re-enqueue cmd callback if job not found since transaction problem
-            reEnqueueJobCallback(item, REQUEUE_DELAY_TIME, message.getMessageProperties().getPriority());
+            // re-enqueue cmd callback with backoff delay if job not found since transaction problem
+            reEnqueueJobCallback(item, message);
 
         } catch (Throwable throwable) {
             LOGGER.traceMarker("onQueueItem", String.format("exception - %s", throwable));
         }
     }
 
-    private void detectRetryTimes(CmdCallbackQueueItem item) {
-        if (item.getRetryTimes() <= 0) {
-            throw new FlowException("retry times has reach the limit");
-        }
-    }
-
-    private void reEnqueueJobCallback(CmdCallbackQueueItem item, long wait, int priority) {
-
-        // sleep seconds
-        ThreadUtil.sleep(wait);
+    private void reEnqueueJobCallback(CmdCallbackQueueItem item, PriorityMessage origin) {
+        int attempt = origin.getAttempt() + 1;
 
         // set retry times
         item.setRetryTimes(item.getRetryTimes() - 1);
 
         //priority inc 1
-        priority = priority + 1;
+        int priority = origin.getMessageProperties().getPriority() + 1;
+
+        PriorityMessage message = PriorityMessage.create(item.toBytes(), priority);
+        message.setAttempt(attempt);
+
+        // detect retry times is reach the limit or not
+        if (item.getRetryTimes() < 0) {
+            cmdCallbackQueue.deadLetter(message);
+            return;
+        }
 
-        jobService.enterQueue(item, priority);
+        cmdCallbackQueue.retry(message, attempt);
     }
 }
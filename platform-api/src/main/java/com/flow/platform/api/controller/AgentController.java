@@ -315,6 +315,8 @@ public class AgentController {
      *              }
      *          ],
      *
+     *          state: IDLE | QUEUED | RUNNING,
+     *
      *          syncTime: 15123123
      *     }
      *
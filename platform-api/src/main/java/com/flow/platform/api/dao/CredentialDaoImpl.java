@@ -41,11 +41,17 @@ public class CredentialDaoImpl extends AbstractBaseDao<String, Credential> imple
         return "name";
     }
 
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
+
     @Override
     public boolean exist(String name) {
         String result = execute(session -> session
             .createQuery("select name from Credential where name = :name", String.class)
             .setParameter("name", name)
+            .setCacheable(true)
             .uniqueResult());
 
         return !Strings.isNullOrEmpty(result);
@@ -56,6 +62,7 @@ public class CredentialDaoImpl extends AbstractBaseDao<String, Credential> imple
         return execute(session -> session
             .createQuery("from Credential where type in :types", getEntityClass())
             .setParameterList("types", types)
+            .setCacheable(true)
             .list());
     }
 }
@@ -38,11 +38,17 @@ public class FlowDaoImpl extends AbstractBaseDao<String, Node> implements FlowDa
         return "path";
     }
 
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
+
     @Override
     public List<String> pathList(Collection<String> createdBy) {
         return execute(session -> session
             .createQuery("select path from Node where createdBy in :createdByList", String.class)
             .setParameterList("createdByList", createdBy)
+            .setCacheable(true)
             .list());
     }
 }
@@ -35,4 +35,9 @@ public class YmlDaoImpl extends AbstractBaseDao<String, Yml> implements YmlDao {
     protected String getKeyName() {
         return "nodePath";
     }
+
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
 }
@@ -36,4 +36,9 @@ public class ActionDaoImpl extends AbstractBaseDao<String, Action>  implements A
         return "name";
     }
 
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
+
 }
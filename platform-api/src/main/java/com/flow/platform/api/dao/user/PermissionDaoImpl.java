@@ -37,11 +37,17 @@ public class PermissionDaoImpl extends AbstractBaseDao<PermissionKey, Permission
         return "key";
     }
 
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
+
     @Override
     public List<Integer> list(String action) {
         return execute(session -> session
             .createQuery("select key.roleId from Permission where key.action = ?", Integer.class)
             .setParameter(0, action)
+            .setCacheable(true)
             .list());
     }
 
@@ -50,6 +56,7 @@ public class PermissionDaoImpl extends AbstractBaseDao<PermissionKey, Permission
         return execute(session -> session
             .createQuery("select key.action from Permission where key.roleId = ?", String.class)
             .setParameter(0, roleId)
+            .setCacheable(true)
             .list());
     }
 
@@ -58,6 +65,7 @@ public class PermissionDaoImpl extends AbstractBaseDao<PermissionKey, Permission
         return execute(session -> session
             .createQuery("select count(key.roleId) from Permission where key.action = ?", Long.class)
             .setParameter(0, action)
+            .setCacheable(true)
             .uniqueResult());
     }
 
@@ -66,6 +74,7 @@ public class PermissionDaoImpl extends AbstractBaseDao<PermissionKey, Permission
         return execute(session -> session
             .createQuery("select count(key.action) from Permission where key.roleId = ?", Long.class)
             .setParameter(0, roleId)
+            .setCacheable(true)
             .uniqueResult());
     }
 }
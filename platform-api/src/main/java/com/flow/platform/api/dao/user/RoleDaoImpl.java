@@ -36,10 +36,16 @@ public class RoleDaoImpl extends AbstractBaseDao<Integer, Role> implements RoleD
         return "id";
     }
 
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
+
     @Override
     public Role get(final String name) {
         return execute(session -> session.createQuery("from Role r where r.name = ?", getEntityClass())
             .setParameter(0, name)
+            .setCacheable(true)
             .uniqueResult());
     }
 }
\ No newline at end of file
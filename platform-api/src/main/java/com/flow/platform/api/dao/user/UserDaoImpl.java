@@ -24,6 +24,11 @@ public class UserDaoImpl extends AbstractBaseDao<String, User> implements UserDa
         return "email";
     }
 
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
+
     @Override
     public Long count() {
         return execute(session -> session.createQuery("select count(email) from User", Long.class).uniqueResult());
@@ -33,6 +38,7 @@ public class UserDaoImpl extends AbstractBaseDao<String, User> implements UserDa
     public User getByUsername(String username) {
         return execute(session -> session.createQuery("from User where username = :username", User.class)
             .setParameter("username", username)
+            .setCacheable(true)
             .uniqueResult());
     }
 
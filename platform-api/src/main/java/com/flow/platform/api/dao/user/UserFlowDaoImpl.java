@@ -38,11 +38,17 @@ public class UserFlowDaoImpl extends AbstractBaseDao<UserFlowKey, UserFlow> impl
         return "key";
     }
 
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
+
     @Override
     public List<String> listByEmail(String email) {
         return execute(session -> session
             .createQuery("select key.flowPath from UserFlow where key.email = ?", String.class)
             .setParameter(0, email)
+            .setCacheable(true)
             .list());
     }
 
@@ -51,6 +57,7 @@ public class UserFlowDaoImpl extends AbstractBaseDao<UserFlowKey, UserFlow> impl
         return execute(session -> session
             .createQuery("select key.email from UserFlow where key.flowPath = ?", String.class)
             .setParameter(0, flowPath)
+            .setCacheable(true)
             .list());
     }
 
@@ -59,6 +66,7 @@ public class UserFlowDaoImpl extends AbstractBaseDao<UserFlowKey, UserFlow> impl
         return execute(session -> session
             .createQuery("select count(key.email) from UserFlow where key.flowPath = ?", Long.class)
             .setParameter(0, flowPath)
+            .setCacheable(true)
             .uniqueResult());
     }
 
@@ -38,11 +38,17 @@ public class UserRoleDaoImpl extends AbstractBaseDao<UserRoleKey, UserRole> impl
         return "key";
     }
 
+    @Override
+    protected boolean isQueryCacheable() {
+        return true;
+    }
+
     @Override
     public List<Integer> list(String email) {
         return execute(session -> session
             .createQuery("select key.roleId from UserRole where key.email = ?", Integer.class)
             .setParameter(0, email)
+            .setCacheable(true)
             .list());
     }
 
@@ -51,6 +57,7 @@ public class UserRoleDaoImpl extends AbstractBaseDao<UserRoleKey, UserRole> impl
         return execute(session -> session
             .createQuery("select key.email from UserRole where key.roleId = ?", String.class)
             .setParameter(0, roleId)
+            .setCacheable(true)
             .list());
     }
 
@@ -59,6 +66,7 @@ public class UserRoleDaoImpl extends AbstractBaseDao<UserRoleKey, UserRole> impl
         return execute(session -> session
             .createQuery("select count(key.email) from UserRole where key.roleId = ?", Long.class)
             .setParameter(0, roleId)
+            .setCacheable(true)
             .uniqueResult());
     }
 
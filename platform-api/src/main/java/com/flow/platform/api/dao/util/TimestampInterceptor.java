@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.flow.platform.api.dao.util;
+
+import java.io.Serializable;
+import java.time.ZonedDateTime;
+import java.util.Set;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.type.Type;
+
+/**
+ * Fill createdAt / updatedAt on the entity state before insert and update,
+ * so entities put into the second level cache carry the same timestamps as
+ * the row without selecting them back after each write
+ *
+ * Only applied to the given entities which timestamps are not mapped as generated,
+ * others keep the timestamps generated by db
+ *
+ * @author yang
+ */
+public class TimestampInterceptor extends EmptyInterceptor {
+
+    private final static String CREATED_AT = "createdAt";
+
+    private final static String UPDATED_AT = "updatedAt";
+
+    private final Set<Class<?>> entities;
+
+    public TimestampInterceptor(Set<Class<?>> entities) {
+        this.entities = entities;
+    }
+
+    @Override
+    public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+        if (!entities.contains(Hibernate.getClass(entity))) {
+            return false;
+        }
+
+        ZonedDateTime now = ZonedDateTime.now();
+        boolean created = setIfAbsent(state, propertyNames, CREATED_AT, now);
+        boolean updated = setIfAbsent(state, propertyNames, UPDATED_AT, now);
+        return created || updated;
+    }
+
+    @Override
+    public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+                                String[] propertyNames, Type[] types) {
+        if (!entities.contains(Hibernate.getClass(entity))) {
+            return false;
+        }
+
+        // updated_at is written by db 'on update', only keep the entity in line with it
+        return set(currentState, propertyNames, UPDATED_AT, ZonedDateTime.now());
+    }
+
+    private static boolean setIfAbsent(Object[] state, String[] propertyNames, String name, ZonedDateTime value) {
+        int index = indexOf(propertyNames, name);
+        if (index < 0 || state[index] != null) {
+            return false;
+        }
+
+        state[index] = value;
+        return true;
+    }
+
+    private static boolean set(Object[] state, String[] propertyNames, String name, ZonedDateTime value) {
+        int index = indexOf(propertyNames, name);
+        if (index < 0) {
+            return false;
+        }
+
+        state[index] = value;
+        return true;
+    }
+
+    private static int indexOf(String[] propertyNames, String name) {
+        for (int i = 0; i < propertyNames.length; i++) {
+            if (propertyNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -19,10 +19,10 @@ package com.flow.platform.api.domain;
 import com.flow.platform.api.envs.EnvKey;
 import com.flow.platform.api.envs.EnvUtil;
 import com.flow.platform.api.envs.EnvValue;
+import com.flow.platform.domain.EnvMap;
 import com.flow.platform.domain.Jsonable;
 import com.flow.platform.yml.parser.annotations.YmlSerializer;
 import com.google.gson.annotations.Expose;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -34,7 +34,7 @@ public class EnvObject extends Jsonable {
 
     @YmlSerializer(required = false)
     @Expose
-    protected Map<String, String> envs = new LinkedHashMap<>();
+    protected Map<String, String> envs = new EnvMap();
 
     public EnvObject() {
     }
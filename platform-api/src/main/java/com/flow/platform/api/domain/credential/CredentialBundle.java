@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.domain.credential;
+
+import com.flow.platform.domain.Jsonable;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Immutable credential envs resolved for a job, the env values are kept as
+ * AES encrypted bytes and only decrypted when a step reads them
+ *
+ * @author yang
+ */
+public final class CredentialBundle {
+
+    private final static String CIPHER = "AES/GCM/NoPadding";
+
+    private final static int IV_LENGTH = 12;
+
+    private final static int TAG_LENGTH = 128;
+
+    private final static SecureRandom RANDOM = new SecureRandom();
+
+    private final static Type ENVS_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
+
+    /**
+     * Per process key, bundles are never persisted so it doesn't need to survive restart
+     */
+    private final static SecretKey KEY = initKey();
+
+    public static CredentialBundle empty(BigInteger jobId) {
+        return new CredentialBundle(jobId, Collections.emptyMap());
+    }
+
+    private final BigInteger jobId;
+
+    private final Map<String, Item> items;
+
+    private CredentialBundle(BigInteger jobId, Map<String, Item> items) {
+        this.jobId = jobId;
+        this.items = Collections.unmodifiableMap(items);
+    }
+
+    public BigInteger getJobId() {
+        return jobId;
+    }
+
+    public Set<String> names() {
+        return items.keySet();
+    }
+
+    public boolean contains(String name) {
+        return items.containsKey(name);
+    }
+
+    /**
+     * Get credential type, null if credential not existed when it was resolved
+     */
+    public CredentialType type(String name) {
+        Item item = items.get(name);
+        return item == null ? null : item.type;
+    }
+
+    /**
+     * Decrypt envs of credential
+     */
+    public Map<String, String> envs(String name) {
+        Item item = items.get(name);
+        if (item == null || item.envs == null) {
+            return Collections.emptyMap();
+        }
+
+        String json = new String(decrypt(item.envs), StandardCharsets.UTF_8);
+        return Jsonable.GSON_CONFIG.fromJson(json, ENVS_TYPE);
+    }
+
+    /**
+     * Create a new bundle with credential envs, the type is null for not existed credential
+     */
+    public CredentialBundle with(String name, CredentialType type, Map<String, String> envs) {
+        byte[] encrypted = null;
+        if (type != null) {
+            encrypted = encrypt(Jsonable.GSON_CONFIG.toJson(envs, ENVS_TYPE).getBytes(StandardCharsets.UTF_8));
+        }
+
+        Map<String, Item> copy = new HashMap<>(items);
+        copy.put(name, new Item(type, encrypted));
+        return new CredentialBundle(jobId, copy);
+    }
+
+    /**
+     * Create a new bundle with all credentials of other bundle
+     */
+    public CredentialBundle with(CredentialBundle other) {
+        if (other.items.isEmpty()) {
+            return this;
+        }
+
+        Map<String, Item> copy = new HashMap<>(items);
+        copy.putAll(other.items);
+        return new CredentialBundle(jobId, copy);
+    }
+
+    /**
+     * Create a new bundle without credentials
+     */
+    public CredentialBundle without(Collection<String> names) {
+        Map<String, Item> copy = new HashMap<>(items);
+        copy.keySet().removeAll(names);
+        return copy.size() == items.size() ? this : new CredentialBundle(jobId, copy);
+    }
+
+    /**
+     * Create a new bundle without credential
+     */
+    public CredentialBundle without(String name) {
+        if (!items.containsKey(name)) {
+            return this;
+        }
+
+        Map<String, Item> copy = new HashMap<>(items);
+        copy.remove(name);
+        return new CredentialBundle(jobId, copy);
+    }
+
+    @Override
+    public String toString() {
+        return "CredentialBundle{" +
+            "jobId=" + jobId +
+            ", names=" + items.keySet() +
+            '}';
+    }
+
+    private static SecretKey initKey() {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(128, RANDOM);
+            return generator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to init credential bundle key", e);
+        }
+    }
+
+    private static byte[] encrypt(byte[] raw) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            RANDOM.nextBytes(iv);
+
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, KEY, new GCMParameterSpec(TAG_LENGTH, iv));
+            byte[] encrypted = cipher.doFinal(raw);
+
+            return ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to encrypt credential", e);
+        }
+    }
+
+    private static byte[] decrypt(byte[] data) {
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, KEY, new GCMParameterSpec(TAG_LENGTH, data, 0, IV_LENGTH));
+            return cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to decrypt credential", e);
+        }
+    }
+
+    private final static class Item {
+
+        private final CredentialType type;
+
+        private final byte[] envs;
+
+        Item(CredentialType type, byte[] envs) {
+            this.type = type;
+            this.envs = envs;
+        }
+    }
+}
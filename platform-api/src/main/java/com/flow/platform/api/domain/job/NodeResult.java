@@ -25,11 +25,11 @@ import static com.flow.platform.api.domain.job.NodeStatus.SUCCESS;
 import static com.flow.platform.api.domain.job.NodeStatus.TIMEOUT;
 
 import com.flow.platform.api.domain.CreateUpdateObject;
+import com.flow.platform.domain.EnvMap;
 import com.google.gson.annotations.Expose;
 import java.math.BigInteger;
 import java.time.ZonedDateTime;
 import java.util.EnumSet;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class NodeResult extends CreateUpdateObject {
@@ -48,7 +48,7 @@ public class NodeResult extends CreateUpdateObject {
     private NodeResultKey key;
 
     @Expose
-    private Map<String, String> outputs = new LinkedHashMap<>();
+    private Map<String, String> outputs = new EnvMap();
 
     @Expose
     private Long duration = 0L;
@@ -16,13 +16,13 @@
 
 package com.flow.platform.api.domain.sync;
 
-import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.domain.AgentPath;
-import com.flow.platform.queue.PlatformQueue;
 import com.google.gson.annotations.Expose;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author yang
@@ -42,9 +42,15 @@ public class Sync {
     private List<SyncRepo> repos = new ArrayList<>();
 
     /**
-     * Agent sync queue
+     * Pending sync events by repo folder, the latest event of same repo overwrites the previous one
      */
-    private PlatformQueue<PriorityMessage> queue;
+    private final Map<String, SyncEvent> pending = new LinkedHashMap<>();
+
+    /**
+     * Sync state of agent
+     */
+    @Expose
+    private volatile SyncState state = SyncState.IDLE;
 
     /**
      * Latest sync time
@@ -52,9 +58,8 @@ public class Sync {
     @Expose
     private ZonedDateTime syncTime;
 
-    public Sync(AgentPath path, PlatformQueue<PriorityMessage> queue) {
+    public Sync(AgentPath path) {
         this.path = path;
-        this.queue = queue;
         this.syncTime = ZonedDateTime.now();
     }
 
@@ -74,12 +79,43 @@ public class Sync {
         this.repos = repos;
     }
 
-    public PlatformQueue<PriorityMessage> getQueue() {
-        return queue;
+    public SyncState getState() {
+        return state;
+    }
+
+    public void setState(SyncState state) {
+        this.state = state;
+    }
+
+    /**
+     * Put sync event to pending list, overwrite pending event of the same repo
+     */
+    public synchronized void put(SyncEvent event) {
+        pending.put(event.getRepo().toString(), event);
+    }
+
+    /**
+     * Put sync event back to pending list only if no newer event of the same repo
+     */
+    public synchronized void putIfAbsent(SyncEvent event) {
+        pending.putIfAbsent(event.getRepo().toString(), event);
+    }
+
+    /**
+     * Get and clear pending sync events in put order
+     */
+    public synchronized List<SyncEvent> drain() {
+        List<SyncEvent> events = new ArrayList<>(pending.values());
+        pending.clear();
+        return events;
+    }
+
+    public synchronized List<SyncEvent> getPending() {
+        return new ArrayList<>(pending.values());
     }
 
-    public void setQueue(PlatformQueue<PriorityMessage> queue) {
-        this.queue = queue;
+    public synchronized boolean hasPending() {
+        return !pending.isEmpty();
     }
 
     public ZonedDateTime getSyncTime() {
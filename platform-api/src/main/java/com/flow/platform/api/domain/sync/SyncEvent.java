@@ -29,6 +29,11 @@ public class SyncEvent extends Jsonable {
      */
     public final static String FLOW_SYNC_LIST = "FLOW_SYNC_LIST";
 
+    /**
+     * Hidden folder of bare repos shared by all tags of repo, which is not listed by 'ls'
+     */
+    public final static String CACHE_DIR = ".cache";
+
     /**
      * Git source url
      */
@@ -70,7 +75,11 @@ public class SyncEvent extends Jsonable {
 
     public String toScript() {
         if (syncType == SyncType.LIST) {
-            return "export " + FLOW_SYNC_LIST + "=\"$(ls)\"";
+            // remove bare repos which no tag of repo is on agent
+            return "for cache in " + CACHE_DIR + "/*; do ls -d \"${cache#" + CACHE_DIR + "/}[\"* > /dev/null 2>&1"
+                + " || rm -r -f \"$cache\"; done" +
+                Cmd.NEW_LINE +
+                "export " + FLOW_SYNC_LIST + "=\"$(ls)\"";
         }
 
         String folder = repo.toString();
@@ -79,13 +88,18 @@ public class SyncEvent extends Jsonable {
             return "rm -r -f " + folder;
         }
 
-        return "git init " + folder +
+        // fetch the tag into shared bare repo, so only objects missing on agent are transferred,
+        // then clone the tag from the bare repo by alternates without copy objects
+        String cache = CACHE_DIR + "/" + repo.getName();
+        String tagRef = "refs/tags/" + repo.getTag();
+
+        return "git init -q --bare " + cache +
             Cmd.NEW_LINE +
-            "cd " + folder +
+            "git --git-dir=" + cache + " fetch -q " + gitUrl + " +" + tagRef + ":" + tagRef +
             Cmd.NEW_LINE +
-            "git pull " + gitUrl + " --tags" +
+            "rm -r -f " + folder +
             Cmd.NEW_LINE +
-            "git checkout " + repo.getTag();
+            "git clone -q --shared --branch " + repo.getTag() + " " + cache + " " + folder;
     }
 
     @Override
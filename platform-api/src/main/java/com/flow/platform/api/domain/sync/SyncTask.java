@@ -17,6 +17,8 @@
 package com.flow.platform.api.domain.sync;
 
 import com.flow.platform.domain.AgentPath;
+import java.time.ZonedDateTime;
+import java.util.Objects;
 import java.util.Queue;
 
 /**
@@ -39,6 +41,16 @@ public class SyncTask {
      */
     private final Queue<SyncEvent> syncQueue;
 
+    /**
+     * Session id of sync task, null before session created
+     */
+    private volatile String sessionId;
+
+    /**
+     * Time of task started or latest callback received
+     */
+    private volatile ZonedDateTime updatedAt = ZonedDateTime.now();
+
     public SyncTask(AgentPath path, Queue<SyncEvent> syncQueue) {
         this.path = path;
         this.total = syncQueue.size();
@@ -56,4 +68,27 @@ public class SyncTask {
     public Queue<SyncEvent> getSyncQueue() {
         return syncQueue;
     }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public ZonedDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void touch() {
+        this.updatedAt = ZonedDateTime.now();
+    }
+
+    /**
+     * Is callback of session belongs to this task, the session id is unknown for both not been created
+     */
+    public boolean isSession(String sessionId) {
+        return this.sessionId == null || sessionId == null || Objects.equals(this.sessionId, sessionId);
+    }
 }
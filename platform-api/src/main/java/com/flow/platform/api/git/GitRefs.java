@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.git;
+
+import com.flow.platform.util.git.model.GitCommit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Branches, tags and latest commit of refs for flow git repo, which cached in memory
+ *
+ * @author yang
+ */
+public class GitRefs {
+
+    private final List<String> branches;
+
+    private final List<String> tags;
+
+    /**
+     * Latest commit by ref name, loaded on demand
+     */
+    private final Map<String, GitCommit> commits = new ConcurrentHashMap<>();
+
+    public GitRefs(List<String> branches, List<String> tags) {
+        this.branches = branches;
+        this.tags = tags;
+    }
+
+    public List<String> getBranches() {
+        return branches;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public Map<String, GitCommit> getCommits() {
+        return commits;
+    }
+
+    @Override
+    public String toString() {
+        return "GitRefs{" +
+            "branches=" + branches.size() +
+            ", tags=" + tags.size() +
+            ", commits=" + commits.keySet() +
+            '}';
+    }
+}
@@ -16,9 +16,11 @@
 package com.flow.platform.api.service;
 
 import com.flow.platform.api.domain.credential.Credential;
+import com.flow.platform.api.domain.credential.CredentialBundle;
 import com.flow.platform.api.domain.credential.CredentialDetail;
 import com.flow.platform.api.domain.credential.CredentialType;
 import com.flow.platform.api.domain.credential.RSAKeyPair;
+import com.flow.platform.api.domain.job.Job;
 import com.flow.platform.api.domain.node.Node;
 import java.util.Collection;
 import java.util.List;
@@ -48,6 +50,24 @@ public interface CredentialService {
      */
     Map<String, String> find(Node node);
 
+    /**
+     * Find credential by node env from credential bundle of job,
+     * the credential only be loaded once for each job
+     *
+     * @return Credential related env
+     */
+    Map<String, String> find(Job job, Node node);
+
+    /**
+     * Resolve credentials referenced by nodes to the credential bundle of job
+     */
+    CredentialBundle bundle(Job job, Collection<Node> nodes);
+
+    /**
+     * Release credential bundle of job
+     */
+    void release(Job job);
+
     /**
      * find credential by name
      */
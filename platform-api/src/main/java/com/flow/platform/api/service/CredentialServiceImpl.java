@@ -18,12 +18,14 @@ package com.flow.platform.api.service;
 import com.flow.platform.api.dao.CredentialDao;
 import com.flow.platform.api.domain.credential.AndroidCredentialDetail;
 import com.flow.platform.api.domain.credential.Credential;
+import com.flow.platform.api.domain.credential.CredentialBundle;
 import com.flow.platform.api.domain.credential.CredentialDetail;
 import com.flow.platform.api.domain.credential.CredentialType;
 import com.flow.platform.api.domain.credential.IosCredentialDetail;
 import com.flow.platform.api.domain.credential.RSACredentialDetail;
 import com.flow.platform.api.domain.credential.RSAKeyPair;
 import com.flow.platform.api.domain.credential.UsernameCredentialDetail;
+import com.flow.platform.api.domain.job.Job;
 import com.flow.platform.api.domain.node.Node;
 import com.flow.platform.api.envs.GitEnvs;
 import com.flow.platform.api.exception.NodeSettingsException;
@@ -37,11 +39,16 @@ import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.KeyPair;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -60,6 +67,16 @@ public class CredentialServiceImpl extends CurrentUser implements CredentialServ
 
     private final Map<CredentialType, DetailHandler> handlerMapping = new HashMap<>();
 
+    /**
+     * Credential bundle for running jobs, released when job finished
+     */
+    private final Map<BigInteger, CredentialBundle> bundles = new ConcurrentHashMap<>();
+
+    /**
+     * Num of credential invalidations to detect credential changed while loading
+     */
+    private final AtomicLong invalidations = new AtomicLong(0);
+
     @PostConstruct
     public void init() {
         handlerMapping.put(CredentialType.RSA, new RSADetailHandler());
@@ -92,6 +109,7 @@ public class CredentialServiceImpl extends CurrentUser implements CredentialServ
         credential.setDetail(detail);
         credential.setCreatedBy(currentUser().getEmail());
         credentialDao.saveOrUpdate(credential);
+        invalidate(name);
 
         return credentialDao.get(name);
     }
@@ -111,41 +129,61 @@ public class CredentialServiceImpl extends CurrentUser implements CredentialServ
 
         try {
             Credential credential = find(rsaOrUsernameCredentialName);
-            CredentialType credentialType = credential.getType();
+            verifyGitSource(node, credential.getType());
+            return toEnvs(credential);
+        } catch (IllegalParameterException ignore) {
+            // credential not found
+        }
 
-            // for git ssh client needs rsa credential
-            if (credentialType.equals(CredentialType.RSA)) {
-                if (!node.getEnv(GitEnvs.FLOW_GIT_SOURCE).equals(GitSource.UNDEFINED_SSH.name())) {
-                    throw new NodeSettingsException("The SSH git source need RSA credential");
-                }
+        return Collections.emptyMap();
+    }
 
-                RSACredentialDetail credentialDetail = (RSACredentialDetail) credential.getDetail();
+    @Override
+    public Map<String, String> find(Job job, Node node) {
+        String name = node.getEnv(GitEnvs.FLOW_GIT_CREDENTIAL);
 
-                Map<String, String> envs = new HashMap<>(2);
-                envs.put(GitEnvs.FLOW_GIT_SSH_PRIVATE_KEY.name(), credentialDetail.getPrivateKey());
-                envs.put(GitEnvs.FLOW_GIT_SSH_PUBLIC_KEY.name(), credentialDetail.getPublicKey());
-                return envs;
-            }
+        if (Strings.isNullOrEmpty(name)) {
+            return Collections.emptyMap();
+        }
 
-            // for git http client needs username credential
-            if (credentialType.equals(CredentialType.USERNAME)) {
-                if (!node.getEnv(GitEnvs.FLOW_GIT_SOURCE).equals(GitSource.UNDEFINED_HTTP.name())) {
-                    throw new NodeSettingsException("The HTTP git source need USERNAME credential");
-                }
+        // load credential if not in bundle or been invalidated, it's loaded out of the map since it reads db
+        CredentialBundle bundle = bundles.get(job.getId());
+        if (bundle == null || !bundle.contains(name)) {
+            long version = invalidations.get();
+            bundle = load(job.getId(), Collections.singleton(name));
 
-                UsernameCredentialDetail credentialDetail = (UsernameCredentialDetail) credential.getDetail();
+            // the bundle of finished job has been released, do not create it again
+            cache(bundle, version, false);
+        }
 
-                Map<String, String> envs = new HashMap<>(2);
-                envs.put(GitEnvs.FLOW_GIT_HTTP_USER.name(), credentialDetail.getUsername());
-                envs.put(GitEnvs.FLOW_GIT_HTTP_PASS.name(), credentialDetail.getPassword());
-                return envs;
-            }
+        CredentialType type = bundle.type(name);
+        if (type == null) {
+            return Collections.emptyMap();
+        }
 
-        } catch (IllegalParameterException ignore) {
-            // credential not found
+        verifyGitSource(node, type);
+        return bundle.envs(name);
+    }
+
+    @Override
+    public CredentialBundle bundle(Job job, Collection<Node> nodes) {
+        CredentialBundle current = bundles.get(job.getId());
+
+        Set<String> names = new HashSet<>(nodes.size());
+        for (Node node : nodes) {
+            String name = node.getEnv(GitEnvs.FLOW_GIT_CREDENTIAL);
+            if (!Strings.isNullOrEmpty(name) && (current == null || !current.contains(name))) {
+                names.add(name);
+            }
         }
 
-        return Collections.emptyMap();
+        long version = invalidations.get();
+        return cache(load(job.getId(), names), version, true);
+    }
+
+    @Override
+    public void release(Job job) {
+        bundles.remove(job.getId());
     }
 
     @Override
@@ -163,6 +201,7 @@ public class CredentialServiceImpl extends CurrentUser implements CredentialServ
     public void delete(String name) {
         Credential credential = find(name);
         credentialDao.delete(credential);
+        invalidate(name);
     }
 
     @Override
@@ -196,6 +235,96 @@ public class CredentialServiceImpl extends CurrentUser implements CredentialServ
         }
     }
 
+    /**
+     * Remove credential from all job bundles, it will be reloaded on next step
+     */
+    private void invalidate(String name) {
+        invalidations.incrementAndGet();
+        bundles.replaceAll((jobId, bundle) -> bundle.without(name));
+    }
+
+    /**
+     * Merge loaded credentials to job bundle, the loaded ones are dropped again if any credential been
+     * invalidated while loading since they may be stale
+     *
+     * @param version num of invalidations before loading
+     * @param create create job bundle if not existed
+     * @return job bundle, or null if not existed and not created
+     */
+    private CredentialBundle cache(CredentialBundle loaded, long version, boolean create) {
+        BigInteger jobId = loaded.getJobId();
+
+        CredentialBundle bundle = create
+            ? bundles.merge(jobId, loaded, CredentialBundle::with)
+            : bundles.computeIfPresent(jobId, (id, current) -> current.with(loaded));
+
+        if (version != invalidations.get()) {
+            bundle = bundles.computeIfPresent(jobId, (id, current) -> current.without(loaded.names()));
+        }
+
+        return bundle;
+    }
+
+    /**
+     * Load credentials from db to new bundle, the not existed credential is kept with null type
+     */
+    private CredentialBundle load(BigInteger jobId, Collection<String> names) {
+        CredentialBundle bundle = CredentialBundle.empty(jobId);
+
+        for (String name : names) {
+            Credential credential = credentialDao.get(name);
+
+            if (credential == null) {
+                bundle = bundle.with(name, null, null);
+                continue;
+            }
+
+            bundle = bundle.with(name, credential.getType(), toEnvs(credential));
+        }
+
+        return bundle;
+    }
+
+    private void verifyGitSource(Node node, CredentialType credentialType) {
+        // for git ssh client needs rsa credential
+        if (credentialType.equals(CredentialType.RSA)) {
+            if (!node.getEnv(GitEnvs.FLOW_GIT_SOURCE).equals(GitSource.UNDEFINED_SSH.name())) {
+                throw new NodeSettingsException("The SSH git source need RSA credential");
+            }
+        }
+
+        // for git http client needs username credential
+        if (credentialType.equals(CredentialType.USERNAME)) {
+            if (!node.getEnv(GitEnvs.FLOW_GIT_SOURCE).equals(GitSource.UNDEFINED_HTTP.name())) {
+                throw new NodeSettingsException("The HTTP git source need USERNAME credential");
+            }
+        }
+    }
+
+    private Map<String, String> toEnvs(Credential credential) {
+        CredentialType credentialType = credential.getType();
+
+        if (credentialType.equals(CredentialType.RSA)) {
+            RSACredentialDetail credentialDetail = (RSACredentialDetail) credential.getDetail();
+
+            Map<String, String> envs = new HashMap<>(2);
+            envs.put(GitEnvs.FLOW_GIT_SSH_PRIVATE_KEY.name(), credentialDetail.getPrivateKey());
+            envs.put(GitEnvs.FLOW_GIT_SSH_PUBLIC_KEY.name(), credentialDetail.getPublicKey());
+            return envs;
+        }
+
+        if (credentialType.equals(CredentialType.USERNAME)) {
+            UsernameCredentialDetail credentialDetail = (UsernameCredentialDetail) credential.getDetail();
+
+            Map<String, String> envs = new HashMap<>(2);
+            envs.put(GitEnvs.FLOW_GIT_HTTP_USER.name(), credentialDetail.getUsername());
+            envs.put(GitEnvs.FLOW_GIT_HTTP_PASS.name(), credentialDetail.getPassword());
+            return envs;
+        }
+
+        return Collections.emptyMap();
+    }
+
     private interface DetailHandler<T extends CredentialDetail> {
 
         void handle(T detail);
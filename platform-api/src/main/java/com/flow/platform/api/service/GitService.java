@@ -65,12 +65,12 @@ public interface GitService {
     List<Repository> repos();
 
     /**
-     * Fetch branches from git repo
+     * Fetch branches from git repo, from cache which refreshed in background if refresh is false
      */
     List<String> branches(Node node, boolean refresh);
 
     /**
-     * Fetch tags from git repo
+     * Fetch tags from git repo, from cache which refreshed in background if refresh is false
      */
     List<String> tags(Node node, boolean refresh);
 
@@ -78,6 +78,12 @@ public interface GitService {
      * Fetch latest commit from git repo
      *
      * - For UNDEFINED_SSH or UNDEFINED_HTTP will be load from git local git repo, so use together with clone
+     * - For GITLAB will be load from cache which refreshed in background
      */
     GitCommit latestCommit(Node node);
+
+    /**
+     * Invalidate cached branches, tags and commits of flow, ex: on git push event received
+     */
+    void invalidate(Node node);
 }
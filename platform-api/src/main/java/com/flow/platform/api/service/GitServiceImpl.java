@@ -16,11 +16,13 @@
 
 package com.flow.platform.api.service;
 
+import com.flow.platform.api.cache.CacheBus;
 import com.flow.platform.api.envs.GitEnvs;
 import com.flow.platform.api.domain.node.Node;
 import com.flow.platform.api.git.GitClientBuilder;
 import com.flow.platform.api.git.GitHttpClientBuilder;
 import com.flow.platform.api.git.GitLabClientBuilder;
+import com.flow.platform.api.git.GitRefs;
 import com.flow.platform.api.git.GitSshClientBuilder;
 import com.flow.platform.api.envs.EnvUtil;
 import com.flow.platform.api.util.NodeUtil;
@@ -33,6 +35,13 @@ import com.flow.platform.util.git.GitException;
 import com.flow.platform.util.git.JGitUtil;
 import com.flow.platform.util.git.model.GitCommit;
 import com.flow.platform.util.git.model.GitSource;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -42,11 +51,16 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Repository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 /**
@@ -80,19 +94,65 @@ public class GitServiceImpl implements GitService {
 
     private final static Logger LOGGER = new Logger(GitService.class);
 
+    private final static int REFS_CACHE_EXPIRE_SECOND = 3600 * 24;
+
+    private final static int REFS_CACHE_MAX_SIZE = 1000;
+
+    /**
+     * Name of git refs cache in cache bus, the key is flow path
+     */
+    private final static String REFS_CACHE = "git.refs";
+
     private final Map<GitSource, Class<? extends GitClientBuilder>> clientBuilderType = new HashMap<>(6);
 
+    /**
+     * The latest flow node of cached git refs by flow path, used to reload git refs in background
+     */
+    private final Map<String, Node> refsNodes = new ConcurrentHashMap<>();
+
+    private LoadingCache<String, GitRefs> refsCache;
+
     @Autowired
     private Path workspace;
 
     @Autowired
     private Path gitWorkspace;
 
+    @Autowired
+    private ThreadPoolTaskExecutor taskExecutor;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Value("${git.refs.refresh_interval}")
+    private Integer refsRefreshInterval;
+
     @PostConstruct
     public void init() {
         clientBuilderType.put(GitSource.UNDEFINED_SSH, GitSshClientBuilder.class);
         clientBuilderType.put(GitSource.UNDEFINED_HTTP, GitHttpClientBuilder.class);
         clientBuilderType.put(GitSource.GITLAB, GitLabClientBuilder.class);
+
+        // the cached git refs are reloaded in background when accessed after refresh interval,
+        // the previous refs returned until reloaded and kept if reload failed
+        refsCache = CacheBuilder.newBuilder()
+            .refreshAfterWrite(refsRefreshInterval, TimeUnit.SECONDS)
+            .expireAfterAccess(REFS_CACHE_EXPIRE_SECOND, TimeUnit.SECONDS)
+            .maximumSize(REFS_CACHE_MAX_SIZE)
+            .removalListener(notification -> {
+                if (notification.getCause() != RemovalCause.REPLACED) {
+                    refsNodes.remove(notification.getKey());
+                }
+            })
+            .build(CacheLoader.asyncReloading(new GitRefsLoader(), taskExecutor));
+
+        cacheBus.register(REFS_CACHE, path -> {
+            if (path == null) {
+                refsCache.invalidateAll();
+                return;
+            }
+            refsCache.invalidate(path);
+        });
     }
 
     @Override
@@ -134,44 +194,142 @@ public class GitServiceImpl implements GitService {
     }
 
     @Override
-    @Cacheable(value = "git.branches", key = "#node.getPath()", condition = "#refresh == false")
     public List<String> branches(Node node, boolean refresh) {
-        GitClient client = gitClientInstance(node);
-        try {
-            return client.branches();
-        } catch (GitException e) {
-            throw new IllegalStatusException("Cannot load branch list from git: " + e.getMessage());
-        }
+        return refs(node, refresh).getBranches();
     }
 
     @Override
-    @Cacheable(value = "git.tags", key = "#node.getPath()", condition = "#refresh == false")
     public List<String> tags(Node node, boolean refresh) {
+        return refs(node, refresh).getTags();
+    }
+
+    @Override
+    public GitCommit latestCommit(Node node) {
+        String branch = node.getEnv(GitEnvs.FLOW_GIT_BRANCH, "master");
+
+        // commit of UNDEFINED_SSH and UNDEFINED_HTTP is loaded from local git repo which is updated by clone
+        if (!isRemoteCommit(node)) {
+            return loadCommit(gitClientInstance(node), branch);
+        }
+
+        Map<String, GitCommit> commits = refs(node, false).getCommits();
+        GitCommit commit = commits.get(branch);
+        if (commit != null) {
+            return commit;
+        }
+
+        commit = loadCommit(gitClientInstance(node), branch);
+        if (commit != null) {
+            commits.put(branch, commit);
+        }
+        return commit;
+    }
+
+    @Override
+    public void invalidate(Node node) {
+        refsCache.invalidate(node.getPath());
+        cacheBus.publish(REFS_CACHE, node.getPath());
+        LOGGER.trace("Git refs cache invalidated for flow %s", node.getPath());
+    }
+
+    /**
+     * Get git refs of flow from cache, the refs is reloaded if git url of flow changed
+     */
+    private GitRefs refs(Node node, boolean refresh) {
+        final String path = node.getPath();
+        Node cached = refsNodes.get(path);
+
+        if (refresh) {
+            invalidate(node);
+        } else if (cached != null && !Objects.equals(cached.getEnv(GitEnvs.FLOW_GIT_URL),
+            node.getEnv(GitEnvs.FLOW_GIT_URL))) {
+            refsCache.invalidate(path);
+        }
+
+        refsNodes.put(path, node);
+
+        try {
+            return refsCache.get(path, () -> loadRefs(node, null));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStatusException("Cannot load git refs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Load branches and tags from git, the commits of previous refs are reloaded
+     */
+    private GitRefs loadRefs(Node node, GitRefs previous) {
         GitClient client = gitClientInstance(node);
+
+        GitRefs refs;
         try {
-            return client.tags();
+            refs = new GitRefs(client.branches(), client.tags());
         } catch (GitException e) {
-            throw new IllegalStatusException("Cannot load tag list from git: " + e.getMessage());
+            throw new IllegalStatusException("Cannot load branch and tag list from git: " + e.getMessage());
         }
+
+        if (previous != null) {
+            for (String ref : previous.getCommits().keySet()) {
+                try {
+                    GitCommit commit = loadCommit(client, ref);
+                    if (commit != null) {
+                        refs.getCommits().put(ref, commit);
+                    }
+                } catch (IllegalStatusException e) {
+                    LOGGER.warn(e.getMessage());
+                }
+            }
+        }
+
+        LOGGER.trace("Git refs loaded for flow %s: %s", node.getPath(), refs);
+        return refs;
     }
 
-    @Override
-    public GitCommit latestCommit(Node node) {
-        GitClient client = gitClientInstance(node);
-        String branch = node.getEnv(GitEnvs.FLOW_GIT_BRANCH, "master");
+    private GitCommit loadCommit(GitClient client, String ref) {
         try {
-            return client.commit(branch);
+            return client.commit(ref);
         } catch (GitException e) {
             throw new IllegalStatusException("Cannot get latest commit data: " + e.getMessage());
         }
     }
 
+    private boolean isRemoteCommit(Node node) {
+        return Objects.equals(node.getEnv(GitEnvs.FLOW_GIT_SOURCE), GitSource.GITLAB.name());
+    }
+
     private void checkRequiredEnv(Node node) {
         if (!EnvUtil.hasRequiredEnvKey(node, REQUIRED_ENVS)) {
             throw new IllegalParameterException("Missing required env variables");
         }
     }
 
+    /**
+     * Reload git refs with the latest flow node
+     */
+    private class GitRefsLoader extends CacheLoader<String, GitRefs> {
+
+        @Override
+        public GitRefs load(String path) {
+            Node node = refsNodes.get(path);
+            if (node == null) {
+                throw new IllegalStatusException("Flow of git refs not found: " + path);
+            }
+            return loadRefs(node, null);
+        }
+
+        @Override
+        public ListenableFuture<GitRefs> reload(String path, GitRefs previous) {
+            Node node = refsNodes.get(path);
+            if (node == null) {
+                return Futures.immediateFuture(previous);
+            }
+            return Futures.immediateFuture(loadRefs(node, previous));
+        }
+    }
+
     private static class GitCloneProgressMonitor implements ProgressMonitor {
 
         private final ProgressListener progressListener;
@@ -24,6 +24,7 @@ import com.flow.platform.api.service.job.NodeResultService;
 import com.flow.platform.api.util.PlatformURL;
 import com.flow.platform.api.util.ZipUtil;
 import com.flow.platform.core.exception.FlowException;
+import com.flow.platform.domain.LogCodec;
 import com.flow.platform.util.ObjectWrapper;
 import com.flow.platform.util.StringUtil;
 import com.flow.platform.util.http.HttpClient;
@@ -41,6 +42,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
@@ -203,7 +205,8 @@ public class LogServiceImpl implements LogService {
             }
 
             try {
-                String log = ZipUtil.readZipFile(response.getBody());
+                LogCodec codec = LogCodec.of(response.getHeader(LogCodec.HTTP_HEADER));
+                String log = IOUtils.toString(codec.decode(response.getBody()), AppConfig.DEFAULT_CHARSET);
                 logContent.setInstance(log);
 
                 //save file to local storage
@@ -216,8 +219,8 @@ public class LogServiceImpl implements LogService {
 
                 nodeResult.setLogPath(logPath);
                 nodeResultService.update(nodeResult);
-            } catch (IOException e) {
-                throw new FlowException("Cannot unzip log file for " + cmdId, e);
+            } catch (IOException | IllegalArgumentException e) {
+                throw new FlowException("Cannot decode log file for " + cmdId, e);
             }
         });
 
@@ -20,10 +20,8 @@ import com.flow.platform.api.domain.sync.Sync;
 import com.flow.platform.api.domain.sync.SyncEvent;
 import com.flow.platform.api.domain.sync.SyncTask;
 import com.flow.platform.api.domain.sync.SyncType;
-import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.Cmd;
-import com.flow.platform.queue.PlatformQueue;
 
 /**
  * @author yang
@@ -31,19 +29,12 @@ import com.flow.platform.queue.PlatformQueue;
 
 public interface SyncService {
 
-    int DEFAULT_SYNC_QUEUE_PRIORITY = 1;
-
     int DEFAULT_CMD_PRIORITY = 10;
 
     String DEFAULT_CMD_DIR = "${HOME}/flow-agent-repos";
 
-    interface QueueCreator {
-
-        PlatformQueue<PriorityMessage> create(String name);
-    }
-
     /**
-     * Put sync event
+     * Put sync event to pending events of all agents
      */
     void put(SyncEvent event);
 
@@ -88,12 +79,14 @@ public interface SyncService {
     /**
      * Start sync to agent
      * - do not execute if agent path has not been registered
+     * - queued if num of running sync reached max parallel
      * - just list exiting repos if no other sync events
      */
     void sync(AgentPath agent);
 
     /**
-     * Task to sync git repo to agents
+     * Task to queue agents which have pending events or not synced in interval,
+     * and start queued sync within max parallel
      */
     void syncTask();
 
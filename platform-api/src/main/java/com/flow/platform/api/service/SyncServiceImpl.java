@@ -19,11 +19,11 @@ package com.flow.platform.api.service;
 import com.flow.platform.api.domain.sync.Sync;
 import com.flow.platform.api.domain.sync.SyncEvent;
 import com.flow.platform.api.domain.sync.SyncRepo;
+import com.flow.platform.api.domain.sync.SyncState;
 import com.flow.platform.api.domain.sync.SyncTask;
 import com.flow.platform.api.domain.sync.SyncType;
 import com.flow.platform.api.envs.EnvUtil;
 import com.flow.platform.api.service.job.CmdService;
-import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.domain.Agent;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.AgentStatus;
@@ -32,7 +32,6 @@ import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
-import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.util.Logger;
 import com.flow.platform.util.git.GitException;
 import com.flow.platform.util.git.JGitUtil;
@@ -54,6 +53,10 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
 /**
+ * Sync git repos to agents by single shared scheduler, each agent has its own sync state and pending
+ * events, the num of running sync tasks is limited by max parallel. The running task without callback
+ * within timeout is stopped and the agent is queued again, since the callback may be lost
+ *
  * @author yang
  */
 
@@ -66,8 +69,10 @@ public class SyncServiceImpl implements SyncService {
 
     private final Map<AgentPath, SyncTask> syncTasks = new ConcurrentHashMap<>();
 
-    @Autowired
-    private QueueCreator syncQueueCreator;
+    /**
+     * Agents waiting for free slot to start sync in FIFO
+     */
+    private final Queue<AgentPath> waiting = new ConcurrentLinkedQueue<>();
 
     @Autowired
     private GitService gitService;
@@ -84,6 +89,15 @@ public class SyncServiceImpl implements SyncService {
     @Value("${domain.api}")
     private String apiDomain;
 
+    @Value("${task.sync.max_parallel}")
+    private Integer maxParallel;
+
+    @Value("${task.sync.interval}")
+    private Long syncInterval;
+
+    @Value("${task.sync.timeout}")
+    private Long syncTimeout;
+
     private String callbackUrl;
 
     @PostConstruct
@@ -110,8 +124,7 @@ public class SyncServiceImpl implements SyncService {
     @Override
     public void put(SyncEvent event) {
         for (Sync syncForAgent : syncs.values()) {
-            PlatformQueue<PriorityMessage> agentQueue = syncForAgent.getQueue();
-            agentQueue.enqueue(PriorityMessage.create(event.toBytes(), DEFAULT_SYNC_QUEUE_PRIORITY));
+            syncForAgent.put(event);
         }
     }
 
@@ -137,59 +150,71 @@ public class SyncServiceImpl implements SyncService {
             return;
         }
 
-        PlatformQueue<PriorityMessage> queue = syncQueueCreator.create(agent.toString() + "-sync");
-        syncs.put(agent, new Sync(agent, queue));
+        Sync sync = new Sync(agent);
 
         // init sync event from git
         List<SyncEvent> syncEvents = initSyncEventFromGitWorkspace();
         for (SyncEvent event : syncEvents) {
-            queue.enqueue(PriorityMessage.create(event.toBytes(), DEFAULT_SYNC_QUEUE_PRIORITY));
+            sync.put(event);
         }
+
+        syncs.putIfAbsent(agent, sync);
     }
 
     @Override
     public void remove(AgentPath agent) {
-        syncTasks.remove(agent);
+        SyncTask removed = syncTasks.remove(agent);
         syncs.remove(agent);
+        waiting.remove(agent);
+
+        // start the next waiting agent on free slot
+        if (removed != null) {
+            dispatch();
+        }
     }
 
     @Override
     public void clean() {
         syncs.clear();
+        syncTasks.clear();
+        waiting.clear();
     }
 
     @Override
     public void onCallback(Cmd cmd) {
         SyncTask task = syncTasks.get(cmd.getAgentPath());
 
-        // delete session if sync task for agent cannot be found
-        if (cmd.getType() != CmdType.DELETE_SESSION && task == null) {
-            CmdInfo deleteSession = new CmdInfo(cmd.getAgentPath(), CmdType.DELETE_SESSION, null);
-            deleteSession.setWebhook(callbackUrl);
-            deleteSession.setSessionId(cmd.getSessionId());
-            cmdService.sendCmd(deleteSession, false, 0);
-            return;
+        // ignore callback of the expired task
+        if (task != null && !task.isSession(cmd.getSessionId())) {
+            task = null;
         }
 
         if (cmd.getType() == CmdType.DELETE_SESSION) {
-            syncTasks.remove(cmd.getAgentPath());
-            Sync sync = syncs.get(cmd.getAgentPath());
-            if (sync != null) {
-                sync.setSyncTime(ZonedDateTime.now());
+            if (task != null) {
+                finish(cmd.getAgentPath(), null);
+                LOGGER.trace("Sync task finished for agent " + cmd.getAgentPath());
             }
+            return;
+        }
 
-            LOGGER.trace("Sync task finished for agent " + cmd.getAgentPath());
+        // delete session if sync task for agent cannot be found
+        if (task == null) {
+            deleteSession(cmd.getAgentPath(), cmd.getSessionId());
             return;
         }
 
+        task.touch();
+
         SyncEvent next = null;
 
         if (cmd.getType() == CmdType.CREATE_SESSION) {
             if (cmd.getStatus() == CmdStatus.SENT) {
+                task.setSessionId(cmd.getSessionId());
+
                 // get next sync event but not remove
                 next = task.getSyncQueue().peek();
             } else {
-                syncTasks.remove(cmd.getAgentPath());
+                finish(cmd.getAgentPath(), task);
                 LOGGER.trace("Sync task stopped since create session failure for agent: " + cmd.getAgentPath());
                 return;
             }
@@ -209,9 +234,8 @@ public class SyncServiceImpl implements SyncService {
 
                 Sync sync = syncs.get(cmd.getAgentPath());
                 if (sync != null) {
-                    if (shouldSendBack) {
-                        sync.getQueue()
-                            .enqueue(PriorityMessage.create(current.toBytes(), DEFAULT_SYNC_QUEUE_PRIORITY));
+                    if (shouldSendBack && current.getSyncType() != SyncType.LIST) {
+                        sync.putIfAbsent(current);
                     }
 
                     // update agent repo list from env FLOW_SYNC_LIST
@@ -239,10 +263,7 @@ public class SyncServiceImpl implements SyncService {
 
         // delete session when queue is empty
         if (next == null && task.getSyncQueue().isEmpty()) {
-            CmdInfo deleteSession = new CmdInfo(cmd.getAgentPath(), CmdType.DELETE_SESSION, null);
-            deleteSession.setWebhook(callbackUrl);
-            deleteSession.setSessionId(cmd.getSessionId());
-            cmdService.sendCmd(deleteSession, false, 0);
+            deleteSession(cmd.getAgentPath(), cmd.getSessionId());
         }
     }
 
@@ -254,27 +275,148 @@ public class SyncServiceImpl implements SyncService {
             return;
         }
 
+        enqueue(sync);
+        dispatch();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${task.sync.tick}", initialDelay = 60 * 1000)
+    public void syncTask() {
+        // stop running task which callback not received within timeout
+        ZonedDateTime timeout = ZonedDateTime.now().minusSeconds(syncTimeout);
+
+        for (SyncTask task : syncTasks.values()) {
+            if (task.getUpdatedAt().isBefore(timeout)) {
+                expire(task);
+            }
+        }
+
+        ZonedDateTime expired = ZonedDateTime.now().minusSeconds(syncInterval);
+
+        for (Sync sync : syncs.values()) {
+            if (sync.hasPending() || sync.getSyncTime().isBefore(expired)) {
+                enqueue(sync);
+            }
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Put agent to waiting queue if agent not in queued or running state
+     */
+    private void enqueue(Sync sync) {
+        synchronized (sync) {
+            if (sync.getState() != SyncState.IDLE) {
+                return;
+            }
+
+            sync.setState(SyncState.QUEUED);
+            waiting.add(sync.getPath());
+        }
+    }
+
+    /**
+     * Start sync for waiting agents until num of running sync reach max parallel
+     */
+    private synchronized void dispatch() {
+        while (syncTasks.size() < maxParallel) {
+            AgentPath agentPath = waiting.poll();
+            if (agentPath == null) {
+                return;
+            }
+
+            Sync sync = syncs.get(agentPath);
+            if (sync == null || sync.getState() != SyncState.QUEUED) {
+                continue;
+            }
+
+            start(sync);
+        }
+    }
+
+    private void start(Sync sync) {
+        final AgentPath agentPath = sync.getPath();
+
         // create queue for agent task
-        SyncTask task = new SyncTask(agentPath, buildSyncEventQueueForTask(sync.getQueue()));
+        SyncTask task = new SyncTask(agentPath, buildSyncEventQueueForTask(sync));
         syncTasks.put(agentPath, task);
+        sync.setState(SyncState.RUNNING);
 
         // create cmd to create sync session with higher priority then job, the extra field record node path
         try {
             CmdInfo cmdInfo = new CmdInfo(agentPath, CmdType.CREATE_SESSION, null);
             cmdInfo.setWebhook(callbackUrl);
-            cmdService.sendCmd(cmdInfo, true, DEFAULT_CMD_PRIORITY);
+            Cmd cmd = cmdService.sendCmd(cmdInfo, true, DEFAULT_CMD_PRIORITY);
+            task.setSessionId(cmd.getSessionId());
             LOGGER.trace("Start sync '%s' git repo to agent '%s'", task.getTotal(), agentPath);
         } catch (Throwable e) {
             syncTasks.remove(agentPath);
+            restore(sync, task);
+            sync.setState(SyncState.IDLE);
             LOGGER.warn(e.getMessage());
         }
     }
 
-    @Override
-    @Scheduled(fixedDelay = 60 * 1000 * 30, initialDelay = 60 * 1000)
-    public void syncTask() {
-        for (AgentPath agentPath : syncs.keySet()) {
-            sync(agentPath);
+    /**
+     * Finish sync task of agent and start the next waiting agent
+     *
+     * @param unfinished the task with events not executed, which are put back to agent pending events
+     */
+    private void finish(AgentPath agentPath, SyncTask unfinished) {
+        if (syncTasks.remove(agentPath) == null) {
+            return;
+        }
+
+        Sync sync = syncs.get(agentPath);
+        if (sync != null) {
+            restore(sync, unfinished);
+            sync.setSyncTime(ZonedDateTime.now());
+            sync.setState(SyncState.IDLE);
+        }
+
+        dispatch();
+    }
+
+    /**
+     * Stop the task which callback lost, the unfinished events are put back and agent is queued again
+     */
+    private void expire(SyncTask task) {
+        AgentPath agentPath = task.getPath();
+        LOGGER.warn("Sync task of agent '%s' expired since no callback received", agentPath);
+
+        if (syncTasks.get(agentPath) != task) {
+            return;
+        }
+
+        // remove the task before delete session, the callback of deleted session is ignored
+        finish(agentPath, task);
+
+        if (task.getSessionId() != null) {
+            try {
+                deleteSession(agentPath, task.getSessionId());
+            } catch (Throwable e) {
+                LOGGER.warn("Unable to delete session of expired sync task: %s", e.getMessage());
+            }
+        }
+    }
+
+    private void deleteSession(AgentPath agentPath, String sessionId) {
+        CmdInfo deleteSession = new CmdInfo(agentPath, CmdType.DELETE_SESSION, null);
+        deleteSession.setWebhook(callbackUrl);
+        deleteSession.setSessionId(sessionId);
+        cmdService.sendCmd(deleteSession, false, 0);
+    }
+
+    private void restore(Sync sync, SyncTask task) {
+        if (task == null) {
+            return;
+        }
+
+        for (SyncEvent event : task.getSyncQueue()) {
+            if (event.getSyncType() != SyncType.LIST) {
+                sync.putIfAbsent(event);
+            }
         }
     }
 
@@ -302,14 +444,17 @@ public class SyncServiceImpl implements SyncService {
     }
 
     /**
-     * Build sync task from agent sync queue and list agent repos at the last
+     * Build sync task from agent pending events and list agent repos at the last,
+     * the repo already on agent will not be created again
      */
-    private Queue<SyncEvent> buildSyncEventQueueForTask(PlatformQueue<PriorityMessage> agentSyncQueue) {
+    private Queue<SyncEvent> buildSyncEventQueueForTask(Sync sync) {
         Queue<SyncEvent> syncEventQueue = new ConcurrentLinkedQueue<>();
+        List<SyncRepo> existed = sync.getRepos();
 
-        PriorityMessage message;
-        while ((message = agentSyncQueue.dequeue()) != null) {
-            SyncEvent event = SyncEvent.parse(message.getBody(), SyncEvent.class);
+        for (SyncEvent event : sync.drain()) {
+            if (event.getSyncType() == SyncType.CREATE && existed.contains(event.getRepo())) {
+                continue;
+            }
             syncEventQueue.add(event);
         }
 
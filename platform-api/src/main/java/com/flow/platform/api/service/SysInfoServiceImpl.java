@@ -17,20 +17,25 @@
 package com.flow.platform.api.service;
 
 import com.flow.platform.api.util.PlatformURL;
+import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.core.service.SysInfoServiceImplBase;
 import com.flow.platform.core.sysinfo.AppServerLoader;
 import com.flow.platform.core.sysinfo.DBInfoLoader;
 import com.flow.platform.core.sysinfo.GroupSystemInfo;
+import com.flow.platform.core.sysinfo.HibernateCacheLoader;
 import com.flow.platform.core.sysinfo.JvmLoader;
+import com.flow.platform.core.sysinfo.QueueLoader;
 import com.flow.platform.core.sysinfo.SystemInfo;
 import com.flow.platform.core.sysinfo.SystemInfo.Category;
 import com.flow.platform.core.sysinfo.SystemInfo.Type;
 import com.flow.platform.core.sysinfo.SystemInfoLoader;
+import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.util.http.HttpClient;
 import com.flow.platform.util.http.HttpResponse;
 import java.util.HashMap;
 import java.util.Map;
 import javax.annotation.PostConstruct;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -47,14 +52,23 @@ public class SysInfoServiceImpl extends SysInfoServiceImplBase {
     @Autowired
     private PlatformURL platformURL;
 
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformQueue<PriorityMessage> cmdCallbackQueue;
+
     @PostConstruct
     public void init() {
         // init api system loader
-        infoLoaders.put(Category.API, new HashMap<>(3));
+        infoLoaders.put(Category.API, new HashMap<>(4));
         infoLoaders.get(Category.API).put(SystemInfo.Type.JVM, new JvmLoader());
         infoLoaders.get(Category.API)
             .put(SystemInfo.Type.DB, new DBInfoLoader(defaultDriverName, dbUrl, dbUsername, dbPassword));
         infoLoaders.get(Category.API).put(SystemInfo.Type.SERVER, new AppServerLoader());
+        infoLoaders.get(Category.API).put(SystemInfo.Type.CACHE, new HibernateCacheLoader(sessionFactory));
+
+        infoLoaders.get(Category.API).put(SystemInfo.Type.QUEUE, new QueueLoader(cmdCallbackQueue));
 
         // init cc system loader
         infoLoaders.put(Category.CC, new HashMap<>(5));
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.service.job;
+
+import com.flow.platform.core.exception.HttpException;
+import com.flow.platform.core.exception.IllegalStatusException;
+import com.flow.platform.core.exception.TooManyRequestsException;
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdBatchResult;
+import com.flow.platform.domain.CmdInfo;
+import com.flow.platform.domain.Jsonable;
+import com.flow.platform.util.ExceptionUtil;
+import com.flow.platform.util.Logger;
+import com.flow.platform.util.http.HttpClient;
+import com.flow.platform.util.http.HttpResponse;
+import com.flow.platform.util.http.HttpURL;
+import com.google.common.base.Strings;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Coalesce cmd submissions to single request of control center '/cmd/batch'. The cmd is sent
+ * immediately if no batch with the same priority and retry in flight, otherwise it's sent with
+ * cmds submitted in the meantime when the in flight batch finished or time window elapsed. The
+ * batch will be sent once it reached the max batch size without waiting.
+ * <p>
+ * Each cmd is given a customized id before sent, the control center returns the created cmd for
+ * an existing id, so the batch request can be retried without creating duplicate cmds
+ *
+ * @author yang
+ */
+public class CmdBatchSubmitter {
+
+    private final static Logger LOGGER = new Logger(CmdBatchSubmitter.class);
+
+    private final String batchUrl;
+
+    private final long window;
+
+    private final int maxBatchSize;
+
+    private final int httpRetryTimes;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cmd-batch-submitter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger senderIndex = new AtomicInteger(0);
+
+    private final ExecutorService sender = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "cmd-batch-sender-" + senderIndex.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Pending batches by priority and retry, guarded by itself
+     */
+    private final Map<BatchKey, Batch> batches = new HashMap<>();
+
+    /**
+     * Num of in flight batches by priority and retry, guarded by batches
+     */
+    private final Map<BatchKey, Integer> sending = new HashMap<>();
+
+    /**
+     * @param window max time in millis to wait for the in flight batch
+     */
+    public CmdBatchSubmitter(String batchUrl, long window, int maxBatchSize, int httpRetryTimes) {
+        this.batchUrl = batchUrl;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.httpRetryTimes = httpRetryTimes;
+    }
+
+    /**
+     * Submit cmd to batch
+     *
+     * @param priority send to cmd queue with priority, or dispatch directly if null
+     */
+    public CompletableFuture<Cmd> submit(CmdInfo cmdInfo, Integer priority, int retry) {
+        if (Strings.isNullOrEmpty(cmdInfo.getCustomizedId())) {
+            cmdInfo.setCustomizedId(UUID.randomUUID().toString());
+        }
+
+        BatchKey key = new BatchKey(priority, retry);
+        CompletableFuture<Cmd> future = new CompletableFuture<>();
+        Batch ready = null;
+
+        synchronized (batches) {
+            Batch batch = batches.get(key);
+
+            if (batch == null) {
+                batch = new Batch(key);
+                batches.put(key, batch);
+            }
+
+            batch.cmds.add(cmdInfo);
+            batch.futures.add(future);
+
+            if (!sending.containsKey(key) || batch.cmds.size() >= maxBatchSize) {
+                ready = takeToSend(batch);
+            } else if (batch.cmds.size() == 1) {
+                final Batch scheduled = batch;
+                scheduler.schedule(() -> flush(scheduled), window, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (ready != null) {
+            final Batch toSend = ready;
+            sender.execute(() -> sendInSequence(toSend));
+        }
+
+        return future;
+    }
+
+    /**
+     * Submit cmd and wait for result
+     *
+     * @throws HttpException if batch request failure
+     * @throws IllegalStatusException if cmd rejected by control center
+     */
+    public Cmd submitAndWait(CmdInfo cmdInfo, Integer priority, int retry) {
+        try {
+            return submit(cmdInfo, priority, retry).get();
+        } catch (InterruptedException e) {
+            throw new IllegalStatusException("Interrupted while waiting cmd batch result");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new HttpException(ExceptionUtil.findRootCause(cause).getMessage());
+        }
+    }
+
+    /**
+     * Send all pending batches and stop scheduler
+     */
+    public void shutdown() {
+        List<Batch> pending;
+        synchronized (batches) {
+            pending = new ArrayList<>(batches.values());
+            batches.clear();
+        }
+
+        for (Batch batch : pending) {
+            send(batch);
+        }
+
+        scheduler.shutdownNow();
+        sender.shutdown();
+    }
+
+    /**
+     * Send batch when window elapsed
+     */
+    private void flush(Batch batch) {
+        synchronized (batches) {
+            // the batch already sent since reached the max size or previous batch finished
+            if (batches.get(batch.key) != batch) {
+                return;
+            }
+            takeToSend(batch);
+        }
+
+        sender.execute(() -> sendInSequence(batch));
+    }
+
+    /**
+     * Remove batch from pending and count it as in flight, must be called with lock of batches
+     */
+    private Batch takeToSend(Batch batch) {
+        batches.remove(batch.key);
+        sending.merge(batch.key, 1, Integer::sum);
+        return batch;
+    }
+
+    /**
+     * Send batch and then the pending batch of the same key collected while sending
+     */
+    private void sendInSequence(Batch batch) {
+        while (batch != null) {
+            send(batch);
+
+            synchronized (batches) {
+                Batch pending = batches.remove(batch.key);
+
+                if (pending == null) {
+                    sending.computeIfPresent(batch.key, (key, count) -> count > 1 ? count - 1 : null);
+                }
+
+                batch = pending;
+            }
+        }
+    }
+
+    private void send(Batch batch) {
+        HttpURL httpURL = HttpURL.build(batchUrl).withParam("retry", Integer.toString(batch.key.retry));
+        if (batch.key.priority != null) {
+            httpURL.withParam("priority", Integer.toString(batch.key.priority));
+        }
+        final String url = httpURL.toString();
+
+        try {
+            HttpResponse<String> response = HttpClient.build(url)
+                .post(Jsonable.GSON_CONFIG.toJson(batch.cmds))
+                .withContentType(ContentType.APPLICATION_JSON)
+                .retry(httpRetryTimes)
+                .bodyAsString();
+
+            if (!response.hasSuccess()) {
+                throw new HttpException("Send cmd batch failure for url: " + url);
+            }
+
+            CmdBatchResult[] results = Jsonable.parseArray(response.getBody(), CmdBatchResult[].class);
+            if (results == null || results.length != batch.cmds.size()) {
+                throw new HttpException("Illegal cmd batch response for url: " + url);
+            }
+
+            LOGGER.debug("Cmd batch with %s cmd sent to %s", results.length, url);
+
+            for (int i = 0; i < results.length; i++) {
+                CmdBatchResult result = results[i];
+                CompletableFuture<Cmd> future = batch.futures.get(i);
+
+                if (result.hasSuccess()) {
+                    future.complete(result.getCmd());
+                } else if (result.getRetryAfter() != null) {
+                    future.completeExceptionally(new TooManyRequestsException(result.getError(), result.getRetryAfter()));
+                } else {
+                    future.completeExceptionally(new IllegalStatusException(result.getError()));
+                }
+            }
+        } catch (Throwable e) {
+            LOGGER.warn("Unable to send cmd batch: %s", e.getMessage());
+            for (CompletableFuture<Cmd> future : batch.futures) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final static class BatchKey {
+
+        private final Integer priority;
+
+        private final int retry;
+
+        BatchKey(Integer priority, int retry) {
+            this.priority = priority;
+            this.retry = retry;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            BatchKey that = (BatchKey) o;
+            return retry == that.retry && Objects.equals(priority, that.priority);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(priority, retry);
+        }
+    }
+
+    private final static class Batch {
+
+        private final BatchKey key;
+
+        private final List<CmdInfo> cmds = new ArrayList<>();
+
+        private final List<CompletableFuture<Cmd>> futures = new ArrayList<>();
+
+        Batch(BatchKey key) {
+            this.key = key;
+        }
+    }
+}
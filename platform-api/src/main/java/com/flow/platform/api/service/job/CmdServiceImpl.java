@@ -38,6 +38,8 @@ import com.flow.platform.util.http.HttpResponse;
 import com.flow.platform.util.http.HttpURL;
 import com.google.common.base.Strings;
 import java.io.UnsupportedEncodingException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -64,10 +66,38 @@ public class CmdServiceImpl implements CmdService {
     @Value(value = "${domain.api}")
     private String apiDomain;
 
+    /**
+     * Max time in millis for cmd to wait for in flight batch request, 0 to send cmd one by one
+     */
+    @Value(value = "${api.cmd.batch.window}")
+    private Long batchWindow;
+
+    @Value(value = "${api.cmd.batch.size}")
+    private Integer batchSize;
+
+    private CmdBatchSubmitter batchSubmitter;
+
+    @PostConstruct
+    public void init() {
+        if (batchWindow > 0) {
+            batchSubmitter = new CmdBatchSubmitter(platformURL.getCmdBatchUrl(), batchWindow, batchSize, httpRetryTimes);
+            LOGGER.trace("Cmd batch enabled with window %s ms and max size %s", batchWindow, batchSize);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (batchSubmitter != null) {
+            batchSubmitter.shutdown();
+        }
+    }
+
     @Override
     public String createSession(Job job, Integer retry) {
         CmdInfo cmdInfo = new CmdInfo(zone, null, CmdType.CREATE_SESSION, null);
         cmdInfo.setWebhook(buildCmdWebhook(job));
+        cmdInfo.setExtra(job.getNodePath()); // flow path for admission control of cc
+        cmdInfo.getInputs().put(FlowEnvs.FLOW_NAME.name(), job.getEnv(FlowEnvs.FLOW_NAME, job.getNodePath()));
         LOGGER.traceMarker("CreateSession", "job id - %s", job.getId());
 
         // create session
@@ -113,7 +143,9 @@ public class CmdServiceImpl implements CmdService {
         cmdInfo.setSessionId(job.getSessionId());
         cmdInfo.setExtra(node.getPath()); // use cmd.extra to keep node path info
         cmdInfo.setCustomizedId(cmdId);
-        cmdInfo.setWorkingDir(envVars.getEnv(AgentEnvs.FLOW_AGENT_WORKSPACE, DEFAULT_CMD_DIR));
+
+        // agent runs cmd in its managed workspace of flow if working dir not specified
+        cmdInfo.setWorkingDir(envVars.getEnv(AgentEnvs.FLOW_AGENT_WORKSPACE));
 
         try {
             LOGGER.traceMarker("RunShell", "step name - %s, node path - %s", node.getName(), node.getPath());
@@ -173,6 +205,10 @@ public class CmdServiceImpl implements CmdService {
      * Send cmd to control center directly
      */
     private Cmd sendDirectly(CmdInfo cmdInfo) throws UnsupportedEncodingException {
+        if (batchSubmitter != null) {
+            return batchSubmitter.submitAndWait(cmdInfo, null, 0);
+        }
+
         HttpResponse<String> response = HttpClient.build(platformURL.getCmdUrl())
             .post(cmdInfo.toJson())
             .withContentType(ContentType.APPLICATION_JSON)
@@ -193,6 +229,10 @@ public class CmdServiceImpl implements CmdService {
      * @throws IllegalStatusException
      */
     private Cmd sendToQueue(CmdInfo cmdInfo, int priority, int retry) {
+        if (batchSubmitter != null) {
+            return batchSubmitter.submitAndWait(cmdInfo, priority, retry);
+        }
+
         final String url = HttpURL.build(platformURL.getQueueUrl())
             .withParam("priority", Integer.toString(priority))
             .withParam("retry", Integer.toString(retry))
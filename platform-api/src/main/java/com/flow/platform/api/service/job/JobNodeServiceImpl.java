@@ -50,14 +50,14 @@ public class JobNodeServiceImpl implements JobNodeService {
     public void save(final Job job, final String yml) {
         JobYml jobYmlStorage = new JobYml(job.getId(), yml);
         jobYmlDao.saveOrUpdate(jobYmlStorage);
-        jobNodeCache().evict(job.getId());
+        jobNodeCache().evict(cacheKey(job));
     }
 
     @Override
     public NodeTree get(final Job job) {
         final Node flow = nodeService.find(job.getNodePath()).root();
 
-        NodeTree tree = jobNodeCache().get(job.getId(), () -> {
+        NodeTree tree = jobNodeCache().get(cacheKey(job), () -> {
             JobYml jobYml = find(job);
             if (jobYml == null) {
                 return null;
@@ -67,7 +67,7 @@ public class JobNodeServiceImpl implements JobNodeService {
 
         // cleanup cache if null value
         if (tree == null) {
-            jobNodeCache().evict(job.getId());
+            jobNodeCache().evict(cacheKey(job));
             return null;
         }
 
@@ -84,6 +84,13 @@ public class JobNodeServiceImpl implements JobNodeService {
         return jobYml;
     }
 
+    /**
+     * Job id as string key since the cache is broadcast to other api instances
+     */
+    private static String cacheKey(Job job) {
+        return job.getId().toString();
+    }
+
     private Cache jobNodeCache() {
         return cacheManager.getCache("jobNodeTreeCache");
     }
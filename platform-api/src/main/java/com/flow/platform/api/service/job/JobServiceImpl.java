@@ -51,6 +51,7 @@ import com.flow.platform.api.service.node.NodeService;
 import com.flow.platform.api.service.node.YmlService;
 import com.flow.platform.api.util.CommonUtil;
 import com.flow.platform.api.util.PathUtil;
+import com.flow.platform.core.context.ContextEvent;
 import com.flow.platform.core.exception.FlowException;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.core.exception.IllegalStatusException;
@@ -61,14 +62,17 @@ import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
+import com.flow.platform.domain.EnvMap;
 import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.util.ExceptionUtil;
 import com.flow.platform.util.Logger;
+import com.flow.platform.util.TimerWheel;
 import com.flow.platform.util.git.model.GitCommit;
 import com.flow.platform.util.http.HttpURL;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
 import java.math.BigInteger;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -77,6 +81,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -88,7 +93,7 @@ import org.springframework.transaction.annotation.Transactional;
  * @author yh@firim
  */
 @Service
-public class JobServiceImpl extends ApplicationEventService implements JobService {
+public class JobServiceImpl extends ApplicationEventService implements JobService, ContextEvent {
 
     private static Logger LOGGER = new Logger(JobService.class);
 
@@ -139,9 +144,38 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
     @Autowired
     private JobYmlDao jobYmlDao;
 
+    @Autowired
+    private TimerWheel<BigInteger> jobTimeoutWheel;
+
     @Value(value = "${domain.api}")
     private String apiDomain;
 
+    @PostConstruct
+    public void init() {
+        jobTimeoutWheel.register(this::onJobTimeout);
+    }
+
+    /**
+     * Load timeouts of session creating and running jobs to timer wheel
+     */
+    @Override
+    public void start() {
+        if (isJobTimeoutExecuteTimeout) {
+            List<Job> jobs = jobDao.listForExpired(ZonedDateTime.now(), JobStatus.SESSION_CREATING, JobStatus.RUNNING);
+            for (Job job : jobs) {
+                scheduleTimeout(job);
+            }
+            LOGGER.trace("%s job timeouts loaded", jobs.size());
+        }
+
+        jobTimeoutWheel.start();
+    }
+
+    @Override
+    public void stop() {
+        jobTimeoutWheel.stop();
+    }
+
     @Override
     public Job find(String flowName, Integer number) {
         Job job = jobDao.get(flowName, number);
@@ -363,9 +397,8 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
             return;
         }
 
-        // create env vars instance which will pass to agent
-        EnvObject envVars = new EnvObject();
-        envVars.putAll(job.getEnvs());
+        // create env vars instance which will pass to agent, job envs are shared by overlay
+        EnvObject envVars = new EnvObject(EnvMap.of(job.getEnvs()).overlay());
 
         // pass root node output to current node
         NodeResult rootResult = nodeResultService.find(tree.root().getPath(), job.getId());
@@ -387,7 +420,7 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
         try {
             NodeResult nodeResult = nodeResultService.find(node.getPath(), job.getId());
 
-            Map<String, String> credentialEnvs = credentialService.find(node);
+            Map<String, String> credentialEnvs = credentialService.find(job, node);
             EnvUtil.keepNewlineForEnv(credentialEnvs, null);
             envVars.putAll(credentialEnvs);
 
@@ -531,6 +564,15 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
         job.setStatus(newStatus);
         jobDao.update(job);
 
+        // credentials are not needed anymore after job finished
+        if (Job.FINISH_STATUS.contains(newStatus)) {
+            credentialService.release(job);
+        }
+
+        if (isJobTimeoutExecuteTimeout) {
+            scheduleTimeout(job);
+        }
+
         this.dispatchEvent(new JobStatusChangeEvent(this, job, originStatus, newStatus));
     }
 
@@ -540,7 +582,8 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
         jobNodeService.save(job, yml);
 
         // set root node env from yml to job env
-        Node root = jobNodeService.get(job).root();
+        NodeTree tree = jobNodeService.get(job);
+        Node root = tree.root();
         EnvUtil.merge(root.getEnvs(), job.getEnvs(), true);
 
         // init for node result and set to job object
@@ -549,6 +592,9 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
         job.setRootResult(rootResult);
         job.setChildrenResult(resultList);
 
+        // resolve credentials once for all steps of job
+        credentialService.bundle(job, tree.children());
+
         // to create agent session for job
         try {
             String sessionId = cmdService.createSession(job, createSessionRetryTimes);
@@ -665,8 +711,11 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
         cmdService.deleteSession(job);
     }
 
+    /**
+     * Safety net for timeouts missed by timer wheel, ex: job updated by other instance
+     */
     @Override
-    @Scheduled(fixedDelay = 60 * 1000, initialDelay = 60 * 1000)
+    @Scheduled(fixedDelay = 10 * 60 * 1000, initialDelay = 60 * 1000)
     public void checkTimeoutTask() {
         if (!isJobTimeoutExecuteTimeout) {
             return;
@@ -691,6 +740,66 @@ public class JobServiceImpl extends ApplicationEventService implements JobServic
         LOGGER.trace("job timeout task end");
     }
 
+    /**
+     * Schedule timeout by job status, or cancel it if job not in session creating or running
+     */
+    private void scheduleTimeout(Job job) {
+        Long duration = timeoutDuration(job.getStatus());
+        if (duration == null) {
+            jobTimeoutWheel.cancel(job.getId());
+            return;
+        }
+
+        ZonedDateTime updatedAt = job.getUpdatedAt() == null ? ZonedDateTime.now() : job.getUpdatedAt();
+        ZonedDateTime deadline = updatedAt.plusSeconds(duration);
+        long delay = Duration.between(ZonedDateTime.now(), deadline).toMillis();
+        jobTimeoutWheel.schedule(job.getId(), Math.max(delay, 0));
+    }
+
+    /**
+     * Timer wheel callback, the job updated time might be refreshed since scheduled,
+     * so reschedule to the new deadline if not expired
+     */
+    private void onJobTimeout(BigInteger jobId) {
+        try {
+            Job job = jobDao.get(jobId);
+            if (job == null) {
+                return;
+            }
+
+            Long duration = timeoutDuration(job.getStatus());
+            if (duration == null) {
+                return;
+            }
+
+            ZonedDateTime updatedAt = job.getUpdatedAt();
+            if (updatedAt != null && updatedAt.plusSeconds(duration).isAfter(ZonedDateTime.now())) {
+                scheduleTimeout(job);
+                return;
+            }
+
+            LOGGER.trace("Job '%s' timeout on %s", jobId, job.getStatus());
+            updateJobAndNodeResultTimeout(job);
+        } catch (Throwable e) {
+            LOGGER.warn("Error on job timeout for %s: %s", jobId, ExceptionUtil.findRootCause(e).getMessage());
+        }
+    }
+
+    /**
+     * Timeout duration in seconds of job status, null if status has no timeout
+     */
+    private Long timeoutDuration(JobStatus status) {
+        if (status == JobStatus.SESSION_CREATING) {
+            return jobExecuteTimeoutCreateSessionDuration;
+        }
+
+        if (status == JobStatus.RUNNING) {
+            return jobExecuteTimeoutRunningDuration;
+        }
+
+        return null;
+    }
+
     private void updateJobAndNodeResultTimeout(Job job) {
         // if job is running , please delete session first
         if (job.getStatus() == JobStatus.RUNNING) {
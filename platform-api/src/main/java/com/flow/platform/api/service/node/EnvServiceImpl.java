@@ -26,6 +26,7 @@ import com.flow.platform.api.envs.GitEnvs;
 import com.flow.platform.api.envs.GitToggleEnvs;
 import com.flow.platform.api.envs.JobEnvs;
 import com.flow.platform.api.envs.handler.EnvHandler;
+import com.flow.platform.api.util.PathUtil;
 import com.flow.platform.core.context.SpringContext;
 import com.flow.platform.core.exception.IllegalOperationException;
 import com.flow.platform.util.ObjectUtil;
@@ -36,6 +37,7 @@ import java.util.Map;
 import java.util.Set;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 /**
@@ -50,6 +52,9 @@ public class EnvServiceImpl implements EnvService {
     @Autowired
     private SpringContext springContext;
 
+    @Autowired
+    private CacheManager cacheManager;
+
     private final Map<String, EnvHandler> envHandlerMap = new HashMap<>(5);
 
     private final Map<String, EnvKey> envKeyMap = new HashMap<>();
@@ -125,6 +130,7 @@ public class EnvServiceImpl implements EnvService {
         // merge env to real node instance after handler
         EnvUtil.merge(copy.getEnvs(), node.getEnvs(), true);
         flowDao.update(node);
+        evictTree(node);
     }
 
     @Override
@@ -148,6 +154,14 @@ public class EnvServiceImpl implements EnvService {
 
         // sync latest env into flow table
         flowDao.update(node);
+        evictTree(node);
+    }
+
+    /**
+     * Node is changed in place, evict the tree to let other api instances reload it
+     */
+    private void evictTree(Node node) {
+        cacheManager.getCache("treeCache").evict(PathUtil.rootPath(node.getPath()));
     }
 
     private void verifyWhenAdd(Map<String, String> envs) {
@@ -234,6 +234,9 @@ public class NodeServiceImpl extends CurrentUser implements NodeService {
         }
 
         flowDao.update(root);
+
+        // reset cache to let other api instances reload the yml status
+        getTreeCache().evict(root.getPath());
     }
 
     @Override
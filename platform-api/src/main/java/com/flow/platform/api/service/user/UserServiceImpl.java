@@ -14,6 +14,7 @@ import com.flow.platform.api.domain.user.SysRole;
 import com.flow.platform.api.domain.user.User;
 import com.flow.platform.api.security.token.TokenGenerator;
 import com.flow.platform.api.service.CurrentUser;
+import com.flow.platform.api.cache.CacheBus;
 import com.flow.platform.api.service.MessageService;
 import com.flow.platform.api.service.node.NodeService;
 import com.flow.platform.api.util.SmtpUtil;
@@ -23,11 +24,12 @@ import com.flow.platform.util.ExceptionUtil;
 import com.flow.platform.util.Logger;
 import com.flow.platform.util.http.HttpURL;
 import java.io.StringWriter;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
@@ -47,7 +49,15 @@ public class UserServiceImpl extends CurrentUser implements UserService {
 
     private final static String REGISTER_TEMPLATE_SUBJECT = "邀请您加入项目 [ flow.ci ]";
 
-    private final Map<String, User> loginUserMap = new HashMap<>();
+    /**
+     * Name of login user cache in cache bus, the key is user email
+     */
+    private final static String LOGIN_USER_CACHE = "loginUser";
+
+    private final Map<String, User> loginUserMap = new ConcurrentHashMap<>();
+
+    @Autowired
+    private CacheBus cacheBus;
 
     @Autowired
     private UserDao userDao;
@@ -82,6 +92,11 @@ public class UserServiceImpl extends CurrentUser implements UserService {
     @Value("${domain.web}")
     private String webDomain;
 
+    @PostConstruct
+    public void init() {
+        cacheBus.register(LOGIN_USER_CACHE, this::removeLoginUser);
+    }
+
     @Override
     public List<User> list(boolean withFlow, boolean withRole) {
         List<User> users = userDao.list();
@@ -169,6 +184,7 @@ public class UserServiceImpl extends CurrentUser implements UserService {
 
         user.setPassword(encodePassword(newPassword));
         userDao.update(user);
+        invalidateLoginUser(user.getEmail());
     }
 
     @Override
@@ -185,6 +201,10 @@ public class UserServiceImpl extends CurrentUser implements UserService {
 
         // delete user
         userDao.delete(emailList);
+
+        for (String email : emailList) {
+            invalidateLoginUser(email);
+        }
     }
 
     @Override
@@ -198,6 +218,7 @@ public class UserServiceImpl extends CurrentUser implements UserService {
                 user.setRoles(roleService.list(user));
                 user.setFlows(userFlowDao.listByEmail(user.getEmail()));
             }
+            invalidateLoginUser(user.getEmail());
         }
         return users;
     }
@@ -209,7 +230,27 @@ public class UserServiceImpl extends CurrentUser implements UserService {
 
     @Override
     public User findByToken(String token) {
-        return loginUserMap.get(token);
+        User user = loginUserMap.get(token);
+        if (user != null) {
+            return user;
+        }
+
+        // token created by other api instance or login user been invalidated
+        String email;
+        try {
+            email = tokenGenerator.extract(token).getSubject();
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        user = userDao.get(email);
+        if (user == null) {
+            return null;
+        }
+
+        user.setRoles(roleService.list(user));
+        loginUserMap.put(token, user);
+        return user;
     }
 
     @Override
@@ -361,4 +402,20 @@ public class UserServiceImpl extends CurrentUser implements UserService {
         userDao.update(existed);
     }
 
+    /**
+     * Remove login user from all api instances, it will be loaded again with token
+     */
+    private void invalidateLoginUser(String email) {
+        removeLoginUser(email);
+        cacheBus.publish(LOGIN_USER_CACHE, email);
+    }
+
+    private void removeLoginUser(String email) {
+        if (email == null) {
+            loginUserMap.clear();
+            return;
+        }
+
+        loginUserMap.values().removeIf(user -> Objects.equals(user.getEmail(), email));
+    }
 }
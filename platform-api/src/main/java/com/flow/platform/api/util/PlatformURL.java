@@ -28,6 +28,8 @@ public class PlatformURL {
 
     private final String queueUrl;
 
+    private final String cmdBatchUrl;
+
     private final String agentUrl;
 
     private final String agentSettingsUrl;
@@ -47,6 +49,7 @@ public class PlatformURL {
     public PlatformURL(String baseURL) {
         queueUrl = HttpURL.build(baseURL).append("cmd/queue/send").toString();
         cmdUrl = HttpURL.build(baseURL).append("cmd/send").toString();
+        cmdBatchUrl = HttpURL.build(baseURL).append("cmd/batch").toString();
         cmdDownloadLogUrl = HttpURL.build(baseURL).append("cmd/log/download").toString();
 
         sysIndexUrl = HttpURL.build(baseURL).append("index").toString();
@@ -71,6 +74,10 @@ public class PlatformURL {
         return cmdUrl;
     }
 
+    public String getCmdBatchUrl() {
+        return cmdBatchUrl;
+    }
+
     public String getQueueUrl() {
         return queueUrl;
     }
@@ -102,6 +109,7 @@ public class PlatformURL {
     public String toString() {
         return "PlatformURL{" +
             "cmdUrl='" + cmdUrl + '\'' +
+            ", cmdBatchUrl='" + cmdBatchUrl + '\'' +
             ", queueUrl='" + queueUrl + '\'' +
             ", agentUrl='" + agentUrl + '\'' +
             ", agentSettingsUrl='" + agentSettingsUrl + '\'' +
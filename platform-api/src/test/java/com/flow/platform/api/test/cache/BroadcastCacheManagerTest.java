@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.test.cache;
+
+import com.flow.platform.api.cache.BroadcastCacheManager;
+import com.flow.platform.api.cache.ZKCacheBus;
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.guava.GuavaCacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+
+/**
+ * @author yang
+ */
+public class BroadcastCacheManagerTest {
+
+    private final static String BUS_PATH = "/flow-api-cache-test";
+
+    private static TestingServer server;
+
+    private ZKCacheBus busOfFirst;
+
+    private ZKCacheBus busOfSecond;
+
+    private Cache first;
+
+    private Cache second;
+
+    @BeforeClass
+    public static void beforeClass() throws Throwable {
+        server = new TestingServer();
+        server.start();
+    }
+
+    @Before
+    public void init() {
+        busOfFirst = new ZKCacheBus(server.getConnectString(), BUS_PATH, "api-1");
+        busOfFirst.start();
+
+        busOfSecond = new ZKCacheBus(server.getConnectString(), BUS_PATH, "api-2");
+        busOfSecond.start();
+
+        CacheManager firstManager = new BroadcastCacheManager(new GuavaCacheManager(), busOfFirst);
+        CacheManager secondManager = new BroadcastCacheManager(new GuavaCacheManager(), busOfSecond);
+
+        first = firstManager.getCache("treeCache");
+        second = secondManager.getCache("treeCache");
+    }
+
+    @Test
+    public void should_evict_key_on_other_instance() throws Throwable {
+        // init: both instances loaded the trees
+        for (Cache cache : new Cache[]{first, second}) {
+            cache.get("flow-1", () -> "tree-1");
+            cache.get("flow-2", () -> "tree-2");
+        }
+
+        // when: evict key on first instance
+        first.evict("flow-1");
+
+        // then: the key evicted on second instance and other keys kept
+        waitFor(() -> second.get("flow-1") == null);
+        Assert.assertEquals("tree-2", second.get("flow-2").get());
+
+        // when: put new value on second instance
+        first.get("flow-2", () -> "tree-2");
+        second.put("flow-2", "tree-2-updated");
+
+        // then: the key evicted on first instance
+        waitFor(() -> first.get("flow-2") == null);
+    }
+
+    @Test
+    public void should_publish_every_put_and_put_if_absent() throws Throwable {
+        first.get("flow-1", () -> "tree-1");
+        first.get("flow-2", () -> "tree-2");
+
+        // when: put value without existing entry on second instance
+        second.put("flow-1", "tree-1-updated");
+
+        // then: first instance evicted
+        waitFor(() -> first.get("flow-1") == null);
+
+        // when: put if absent on second instance
+        second.putIfAbsent("flow-2", "tree-2-updated");
+
+        // then: first instance evicted
+        waitFor(() -> first.get("flow-2") == null);
+
+        // when: put if absent with existing entry on second instance
+        first.get("flow-2", () -> "tree-2-updated");
+        second.putIfAbsent("flow-2", "tree-2-ignored");
+
+        // then: first instance not evicted
+        Thread.sleep(500);
+        Assert.assertEquals("tree-2-updated", first.get("flow-2").get());
+    }
+
+    @Test
+    public void should_evict_non_string_key_on_other_instance() throws Throwable {
+        // init: both instances loaded value by composite key
+        SimpleKey key = new SimpleKey("flow-1", BigInteger.ONE);
+        for (Cache cache : new Cache[]{first, second}) {
+            cache.get(key, () -> "job-1");
+        }
+
+        // when: evict key on first instance
+        first.evict(new SimpleKey("flow-1", BigInteger.ONE));
+
+        // then: the key evicted on second instance
+        waitFor(() -> second.get(key) == null);
+        Assert.assertNull(first.get(key));
+    }
+
+    @Test
+    public void should_not_publish_loaded_value_and_clear_on_other_instance() throws Throwable {
+        second.get("flow-1", () -> "tree-1");
+
+        // when: load value on first instance
+        first.get("flow-1", () -> "tree-1");
+        first.get("flow-2", () -> "tree-2");
+
+        // then: second instance not evicted
+        Thread.sleep(500);
+        Assert.assertEquals("tree-1", second.get("flow-1").get());
+
+        // when: clear cache on first instance
+        first.clear();
+
+        // then: second instance cleared
+        waitFor(() -> second.get("flow-1") == null);
+    }
+
+    @After
+    public void after() {
+        busOfFirst.close();
+        busOfSecond.close();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Throwable {
+        server.close();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(condition.getAsBoolean());
+    }
+}
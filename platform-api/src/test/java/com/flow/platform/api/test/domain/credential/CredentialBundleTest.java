@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.test.domain.credential;
+
+import com.flow.platform.api.domain.credential.CredentialBundle;
+import com.flow.platform.api.domain.credential.CredentialType;
+import com.google.common.collect.ImmutableMap;
+import java.math.BigInteger;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class CredentialBundleTest {
+
+    @Test
+    public void should_encrypt_and_decrypt_envs() {
+        CredentialBundle empty = CredentialBundle.empty(BigInteger.ONE);
+        Map<String, String> envs = ImmutableMap.of("FLOW_GIT_HTTP_USER", "user", "FLOW_GIT_HTTP_PASS", "pass");
+
+        CredentialBundle bundle = empty.with("http", CredentialType.USERNAME, envs);
+
+        // then: origin bundle should not be changed
+        Assert.assertFalse(empty.contains("http"));
+        Assert.assertTrue(bundle.contains("http"));
+
+        // then: envs should be decrypted
+        Assert.assertEquals(CredentialType.USERNAME, bundle.type("http"));
+        Assert.assertEquals(envs, bundle.envs("http"));
+    }
+
+    @Test
+    public void should_remove_credential_from_bundle() {
+        CredentialBundle bundle = CredentialBundle.empty(BigInteger.ONE)
+            .with("http", CredentialType.USERNAME, ImmutableMap.of("FLOW_GIT_HTTP_USER", "user"))
+            .with("not-found", null, null);
+
+        Assert.assertEquals(2, bundle.names().size());
+        Assert.assertEquals(0, bundle.envs("not-found").size());
+
+        CredentialBundle removed = bundle.without("http");
+        Assert.assertEquals(1, removed.names().size());
+        Assert.assertEquals(2, bundle.names().size());
+    }
+}
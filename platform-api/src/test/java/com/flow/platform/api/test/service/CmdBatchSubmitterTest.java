@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.api.test.service;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+import com.flow.platform.api.service.job.CmdBatchSubmitter;
+import com.flow.platform.api.test.TestBase;
+import com.flow.platform.api.util.PlatformURL;
+import com.flow.platform.core.exception.IllegalStatusException;
+import com.flow.platform.core.exception.TooManyRequestsException;
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdBatchResult;
+import com.flow.platform.domain.CmdInfo;
+import com.flow.platform.domain.CmdType;
+import com.flow.platform.domain.Jsonable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * @author yang
+ */
+public class CmdBatchSubmitterTest extends TestBase {
+
+    @Autowired
+    private PlatformURL platformURL;
+
+    private CmdBatchSubmitter submitter;
+
+    @Test
+    public void should_send_cmd_without_waiting_window_if_no_batch_in_flight() throws Throwable {
+        // given:
+        List<CmdBatchResult> results = new ArrayList<>();
+        results.add(new CmdBatchResult(createCmd("1"), null));
+
+        stubFor(post(urlEqualTo("/cmd/batch?retry=0"))
+            .willReturn(aResponse().withBody(Jsonable.GSON_CONFIG.toJson(results))));
+
+        // window is long enough that only sending immediately can finish in time
+        submitter = new CmdBatchSubmitter(platformURL.getCmdBatchUrl(), 60 * 1000, 100, 0);
+
+        // when:
+        CmdInfo cmdInfo = new CmdInfo("default", null, CmdType.RUN_SHELL, "echo");
+        Cmd cmd = submitter.submit(cmdInfo, null, 0).get(10, TimeUnit.SECONDS);
+
+        // then: cmd sent with customized id
+        Assert.assertEquals("1", cmd.getId());
+        Assert.assertNotNull(cmdInfo.getCustomizedId());
+        verify(exactly(1), postRequestedFor(urlEqualTo("/cmd/batch?retry=0")));
+    }
+
+    @Test
+    public void should_coalesce_cmd_while_batch_in_flight() throws Throwable {
+        // given: cc response slowly for first cmd, and with one cmd and one error for the others
+        List<CmdBatchResult> first = new ArrayList<>();
+        first.add(new CmdBatchResult(createCmd("0"), null));
+
+        List<CmdBatchResult> others = new ArrayList<>();
+        others.add(new CmdBatchResult(createCmd("1"), null));
+        others.add(new CmdBatchResult(null, "Zone lane is full"));
+        others.add(new CmdBatchResult("Cmd rate limit reached", 3L));
+
+        stubFor(post(urlEqualTo("/cmd/batch?retry=5&priority=1"))
+            .withRequestBody(containing("echo 0"))
+            .willReturn(aResponse().withFixedDelay(1000).withBody(Jsonable.GSON_CONFIG.toJson(first))));
+
+        stubFor(post(urlEqualTo("/cmd/batch?retry=5&priority=1"))
+            .withRequestBody(containing("echo 1"))
+            .willReturn(aResponse().withBody(Jsonable.GSON_CONFIG.toJson(others))));
+
+        submitter = new CmdBatchSubmitter(platformURL.getCmdBatchUrl(), 60 * 1000, 100, 0);
+
+        // when: submit three cmd while first one in flight
+        List<CompletableFuture<Cmd>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(submitter.submit(new CmdInfo("default", null, CmdType.RUN_SHELL, "echo " + i), 1, 5));
+        }
+
+        // then: result mapped to each cmd by single request after first one finished
+        Assert.assertEquals("0", futures.get(0).get(10, TimeUnit.SECONDS).getId());
+        Assert.assertEquals("1", futures.get(1).get(10, TimeUnit.SECONDS).getId());
+
+        try {
+            futures.get(2).get(10, TimeUnit.SECONDS);
+            Assert.fail("Should throw exception for cmd error");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStatusException);
+            Assert.assertEquals("Zone lane is full", e.getCause().getMessage());
+        }
+
+        // then: rate limit passed back with retry after hint
+        try {
+            futures.get(3).get(10, TimeUnit.SECONDS);
+            Assert.fail("Should throw exception for rate limit");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TooManyRequestsException);
+            Assert.assertEquals(3L, ((TooManyRequestsException) e.getCause()).getRetryAfter());
+        }
+
+        verify(exactly(2), postRequestedFor(urlEqualTo("/cmd/batch?retry=5&priority=1")));
+    }
+
+    @Test
+    public void should_send_batch_when_reached_max_size() throws Throwable {
+        // given:
+        List<CmdBatchResult> first = new ArrayList<>();
+        first.add(new CmdBatchResult(createCmd("0"), null));
+
+        List<CmdBatchResult> others = new ArrayList<>();
+        others.add(new CmdBatchResult(createCmd("1"), null));
+        others.add(new CmdBatchResult(createCmd("2"), null));
+
+        stubFor(post(urlEqualTo("/cmd/batch?retry=0"))
+            .withRequestBody(containing("echo 0"))
+            .willReturn(aResponse().withFixedDelay(3000).withBody(Jsonable.GSON_CONFIG.toJson(first))));
+
+        stubFor(post(urlEqualTo("/cmd/batch?retry=0"))
+            .withRequestBody(containing("echo 1"))
+            .willReturn(aResponse().withBody(Jsonable.GSON_CONFIG.toJson(others))));
+
+        // window is long enough that only reaching max size can trigger the request
+        submitter = new CmdBatchSubmitter(platformURL.getCmdBatchUrl(), 60 * 1000, 2, 0);
+
+        // when: submit two cmd while first one in flight
+        CompletableFuture<Cmd> inFlight = submitter.submit(createCmdInfo("echo 0"), null, 0);
+        CompletableFuture<Cmd> second = submitter.submit(createCmdInfo("echo 1"), null, 0);
+        Cmd third = submitter.submitAndWait(createCmdInfo("echo 2"), null, 0);
+
+        // then: full batch sent without waiting for the in flight one
+        Assert.assertEquals("1", second.get(10, TimeUnit.SECONDS).getId());
+        Assert.assertEquals("2", third.getId());
+        Assert.assertFalse(inFlight.isDone());
+
+        Assert.assertEquals("0", inFlight.get(10, TimeUnit.SECONDS).getId());
+        verify(exactly(2), postRequestedFor(urlEqualTo("/cmd/batch?retry=0")));
+    }
+
+    @After
+    public void shutdown() {
+        submitter.shutdown();
+    }
+
+    private CmdInfo createCmdInfo(String script) {
+        return new CmdInfo("default", null, CmdType.RUN_SHELL, script);
+    }
+
+    private Cmd createCmd(String id) {
+        Cmd cmd = new Cmd("default", null, CmdType.RUN_SHELL, "echo");
+        cmd.setId(id);
+        return cmd;
+    }
+}
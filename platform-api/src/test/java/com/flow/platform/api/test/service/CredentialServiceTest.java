@@ -15,17 +15,100 @@
  */
 package com.flow.platform.api.test.service;
 
+import com.flow.platform.api.domain.credential.CredentialBundle;
+import com.flow.platform.api.domain.credential.CredentialType;
+import com.flow.platform.api.domain.credential.RSACredentialDetail;
+import com.flow.platform.api.domain.job.Job;
+import com.flow.platform.api.domain.node.Node;
+import com.flow.platform.api.envs.GitEnvs;
+import com.flow.platform.api.service.CredentialService;
 import com.flow.platform.api.test.TestBase;
+import com.flow.platform.util.git.model.GitSource;
+import com.google.common.collect.Lists;
+import java.math.BigInteger;
+import java.util.Map;
+import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * @author lhl
  */
-@Deprecated // since test in credential controller
 public class CredentialServiceTest extends TestBase {
 
+    @Autowired
+    private CredentialService credentialService;
+
+    @Test
+    public void should_resolve_credential_from_job_bundle() {
+        // given: rsa credential and step which referenced it
+        credentialService.createOrUpdate("rsa-for-job", new RSACredentialDetail("public", "private"));
+
+        Node step = new Node("flow/step", "step");
+        step.putEnv(GitEnvs.FLOW_GIT_CREDENTIAL, "rsa-for-job");
+        step.putEnv(GitEnvs.FLOW_GIT_SOURCE, GitSource.UNDEFINED_SSH.name());
+
+        Job job = new Job(BigInteger.ONE);
+
+        // when: create bundle for job
+        CredentialBundle bundle = credentialService.bundle(job, Lists.newArrayList(step));
+        Assert.assertTrue(bundle.contains("rsa-for-job"));
+        Assert.assertEquals(CredentialType.RSA, bundle.type("rsa-for-job"));
+
+        // then: credential envs can be loaded from bundle
+        Map<String, String> envs = credentialService.find(job, step);
+        Assert.assertEquals("private", envs.get(GitEnvs.FLOW_GIT_SSH_PRIVATE_KEY.name()));
+        Assert.assertEquals("public", envs.get(GitEnvs.FLOW_GIT_SSH_PUBLIC_KEY.name()));
+
+        // when: update credential
+        credentialService.createOrUpdate("rsa-for-job", new RSACredentialDetail("new-public", "new-private"));
+
+        // then: bundle should be reloaded with new credential
+        envs = credentialService.find(job, step);
+        Assert.assertEquals("new-private", envs.get(GitEnvs.FLOW_GIT_SSH_PRIVATE_KEY.name()));
+        Assert.assertEquals("new-public", envs.get(GitEnvs.FLOW_GIT_SSH_PUBLIC_KEY.name()));
+
+        credentialService.release(job);
+    }
+
     @Test
-    public void empty() {
+    public void should_keep_not_existed_credential_in_bundle() {
+        Node step = new Node("flow/step", "step");
+        step.putEnv(GitEnvs.FLOW_GIT_CREDENTIAL, "not-existed");
+
+        Job job = new Job(BigInteger.TEN);
+        CredentialBundle bundle = credentialService.bundle(job, Lists.newArrayList(step));
+
+        Assert.assertTrue(bundle.contains("not-existed"));
+        Assert.assertNull(bundle.type("not-existed"));
+        Assert.assertEquals(0, credentialService.find(job, step).size());
+
+        credentialService.release(job);
+    }
+
+    @Test
+    public void should_not_create_bundle_again_after_job_released() {
+        // given: job bundle been released
+        credentialService.createOrUpdate("rsa-for-released", new RSACredentialDetail("public", "private"));
+
+        Node step = new Node("flow/step", "step");
+        step.putEnv(GitEnvs.FLOW_GIT_CREDENTIAL, "rsa-for-released");
+        step.putEnv(GitEnvs.FLOW_GIT_SOURCE, GitSource.UNDEFINED_SSH.name());
+
+        Job job = new Job(BigInteger.valueOf(100));
+        credentialService.bundle(job, Lists.newArrayList(step));
+        credentialService.release(job);
+
+        // when: find credential by late step of job
+        Map<String, String> envs = credentialService.find(job, step);
+
+        // then: credential is loaded but bundle not created again
+        Assert.assertEquals("private", envs.get(GitEnvs.FLOW_GIT_SSH_PRIVATE_KEY.name()));
 
+        Object target = AopTestUtils.getTargetObject(credentialService);
+        Map<?, ?> bundles = (Map<?, ?>) ReflectionTestUtils.getField(target, "bundles");
+        Assert.assertFalse(bundles.containsKey(job.getId()));
     }
 }
@@ -23,6 +23,8 @@ import static com.flow.platform.api.envs.GitEnvs.FLOW_GIT_BRANCH;
 import static com.flow.platform.api.envs.GitEnvs.FLOW_GIT_WEBHOOK;
 import static junit.framework.TestCase.fail;
 
+import com.flow.platform.api.cache.BroadcastCacheManager;
+import com.flow.platform.api.cache.ZKCacheBus;
 import com.flow.platform.api.domain.node.Node;
 import com.flow.platform.api.envs.EnvUtil;
 import com.flow.platform.api.envs.FlowEnvs;
@@ -32,8 +34,13 @@ import com.flow.platform.core.exception.IllegalParameterException;
 import com.google.common.collect.Sets;
 import java.util.HashMap;
 import java.util.Map;
+import org.apache.curator.test.TestingServer;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.aop.framework.Advised;
+import org.springframework.cache.Cache;
+import org.springframework.cache.guava.GuavaCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * @author yang
@@ -56,6 +63,46 @@ public class EnvServiceTest extends TestBase {
         envService.delete(mock, Sets.newHashSet(FlowEnvs.FLOW_STATUS.name()), true);
     }
 
+    @Test
+    public void should_evict_tree_on_other_instance_when_env_changed() throws Throwable {
+        TestingServer server = new TestingServer();
+        server.start();
+
+        ZKCacheBus busOfThis = new ZKCacheBus(server.getConnectString(), "/flow-api-cache-env", "api-1");
+        busOfThis.start();
+        ZKCacheBus busOfOther = new ZKCacheBus(server.getConnectString(), "/flow-api-cache-env", "api-2");
+        busOfOther.start();
+
+        Object cacheManager = ReflectionTestUtils.getField(envServiceImpl(), "cacheManager");
+        ReflectionTestUtils.setField(envServiceImpl(), "cacheManager",
+            new BroadcastCacheManager(new GuavaCacheManager(), busOfThis));
+
+        try {
+            // given: tree of flow loaded on other instance
+            Node flow = nodeService.createEmptyFlow("flow-env-bus");
+            Cache treeOfOther = new BroadcastCacheManager(new GuavaCacheManager(), busOfOther).getCache("treeCache");
+            treeOfOther.put(flow.getPath(), flow);
+
+            // when: save env on this instance
+            envService.save(flow, EnvUtil.build(FLOW_GIT_BRANCH.name(), "develop"), true);
+
+            // then: tree evicted on other instance
+            waitForEvicted(treeOfOther, flow.getPath());
+
+            // when: delete env on this instance after other instance reloaded tree
+            treeOfOther.put(flow.getPath(), flow);
+            envService.delete(flow, Sets.newHashSet(FLOW_GIT_BRANCH.name()), true);
+
+            // then: tree evicted on other instance
+            waitForEvicted(treeOfOther, flow.getPath());
+        } finally {
+            ReflectionTestUtils.setField(envServiceImpl(), "cacheManager", cacheManager);
+            busOfThis.close();
+            busOfOther.close();
+            server.close();
+        }
+    }
+
     @Test
     public void should_env_not_changed_when_env_handler_has_exception() {
         // given:
@@ -106,4 +153,19 @@ public class EnvServiceTest extends TestBase {
         // then: check the actual flow envs size not changed
         Assert.assertEquals(11, flow.getEnvs().size());
     }
+
+    private Object envServiceImpl() throws Exception {
+        if (envService instanceof Advised) {
+            return ((Advised) envService).getTargetSource().getTarget();
+        }
+        return envService;
+    }
+
+    private static void waitForEvicted(Cache cache, String key) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.get(key) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertNull(cache.get(key));
+    }
 }
@@ -32,6 +32,7 @@ import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.junit.After;
@@ -148,6 +149,46 @@ public class GitServiceTest extends TestBase {
         Assert.assertNotNull(tags);
     }
 
+    @Test
+    public void should_load_branches_and_tags_from_cache_until_invalidated() throws Throwable {
+        // given: local git repo with master branch
+        Path repoDir = Files.createTempDirectory("flow-git-refs");
+
+        try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            git.commit().setMessage("init").setAuthor("flow", "flow@flow.ci").call();
+
+            Node localNode = new Node("flow_git_refs", "flow_git_refs");
+            localNode.putEnv(GitEnvs.FLOW_GIT_SOURCE, GitSource.UNDEFINED_HTTP.name());
+            localNode.putEnv(GitEnvs.FLOW_GIT_URL, repoDir.resolve(".git").toString());
+
+            Assert.assertEquals(1, gitService.branches(localNode, false).size());
+            Assert.assertEquals(0, gitService.tags(localNode, false).size());
+
+            // when: create branch and tag
+            git.branchCreate().setName("develop").call();
+            git.tag().setName("v1.0").call();
+
+            // then: branches and tags are loaded from cache
+            Assert.assertEquals(1, gitService.branches(localNode, false).size());
+            Assert.assertEquals(0, gitService.tags(localNode, false).size());
+
+            // when: invalidate cache as git push event received
+            gitService.invalidate(localNode);
+
+            // then: the latest branches and tags are loaded
+            Assert.assertEquals(2, gitService.branches(localNode, false).size());
+            Assert.assertEquals(1, gitService.tags(localNode, false).size());
+
+            // when: create another branch
+            git.branchCreate().setName("feature").call();
+
+            // then: should load from git for refresh
+            Assert.assertEquals(3, gitService.branches(localNode, true).size());
+        } finally {
+            FileUtils.deleteDirectory(repoDir.toFile());
+        }
+    }
+
     @After
     public void after() throws Throwable {
         FileSystemUtils.deleteRecursively(workspace.toFile());
@@ -276,6 +276,22 @@ public class JobServiceTest extends TestBase {
         Assert.assertEquals(NodeStatus.STOPPED, stoppedJob.getRootResult().getStatus());
     }
 
+    @Test
+    public void should_job_time_out_by_timer_wheel() throws IOException {
+        // given: job in session creating
+        Node rootForFlow = createRootFlow("flow1", "demo_flow2.yaml");
+        Job job = jobService.createFromFlowYml(rootForFlow.getPath(), JobCategory.TAG, null, mockUser);
+        Assert.assertEquals(JobStatus.SESSION_CREATING, job.getStatus());
+
+        // when: wait for create session duration without timeout task
+        ThreadUtil.sleep(10000);
+
+        // then: job status should be timeout
+        Job jobRes = jobDao.get(rootForFlow.getPath(), job.getNumber());
+        Assert.assertEquals(JobStatus.TIMEOUT, jobRes.getStatus());
+        Assert.assertEquals(NodeStatus.TIMEOUT, jobRes.getRootResult().getStatus());
+    }
+
     @Test
     public void should_job_time_out_and_reject_callback() throws IOException, InterruptedException {
         // given: job and mock updated time as expired
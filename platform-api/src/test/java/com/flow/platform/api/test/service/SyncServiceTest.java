@@ -25,16 +25,16 @@ import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 
 import com.flow.platform.api.domain.sync.SyncEvent;
 import com.flow.platform.api.domain.sync.SyncRepo;
+import com.flow.platform.api.domain.sync.SyncState;
+import com.flow.platform.api.domain.sync.SyncTask;
 import com.flow.platform.api.domain.sync.SyncType;
 import com.flow.platform.api.service.SyncService;
 import com.flow.platform.api.test.TestBase;
-import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
-import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.util.git.JGitUtil;
 import com.github.tomakehurst.wiremock.client.CountMatchingStrategy;
 import com.google.common.collect.ImmutableList;
@@ -42,6 +42,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import org.apache.commons.io.FileUtils;
@@ -52,6 +53,9 @@ import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * @author yang
@@ -65,6 +69,9 @@ public class SyncServiceTest extends TestBase {
     @Autowired
     private Path gitWorkspace;
 
+    @Value("${task.sync.max_parallel}")
+    private Integer maxParallel;
+
     private List<AgentPath> agents;
 
     private Cmd createSessionCmdResponse;
@@ -95,17 +102,19 @@ public class SyncServiceTest extends TestBase {
         SyncRepo repo = new SyncRepo(JGitUtil.getRepoNameFromGitUrl(gitUrl), "v1.0");
         SyncEvent createEvent = new SyncEvent(gitUrl, repo, SyncType.CREATE);
 
-        String script = "git init hello[v1.0]\n"
-            + "cd hello[v1.0]\n"
-            + "git pull http://localhost/git/hello.git --tags\n"
-            + "git checkout v1.0";
+        String script = "git init -q --bare .cache/hello\n"
+            + "git --git-dir=.cache/hello fetch -q http://localhost/git/hello.git +refs/tags/v1.0:refs/tags/v1.0\n"
+            + "rm -r -f hello[v1.0]\n"
+            + "git clone -q --shared --branch v1.0 .cache/hello hello[v1.0]";
         Assert.assertEquals(script, createEvent.toScript());
 
         SyncEvent deleteEvent = new SyncEvent(gitUrl, repo, SyncType.DELETE);
         Assert.assertEquals("rm -r -f hello[v1.0]", deleteEvent.toScript());
 
         SyncEvent listEvent = new SyncEvent(null, null, SyncType.LIST);
-        Assert.assertEquals("export FLOW_SYNC_LIST=\"$(ls)\"", listEvent.toScript());
+        script = "for cache in .cache/*; do ls -d \"${cache#.cache/}[\"* > /dev/null 2>&1 || rm -r -f \"$cache\"; done\n"
+            + "export FLOW_SYNC_LIST=\"$(ls)\"";
+        Assert.assertEquals(script, listEvent.toScript());
     }
 
     @Test
@@ -121,9 +130,58 @@ public class SyncServiceTest extends TestBase {
         syncService.put(new SyncEvent("http://127.0.0.1/git/hello.git", new SyncRepo("hello", "v1.0"), SyncType.CREATE));
         syncService.put(new SyncEvent("http://127.0.0.1/git/flow.git", new SyncRepo("flow", "v1.0"), SyncType.CREATE));
 
-        // then: three events should be in the agent sync queue, include list
-        Assert.assertEquals(2, syncService.get(firstAgent).getQueue().size());
-        Assert.assertEquals(2, syncService.get(secondAgent).getQueue().size());
+        // then: two events should be pending for both agents
+        Assert.assertEquals(2, syncService.get(firstAgent).getPending().size());
+        Assert.assertEquals(2, syncService.get(secondAgent).getPending().size());
+
+        // when: put event for the same repo again
+        syncService.put(new SyncEvent("http://127.0.0.1/git/hello.git", new SyncRepo("hello", "v1.0"), SyncType.DELETE));
+
+        // then: the pending event of same repo is overwritten by the latest one
+        List<SyncEvent> pending = syncService.get(firstAgent).getPending();
+        Assert.assertEquals(2, pending.size());
+        Assert.assertEquals(SyncType.DELETE, pending.get(0).getSyncType());
+    }
+
+    @Test
+    public void should_limit_num_of_parallel_sync() throws Throwable {
+        // given: register agents more than max parallel
+        List<AgentPath> agentList = new ArrayList<>(maxParallel + 2);
+        for (int i = 0; i < maxParallel + 2; i++) {
+            AgentPath agent = new AgentPath("default", "agent-" + i);
+            agentList.add(agent);
+            syncService.register(agent);
+            syncService.put(new SyncEvent("http://127.0.0.1/git/hello.git", new SyncRepo("hello", "v1.0"), SyncType.CREATE));
+        }
+
+        // when: execute sync task
+        syncService.syncTask();
+
+        // then: only max parallel of create session cmd been sent, others are queued
+        CountMatchingStrategy strategy = new CountMatchingStrategy(CountMatchingStrategy.EQUAL_TO, maxParallel);
+        verify(strategy, postRequestedFor(urlEqualTo("/cmd/queue/send?priority=10&retry=5")));
+
+        List<AgentPath> running = new ArrayList<>(maxParallel);
+        for (AgentPath agent : agentList) {
+            if (syncService.get(agent).getState() == SyncState.RUNNING) {
+                running.add(agent);
+                Assert.assertFalse(syncService.get(agent).hasPending());
+                continue;
+            }
+            Assert.assertEquals(SyncState.QUEUED, syncService.get(agent).getState());
+        }
+        Assert.assertEquals(maxParallel.intValue(), running.size());
+
+        // when: sync of one agent finished
+        AgentPath finished = running.get(0);
+        Cmd mockDeleteSession = new Cmd(finished.getZone(), finished.getName(), CmdType.DELETE_SESSION, null);
+        mockDeleteSession.setStatus(CmdStatus.SENT);
+        syncService.onCallback(mockDeleteSession);
+
+        // then: the next queued agent starts sync
+        Assert.assertEquals(SyncState.IDLE, syncService.get(finished).getState());
+        strategy = new CountMatchingStrategy(CountMatchingStrategy.EQUAL_TO, maxParallel + 1);
+        verify(strategy, postRequestedFor(urlEqualTo("/cmd/queue/send?priority=10&retry=5")));
     }
 
     @Test
@@ -140,20 +198,20 @@ public class SyncServiceTest extends TestBase {
 
         // then: verify the sync event been initialized into both agents
 
-        // check sync queue for first agent
-        PlatformQueue<PriorityMessage> queue = syncService.get(agents.get(0)).getQueue();
-        Assert.assertEquals(1, queue.size());
+        // check pending events for first agent
+        List<SyncEvent> pending = syncService.get(agents.get(0)).getPending();
+        Assert.assertEquals(1, pending.size());
 
-        SyncEvent createEvent = SyncEvent.parse(queue.dequeue().getBody(), SyncEvent.class);
+        SyncEvent createEvent = pending.get(0);
         Assert.assertEquals("http://localhost:8080/git/hello.git", createEvent.getGitUrl());
         Assert.assertEquals("v1.0", createEvent.getRepo().getTag());
         Assert.assertEquals(SyncType.CREATE, createEvent.getSyncType());
 
-        // check sync queue for second agent
-        queue = syncService.get(agents.get(1)).getQueue();
-        Assert.assertEquals(1, queue.size());
+        // check pending events for second agent
+        pending = syncService.get(agents.get(1)).getPending();
+        Assert.assertEquals(1, pending.size());
 
-        createEvent = SyncEvent.parse(queue.dequeue().getBody(), SyncEvent.class);
+        createEvent = pending.get(0);
         Assert.assertEquals("http://localhost:8080/git/hello.git", createEvent.getGitUrl());
         Assert.assertEquals("v1.0", createEvent.getRepo().getTag());
         Assert.assertEquals(SyncType.CREATE, createEvent.getSyncType());
@@ -170,7 +228,7 @@ public class SyncServiceTest extends TestBase {
         // and: register agent to sync service
         AgentPath agent = agents.get(0);
         syncService.register(agent);
-        Assert.assertEquals(1, syncService.get(agent).getQueue().size());
+        Assert.assertEquals(1, syncService.get(agent).getPending().size());
 
         // when: execute sync task
         syncService.syncTask();
@@ -282,6 +340,47 @@ public class SyncServiceTest extends TestBase {
         Assert.assertNull(syncService.getSyncTask(agent));
     }
 
+    @Test
+    public void should_queue_agent_again_if_sync_task_callback_lost() throws Throwable {
+        // given: sync task running for agent
+        AgentPath agent = agents.get(0);
+        syncService.register(agent);
+        syncService.put(new SyncEvent("http://127.0.0.1/git/hello.git", new SyncRepo("hello", "v1.0"), SyncType.CREATE));
+        syncService.syncTask();
+
+        SyncTask expired = syncService.getSyncTask(agent);
+        Assert.assertEquals(createSessionCmdResponse.getSessionId(), expired.getSessionId());
+        Assert.assertEquals(SyncState.RUNNING, syncService.get(agent).getState());
+
+        // when: no callback received within timeout
+        Object target = AopTestUtils.getTargetObject(syncService);
+        Object timeout = ReflectionTestUtils.getField(target, "syncTimeout");
+        ReflectionTestUtils.setField(target, "syncTimeout", -1L);
+
+        try {
+            syncService.syncTask();
+        } finally {
+            ReflectionTestUtils.setField(target, "syncTimeout", timeout);
+        }
+
+        // then: session deleted and agent sync again with unfinished events
+        verify(1, postRequestedFor(urlEqualTo("/cmd/send")));
+        verify(2, postRequestedFor(urlEqualTo("/cmd/queue/send?priority=10&retry=5")));
+
+        SyncTask restarted = syncService.getSyncTask(agent);
+        Assert.assertNotSame(expired, restarted);
+        Assert.assertEquals(2, restarted.getSyncQueue().size());
+
+        // when: delete session callback of expired task received
+        Cmd mockDeleteSession = new Cmd(agent.getZone(), agent.getName(), CmdType.DELETE_SESSION, null);
+        mockDeleteSession.setSessionId(UUID.randomUUID().toString());
+        mockDeleteSession.setStatus(CmdStatus.SENT);
+        syncService.onCallback(mockDeleteSession);
+
+        // then: the restarted task not finished
+        Assert.assertSame(restarted, syncService.getSyncTask(agent));
+    }
+
     @After
     public void clean() throws IOException {
         File[] files = gitWorkspace.toFile().listFiles();
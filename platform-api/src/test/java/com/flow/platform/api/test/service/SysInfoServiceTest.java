@@ -25,8 +25,10 @@ import com.flow.platform.core.service.SysInfoService;
 import com.flow.platform.core.sysinfo.DBInfoLoader;
 import com.flow.platform.core.sysinfo.DBInfoLoader.DBGroupName;
 import com.flow.platform.core.sysinfo.GroupSystemInfo;
+import com.flow.platform.core.sysinfo.HibernateCacheLoader.CacheGroup;
 import com.flow.platform.core.sysinfo.JvmLoader;
 import com.flow.platform.core.sysinfo.JvmLoader.JvmGroup;
+import com.flow.platform.core.sysinfo.QueueLoader.QueueGroup;
 import com.flow.platform.core.sysinfo.SystemInfo;
 import com.flow.platform.core.sysinfo.SystemInfo.Category;
 import com.flow.platform.core.sysinfo.SystemInfo.Status;
@@ -97,6 +99,33 @@ public class SysInfoServiceTest extends TestBase {
         Assert.assertEquals(Status.OFFLINE, serverInfo.getStatus());
     }
 
+    @Test
+    public void should_get_api_cache_info() throws Throwable {
+        // when:
+        GroupSystemInfo cacheInfo = (GroupSystemInfo) sysInfoService.components(Category.API, Type.CACHE).get(0);
+        Assert.assertNotNull(cacheInfo);
+        Assert.assertEquals(Status.RUNNING, cacheInfo.getStatus());
+
+        // then:
+        Assert.assertEquals(3, cacheInfo.size());
+        Assert.assertEquals(4, cacheInfo.get(CacheGroup.SECOND_LEVEL).size());
+        Assert.assertEquals(5, cacheInfo.get(CacheGroup.QUERY).size());
+        Assert.assertNotNull(cacheInfo.get(CacheGroup.REGIONS));
+    }
+
+    @Test
+    public void should_get_api_queue_info() throws Throwable {
+        // when:
+        GroupSystemInfo queueInfo = (GroupSystemInfo) sysInfoService.components(Category.API, Type.QUEUE).get(0);
+        Assert.assertNotNull(queueInfo);
+        Assert.assertEquals("CmdCallbackQueue", queueInfo.getName());
+
+        // then:
+        Map<String, String> summary = queueInfo.get(QueueGroup.QUEUE);
+        Assert.assertEquals(4, summary.size());
+        Assert.assertNotNull(summary.get("queue.dead_letters"));
+    }
+
     @Test
     public void should_get_cc_jvm_info() throws Throwable {
         JvmLoader jvmLoader = new JvmLoader();
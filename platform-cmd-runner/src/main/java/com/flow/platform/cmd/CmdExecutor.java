@@ -41,10 +41,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -108,21 +105,15 @@ public final class CmdExecutor {
 
     private final static int DEFAULT_SHUTDOWN_WAITING_SECONDS = 30;
 
+    // grace period from SIGTERM to SIGKILL
+    private final static int DEFAULT_KILL_WAITING_SECONDS = 10;
+
     private final ConcurrentLinkedQueue<Log> loggingQueue = new ConcurrentLinkedQueue<>();
 
     private final String endTerm = String.format("=====EOF-%s=====", UUID.randomUUID());
 
-    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.SECONDS,
-        new LinkedBlockingQueue<>(),
-        new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = Executors.defaultThreadFactory().newThread(r);
-                t.setDaemon(true);
-                return t;
-            }
-        }
-    );
+    // io tasks of the cmd run on threads shared with other cmd executors
+    private ProcIOExecutor ioExecutor = ProcIOExecutor.getInstance();
 
     private final CountDownLatch stdThreadCountDown = new CountDownLatch(2);
 
@@ -142,6 +133,10 @@ public final class CmdExecutor {
 
     private Integer timeout;
 
+    private volatile Process process;
+
+    private volatile boolean killed = false;
+
     /**
      * @param procListener nullable
      * @param logListener nullable
@@ -173,7 +168,7 @@ public final class CmdExecutor {
         cmds.add(0, "set -e"); // exit bash when command error
 
         this.cmdList = cmds;
-        this.pBuilder = new ProcessBuilder("/bin/bash").directory(DEFAULT_WORKING_DIR);
+        this.pBuilder = new ProcessBuilder(ProcKiller.command("/bin/bash")).directory(DEFAULT_WORKING_DIR);
 
         // check and init working dir
         if (workingDir != null) {
@@ -215,32 +210,79 @@ public final class CmdExecutor {
         this.logListener = logListener;
     }
 
+    public void setIoExecutor(ProcIOExecutor ioExecutor) {
+        this.ioExecutor = ioExecutor;
+    }
+
+
+    /**
+     * Terminate the process and all its child processes, SIGTERM first and SIGKILL after grace period
+     * The process will not be started if it has not been started yet
+     */
+    public void kill() {
+        Process p;
+        synchronized (this) {
+            killed = true;
+            p = process;
+        }
+
+        if (p == null) {
+            return;
+        }
+
+        ProcKiller.kill(p, outputResult.getProcessId(), ProcKiller.isGroupSupported(), DEFAULT_KILL_WAITING_SECONDS);
+        LOGGER.trace("====== Process killed : %s ======", outputResult.getProcessId());
+    }
+
+    public boolean isKilled() {
+        return killed;
+    }
 
     public CmdResult run() {
         outputResult = new CmdResult();
         outputResult.setStartTime(DateUtil.now());
 
-        try {
-            Process p = pBuilder.start();
-            outputResult.setProcessId(getPid(p));
-            outputResult.setProcess(p);
+        final ProcIOExecutor.Group ioTasks = ioExecutor.group();
 
-            procListener.onStarted(outputResult);
+        try {
+            Process p;
+            synchronized (this) {
+                if (killed) {
+                    outputResult.setExitValue(CmdResult.EXIT_VALUE_FOR_KILL);
+                    outputResult.setFinishTime(DateUtil.now());
+                    return outputResult;
+                }
 
-            // thread to send cmd list to bash
-            executor.execute(createCmdListExec(p.getOutputStream(), cmdList));
+                p = pBuilder.start();
+                outputResult.setProcessId(getPid(p));
+                outputResult.setProcess(p);
+                process = p;
+            }
 
-            // thread to read stdout and stderr stream and put log to logging queue
-            executor.execute(createStdStreamReader(Log.Type.STDOUT, p.getInputStream()));
-            executor.execute(createStdStreamReader(Log.Type.STDERR, p.getErrorStream()));
+            procListener.onStarted(outputResult);
 
-            // thread to make consume logging queue
-            executor.execute(createCmdLoggingReader());
+            try {
+                // thread to send cmd list to bash
+                ioTasks.execute(createCmdListExec(p.getOutputStream(), cmdList));
+
+                // thread to read stdout and stderr stream and put log to logging queue
+                ioTasks.execute(createStdStreamReader(Log.Type.STDOUT, p.getInputStream()));
+                ioTasks.execute(createStdStreamReader(Log.Type.STDERR, p.getErrorStream()));
+
+                // thread to make consume logging queue
+                ioTasks.execute(createCmdLoggingReader());
+            } catch (RejectedExecutionException e) {
+                // process cannot run without reading its output
+                ioTasks.cancel();
+                kill();
+                throw e;
+            }
 
             // wait for max process timeout
             if (p.waitFor(timeout.longValue(), TimeUnit.SECONDS)) {
                 outputResult.setExitValue(p.exitValue());
             } else {
+                kill();
                 outputResult.setExitValue(CmdResult.EXIT_VALUE_FOR_TIMEOUT);
             }
 
@@ -250,11 +292,10 @@ public final class CmdExecutor {
 
             // wait for log thread with max 30 seconds to continue upload log
             logThreadCountDown.await(DEFAULT_LOGGING_WAITING_SECONDS, TimeUnit.SECONDS);
-            executor.shutdown();
 
-            // try to shutdown all threads with max 30 seconds waiting time
-            if (!executor.awaitTermination(DEFAULT_SHUTDOWN_WAITING_SECONDS, TimeUnit.SECONDS)) {
-                executor.shutdownNow();
+            // wait all io tasks with max 30 seconds waiting time, threads are returned to shared executor
+            if (!ioTasks.await(DEFAULT_SHUTDOWN_WAITING_SECONDS, TimeUnit.SECONDS)) {
+                ioTasks.cancel();
             }
 
             outputResult.setFinishTime(DateUtil.now());
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cmd;
+
+import com.flow.platform.util.Logger;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared executor for process IO tasks of all cmd executors, the idle threads are kept alive for a while
+ * so short cmds reuse threads rather than create and destroy threads for each cmd.
+ * <p>
+ * The IO tasks block until process finished, so they are never queued; the task runs on a dedicated
+ * thread if all pooled threads are busy, and counted as overflow. The num of overflow threads is limited
+ * as well, the task is rejected if all overflow threads are busy
+ *
+ * @author yang
+ */
+public final class ProcIOExecutor {
+
+    public final static String PROP_MAX_THREADS = "flow.cmd.io.threads";
+
+    public final static String PROP_MAX_OVERFLOW_THREADS = "flow.cmd.io.overflow.threads";
+
+    private final static Logger LOGGER = new Logger(ProcIOExecutor.class);
+
+    private final static int DEFAULT_MAX_THREADS = 256;
+
+    private final static int DEFAULT_MAX_OVERFLOW_THREADS = 64;
+
+    private final static long KEEP_ALIVE_SECONDS = 60;
+
+    private final static ProcIOExecutor INSTANCE = new ProcIOExecutor(
+        Integer.getInteger(PROP_MAX_THREADS, DEFAULT_MAX_THREADS),
+        Integer.getInteger(PROP_MAX_OVERFLOW_THREADS, DEFAULT_MAX_OVERFLOW_THREADS));
+
+    public static ProcIOExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    private final AtomicInteger threadIndex = new AtomicInteger(0);
+
+    private final AtomicLong overflowCount = new AtomicLong(0);
+
+    private final AtomicInteger overflowActiveCount = new AtomicInteger(0);
+
+    private final ThreadPoolExecutor executor;
+
+    public ProcIOExecutor(int maxThreads, int maxOverflowThreads) {
+        executor = new ThreadPoolExecutor(0, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            r -> newThread(r, "cmd-io-" + threadIndex.incrementAndGet()),
+            (r, e) -> runOnOverflowThread(r, maxThreads, maxOverflowThreads));
+    }
+
+    /**
+     * Create task group for tasks of single cmd
+     */
+    public Group group() {
+        return new Group();
+    }
+
+    public int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    public int getLargestPoolSize() {
+        return executor.getLargestPoolSize();
+    }
+
+    /**
+     * Num of busy threads including overflow threads
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount() + overflowActiveCount.get();
+    }
+
+    public long getCompletedTaskCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+    /**
+     * Stop idle threads, the running tasks are not interrupted
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void runOnOverflowThread(Runnable task, int maxThreads, int maxOverflowThreads) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Cmd io executor is shutdown");
+        }
+
+        if (overflowActiveCount.incrementAndGet() > maxOverflowThreads) {
+            overflowActiveCount.decrementAndGet();
+            String message = "All %s cmd io threads and %s overflow threads are busy";
+            throw new RejectedExecutionException(String.format(message, maxThreads, maxOverflowThreads));
+        }
+
+        long count = overflowCount.incrementAndGet();
+        LOGGER.warn("All %s cmd io threads are busy, run on dedicated thread (%s)", maxThreads, count);
+
+        newThread(() -> {
+            try {
+                task.run();
+            } finally {
+                overflowActiveCount.decrementAndGet();
+            }
+        }, "cmd-io-overflow-" + count).start();
+    }
+
+    private static Thread newThread(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Tasks of single cmd, which can be awaited and cancelled together
+     */
+    public final class Group {
+
+        private final List<Future<?>> futures = new LinkedList<>();
+
+        private Group() {
+        }
+
+        public synchronized void execute(Runnable task) {
+            futures.add(executor.submit(task));
+        }
+
+        /**
+         * Wait for all tasks finished
+         *
+         * @return false if timeout
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+            for (Future<?> future : snapshot()) {
+                try {
+                    future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    return false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                } catch (ExecutionException | CancellationException ignore) {
+                    // exception handled in task
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Interrupt tasks still running
+         */
+        public void cancel() {
+            for (Future<?> future : snapshot()) {
+                future.cancel(true);
+            }
+        }
+
+        private synchronized List<Future<?>> snapshot() {
+            return new LinkedList<>(futures);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cmd;
+
+import com.flow.platform.util.Logger;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Terminate process with all its descendants
+ * <p>
+ * The process started by {@link #command(String)} is the leader of a new process group via setsid,
+ * the whole group is signaled by negative pid. Descendants are found by 'pgrep -P' if setsid
+ * is not available. SIGTERM is sent first and escalated to SIGKILL after grace period.
+ *
+ * @author yang
+ */
+public final class ProcKiller {
+
+    private final static Logger LOGGER = new Logger(ProcKiller.class);
+
+    private final static String[] SETSID_PATHS = {"/usr/bin/setsid", "/bin/setsid"};
+
+    private final static String SETSID = findSetsid();
+
+    private final static String SIGTERM = "TERM";
+
+    private final static String SIGKILL = "KILL";
+
+    /**
+     * Build command to start shell in new process group if possible
+     */
+    public static List<String> command(String shell) {
+        List<String> command = new ArrayList<>(2);
+        if (SETSID != null) {
+            command.add(SETSID);
+        }
+        command.add(shell);
+        return command;
+    }
+
+    /**
+     * Is process started by {@link #command(String)} a process group leader
+     */
+    public static boolean isGroupSupported() {
+        return SETSID != null;
+    }
+
+    /**
+     * Terminate process tree, send SIGTERM and wait for process exit with grace period,
+     * then send SIGKILL to the process and descendants still alive
+     *
+     * @param process the process
+     * @param pid pid of process, -1 if unknown
+     * @param grouped is process a group leader
+     * @param grace grace period in seconds
+     */
+    public static void kill(Process process, int pid, boolean grouped, long grace) {
+        if (pid <= 0) {
+            process.destroy();
+            waitFor(process, grace);
+            process.destroyForcibly();
+            return;
+        }
+
+        if (grouped) {
+            signal(SIGTERM, "-" + pid);
+            waitFor(process, grace);
+            signal(SIGKILL, "-" + pid);
+            return;
+        }
+
+        // descendants should be listed before parent exit, otherwise they are moved to init
+        List<Integer> tree = tree(pid);
+        for (Integer item : tree) {
+            signal(SIGTERM, item.toString());
+        }
+
+        waitFor(process, grace);
+
+        for (Integer item : tree) {
+            signal(SIGKILL, item.toString());
+        }
+    }
+
+    /**
+     * List pid and its descendants, children are listed before parent
+     */
+    private static List<Integer> tree(int pid) {
+        List<Integer> tree = new ArrayList<>();
+        for (Integer child : children(pid)) {
+            tree.addAll(tree(child));
+        }
+        tree.add(pid);
+        return tree;
+    }
+
+    private static List<Integer> children(int pid) {
+        List<Integer> children = new ArrayList<>();
+
+        try {
+            Process pgrep = new ProcessBuilder("pgrep", "-P", Integer.toString(pid)).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(pgrep.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    children.add(Integer.parseInt(line.trim()));
+                }
+            }
+            pgrep.waitFor();
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.warn("Unable to list child process of %s: %s", pid, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return children;
+    }
+
+    private static void signal(String signal, String target) {
+        try {
+            Process kill = new ProcessBuilder("kill", "-s", signal, "--", target)
+                .redirectErrorStream(true)
+                .start();
+            kill.getInputStream().close();
+            kill.waitFor();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to send %s to %s: %s", signal, target, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitFor(Process process, long seconds) {
+        try {
+            process.waitFor(seconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String findSetsid() {
+        for (String item : SETSID_PATHS) {
+            Path path = Paths.get(item);
+            if (Files.isExecutable(path)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private ProcKiller() {
+    }
+}
@@ -3,8 +3,19 @@ package com.flow.platform.cmd.test;
 import com.flow.platform.cmd.CmdExecutor;
 import com.flow.platform.cmd.Log;
 import com.flow.platform.cmd.LogListener;
+import com.flow.platform.cmd.ProcIOExecutor;
+import com.flow.platform.cmd.ProcListener;
 import com.flow.platform.domain.CmdResult;
 import com.google.common.collect.Lists;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -78,4 +89,144 @@ public class CmdExecutorTest {
         Assert.assertEquals(0, result.getOutput().size());
         Assert.assertNotEquals(0, result.getExitValue().intValue());
     }
+
+    @Test
+    public void should_kill_process_with_child_processes() throws Throwable {
+        // given: bash with child process in background
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<CmdResult> running = new AtomicReference<>();
+        ProcListener procListener = new ProcListener() {
+            @Override
+            public void onStarted(CmdResult result) {
+                running.set(result);
+                started.countDown();
+            }
+
+            @Override
+            public void onExecuted(CmdResult result) {
+
+            }
+
+            @Override
+            public void onLogged(CmdResult result) {
+
+            }
+
+            @Override
+            public void onException(CmdResult result) {
+
+            }
+        };
+
+        CmdExecutor executor = new CmdExecutor(procListener,
+            logListener,
+            null,
+            null,
+            null,
+            null,
+            Lists.newArrayList("sleep 3017 &", "sleep 3017"));
+
+        CompletableFuture<CmdResult> future = CompletableFuture.supplyAsync(executor::run);
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread.sleep(500);
+
+        List<String> children = exec("pgrep", "-P", running.get().getProcessId().toString());
+        Assert.assertEquals(2, children.size());
+
+        // when:
+        executor.kill();
+
+        // then: bash and its children are terminated
+        CmdResult result = future.get(30, TimeUnit.SECONDS);
+        Assert.assertTrue(executor.isKilled());
+        Assert.assertNotEquals(0, result.getExitValue().intValue());
+
+        for (String child : children) {
+            Assert.assertFalse(isAlive(child));
+        }
+    }
+
+    @Test
+    public void should_reuse_shared_io_threads_for_short_cmds() throws Throwable {
+        // given: io executor not shared with other tests
+        final int numOfCmds = 20;
+        ProcIOExecutor ioExecutor = new ProcIOExecutor(256, 64);
+
+        try {
+            // when: run short cmds one by one
+            for (int i = 0; i < numOfCmds; i++) {
+                CmdExecutor executor = new CmdExecutor(null, null, null, null, null, null,
+                    Lists.newArrayList("echo hello"));
+                executor.setIoExecutor(ioExecutor);
+
+                CmdResult result = executor.run();
+                Assert.assertEquals(0, result.getExitValue().intValue());
+            }
+
+            // then: 4 io tasks for each cmd on reused threads, the completed count is updated after task returned
+            for (int i = 0; i < 100 && ioExecutor.getCompletedTaskCount() < numOfCmds * 4; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(numOfCmds * 4, ioExecutor.getCompletedTaskCount());
+            Assert.assertTrue(ioExecutor.getLargestPoolSize() <= 8);
+            Assert.assertEquals(0, ioExecutor.getOverflowCount());
+        } finally {
+            ioExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void should_reject_io_task_when_overflow_threads_are_busy() throws Throwable {
+        // given: one pooled thread and one overflow thread
+        ProcIOExecutor ioExecutor = new ProcIOExecutor(1, 1);
+        ProcIOExecutor.Group group = ioExecutor.group();
+        CountDownLatch release = new CountDownLatch(1);
+
+        try {
+            // when: run two blocking tasks
+            group.execute(() -> awaitQuietly(release));
+            group.execute(() -> awaitQuietly(release));
+
+            // then: second task on overflow thread
+            Assert.assertEquals(1, ioExecutor.getOverflowCount());
+
+            // then: third task rejected
+            try {
+                group.execute(() -> awaitQuietly(release));
+                Assert.fail("Should reject io task");
+            } catch (RejectedExecutionException ignore) {
+            }
+
+            // then: busy threads released after tasks finished
+            release.countDown();
+            Assert.assertTrue(group.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 100 && ioExecutor.getActiveCount() > 0; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(0, ioExecutor.getActiveCount());
+        } finally {
+            ioExecutor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignore) {
+        }
+    }
+
+    private boolean isAlive(String pid) throws Throwable {
+        List<String> stat = exec("ps", "-o", "stat=", "-p", pid);
+        return !stat.isEmpty() && !stat.get(0).trim().startsWith("Z");
+    }
+
+    private List<String> exec(String... cmd) throws Throwable {
+        Process process = new ProcessBuilder(cmd).start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            List<String> lines = reader.lines().collect(Collectors.toList());
+            process.waitFor();
+            return lines;
+        }
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cmd.test;
+
+import com.flow.platform.cmd.ProcIOExecutor;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Throughput of short cmds with io tasks on per cmd thread pool (the one CmdExecutor used before)
+ * and on shared ProcIOExecutor, it's skipped by default, run it by:
+ *
+ * mvn test -Dtest=ProcIOExecutorBenchmarkTest -Dflow.cmd.benchmark=true -Dflow.cmd.benchmark.ops=500
+ *
+ * @author yang
+ */
+public class ProcIOExecutorBenchmarkTest {
+
+    private final static int OPS = Integer.getInteger("flow.cmd.benchmark.ops", 500);
+
+    // stdin writer, stdout reader, stderr reader and log consumer of each cmd
+    private final static int IO_TASKS_PER_CMD = 4;
+
+    private final static String OUTPUT = "hello\n";
+
+    private final AtomicLong lines = new AtomicLong(0);
+
+    private ProcIOExecutor ioExecutor;
+
+    @BeforeClass
+    public static void beforeClass() {
+        Assume.assumeTrue(Boolean.getBoolean("flow.cmd.benchmark"));
+    }
+
+    @Before
+    public void init() {
+        ioExecutor = new ProcIOExecutor(256, 64);
+    }
+
+    @Test
+    public void should_measure_io_tasks_on_per_cmd_pool_and_shared_executor() throws Throwable {
+        Supplier<List<Runnable>> tasks = () -> {
+            List<Runnable> list = new ArrayList<>(IO_TASKS_PER_CMD);
+            for (int i = 0; i < IO_TASKS_PER_CMD; i++) {
+                list.add(() -> read(new ByteArrayInputStream(OUTPUT.getBytes(StandardCharsets.UTF_8))));
+            }
+            return list;
+        };
+
+        long perCmd = run("io tasks, per cmd pool", () -> runOnPerCmdPool(tasks.get()));
+        long shared = run("io tasks, shared executor", () -> runOnSharedExecutor(tasks.get()));
+
+        Assert.assertEquals(OPS * IO_TASKS_PER_CMD * 2, lines.get());
+        assertMeasured(perCmd, shared);
+        Assert.assertEquals(0, ioExecutor.getOverflowCount());
+    }
+
+    @Test
+    public void should_measure_short_cmd_on_per_cmd_pool_and_shared_executor() throws Throwable {
+        long perCmd = run("echo cmd, per cmd pool", () -> runOnPerCmdPool(processTasks()));
+        long shared = run("echo cmd, shared executor", () -> runOnSharedExecutor(processTasks()));
+
+        Assert.assertEquals(OPS * 2, lines.get());
+        assertMeasured(perCmd, shared);
+    }
+
+    @After
+    public void after() {
+        ioExecutor.shutdown();
+    }
+
+    /**
+     * Thread pool created and shut down for each cmd
+     */
+    private static void runOnPerCmdPool(List<Runnable> tasks) throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+                Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setDaemon(true);
+                return t;
+            });
+
+        for (Runnable task : tasks) {
+            executor.execute(task);
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    private void runOnSharedExecutor(List<Runnable> tasks) throws InterruptedException {
+        ProcIOExecutor.Group group = ioExecutor.group();
+        for (Runnable task : tasks) {
+            group.execute(task);
+        }
+        Assert.assertTrue(group.await(30, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Io tasks of short process as CmdExecutor does, the log consumer waits for process exit
+     */
+    private List<Runnable> processTasks() {
+        Process process;
+        try {
+            process = new ProcessBuilder("/bin/bash", "-c", "echo hello").start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        List<Runnable> list = new ArrayList<>(IO_TASKS_PER_CMD);
+        list.add(() -> {
+            try {
+                process.getOutputStream().close();
+            } catch (IOException ignore) {
+            }
+        });
+        list.add(() -> read(process.getInputStream()));
+        list.add(() -> read(process.getErrorStream()));
+        list.add(() -> {
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return list;
+    }
+
+    private void read(InputStream stream) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            while (reader.readLine() != null) {
+                lines.incrementAndGet();
+            }
+        } catch (IOException ignore) {
+        }
+    }
+
+    private static long run(String name, Op op) throws Throwable {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            op.run();
+        }
+        return report(name, System.nanoTime() - start);
+    }
+
+    /**
+     * @return cmds per second
+     */
+    private static long report(String name, long nanos) {
+        long opsPerSecond = OPS * 1_000_000_000L / Math.max(1, nanos);
+        System.out.println(String.format("%-35s %8d cmds/s", name + ":", opsPerSecond));
+        return opsPerSecond;
+    }
+
+    private static void assertMeasured(long... opsPerSecond) {
+        for (long value : opsPerSecond) {
+            Assert.assertTrue(value > 0);
+        }
+    }
+
+    private interface Op {
+
+        void run() throws Throwable;
+    }
+}
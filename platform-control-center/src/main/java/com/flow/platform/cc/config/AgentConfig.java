@@ -51,9 +51,15 @@ public class AgentConfig {
         final String cmdStatusUrl = HttpURL.build(ccDomain).append("cmd/report").toString();
         settings.setCmdStatusUrl(cmdStatusUrl);
 
+        final String cmdStatusBatchUrl = HttpURL.build(ccDomain).append("cmd/report/batch").toString();
+        settings.setCmdStatusBatchUrl(cmdStatusBatchUrl);
+
         final String cmdLogUploadUrl = HttpURL.build(ccDomain).append("cmd/log/upload").toString();
         settings.setCmdLogUrl(cmdLogUploadUrl);
 
+        final String cmdLogChunkUrl = HttpURL.build(ccDomain).append("cmd/log/chunk").toString();
+        settings.setCmdLogChunkUrl(cmdLogChunkUrl);
+
         settings.setZookeeperUrl(zookeeperUrl);
         LOGGER.trace(settings.toString());
     }
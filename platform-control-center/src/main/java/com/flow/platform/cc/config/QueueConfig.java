@@ -16,12 +16,17 @@
 
 package com.flow.platform.cc.config;
 
+import com.flow.platform.core.queue.MemoryLaneQueue;
 import com.flow.platform.core.queue.MemoryQueue;
 import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.core.queue.RabbitQueue;
+import com.flow.platform.core.queue.RabbitQueueSettings;
+import com.flow.platform.domain.Zone;
 import com.flow.platform.queue.PlatformQueue;
+import com.flow.platform.queue.RetryPolicy;
 import com.flow.platform.util.Logger;
 import com.google.common.collect.Range;
+import java.util.List;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -37,6 +42,9 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 @Configuration
 public class QueueConfig {
 
+    /**
+     * Max length of queue, and default max length of each zone lane of cmd queue
+     */
     public final static int QUEUE_MAX_LENGTH = 100;
 
     /**
@@ -54,6 +62,11 @@ public class QueueConfig {
      */
     public final static Range PRIORITY_RANGE = Range.closed(1, 10);
 
+    /**
+     * Backoff for cmd re-enqueue, the num of retry is limited by Cmd.retry as well
+     */
+    public final static RetryPolicy CMD_RETRY_POLICY = new RetryPolicy(1000, 2.0, 30000, 10);
+
     public final static String PROP_CMD_QUEUE_RETRY = "queue.cmd.retry.enable";
 
     private final static Logger LOGGER = new Logger(QueueConfig.class);
@@ -84,6 +97,37 @@ public class QueueConfig {
     @Value("${queue.cmd.rabbit.enable}")
     private Boolean cmdQueueRabbitEnable;
 
+    /**
+     * Num of concurrent consumers of RabbitMQ cmd queue
+     */
+    @Value("${queue.cmd.rabbit.concurrency}")
+    private Integer cmdQueueConcurrency;
+
+    /**
+     * Num of unacked messages per consumer
+     */
+    @Value("${queue.cmd.rabbit.prefetch}")
+    private Integer cmdQueuePrefetch;
+
+    /**
+     * Wait publisher confirms for every N messages, 0 to disable confirms
+     */
+    @Value("${queue.cmd.rabbit.confirm_batch}")
+    private Integer cmdQueueConfirmBatch;
+
+    /**
+     * The x-max-priority argument of cmd queue, should cover PRIORITY_RANGE, the default is 1 as the
+     * existing queue declared, the queue name must be changed with it since queue arguments are immutable
+     */
+    @Value("${queue.cmd.rabbit.max_priority}")
+    private Integer cmdQueueMaxPriority;
+
+    /**
+     * Declare cmd queue as lazy queue which keeps messages on disk, the queue name must be changed with it
+     */
+    @Value("${queue.cmd.rabbit.lazy}")
+    private Boolean cmdQueueLazy;
+
     /**
      * Enable cmd queue retry instead of pause/resume logic
      */
@@ -96,6 +140,9 @@ public class QueueConfig {
     @Autowired
     private ThreadPoolTaskExecutor taskExecutor;
 
+    @Autowired
+    private List<Zone> defaultZones;
+
     @PostConstruct
     public void init() {
         LOGGER.trace("Host: %s", host);
@@ -110,11 +157,29 @@ public class QueueConfig {
     public PlatformQueue<PriorityMessage> cmdQueue() {
         if (cmdQueueRabbitEnable) {
             LOGGER.trace("Apply RabbitMQ for cmd queue");
-            return new RabbitQueue(taskExecutor, host, QUEUE_MAX_LENGTH, DEFAULT_PRIORITY, cmdQueueName);
+            RabbitQueueSettings settings = new RabbitQueueSettings();
+            settings.setConcurrency(cmdQueueConcurrency);
+            settings.setMaxConcurrency(cmdQueueConcurrency);
+            settings.setPrefetch(cmdQueuePrefetch);
+            settings.setConfirmBatchSize(cmdQueueConfirmBatch);
+            settings.setMaxPriority(cmdQueueMaxPriority);
+            settings.setLazy(cmdQueueLazy);
+
+            RabbitQueue queue = new RabbitQueue(taskExecutor, host, QUEUE_MAX_LENGTH, cmdQueueName, settings);
+            queue.setRetryPolicy(CMD_RETRY_POLICY);
+            return queue;
+        }
+
+        LOGGER.trace("Apply in memory queue with zone lanes for cmd queue");
+        MemoryLaneQueue queue = new MemoryLaneQueue(taskExecutor, QUEUE_MAX_LENGTH, "CmdQueue");
+        queue.setRetryPolicy(CMD_RETRY_POLICY);
+
+        for (Zone zone : defaultZones) {
+            queue.setMaxSize(zone.getName(), zone.getMaxQueueSize());
+            LOGGER.trace("Cmd queue lane '%s' with max size %s", zone.getName(), zone.getMaxQueueSize());
         }
 
-        LOGGER.trace("Apply in memory queue for cmd queue");
-        return new MemoryQueue(taskExecutor, QUEUE_MAX_LENGTH, "CmdQueue");
+        return queue;
     }
 
     /**
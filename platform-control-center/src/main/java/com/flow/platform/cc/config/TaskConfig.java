@@ -16,9 +16,14 @@
 
 package com.flow.platform.cc.config;
 
+import com.flow.platform.domain.AgentPath;
 import com.flow.platform.util.Logger;
+import com.flow.platform.util.TimerWheel;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import javax.annotation.PostConstruct;
 
@@ -42,6 +47,9 @@ public class TaskConfig {
     @Value("${task.instance.mos.toggle.clean}")
     private boolean enableMosCleanTask;
 
+    @Autowired
+    private ThreadPoolTaskExecutor taskExecutor;
+
     @PostConstruct
     public void init() {
         LOGGER.trace("Zone.Toggle.KeepIdleAgent: %s", enableKeepIdleAgentTask);
@@ -50,6 +58,22 @@ public class TaskConfig {
         LOGGER.trace("Mos.Toggle.Clean: %s", enableMosCleanTask);
     }
 
+    /**
+     * Timer wheel with cmd id for cmd execution timeout in seconds precision
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public TimerWheel<String> cmdTimeoutWheel() {
+        return new TimerWheel<>("cmd-timeout", taskExecutor, 1000);
+    }
+
+    /**
+     * Timer wheel with path of agent which node been removed, agent is offline when grace period timeout
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public TimerWheel<AgentPath> agentGraceWheel() {
+        return new TimerWheel<>("agent-grace", taskExecutor, 1000);
+    }
+
     public boolean isEnableKeepIdleAgentTask() {
         return enableKeepIdleAgentTask;
     }
@@ -20,15 +20,19 @@ import com.flow.platform.domain.Zone;
 import com.flow.platform.util.Logger;
 import com.flow.platform.util.ObjectUtil;
 import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKCluster;
 import com.flow.platform.util.zk.ZKServer;
 import com.google.common.base.Strings;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.UUID;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import org.apache.zookeeper.ZooKeeper;
@@ -82,6 +86,9 @@ public class ZooKeeperConfig {
     @Value("${zk.node.zone}")
     private String zonesDefinition;
 
+    @Value("${cc.instance.id}")
+    private String instanceId;
+
     @Autowired
     private Environment env;
 
@@ -96,6 +103,7 @@ public class ZooKeeperConfig {
         LOGGER.trace("Root node: %s", rootNodeName);
         LOGGER.trace("Zones: %s", zonesDefinition);
         LOGGER.trace("Embedded enabled: %s", enableEmbeddedServer);
+        LOGGER.trace("Instance id: %s", instanceId);
     }
 
     @Bean
@@ -125,6 +133,19 @@ public class ZooKeeperConfig {
         throw new RuntimeException("Fail to connect zookeeper server: " + host);
     }
 
+    /**
+     * Cluster of control center instances, zones are owned by instances and singleton tasks run on leader
+     */
+    @Bean
+    public ZKCluster zkCluster() {
+        String id = Strings.isNullOrEmpty(instanceId) ? generateInstanceId() : instanceId;
+        ZKCluster zkCluster = new ZKCluster(zkClient(), "/" + rootNodeName + ZKCluster.ROOT_SUFFIX, id);
+        zkCluster.start();
+
+        LOGGER.info("Joined cluster as '%s' with members %s", id, zkCluster.getMembers());
+        return zkCluster;
+    }
+
     @Bean
     public ZKServer zkServer() {
         return zkServer;
@@ -173,6 +194,16 @@ public class ZooKeeperConfig {
         }
     }
 
+    private static String generateInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "cc";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
     private boolean startEmbeddedServer() {
         try {
             zkServer = new ZKServer();
@@ -59,15 +59,16 @@ public class AgentResourceEventHandler implements ApplicationListener<AgentResou
             return;
         }
 
+        // only hold the zone lane, other zones still dispatch cmd
         if (event.getCategory() == Category.FULL) {
-            cmdQueue.pause();
-            LOGGER.trace("Pause cmd queue since no agent resources");
+            cmdQueue.pause(zone);
+            LOGGER.trace("Pause cmd queue of zone '%s' since no agent resources", zone);
             return;
         }
 
         if (event.getCategory() == Category.RELEASED) {
-            cmdQueue.resume();
-            LOGGER.trace("Resume cmd queue since has agent resource released");
+            cmdQueue.resume(zone);
+            LOGGER.trace("Resume cmd queue of zone '%s' since has agent resource released", zone);
         }
     }
 }
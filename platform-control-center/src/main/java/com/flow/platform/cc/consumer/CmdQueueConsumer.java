@@ -18,19 +18,21 @@ package com.flow.platform.cc.consumer;
 
 import com.flow.platform.cc.config.QueueConfig;
 import com.flow.platform.cc.exception.AgentErr;
+import com.flow.platform.cc.service.AdmissionService;
 import com.flow.platform.cc.service.AgentService;
 import com.flow.platform.cc.service.CmdDispatchService;
 import com.flow.platform.cc.service.CmdService;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.core.exception.IllegalStatusException;
 import com.flow.platform.core.queue.PriorityMessage;
-import com.flow.platform.core.util.ThreadUtil;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.queue.QueueListener;
 import com.flow.platform.util.Logger;
 import com.flow.platform.util.zk.ZkException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -46,8 +48,6 @@ public class CmdQueueConsumer implements QueueListener<PriorityMessage> {
 
     private final static Logger LOGGER = new Logger(CmdQueueConsumer.class);
 
-    private final static long RETRY_WAIT_TIME = 1000; // in millis
-
     @Value("${queue.cmd.idle_agent.period}")
     private Integer idleAgentPeriod; // period for check idle agent in seconds
 
@@ -60,6 +60,9 @@ public class CmdQueueConsumer implements QueueListener<PriorityMessage> {
     @Autowired
     private CmdDispatchService cmdDispatchService;
 
+    @Autowired
+    private AdmissionService admissionService;
+
     @Autowired
     private PlatformQueue<PriorityMessage> cmdQueue;
 
@@ -74,6 +77,7 @@ public class CmdQueueConsumer implements QueueListener<PriorityMessage> {
         LOGGER.trace("Receive a cmd queue item: %s", cmdId);
 
         Cmd cmd = cmdService.find(cmdId);
+        recordQueueTime(cmd, message);
 
         try {
             cmdDispatchService.dispatch(cmd);
@@ -83,6 +87,7 @@ public class CmdQueueConsumer implements QueueListener<PriorityMessage> {
             LOGGER.warn("Illegal cmd status: %s", e.getMessage());
         } catch (AgentErr.NotAvailableException | AgentErr.NotFoundException | ZkException.NotExitException e) {
             if (cmd.getRetry() <= 0) {
+                cmdQueue.deadLetter(message);
                 return;
             }
 
@@ -99,8 +104,8 @@ public class CmdQueueConsumer implements QueueListener<PriorityMessage> {
             cmd.setRetry(retry);
             cmdService.save(cmd);
 
-            // re-enqueue
-            resend(cmd.getId(), retry);
+            // re-enqueue with backoff delay
+            resend(cmd, message.getAttempt() + 1);
 
         } catch (Throwable e) {
             LOGGER.error("Unexpected exception", e);
@@ -108,18 +113,32 @@ public class CmdQueueConsumer implements QueueListener<PriorityMessage> {
     }
 
     /**
-     * Re-enqueue cmd and return num of retry
+     * Record queue time of first attempt for admission control
      */
-    private void resend(final String cmdId, final int retry) {
-        if (retry <= 0) {
+    private void recordQueueTime(Cmd cmd, PriorityMessage message) {
+        if (cmd == null || cmd.getCreatedDate() == null || message.getAttempt() > 0) {
             return;
         }
 
-        ThreadUtil.sleep(RETRY_WAIT_TIME);
+        long millis = Duration.between(cmd.getCreatedDate(), ZonedDateTime.now()).toMillis();
+        admissionService.recordQueueTime(Math.max(0, millis));
+    }
 
-        // reset cmd status
-        PriorityMessage message = PriorityMessage.create(cmdId.getBytes(), QueueConfig.MAX_PRIORITY);
-        cmdQueue.enqueue(message);
-        LOGGER.trace("Re-enqueue item %s", cmdId);
+    /**
+     * Re-enqueue cmd with delay, the queue thread is not blocked while waiting
+     */
+    private void resend(final Cmd cmd, final int attempt) {
+        String cmdId = cmd.getId();
+        PriorityMessage message = PriorityMessage.create(cmdId.getBytes(), QueueConfig.MAX_PRIORITY, cmd.getZoneName());
+        message.setAttempt(attempt);
+
+        if (cmd.getRetry() <= 0) {
+            cmdQueue.deadLetter(message);
+            return;
+        }
+
+        if (cmdQueue.retry(message, attempt)) {
+            LOGGER.trace("Re-enqueue item %s for attempt %s", cmdId, attempt);
+        }
     }
-}
\ No newline at end of file
+}
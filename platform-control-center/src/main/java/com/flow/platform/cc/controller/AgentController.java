@@ -20,12 +20,14 @@ import com.flow.platform.domain.AgentPathWithWebhook;
 import com.flow.platform.cc.service.AgentService;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentMetrics;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.AgentSettings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * @author gy@fir.im
@@ -59,6 +61,16 @@ public class AgentController {
         return agentService.find(new AgentPath(zoneName, agentName));
     }
 
+    /**
+     * Latest host metrics of agents in zone
+     *
+     * @return agent name and metrics
+     */
+    @GetMapping(path = "/metrics")
+    public Map<String, AgentMetrics> metrics(@RequestParam(name = "zone") String zoneName) {
+        return agentService.listMetrics(zoneName);
+    }
+
     @PostMapping(path = "/create")
     public Agent create(@RequestBody AgentPathWithWebhook agentInfo) {
         if (agentInfo.isEmpty()) {
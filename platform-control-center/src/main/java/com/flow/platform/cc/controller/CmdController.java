@@ -18,17 +18,24 @@ package com.flow.platform.cc.controller;
 
 import com.flow.platform.cc.config.QueueConfig;
 import com.flow.platform.cc.domain.CmdStatusItem;
+import com.flow.platform.cc.service.AdmissionService;
 import com.flow.platform.cc.service.CmdDispatchService;
 import com.flow.platform.cc.service.CmdService;
 import com.flow.platform.domain.*;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.core.exception.IllegalStatusException;
+import com.flow.platform.core.exception.TooManyRequestsException;
+import com.flow.platform.util.ExceptionUtil;
+import com.google.common.base.Strings;
 import com.google.common.collect.Range;
+import java.util.ArrayList;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -39,7 +46,7 @@ import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletRequest;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
@@ -52,12 +59,20 @@ import java.util.Objects;
 @RequestMapping("/cmd")
 public class CmdController {
 
+    /**
+     * Max num of cmd in single batch request
+     */
+    public final static int MAX_BATCH_SIZE = 1000;
+
     @Autowired
     private CmdService cmdService;
 
     @Autowired
     private CmdDispatchService cmdDispatchService;
 
+    @Autowired
+    private AdmissionService admissionService;
+
     @GetMapping(path = "/types")
     public CmdType[] getCmdTypes() {
         return CmdType.values();
@@ -73,7 +88,10 @@ public class CmdController {
     }
 
     @PostMapping(path = "/queue/send")
-    public Cmd sendCommandToQueue(@RequestBody CmdInfo cmd, @RequestParam int priority, @RequestParam int retry) {
+    public Cmd sendCommandToQueue(@RequestBody CmdInfo cmd,
+                                  @RequestParam int priority,
+                                  @RequestParam int retry,
+                                  HttpServletRequest request) {
         if (!QueueConfig.PRIORITY_RANGE.contains(priority)) {
             throw new IllegalParameterException("Illegal priority value should between (1 - 10)");
         }
@@ -82,9 +100,77 @@ public class CmdController {
             throw new IllegalParameterException("Illegal retry value should between (0 - 100)");
         }
 
+        admissionService.admit(cmd, priority, request.getRemoteAddr());
         return cmdService.enqueue(cmd, priority, retry);
     }
 
+    /**
+     * Send batch of cmd, dispatch directly if priority not set, otherwise send to queue.
+     * The cmd with existing customized id is not created again, since the batch may be retried by client
+     *
+     * @return result of each cmd in the same order
+     */
+    @PostMapping(path = "/batch")
+    public List<CmdBatchResult> sendCommands(@RequestBody List<CmdInfo> cmds,
+                                             @RequestParam(required = false) Integer priority,
+                                             @RequestParam(required = false, defaultValue = "0") int retry,
+                                             HttpServletRequest request) {
+        if (cmds.size() > MAX_BATCH_SIZE) {
+            throw new IllegalParameterException("Illegal batch size should not over " + MAX_BATCH_SIZE);
+        }
+
+        if (priority != null && !QueueConfig.PRIORITY_RANGE.contains(priority)) {
+            throw new IllegalParameterException("Illegal priority value should between (1 - 10)");
+        }
+
+        if (!Range.closed(0, 100).contains(retry)) {
+            throw new IllegalParameterException("Illegal retry value should between (0 - 100)");
+        }
+
+        List<CmdBatchResult> results = new ArrayList<>(cmds.size());
+        for (CmdInfo cmdInfo : cmds) {
+            try {
+                Cmd cmd = Strings.isNullOrEmpty(cmdInfo.getCustomizedId())
+                    ? null : cmdService.find(cmdInfo.getCustomizedId());
+
+                if (cmd != null) {
+                    results.add(resend(cmd, priority));
+                    continue;
+                }
+
+                if (priority == null) {
+                    cmd = cmdDispatchService.dispatch(cmdService.create(cmdInfo));
+                } else {
+                    admissionService.admit(cmdInfo, priority, request.getRemoteAddr());
+                    cmd = cmdService.enqueue(cmdInfo, priority, retry);
+                }
+
+                results.add(new CmdBatchResult(cmd, null));
+            } catch (TooManyRequestsException e) {
+                results.add(new CmdBatchResult(e.getMessage(), e.getRetryAfter()));
+            } catch (Throwable e) {
+                results.add(new CmdBatchResult(null, ExceptionUtil.findRootCause(e).getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Result of cmd created by previous try of batch, the cmd failed to dispatch is reported as failure
+     * again, and the cmd not dispatched yet is dispatched again if batch sent directly
+     */
+    private CmdBatchResult resend(Cmd cmd, Integer priority) {
+        if (cmd.getStatus() == CmdStatus.REJECTED || cmd.getStatus() == CmdStatus.EXCEPTION) {
+            return new CmdBatchResult(cmd, String.format("Cmd %s was %s", cmd.getId(), cmd.getStatus()));
+        }
+
+        if (priority == null && cmd.getStatus() == CmdStatus.PENDING) {
+            return new CmdBatchResult(cmdDispatchService.dispatch(cmd), null);
+        }
+
+        return new CmdBatchResult(cmd, null);
+    }
+
     /**
      * Set cmd status to STOPPED
      */
@@ -114,6 +200,35 @@ public class CmdController {
         cmdService.updateStatus(statusItem, true);
     }
 
+    /**
+     * For agent report batch of cmd status with sequence number, the reports are applied in order,
+     * the duplicated report from agent resend is ignored since cmd status only move forward
+     *
+     * @return max sequence number of accepted reports, agent drops reports up to it
+     */
+    @PostMapping(path = "/report/batch")
+    public Long reportBatch(@RequestBody List<CmdReport> reports) {
+        if (reports.size() > MAX_BATCH_SIZE) {
+            throw new IllegalParameterException("Illegal batch size should not over " + MAX_BATCH_SIZE);
+        }
+
+        long ack = 0L;
+        for (CmdReport report : reports) {
+            if (report.getSeq() != null) {
+                ack = Math.max(ack, report.getSeq());
+            }
+
+            // skip illegal report rather than fail the batch, otherwise it will be resent forever
+            if (report.getId() == null || report.getStatus() == null || report.getResult() == null) {
+                continue;
+            }
+
+            cmdService.updateStatus(new CmdStatusItem(report, true, true), true);
+        }
+
+        return ack;
+    }
+
     /**
      * List commands by agent path
      */
@@ -123,41 +238,80 @@ public class CmdController {
     }
 
     /**
-     * Upload zipped cmd log with multipart
+     * Upload full cmd log with multipart
      *
      * @param cmdId cmd id with text/plain
-     * @param file zipped cmd log with application/zip
+     * @param codec log codec name with text/plain, zip if not provided
+     * @param file cmd log with content type of codec
      */
     @PostMapping(path = "/log/upload")
-    public void uploadFullLog(@RequestPart String cmdId, @RequestPart MultipartFile file) {
-        if (!Objects.equals(file.getContentType(), "application/zip")) {
-            throw new IllegalParameterException("Illegal zipped log file format");
+    public void uploadFullLog(@RequestPart String cmdId,
+                              @RequestPart(required = false) String codec,
+                              @RequestPart MultipartFile file) {
+        LogCodec logCodec = toLogCodec(codec, file);
+        cmdService.saveLog(cmdId, logCodec, file);
+    }
+
+    /**
+     * Upload chunk of cmd log with multipart while cmd running, the chunk is appended to log
+     *
+     * @param cmdId cmd id with text/plain
+     * @param codec log codec name with text/plain, must support chunk
+     * @param index chunk index with text/plain, start from 0
+     * @param file encoded log chunk with content type of codec
+     */
+    @PostMapping(path = "/log/chunk")
+    public void uploadLogChunk(@RequestPart String cmdId,
+                               @RequestPart String codec,
+                               @RequestPart String index,
+                               @RequestPart MultipartFile file) {
+        LogCodec logCodec = toLogCodec(codec, file);
+
+        try {
+            cmdService.appendLog(cmdId, logCodec, Integer.parseInt(index), file);
+        } catch (NumberFormatException e) {
+            throw new IllegalParameterException("Illegal log chunk index: " + index);
         }
-        cmdService.saveLog(cmdId, file);
     }
 
     /**
-     * Get zipped log file by cmd id
+     * Get cmd log file by cmd id, the codec of log is in 'X-Log-Codec' header
      */
-    @GetMapping(path = "/log/download", produces = "application/zip")
-    public Resource downloadFullLog(@RequestParam String cmdId,
-                                    @RequestParam Integer index,
-                                    HttpServletResponse httpResponse) {
+    @GetMapping(path = "/log/download")
+    public ResponseEntity<Resource> downloadFullLog(@RequestParam String cmdId,
+                                                    @RequestParam Integer index) {
 
         Cmd cmd = cmdService.find(cmdId);
         if (cmd == null) {
             throw new IllegalParameterException("Cmd not found");
         }
 
+        if (cmd.getLogPath() == null) {
+            throw new IllegalStatusException("Log not found");
+        }
+
+        Path filePath = Paths.get(cmd.getLogPath());
+        LogCodec codec = cmd.getLogCodec() == null ? LogCodec.ZIP : cmd.getLogCodec();
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(codec.getContentType()))
+            .header("Content-Disposition", String.format("attachment; filename=%s", filePath.getFileName()))
+            .header(LogCodec.HTTP_HEADER, codec.getName())
+            .body(new FileSystemResource(filePath.toFile()));
+    }
+
+    private LogCodec toLogCodec(String codec, MultipartFile file) {
+        LogCodec logCodec;
         try {
-            Path filePath = Paths.get(cmd.getLogPath());
+            logCodec = LogCodec.of(codec);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalParameterException(e.getMessage());
+        }
 
-            FileSystemResource resource = new FileSystemResource(filePath.toFile());
-            httpResponse.setHeader("Content-Disposition",
-                String.format("attachment; filename=%s", filePath.getFileName().toString()));
-            return resource;
-        } catch (ArrayIndexOutOfBoundsException e) {
-            throw new IllegalStatusException("Log not found");
+        if (!Objects.equals(file.getContentType(), logCodec.getContentType())) {
+            throw new IllegalParameterException("Illegal log file format for codec " + logCodec.getName());
         }
+
+        return logCodec;
     }
 }
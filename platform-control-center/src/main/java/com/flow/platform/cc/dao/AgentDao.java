@@ -39,6 +39,13 @@ public interface AgentDao extends BaseDao<AgentPath, Agent> {
      */
     List<Agent> list(String zone, String orderByField, AgentStatus... status);
 
+    /**
+     * Lock agent row until the transaction finished and reload the latest committed agent
+     *
+     * @return Agent instance or null if not found
+     */
+    Agent lock(AgentPath agentPath);
+
     /**
      * Find agent by session id
      *
@@ -26,6 +26,7 @@ import com.google.common.collect.Sets;
 import java.util.Collection;
 import java.util.HashSet;
 import javax.persistence.criteria.CriteriaUpdate;
+import org.hibernate.LockMode;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
@@ -65,6 +66,19 @@ public class AgentDaoImpl extends AbstractBaseDao<AgentPath, Agent> implements A
             .uniqueResult());
     }
 
+    @Override
+    public Agent lock(final AgentPath agentPath) {
+        return execute(session -> {
+            Agent agent = get(agentPath);
+
+            // locking read gets the latest committed row even if it's been read in current transaction
+            if (agent != null) {
+                session.refresh(agent, LockMode.PESSIMISTIC_WRITE);
+            }
+            return agent;
+        });
+    }
+
     @Override
     public Agent get(final String sessionId) {
         return execute(session -> session.createQuery("from Agent where sessionId = :sessionId", Agent.class)
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.dao;
+
+import com.flow.platform.core.dao.BaseDao;
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.AgentSession;
+import java.util.List;
+
+/**
+ * @author yang
+ */
+public interface AgentSessionDao extends BaseDao<String, AgentSession> {
+
+    /**
+     * List sessions of agent order by created date
+     */
+    List<AgentSession> list(AgentPath agentPath);
+
+    /**
+     * Delete all sessions of agent
+     *
+     * @return num of sessions deleted
+     */
+    int delete(AgentPath agentPath);
+}
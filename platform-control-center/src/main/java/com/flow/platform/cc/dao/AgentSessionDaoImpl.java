@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.dao;
+
+import com.flow.platform.core.dao.AbstractBaseDao;
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.AgentSession;
+import java.util.List;
+import org.springframework.stereotype.Repository;
+
+/**
+ * @author yang
+ */
+@Repository(value = "agentSessionDao")
+public class AgentSessionDaoImpl extends AbstractBaseDao<String, AgentSession> implements AgentSessionDao {
+
+    @Override
+    protected Class<AgentSession> getEntityClass() {
+        return AgentSession.class;
+    }
+
+    @Override
+    protected String getKeyName() {
+        return "sessionId";
+    }
+
+    @Override
+    public List<AgentSession> list(AgentPath agentPath) {
+        return execute(session -> session
+            .createQuery("from AgentSession where agentPath.zone = :zone and agentPath.name = :name "
+                + "order by createdDate", AgentSession.class)
+            .setParameter("zone", agentPath.getZone())
+            .setParameter("name", agentPath.getName())
+            .list());
+    }
+
+    @Override
+    public int delete(AgentPath agentPath) {
+        return execute(session -> session
+            .createQuery("delete from AgentSession where agentPath.zone = :zone and agentPath.name = :name")
+            .setParameter("zone", agentPath.getZone())
+            .setParameter("name", agentPath.getName())
+            .executeUpdate());
+    }
+}
@@ -22,6 +22,7 @@ import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Set;
 
@@ -43,4 +44,9 @@ public interface CmdDao extends BaseDao<String, Cmd> {
      * @param status nullable, select in status
      */
     List<Cmd> list(AgentPath agentPath, Set<CmdType> types, Set<CmdStatus> status);
+
+    /**
+     * Count cmd of type in zone by created date within [from, to)
+     */
+    int count(String zone, CmdType type, ZonedDateTime from, ZonedDateTime to);
 }
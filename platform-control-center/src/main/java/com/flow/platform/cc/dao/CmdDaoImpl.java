@@ -25,6 +25,7 @@ import com.flow.platform.util.DateUtil;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.criteria.*;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Set;
 
@@ -91,6 +92,24 @@ public class CmdDaoImpl extends AbstractBaseDao<String, Cmd> implements CmdDao {
         });
     }
 
+    @Override
+    public int count(String zone, CmdType type, ZonedDateTime from, ZonedDateTime to) {
+        return execute(session -> {
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaQuery<Long> select = builder.createQuery(Long.class);
+
+            Root<Cmd> root = select.from(getEntityClass());
+            select.select(builder.count(root));
+            select.where(
+                builder.equal(root.get("agentPath").get("zone"), zone),
+                builder.equal(root.get("type"), type),
+                builder.greaterThanOrEqualTo(root.<ZonedDateTime>get("createdDate"), from),
+                builder.lessThan(root.<ZonedDateTime>get("createdDate"), to));
+
+            return session.createQuery(select).getSingleResult().intValue();
+        });
+    }
+
     private Predicate buildAgentPathPredicate(
         CriteriaBuilder builder, Path<?> path, AgentPath agentPath) {
         Predicate predicate = null;
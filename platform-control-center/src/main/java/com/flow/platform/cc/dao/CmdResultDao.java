@@ -18,7 +18,8 @@ package com.flow.platform.cc.dao;
 
 import com.flow.platform.core.dao.BaseDao;
 import com.flow.platform.domain.CmdResult;
-
+import com.flow.platform.domain.CmdType;
+import java.time.ZonedDateTime;
 import java.util.Collection;
 import java.util.List;
 
@@ -36,4 +37,9 @@ public interface CmdResultDao extends BaseDao<String, CmdResult> {
      * Only update not null fields or empty collection
      */
     int updateNotNullOrEmpty(CmdResult obj);
+
+    /**
+     * Average total duration in seconds of cmd finished in zone within [from, to), null if no result
+     */
+    Double avgDuration(String zone, CmdType type, ZonedDateTime from, ZonedDateTime to);
 }
@@ -18,9 +18,11 @@ package com.flow.platform.cc.dao;
 
 import com.flow.platform.core.dao.AbstractBaseDao;
 import com.flow.platform.domain.CmdResult;
+import com.flow.platform.domain.CmdType;
 import com.flow.platform.util.ObjectUtil;
 import com.google.common.collect.Sets;
 import java.lang.reflect.Field;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -100,4 +102,17 @@ public class CmdResultDaoImpl extends AbstractBaseDao<String, CmdResult> impleme
             return session.createQuery(update).executeUpdate();
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    public Double avgDuration(String zone, CmdType type, ZonedDateTime from, ZonedDateTime to) {
+        return execute(session -> session
+            .createQuery("select avg(r.totalDuration) from CmdResult r, Cmd c where r.cmdId = c.id"
+                + " and c.agentPath.zone = :zone and c.type = :type"
+                + " and r.finishTime >= :from and r.finishTime < :to and r.totalDuration is not null", Double.class)
+            .setParameter("zone", zone)
+            .setParameter("type", type)
+            .setParameter("from", from)
+            .setParameter("to", to)
+            .uniqueResult());
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.service;
+
+import com.flow.platform.core.exception.TooManyRequestsException;
+import com.flow.platform.domain.CmdInfo;
+
+/**
+ * Admission control for cmd queue intake
+ *
+ * @author yang
+ */
+public interface AdmissionService {
+
+    /**
+     * Admit cmd to queue by token bucket of flow, zone and caller, and shed low priority
+     * cmd when queue time over the SLO
+     *
+     * @param caller identifier of the caller, ex: remote address
+     * @throws TooManyRequestsException if cmd not admitted
+     */
+    void admit(CmdInfo cmdInfo, int priority, String caller);
+
+    /**
+     * Record the time cmd waited in the queue
+     */
+    void recordQueueTime(long millis);
+
+    /**
+     * Average queue time in millis
+     */
+    long getQueueTime();
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.service;
+
+import com.flow.platform.core.exception.TooManyRequestsException;
+import com.flow.platform.domain.CmdInfo;
+import com.flow.platform.util.Logger;
+import com.flow.platform.util.TokenBucket;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Token bucket for each flow of zone, the buckets are evicted if not used for a while
+ *
+ * @author yang
+ */
+@Service
+public class AdmissionServiceImpl implements AdmissionService {
+
+    private final static Logger LOGGER = new Logger(AdmissionService.class);
+
+    /**
+     * Weight of the latest queue time in moving average
+     */
+    private final static double QUEUE_TIME_WEIGHT = 0.2;
+
+    private final static long BUCKET_EXPIRE = 10; // in minutes
+
+    /**
+     * Env of flow name in cmd inputs
+     */
+    private final static String FLOW_NAME = "FLOW_NAME";
+
+    /**
+     * Priority classes mapped from PriorityMessage priority, lower class is shed earlier
+     */
+    public enum PriorityClass {
+
+        LOW(1),
+
+        NORMAL(2),
+
+        HIGH(Integer.MAX_VALUE);
+
+        /**
+         * Shed the class if queue time over SLO times the factor
+         */
+        private final int sloFactor;
+
+        PriorityClass(int sloFactor) {
+            this.sloFactor = sloFactor;
+        }
+
+        public static PriorityClass of(int priority) {
+            if (priority <= 3) {
+                return LOW;
+            }
+
+            if (priority <= 7) {
+                return NORMAL;
+            }
+
+            return HIGH;
+        }
+    }
+
+    @Value("${queue.cmd.admission.enable}")
+    private Boolean enable;
+
+    @Value("${queue.cmd.admission.rate}")
+    private Double rate; // num of cmd per second
+
+    @Value("${queue.cmd.admission.burst}")
+    private Integer burst;
+
+    @Value("${queue.cmd.admission.slo}")
+    private Long slo; // queue time SLO in seconds
+
+    @Value("${queue.cmd.admission.decay}")
+    private Long decay; // half life of queue time without samples in seconds
+
+    private final Cache<String, TokenBucket> buckets = CacheBuilder.newBuilder()
+        .expireAfterAccess(BUCKET_EXPIRE, TimeUnit.MINUTES)
+        .build();
+
+    private volatile double queueTime = 0;
+
+    /**
+     * Time of the latest queue time sample
+     */
+    private volatile long queueTimeUpdatedAt = System.currentTimeMillis();
+
+    @Override
+    public void admit(CmdInfo cmdInfo, int priority, String caller) {
+        if (!enable) {
+            return;
+        }
+
+        final PriorityClass priorityClass = PriorityClass.of(priority);
+        final long sloMillis = slo * 1000;
+        final double queueTime = decayedQueueTime(System.currentTimeMillis());
+
+        if (priorityClass != PriorityClass.HIGH && queueTime > sloMillis * priorityClass.sloFactor) {
+            LOGGER.warn("Shed %s priority cmd since queue time %s ms over SLO", priorityClass, (long) queueTime);
+            throw new TooManyRequestsException("Cmd queue is overloaded", slo);
+        }
+
+        final String key = key(cmdInfo, caller);
+        final TokenBucket bucket;
+
+        try {
+            bucket = buckets.get(key, () -> new TokenBucket(rate, burst));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        if (!bucket.tryAcquire(1)) {
+            long retryAfter = TimeUnit.MILLISECONDS.toSeconds(bucket.waitMillis(1)) + 1;
+            LOGGER.warn("Cmd rate limit reached for '%s'", key);
+            throw new TooManyRequestsException("Cmd rate limit reached for " + key, retryAfter);
+        }
+    }
+
+    @Override
+    public void recordQueueTime(long millis) {
+        // racy update is acceptable for moving average
+        long now = System.currentTimeMillis();
+        queueTime = decayedQueueTime(now) * (1 - QUEUE_TIME_WEIGHT) + millis * QUEUE_TIME_WEIGHT;
+        queueTimeUpdatedAt = now;
+    }
+
+    @Override
+    public long getQueueTime() {
+        return (long) decayedQueueTime(System.currentTimeMillis());
+    }
+
+    /**
+     * Queue time samples only come from dispatched cmd, so the average is halved every decay period
+     * without samples, otherwise shedding never stops once the queue drained
+     */
+    private double decayedQueueTime(long now) {
+        long elapsed = now - queueTimeUpdatedAt;
+        if (elapsed <= 0) {
+            return queueTime;
+        }
+
+        return queueTime * Math.pow(0.5, (double) elapsed / (decay * 1000));
+    }
+
+    /**
+     * Bucket key from zone and flow of cmd, the remote address is only used for cmd without flow since
+     * all cmd of jobs are sent from api instances:
+     *
+     * - flow name env which every cmd of job carries in inputs
+     * - the first segment of node path in cmd extra
+     * - agent name for cmd sent to specific agent
+     */
+    private static String key(CmdInfo cmdInfo, String caller) {
+        String flow = cmdInfo.getInputs() == null ? null : cmdInfo.getInputs().get(FLOW_NAME);
+
+        if (Strings.isNullOrEmpty(flow) && !Strings.isNullOrEmpty(cmdInfo.getExtra())) {
+            flow = cmdInfo.getExtra();
+            int index = flow.indexOf('/');
+            if (index > 0) {
+                flow = flow.substring(0, index);
+            }
+        }
+
+        if (Strings.isNullOrEmpty(flow) && !Strings.isNullOrEmpty(cmdInfo.getAgentName())) {
+            flow = "@" + cmdInfo.getAgentName();
+        }
+
+        if (Strings.isNullOrEmpty(flow)) {
+            flow = "@" + Strings.nullToEmpty(caller);
+        }
+
+        return cmdInfo.getZoneName() + "/" + flow;
+    }
+}
@@ -18,11 +18,15 @@ package com.flow.platform.cc.service;
 
 import com.flow.platform.core.service.WebhookService;
 import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentMetrics;
 import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.AgentSession;
 import com.flow.platform.domain.AgentSettings;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.AgentStatus;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -39,6 +43,44 @@ public interface AgentService extends WebhookService {
      */
     void report(AgentPath path, AgentStatus status);
 
+    /**
+     * Update agent slot capacity and run id of agent process from slots advertised by agent
+     */
+    void reportSlots(AgentPath path, AgentSlots slots);
+
+    /**
+     * Resume agent registered again within grace period, the running cmds not in-flight on agent are failed.
+     * The finished cmds which reports not acked yet are in-flight on agent, their reports are applied later.
+     * Sessions and in-flight cmds are kept if agent process not restarted which is checked by run id on agent
+     * record, otherwise agent is set to offline to release its sessions
+     */
+    void resume(AgentPath path, AgentSlots slots);
+
+    /**
+     * Keep host metrics from agent node data in memory, null to remove, it's applied on every
+     * instance in cluster since cmd is dispatched by any of them
+     */
+    void reportNodeData(AgentPath path, AgentSlots slots);
+
+    /**
+     * Keep latest host metrics advertised by agent in memory, null to remove
+     */
+    void reportMetrics(AgentPath path, AgentMetrics metrics);
+
+    /**
+     * Get latest host metrics of agent
+     *
+     * @return metrics or null if agent not report metrics
+     */
+    AgentMetrics findMetrics(AgentPath path);
+
+    /**
+     * List latest host metrics of agents in zone
+     *
+     * @return agent name and metrics
+     */
+    Map<String, AgentMetrics> listMetrics(String zone);
+
     /**
      * List agent by zone name
      */
@@ -57,28 +99,69 @@ public interface AgentService extends WebhookService {
      */
     Agent find(AgentPath key);
 
+    /**
+     * Lock agent until current transaction finished and reload it, the agent selected for cmd must be
+     * locked before check its slots since cmd is dispatched by any instance in cluster
+     *
+     * @return Agent object, or null if not found
+     */
+    Agent lock(AgentPath key);
+
     /**
      * FInd agent by session id
      */
     Agent find(String sessionId);
 
     /**
-     * Find available agent by zone name
+     * List sessions of agent
+     */
+    List<AgentSession> listSessions(AgentPath path);
+
+    /**
+     * Create session on agent which occupies one slot, and save agent slots
+     */
+    AgentSession createSession(Agent agent, String sessionId);
+
+    /**
+     * Delete session from agent, and save agent slots
+     */
+    void deleteSession(Agent agent, String sessionId);
+
+    /**
+     * Find agent has free slot by zone name
      *
      * @return Sorted agent list by updated date
      */
     List<Agent> findAvailable(String zone);
 
+    /**
+     * Find available agent to dispatch cmd, agent in grace period or over host thresholds of zone is skipped
+     *
+     * @return Sorted agent list by host load, agent without metrics first
+     */
+    List<Agent> selectAvailable(String zone);
+
     /**
      * Save agent status and other properties, and send agent webhook
      */
     void saveWithStatus(Agent agent, AgentStatus status);
 
+    /**
+     * Recount used slots from sessions and running cmds without session, then save agent
+     * with IDLE status if it still has free slot, otherwise BUSY
+     */
+    void saveWithSlots(Agent agent);
+
     /**
      * Is agent session timeout
      */
     boolean isSessionTimeout(Agent agent, ZonedDateTime compareDate, long timeoutInSeconds);
 
+    /**
+     * Is session timeout
+     */
+    boolean isSessionTimeout(AgentSession session, ZonedDateTime compareDate, long timeoutInSeconds);
+
     /**
      * Create agent and return token
      */
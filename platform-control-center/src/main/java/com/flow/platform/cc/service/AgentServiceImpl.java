@@ -17,7 +17,9 @@
 package com.flow.platform.cc.service;
 
 import com.flow.platform.cc.config.TaskConfig;
+import com.flow.platform.cc.domain.CmdStatusItem;
 import com.flow.platform.cc.dao.AgentDao;
+import com.flow.platform.cc.dao.AgentSessionDao;
 import com.flow.platform.cc.event.AgentResourceEvent;
 import com.flow.platform.cc.event.AgentResourceEvent.Category;
 import com.flow.platform.cc.exception.AgentErr;
@@ -25,25 +27,38 @@ import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.core.exception.IllegalStatusException;
 import com.flow.platform.core.service.WebhookServiceImplBase;
 import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentMetrics;
 import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.AgentSession;
 import com.flow.platform.domain.AgentSettings;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.AgentStatus;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
+import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Zone;
 import com.flow.platform.util.DateUtil;
 import com.flow.platform.util.ExceptionUtil;
 import com.flow.platform.util.Logger;
+import com.flow.platform.util.TimerWheel;
 import com.google.common.base.Strings;
 import com.google.gson.annotations.Expose;
 import java.sql.SQLDataException;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -74,18 +89,30 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
     @Autowired
     private AgentDao agentDao;
 
+    @Autowired
+    private AgentSessionDao agentSessionDao;
+
     @Autowired
     private TaskConfig taskConfig;
 
     @Autowired
     private AgentSettings agentSettings;
 
+    @Autowired
+    private TimerWheel<AgentPath> agentGraceWheel;
+
+    /**
+     * Latest host metrics from agent node data, not persisted since it changes every few seconds
+     */
+    private final Map<AgentPath, AgentMetrics> metrics = new ConcurrentHashMap<>();
+
     @Override
     public void report(AgentPath path, AgentStatus status) {
         Agent exist = find(path);
 
         // For agent offline status
         if (status == AgentStatus.OFFLINE) {
+            metrics.remove(path);
             saveWithStatus(exist, AgentStatus.OFFLINE);
             return;
         }
@@ -101,9 +128,11 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
             }
         }
 
-        // update exist offline agent to idle status
+        // update exist offline agent to idle status, sessions before offline are released
         if (exist.getStatus() == AgentStatus.OFFLINE) {
+            agentSessionDao.delete(exist.getPath());
             exist.setSessionId(null);
+            exist.setUsedSlots(0);
             saveWithStatus(exist, AgentStatus.IDLE);
         }
 
@@ -113,16 +142,153 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
         }
     }
 
+    @Override
+    public void reportSlots(AgentPath path, AgentSlots slots) {
+        if (slots == null || slots.getTotal() < 1) {
+            return;
+        }
+
+        Agent exist = find(path);
+        if (exist == null) {
+            return;
+        }
+
+        // run id is kept on agent record to check agent process restarted after cc restarted
+        boolean runIdChanged = slots.getRunId() != null && !Objects.equals(exist.getRunId(), slots.getRunId());
+        boolean totalChanged = !Objects.equals(exist.getConcurrentProc(), slots.getTotal());
+        if (!runIdChanged && !totalChanged) {
+            return;
+        }
+
+        if (runIdChanged) {
+            exist.setRunId(slots.getRunId());
+        }
+
+        exist.setConcurrentProc(slots.getTotal());
+        LOGGER.trace("Agent %s slots been updated to %s with run id %s", path, slots.getTotal(), exist.getRunId());
+        saveWithSlots(exist);
+    }
+
+    @Override
+    public void resume(AgentPath path, AgentSlots slots) {
+        Agent exist = find(path);
+        String runId = slots == null ? null : slots.getRunId();
+        boolean restarted = runId == null || exist == null || !Objects.equals(runId, exist.getRunId());
+
+        // the cmds not in-flight on agent are lost, sent cmds might be still in mailbox if agent not restarted
+        Set<String> inFlight = slots == null ? Collections.emptySet() : new HashSet<>(slots.getCmds());
+        for (Cmd cmd : cmdService.listWorkingCmd(path)) {
+            if (inFlight.contains(cmd.getId())) {
+                continue;
+            }
+
+            if (!restarted && cmd.getStatus() != CmdStatus.RUNNING) {
+                continue;
+            }
+
+            CmdStatusItem statusItem = new CmdStatusItem(cmd.getId(), CmdStatus.EXCEPTION, null, false, true);
+            cmdService.updateStatus(statusItem, false);
+        }
+
+        if (!restarted) {
+            LOGGER.trace("Agent %s resumed with in-flight cmds %s", path, slots.getCmds());
+            return;
+        }
+
+        LOGGER.trace("Agent %s restarted within grace period", path);
+        report(path, AgentStatus.OFFLINE);
+    }
+
+    @Override
+    public void reportNodeData(AgentPath path, AgentSlots slots) {
+        if (slots == null) {
+            metrics.remove(path);
+            return;
+        }
+        reportMetrics(path, slots.getMetrics());
+    }
+
+    @Override
+    public void reportMetrics(AgentPath path, AgentMetrics agentMetrics) {
+        if (agentMetrics == null) {
+            metrics.remove(path);
+            return;
+        }
+        metrics.put(path, agentMetrics);
+    }
+
+    @Override
+    public AgentMetrics findMetrics(AgentPath path) {
+        return metrics.get(path);
+    }
+
+    @Override
+    public Map<String, AgentMetrics> listMetrics(String zone) {
+        Map<String, AgentMetrics> zoneMetrics = new HashMap<>();
+        for (Map.Entry<AgentPath, AgentMetrics> entry : metrics.entrySet()) {
+            if (Objects.equals(entry.getKey().getZone(), zone)) {
+                zoneMetrics.put(entry.getKey().getName(), entry.getValue());
+            }
+        }
+        return zoneMetrics;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Agent find(AgentPath key) {
         return agentDao.get(key);
     }
 
+    @Override
+    public Agent lock(AgentPath key) {
+        return agentDao.lock(key);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Agent find(String sessionId) {
-        return agentDao.get(sessionId);
+        AgentSession session = agentSessionDao.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        return agentDao.get(session.getAgentPath());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AgentSession> listSessions(AgentPath path) {
+        return agentSessionDao.list(path);
+    }
+
+    @Override
+    public AgentSession createSession(Agent agent, String sessionId) {
+        AgentSession session = new AgentSession(sessionId, agent.getPath(), ZonedDateTime.now());
+        agentSessionDao.save(session);
+
+        // agent session id refer to the latest session
+        agent.setSessionId(sessionId);
+        agent.setSessionDate(session.getCreatedDate());
+        saveWithSlots(agent);
+        return session;
+    }
+
+    @Override
+    public void deleteSession(Agent agent, String sessionId) {
+        AgentSession session = agentSessionDao.get(sessionId);
+        if (session != null) {
+            agentSessionDao.delete(session);
+        }
+
+        List<AgentSession> remaining = agentSessionDao.list(agent.getPath());
+        if (remaining.isEmpty()) {
+            agent.setSessionId(null);
+        } else {
+            AgentSession latest = remaining.get(remaining.size() - 1);
+            agent.setSessionId(latest.getSessionId());
+            agent.setSessionDate(latest.getCreatedDate());
+        }
+
+        saveWithSlots(agent);
     }
 
     @Override
@@ -131,6 +297,23 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
         return agentDao.list(zone, "updatedDate", AgentStatus.IDLE);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Agent> selectAvailable(String zone) {
+        List<Agent> available = findAvailable(zone);
+        Zone target = zoneService.getZone(zone);
+        if (target == null || (metrics.isEmpty() && agentGraceWheel.size() == 0)) {
+            return available;
+        }
+
+        // stable sort keeps agents with same load in order of updated date
+        return available.stream()
+            .filter(agent -> !agentGraceWheel.contains(agent.getPath()))
+            .filter(agent -> !target.isOverloaded(metrics.get(agent.getPath())))
+            .sorted(Comparator.comparingInt(agent -> load(metrics.get(agent.getPath()))))
+            .collect(Collectors.toList());
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<Agent> listForOnline(String zone) {
@@ -173,6 +356,41 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
         }
     }
 
+    @Override
+    public void saveWithSlots(Agent agent) {
+        if (agent == null) {
+            return;
+        }
+
+        int used = agentSessionDao.list(agent.getPath()).size();
+        for (Cmd cmd : cmdService.listWorkingCmd(agent.getPath())) {
+            if (!cmd.hasSession()) {
+                used++;
+            }
+        }
+        agent.setUsedSlots(used);
+
+        // keep offline status, the slots will be released when agent back to online
+        if (agent.getStatus() == AgentStatus.OFFLINE) {
+            saveWithStatus(agent, AgentStatus.OFFLINE);
+            return;
+        }
+
+        saveWithStatus(agent, agent.getFreeSlots() > 0 ? AgentStatus.IDLE : AgentStatus.BUSY);
+    }
+
+    /**
+     * Host load in percent as max of cpu, load and memory usage, 0 if agent not report metrics
+     */
+    private static int load(AgentMetrics agentMetrics) {
+        if (agentMetrics == null) {
+            return 0;
+        }
+
+        int load = Math.max(agentMetrics.getCpu(), agentMetrics.getLoadUsage());
+        return Math.max(Math.max(load, agentMetrics.getMemUsage()), 0);
+    }
+
     @Override
     public boolean isSessionTimeout(Agent agent, ZonedDateTime compareDate, long timeoutInSeconds) {
         if (agent.getSessionId() == null) {
@@ -183,6 +401,12 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
         return sessionAlive >= timeoutInSeconds;
     }
 
+    @Override
+    public boolean isSessionTimeout(AgentSession session, ZonedDateTime compareDate, long timeoutInSeconds) {
+        long sessionAlive = ChronoUnit.SECONDS.between(session.getCreatedDate(), compareDate);
+        return sessionAlive >= timeoutInSeconds;
+    }
+
     @Override
     public Agent create(AgentPath agentPath, String webhook) {
         Agent agent = agentDao.get(agentPath);
@@ -251,13 +475,18 @@ public class AgentServiceImpl extends WebhookServiceImplBase implements AgentSer
         LOGGER.traceMarker("sessionTimeoutTask", "start");
         ZonedDateTime now = DateUtil.utcNow();
 
-        for (Zone zone : zoneService.getZones()) {
+        for (Zone zone : zoneService.getOwnedZones()) {
             Collection<Agent> agents = listForOnline(zone.getName());
             for (Agent agent : agents) {
-                if (agent.getSessionId() != null && isSessionTimeout(agent, now, zone.getAgentSessionTimeout())) {
-                    Cmd delSessionCmd = cmdService.create(new CmdInfo(agent.getPath(), CmdType.DELETE_SESSION, null));
-                    cmdDispatchService.dispatch(delSessionCmd);
-                    LOGGER.traceMarker("sessionTimeoutTask", "Send DELETE_SESSION to agent %s", agent);
+                for (AgentSession session : listSessions(agent.getPath())) {
+                    if (!isSessionTimeout(session, now, zone.getAgentSessionTimeout())) {
+                        continue;
+                    }
+
+                    CmdInfo cmdInfo = new CmdInfo(agent.getPath(), CmdType.DELETE_SESSION, null);
+                    cmdInfo.setSessionId(session.getSessionId());
+                    cmdDispatchService.dispatch(cmdService.create(cmdInfo));
+                    LOGGER.traceMarker("sessionTimeoutTask", "Send DELETE_SESSION to agent %s", session);
                 }
             }
         }
@@ -31,7 +31,7 @@ public interface CmdDispatchService {
     Cmd dispatch(Cmd cmd);
 
     /**
-     * Task to check cmd is executing timeout
+     * Task to check cmd is executing timeout, as safety net of the cmd timeout wheel
      */
     void checkTimeoutTask();
 
@@ -23,11 +23,13 @@ import com.flow.platform.cc.event.AgentResourceEvent.Category;
 import com.flow.platform.cc.exception.AgentErr;
 import com.flow.platform.cc.exception.AgentErr.NotAvailableException;
 import com.flow.platform.cc.util.ZKHelper;
+import com.flow.platform.core.context.ContextEvent;
 import com.flow.platform.core.exception.FlowException;
 import com.flow.platform.core.exception.IllegalParameterException;
 import com.flow.platform.core.service.ApplicationEventService;
 import com.flow.platform.domain.Agent;
 import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.AgentSession;
 import com.flow.platform.domain.AgentStatus;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
@@ -35,10 +37,14 @@ import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.util.Logger;
+import com.flow.platform.util.TimerWheel;
 import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKCluster;
+import com.flow.platform.util.zk.ZKMailbox;
 import com.flow.platform.util.zk.ZkException;
 import com.google.common.base.Strings;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -48,6 +54,7 @@ import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -56,7 +63,7 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Service
 @Transactional
-public class CmdDispatchServiceImpl extends ApplicationEventService implements CmdDispatchService {
+public class CmdDispatchServiceImpl extends ApplicationEventService implements CmdDispatchService, ContextEvent {
 
     private final static Logger LOGGER = new Logger(CmdDispatchService.class);
 
@@ -72,6 +79,12 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
     @Autowired
     protected ZKClient zkClient;
 
+    @Autowired
+    private ZKCluster zkCluster;
+
+    @Autowired
+    private TimerWheel<String> cmdTimeoutWheel;
+
     private final Map<CmdType, CmdHandler> handler = new HashMap<>(CmdType.values().length);
 
     @PostConstruct
@@ -96,10 +109,38 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
 
         SystemInfoCmdHandler runOtherCmdHandler = new SystemInfoCmdHandler();
         handler.put(runOtherCmdHandler.handleType(), runOtherCmdHandler);
+
+        cmdTimeoutWheel.register(this::onCmdTimeout);
+    }
+
+    /**
+     * Rebuild cmd timeout from working cmd
+     */
+    @Override
+    public void start() {
+        if (!taskConfig.isEnableCmdExecTimeoutTask()) {
+            return;
+        }
+
+        List<Cmd> workingCmdList = cmdService.listWorkingCmd(null);
+        for (Cmd cmd : workingCmdList) {
+            scheduleTimeout(cmd);
+        }
+
+        LOGGER.trace("Cmd timeout rebuilt with %s cmd", cmdTimeoutWheel.size());
+    }
+
+    @Override
+    public void stop() {
+        // the timer wheel stopped by spring
     }
 
+    /**
+     * The agent selected is locked by dispatch transaction, read committed is required to count slots
+     * used by cmd dispatched from other instances while waiting for the lock
+     */
     @Override
-    @Transactional(noRollbackFor = {Throwable.class})
+    @Transactional(noRollbackFor = {Throwable.class}, isolation = Isolation.READ_COMMITTED)
     public Cmd dispatch(Cmd cmd) {
         if (cmd == null) {
             throw new IllegalParameterException("Cmd is null while dispatching");
@@ -146,11 +187,16 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
 
     @Override
     @Transactional(propagation = Propagation.NEVER)
-    @Scheduled(fixedDelay = 300 * 1000)
+    @Scheduled(fixedDelay = 1800 * 1000)
     public void checkTimeoutTask() {
         if (!taskConfig.isEnableCmdExecTimeoutTask()) {
             return;
         }
+
+        // singleton task in cluster
+        if (!zkCluster.isLeader()) {
+            return;
+        }
         LOGGER.traceMarker("checkTimeoutTask", "start");
 
         // find all running status cmd
@@ -158,58 +204,106 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
 
         for (Cmd cmd : workingCmdList) {
             if (cmd.isCmdTimeout()) {
-                Cmd killCmd = cmdService.create(new CmdInfo(cmd.getAgentPath(), CmdType.KILL, null));
-                dispatch(killCmd);
-                LOGGER.traceMarker("checkTimeoutTask", "Send KILL for timeout cmd %s", cmd);
-
-                // update cmd status via queue
-                CmdStatusItem statusItem = new CmdStatusItem(cmd.getId(), CmdStatus.TIMEOUT_KILL, null, true, true);
-                cmdService.updateStatus(statusItem, true);
+                killTimeoutCmd(cmd);
             }
         }
 
         LOGGER.traceMarker("checkTimeoutTask", "end");
     }
 
+    /**
+     * Schedule timeout of RUN_SHELL cmd by created date and timeout in seconds
+     */
+    private void scheduleTimeout(Cmd cmd) {
+        if (!taskConfig.isEnableCmdExecTimeoutTask()) {
+            return;
+        }
+
+        if (cmd.getType() != CmdType.RUN_SHELL || cmd.getTimeout() == null || cmd.getCreatedDate() == null) {
+            return;
+        }
+
+        ZonedDateTime deadline = cmd.getCreatedDate().plusSeconds(cmd.getTimeout());
+        cmdTimeoutWheel.schedule(cmd.getId(), ChronoUnit.MILLIS.between(ZonedDateTime.now(), deadline));
+    }
+
+    private void onCmdTimeout(String cmdId) {
+        try {
+            Cmd cmd = cmdService.find(cmdId);
+            if (cmd != null && cmd.isCmdTimeout()) {
+                killTimeoutCmd(cmd);
+            }
+        } catch (Throwable e) {
+            LOGGER.warn("Unable to kill timeout cmd %s: %s", cmdId, e.getMessage());
+        }
+    }
+
+    private void killTimeoutCmd(Cmd cmd) {
+        Cmd killCmd = cmdService.create(new CmdInfo(cmd.getAgentPath(), CmdType.KILL, cmd.getId()));
+        dispatch(killCmd);
+        LOGGER.traceMarker("checkTimeoutTask", "Send KILL for timeout cmd %s", cmd);
+
+        // update cmd status via queue
+        CmdStatusItem statusItem = new CmdStatusItem(cmd.getId(), CmdStatus.TIMEOUT_KILL, null, true, true);
+        cmdService.updateStatus(statusItem, true);
+    }
+
     /**
      * Send cmd to agent via zookeeper
      */
     private void sendCmdToAgent(Agent target, Cmd cmd) {
         String agentNodePath = ZKHelper.buildPath(target.getPath());
-        if (!zkClient.exist(agentNodePath)) {
+
+        // post to agent mailbox rather than set node data, cmds sent close together will not overwrite each other
+        ZKMailbox mailbox = new ZKMailbox(zkClient, ZKHelper.buildMailboxPath(target.getPath()));
+
+        try {
+            mailbox.post(agentNodePath, cmd.toBytes());
+        } catch (ZkException.NotExitException e) {
             throw new AgentErr.NotFoundException("Node path in zookeeper not found " + target.getPath());
         }
-
-        zkClient.setData(agentNodePath, cmd.toBytes());
     }
 
-    private Cmd createDeleteSessionCmd(Agent target) {
+    private Cmd createDeleteSessionCmd(Agent target, String sessionId) {
         CmdInfo param = new CmdInfo(target.getPath(), CmdType.DELETE_SESSION, null);
-        param.setSessionId(target.getSessionId());
+        param.setSessionId(sessionId);
         return cmdService.create(param);
     }
 
+    /**
+     * Delete all sessions of agent
+     *
+     * @return num of sessions deleted
+     */
+    private int deleteSessions(Agent target) {
+        List<AgentSession> sessions = agentService.listSessions(target.getPath());
+        for (AgentSession session : sessions) {
+            handler.get(CmdType.DELETE_SESSION).exec(createDeleteSessionCmd(target, session.getSessionId()));
+        }
+        return sessions.size();
+    }
+
     /**
      * Kill agent current running cmd or delete current session
      */
     private void cleanCurrentCmd(Cmd current) {
         if (Strings.isNullOrEmpty(current.getSessionId())) {
-            Cmd cmdToKill = cmdService.create(new CmdInfo(current.getAgentPath(), CmdType.KILL, null));
+            Cmd cmdToKill = cmdService.create(new CmdInfo(current.getAgentPath(), CmdType.KILL, current.getId()));
             dispatch(cmdToKill);
         } else {
             Agent agent = agentService.find(current.getAgentPath());
-            Cmd cmdToDelSession = createDeleteSessionCmd(agent);
+            Cmd cmdToDelSession = createDeleteSessionCmd(agent, current.getSessionId());
             dispatch(cmdToDelSession);
         }
     }
 
     /**
-     * Auto select agent from zone
+     * Auto select agent with lowest host load from zone
      *
      * @throws AgentErr.NotAvailableException if no available agent
      */
     private Agent selectAgentFromZone(String zone) {
-        List<Agent> availableList = agentService.findAvailable(zone);
+        List<Agent> availableList = agentService.selectAvailable(zone);
 
         if (availableList.size() > 0) {
             return availableList.get(0);
@@ -275,8 +369,10 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 throw new AgentErr.NotFoundException(cmd.getAgentPath().toString());
             }
 
-            if (!target.isAvailable()) {
-                throw new AgentErr.NotAvailableException(target.getName());
+            // the same agent may be selected by other instance at the same time
+            target = agentService.lock(target.getPath());
+            if (target == null || !target.isAvailable()) {
+                throw new AgentErr.NotAvailableException(cmd.getAgentPath().toString());
             }
 
             String existSessionId = cmd.getSessionId();
@@ -286,11 +382,9 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 existSessionId = UUID.randomUUID().toString();
             }
 
-            target.setSessionId(existSessionId);
-            target.setSessionDate(ZonedDateTime.now());
-            agentService.saveWithStatus(target, AgentStatus.BUSY);
-
-            logger.debug("Agent session been created: %s %s", target.getPath(), target.getSessionId());
+            // session occupies one slot of agent, agent still available if it has free slots
+            agentService.createSession(target, existSessionId);
+            logger.debug("Agent session been created: %s %s", target.getPath(), existSessionId);
         }
     }
 
@@ -317,14 +411,13 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 return;
             }
 
-            // kill current running cmd and update agent status from cmd callback
-            for (Cmd runningCmd : getRunningCmd(target.getSessionId())) {
-                Cmd killCmd = cmdService.create(new CmdInfo(runningCmd.getAgentPath(), CmdType.KILL, null));
+            // kill running cmds of session only, cmds of other sessions on the agent keep running
+            for (Cmd runningCmd : getRunningCmd(cmd.getSessionId())) {
+                Cmd killCmd = cmdService.create(new CmdInfo(runningCmd.getAgentPath(), CmdType.KILL, runningCmd.getId()));
                 handler.get(CmdType.KILL).exec(killCmd);
             }
 
-            target.setSessionId(null);
-            agentService.saveWithStatus(target, AgentStatus.IDLE);
+            agentService.deleteSession(target, cmd.getSessionId());
         }
 
         private List<Cmd> getRunningCmd(String sessionId) {
@@ -381,15 +474,18 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 throw new AgentErr.NotFoundException(cmd.getAgentPath().toString());
             }
 
-            // check agent status if without session
+            // cmd without session occupies one slot of agent, lock it since the same agent may be selected
+            // by other instance at the same time
             if (!cmd.hasSession()) {
-                if (!target.isAvailable()) {
-                    throw new AgentErr.NotAvailableException(target.getName());
+                target = agentService.lock(target.getPath());
+                if (target == null || !target.isAvailable()) {
+                    throw new AgentErr.NotAvailableException(cmd.getAgentPath().toString());
                 }
-                agentService.saveWithStatus(target, AgentStatus.BUSY);
+                agentService.saveWithSlots(target);
             }
 
             sendCmdToAgent(target, cmd);
+            scheduleTimeout(cmd);
         }
     }
 
@@ -462,9 +558,7 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 throw new AgentErr.NotFoundException(cmd.getAgentPath().toString());
             }
 
-            if (target.getSessionId() != null) {
-                handler.get(CmdType.DELETE_SESSION).exec(createDeleteSessionCmd(target));
-            }
+            deleteSessions(target);
 
             // send stop cmd to agent
             sendCmdToAgent(target, cmd);
@@ -502,10 +596,9 @@ public class CmdDispatchServiceImpl extends ApplicationEventService implements C
                 throw new IllegalParameterException("For SHUTDOWN action, password of 'sudo' must be provided");
             }
 
-            // delete session if session existed
-            if (target.getSessionId() != null) {
-                handler.get(CmdType.DELETE_SESSION).exec(createDeleteSessionCmd(target));
-                logger.trace("Delete session before shutdown: %s %s", target.getPath(), target.getSessionId());
+            // delete sessions if session existed
+            if (deleteSessions(target) > 0) {
+                logger.trace("Delete sessions before shutdown: %s", target.getPath());
             }
 
             // otherwise kill cmd before shutdown
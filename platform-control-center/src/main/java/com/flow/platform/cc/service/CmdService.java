@@ -22,6 +22,8 @@ import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdResult;
+import com.flow.platform.domain.LogCodec;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Set;
 import org.springframework.web.multipart.MultipartFile;
@@ -74,6 +76,18 @@ public interface CmdService extends WebhookService {
      */
     List<Cmd> listWorkingCmd(AgentPath agentPath);
 
+    /**
+     * Count RUN_SHELL cmd created in zone within [from, to)
+     */
+    int countCreated(String zone, ZonedDateTime from, ZonedDateTime to);
+
+    /**
+     * Average running duration in seconds of RUN_SHELL cmd finished in zone within [from, to)
+     *
+     * @return average duration or null if no cmd finished
+     */
+    Double avgDuration(String zone, ZonedDateTime from, ZonedDateTime to);
+
     /**
      * List cmd result by ids
      */
@@ -90,7 +104,16 @@ public interface CmdService extends WebhookService {
     void updateStatus(CmdStatusItem statusItem, boolean inQueue);
 
     /**
-     * Record full zipped log to store
+     * Record full log to store, replace the log chunks if existed
+     */
+    void saveLog(String cmdId, LogCodec codec, MultipartFile file);
+
+    /**
+     * Append log chunk to store while cmd running
+     *
+     * @param index index of chunk, must be num of chunks appended
+     * @throws IllegalStatusException if chunk index not in sequence
+     * @throws IllegalParameterException if codec not support chunk
      */
-    void saveLog(String cmdId, MultipartFile file);
+    void appendLog(String cmdId, LogCodec codec, int index, MultipartFile chunk);
 }
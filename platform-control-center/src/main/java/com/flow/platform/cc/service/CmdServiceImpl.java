@@ -37,15 +37,18 @@ import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.core.service.WebhookServiceImplBase;
 import com.flow.platform.domain.Agent;
 import com.flow.platform.domain.AgentPath;
-import com.flow.platform.domain.AgentStatus;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdLog;
 import com.flow.platform.domain.CmdResult;
+import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
+import com.flow.platform.domain.LogCodec;
 import com.flow.platform.domain.Zone;
 import com.flow.platform.queue.PlatformQueue;
+import com.flow.platform.queue.QueueFullException;
 import com.flow.platform.util.Logger;
+import com.flow.platform.util.TimerWheel;
 import com.flow.platform.util.zk.ZKClient;
 import com.google.common.base.Strings;
 import com.google.common.collect.Sets;
@@ -53,6 +56,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.ZonedDateTime;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -110,6 +114,9 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
     @Autowired
     protected ZKClient zkClient;
 
+    @Autowired
+    private TimerWheel<String> cmdTimeoutWheel;
+
     private final Map<EnumSet<CmdType>, CmdValidator> cmdValidators = new HashMap<>();
 
     @PostConstruct
@@ -203,12 +210,29 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
         return cmdDao.list(agentPath, Sets.newHashSet(CmdType.RUN_SHELL), Cmd.WORKING_STATUS);
     }
 
+    @Override
+    public int countCreated(String zone, ZonedDateTime from, ZonedDateTime to) {
+        return cmdDao.count(zone, CmdType.RUN_SHELL, from, to);
+    }
+
+    @Override
+    public Double avgDuration(String zone, ZonedDateTime from, ZonedDateTime to) {
+        return cmdResultDao.avgDuration(zone, CmdType.RUN_SHELL, from, to);
+    }
+
     @Override
     @Transactional(propagation = Propagation.NEVER)
     public Cmd enqueue(CmdInfo cmdInfo, int priority, int retry) {
         Cmd cmd = create(cmdInfo, retry);
-        PriorityMessage message = PriorityMessage.create(cmd.getId().getBytes(), priority);
-        cmdQueue.enqueue(message);
+        PriorityMessage message = PriorityMessage.create(cmd.getId().getBytes(), priority, cmd.getZoneName());
+
+        try {
+            cmdQueue.enqueue(message);
+        } catch (QueueFullException e) {
+            cmd.setStatus(CmdStatus.REJECTED);
+            save(cmd);
+            throw new IllegalStatusException(e.getMessage());
+        }
 
         return cmd;
     }
@@ -239,6 +263,11 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
         // update cmd status
         save(cmd);
 
+        // timeout not needed since cmd finished
+        if (!cmd.isCurrent()) {
+            cmdTimeoutWheel.cancel(cmdId);
+        }
+
         // compare exiting cmd result and update
         CmdResult inputResult = statusItem.getCmdResult();
 
@@ -259,7 +288,7 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
     }
 
     @Override
-    public void saveLog(String cmdId, MultipartFile file) {
+    public void saveLog(String cmdId, LogCodec codec, MultipartFile file) {
         CmdLog cmdLog = cmdLogDao.get(cmdId);
         if (cmdLog == null) {
             throw new IllegalArgumentException("Cmd not exist");
@@ -268,7 +297,51 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
         try {
             Path target = Paths.get(cmdLogDir.toString(), file.getOriginalFilename());
             Files.write(target, file.getBytes());
+
+            // remove log chunks if file name is different
+            if (cmdLog.getLogPath() != null && !Paths.get(cmdLog.getLogPath()).equals(target)) {
+                Files.deleteIfExists(Paths.get(cmdLog.getLogPath()));
+            }
+
             cmdLog.setLogPath(target.toString());
+            cmdLog.setCodec(codec);
+            cmdLog.setChunks(null);
+            cmdLogDao.update(cmdLog);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void appendLog(String cmdId, LogCodec codec, int index, MultipartFile chunk) {
+        if (!codec.isChunked()) {
+            throw new IllegalParameterException("Log codec " + codec.getName() + " not support chunk");
+        }
+
+        CmdLog cmdLog = cmdLogDao.get(cmdId);
+        if (cmdLog == null) {
+            throw new IllegalArgumentException("Cmd not exist");
+        }
+
+        int expected = cmdLog.getChunks() == null ? 0 : cmdLog.getChunks();
+        if (index != expected || (index > 0 && cmdLog.getCodec() != codec)) {
+            throw new IllegalStatusException(
+                String.format("Illegal log chunk %s of cmd %s, expect chunk %s", index, cmdId, expected));
+        }
+
+        try {
+            // same file name as full log uploaded from agent
+            Path target = Paths.get(cmdLogDir.toString(), cmdId.replace('/', '-') + ".out" + codec.getExtension());
+
+            if (index == 0) {
+                Files.write(target, chunk.getBytes());
+            } else {
+                Files.write(target, chunk.getBytes(), StandardOpenOption.APPEND);
+            }
+
+            cmdLog.setLogPath(target.toString());
+            cmdLog.setCodec(codec);
+            cmdLog.setChunks(index + 1);
             cmdLogDao.update(cmdLog);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -278,7 +351,7 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
     /**
      * Update agent status when report cmd status and result
      * - DONOT update agent status if cmd with session, since it controlled by session cmd
-     * - busy or idle by Cmd.Type.RUN_SHELL while report cmd status
+     * - busy or idle by free slots of agent while report cmd status
      *
      * @param cmd Cmd object
      */
@@ -287,26 +360,8 @@ public class CmdServiceImpl extends WebhookServiceImplBase implements CmdService
             return;
         }
 
-        AgentPath agentPath = cmd.getAgentPath();
-        boolean isAgentBusy = false;
-
-        for (Cmd tmp : listByAgentPath(agentPath)) {
-            if (tmp.getType() != CmdType.RUN_SHELL) {
-                continue;
-            }
-
-            if (!tmp.getAgentPath().equals(agentPath)) {
-                continue;
-            }
-
-            if (tmp.isCurrent()) {
-                isAgentBusy = true;
-                break;
-            }
-        }
-
-        Agent agent = agentService.find(agentPath);
-        agentService.saveWithStatus(agent, isAgentBusy ? AgentStatus.BUSY : AgentStatus.IDLE);
+        Agent agent = agentService.find(cmd.getAgentPath());
+        agentService.saveWithSlots(agent);
     }
 
     /**
@@ -53,6 +53,11 @@ public interface ZoneService {
      */
     List<Zone> getZones();
 
+    /**
+     * Get zones owned by this instance in control center cluster, the zone tasks only run on owned zones
+     */
+    List<Zone> getOwnedZones();
+
     /**
      * Find instance manager by zone
      *
@@ -62,18 +67,15 @@ public interface ZoneService {
     InstanceManager findInstanceManager(Zone zone);
 
     /**
-     * Keep agent pool for min size
-     */
-    boolean keepIdleAgentMinSize(Zone zone, InstanceManager instanceManager);
-
-    /**
-     * Keep agent pool for max size
+     * Scale agents of zone by cmd queue depth, arrival rate and average cmd duration
+     *
+     * @return num of instance started if positive, num of idle agent shutdown if negative
      */
-    boolean keepIdleAgentMaxSize(Zone zone, InstanceManager instanceManager);
+    int scale(Zone zone, InstanceManager instanceManager);
 
     /**
      * Scheduler task, periodically, every 1 min to check available agent in zone
-     * It will start instance if num of available agent not enough
+     * It will start or shutdown instance by scaling controller of zone
      */
     void keepIdleAgentTask();
 }
@@ -18,27 +18,45 @@ package com.flow.platform.cc.service;
 
 import com.flow.platform.cc.config.TaskConfig;
 import com.flow.platform.cc.util.ZKHelper;
+import com.flow.platform.cc.util.ZoneScaler;
 import com.flow.platform.cloud.InstanceManager;
 import com.flow.platform.core.context.ContextEvent;
 import com.flow.platform.core.context.SpringContext;
+import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.domain.Agent;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.AgentSettings;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.AgentStatus;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Instance;
+import com.flow.platform.domain.Jsonable;
 import com.flow.platform.domain.Zone;
+import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.util.Logger;
+import com.flow.platform.util.TimerWheel;
 import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKCluster;
+import com.flow.platform.util.zk.ZkException;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.gson.JsonParseException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent.Type;
@@ -83,8 +101,30 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
     @Autowired
     protected ZKClient zkClient;
 
+    @Autowired
+    private ZKCluster zkCluster;
+
+    @Autowired
+    private TimerWheel<AgentPath> agentGraceWheel;
+
+    @Autowired
+    private PlatformQueue<PriorityMessage> cmdQueue;
+
     private final Map<Zone, ZoneEventListener> zoneEventWatchers = new HashMap<>();
 
+    private final Map<String, ZoneScaler> zoneScalers = new ConcurrentHashMap<>();
+
+    /**
+     * Names of zone owned by this instance since last membership change
+     */
+    private final Set<String> ownedZones = new HashSet<>();
+
+    @PostConstruct
+    public void init() {
+        agentGraceWheel.register(this::onAgentGraceTimeout);
+        zkCluster.addListener(members -> onMembersChanged());
+    }
+
     @Override
     public void start() {
         // init root node
@@ -116,11 +156,13 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
 
         zkClient.create(zonePath, agentSettings.toBytes());
 
-        List<String> agents = zkClient.getChildren(zonePath);
+        synchronized (ownedZones) {
+            if (zkCluster.isOwner(zone.getName())) {
+                ownedZones.add(zone.getName());
 
-        if (!agents.isEmpty()) {
-            for (String agent : agents) {
-                agentService.report(new AgentPath(zone.getName(), agent), AgentStatus.IDLE);
+                for (String agent : zkClient.getChildren(zonePath)) {
+                    agentService.report(new AgentPath(zone.getName(), agent), AgentStatus.IDLE);
+                }
             }
         }
 
@@ -144,6 +186,17 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
         return Lists.newArrayList(zoneEventWatchers.keySet());
     }
 
+    @Override
+    public List<Zone> getOwnedZones() {
+        List<Zone> zones = new ArrayList<>(zoneEventWatchers.size());
+        for (Zone zone : getZones()) {
+            if (zkCluster.isOwner(zone.getName())) {
+                zones.add(zone);
+            }
+        }
+        return zones;
+    }
+
     @Override
     public InstanceManager findInstanceManager(Zone zone) {
         if (!zone.isAvailable()) {
@@ -153,56 +206,32 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
         return (InstanceManager) springContext.getBean(beanName);
     }
 
-    /**
-     * Find num of idle agent and batch start instance
-     *
-     * @return boolean true = need start instance, false = has enough idle agent
-     */
-    @Override
-    public boolean keepIdleAgentMinSize(final Zone zone, final InstanceManager instanceManager) {
-        int numOfIdle = agentService.findAvailable(zone.getName()).size();
-        LOGGER.traceMarker("keepIdleAgentMinSize", "Num of idle agent in zone %s = %s", zone, numOfIdle);
-
-        if (numOfIdle < zone.getMinPoolSize()) {
-            instanceManager.batchStartInstance(zone);
-            return true;
-        }
-
-        return false;
-    }
-
-    /**
-     * Find num of idle agent and check max pool size,
-     * send shutdown cmd to agent and delete instance
-     */
     @Override
-    public boolean keepIdleAgentMaxSize(final Zone zone, final InstanceManager instanceManager) {
-        List<Agent> agentList = agentService.findAvailable(zone.getName());
-        int numOfIdle = agentList.size();
-        LOGGER.traceMarker("keepIdleAgentMaxSize", "Num of idle agent in zone %s = %s", zone, numOfIdle);
-
-        if (numOfIdle > zone.getMaxPoolSize()) {
-            int numOfRemove = numOfIdle - zone.getMaxPoolSize();
-
-            for (int i = 0; i < numOfRemove; i++) {
-                Agent idleAgent = agentList.get(i);
-
-                // send shutdown cmd
-                Cmd shutdown = cmdService.create(new CmdInfo(idleAgent.getPath(), CmdType.SHUTDOWN, "flow.ci"));
-                cmdDispatchService.dispatch(shutdown);
-                LOGGER.traceMarker("keepIdleAgentMaxSize", "Send SHUTDOWN to idle agent: %s", idleAgent);
-
-                // add instance to cleanup list
-                Instance instance = instanceManager.find(idleAgent.getPath());
-                if (instance != null) {
-                    instanceManager.addToCleanList(instance);
-                }
+    public int scale(final Zone zone, final InstanceManager instanceManager) {
+        ZoneScaler scaler = scaler(zone.getName());
+        int queued = cmdQueue.size(zone.getName());
+        List<Agent> online = agentService.listForOnline(zone.getName());
+        long now = System.currentTimeMillis();
+
+        // cmd is created and reported by any instance in cluster, so arrivals and durations are counted
+        // from db by the owner of zone
+        if (scaler.getLastSample() > 0) {
+            ZonedDateTime from = toDateTime(scaler.getLastSample());
+            ZonedDateTime to = toDateTime(now);
+            scaler.onArrival(cmdService.countCreated(zone.getName(), from, to));
+
+            Double avgDuration = cmdService.avgDuration(zone.getName(), from, to);
+            if (avgDuration != null) {
+                scaler.onDuration(avgDuration);
             }
+        }
 
-            return true;
+        int delta = scaler.scale(instanceManager, queued, online, now);
+        if (delta < 0) {
+            shutdownIdleAgents(agentService.findAvailable(zone.getName()), -delta, instanceManager);
         }
 
-        return false;
+        return delta;
     }
 
     @Override
@@ -215,20 +244,169 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
         LOGGER.traceMarker("keepIdleAgentTask", "start");
 
         // get num of idle agent
-        for (Zone zone : getZones()) {
+        for (Zone zone : getOwnedZones()) {
             InstanceManager instanceManager = findInstanceManager(zone);
             if (instanceManager == null) {
                 continue;
             }
 
-            if (keepIdleAgentMinSize(zone, instanceManager)) {
-                continue;
+            scale(zone, instanceManager);
+        }
+
+        LOGGER.traceMarker("keepIdleAgentTask", "end");
+    }
+
+    private static ZonedDateTime toDateTime(long millis) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private ZoneScaler scaler(String zoneName) {
+        return zoneScalers.computeIfAbsent(zoneName, name -> {
+            Zone zone = getZone(name);
+            return new ZoneScaler(zone == null ? new Zone(name, null) : zone);
+        });
+    }
+
+    /**
+     * Send SHUTDOWN cmd to idle agents and add their instances to clean list
+     */
+    private void shutdownIdleAgents(List<Agent> idleAgents, int numOfRemove, InstanceManager instanceManager) {
+        for (int i = 0; i < numOfRemove && i < idleAgents.size(); i++) {
+            Agent idleAgent = idleAgents.get(i);
+
+            // send shutdown cmd
+            Cmd shutdown = cmdService.create(new CmdInfo(idleAgent.getPath(), CmdType.SHUTDOWN, "flow.ci"));
+            cmdDispatchService.dispatch(shutdown);
+            LOGGER.traceMarker("shutdownIdleAgents", "Send SHUTDOWN to idle agent: %s", idleAgent);
+
+            // add instance to cleanup list
+            Instance instance = instanceManager.find(idleAgent.getPath());
+            if (instance != null) {
+                instanceManager.addToCleanList(instance);
             }
+        }
+    }
 
-            keepIdleAgentMaxSize(zone, instanceManager);
+    /**
+     * Take over the zones newly owned after membership changed, the agents are loaded from zookeeper
+     * since the events were handled by the previous owner
+     */
+    private void onMembersChanged() {
+        synchronized (ownedZones) {
+            for (Zone zone : getZones()) {
+                String name = zone.getName();
+
+                if (!zkCluster.isOwner(name)) {
+                    ownedZones.remove(name);
+                    continue;
+                }
+
+                if (ownedZones.add(name)) {
+                    LOGGER.trace("Take over zone %s from cluster members %s", name, zkCluster.getMembers());
+                    takeOver(zone);
+                }
+            }
         }
+    }
 
-        LOGGER.traceMarker("keepIdleAgentTask", "end");
+    private void takeOver(Zone zone) {
+        try {
+            List<String> names = zkClient.getChildren(zone.getPath());
+
+            for (String name : names) {
+                onAgentAdded(zone, name, ZKHelper.buildPath(zone.getName(), name));
+            }
+
+            for (Agent agent : agentService.listForOnline(zone.getName())) {
+                if (!names.contains(agent.getName())) {
+                    onAgentLost(zone, agent.getPath(), true);
+                }
+            }
+        } catch (Throwable e) {
+            LOGGER.warn("Unable to take over zone %s: %s", zone.getName(), e.getMessage());
+        }
+    }
+
+    private void onAgentAdded(Zone zone, String name, String path) {
+        AgentPath agentPath = new AgentPath(zone.getName(), name);
+        AgentSlots slots = loadSlots(agentPath, path);
+
+        // agent registered again within grace period
+        if (agentGraceWheel.cancel(agentPath)) {
+            agentService.resume(agentPath, slots);
+        }
+
+        agentService.report(agentPath, AgentStatus.IDLE);
+
+        if (slots != null) {
+            agentService.reportSlots(agentPath, slots);
+        }
+
+        agentService.reportNodeData(agentPath, slots);
+    }
+
+    /**
+     * Apply agent node data only for zone owned by other instance, so cmd dispatched by this instance
+     * can select agent by host metrics
+     */
+    private void onAgentUpdated(AgentPath agentPath, String path) {
+        agentGraceWheel.cancel(agentPath);
+        agentService.reportNodeData(agentPath, loadSlots(agentPath, path));
+    }
+
+    /**
+     * Load slots, host metrics and in-flight cmds advertised by agent node data
+     *
+     * @return slots or null if agent not support slots
+     */
+    private AgentSlots loadSlots(AgentPath agentPath, String nodePath) {
+        try {
+            byte[] data = zkClient.getData(nodePath);
+            if (data == null || data.length == 0) {
+                return null;
+            }
+
+            return Jsonable.parse(data, AgentSlots.class);
+        } catch (ZkException e) {
+            // agent node removed, will be reported as offline
+            return null;
+        } catch (JsonParseException e) {
+            LOGGER.warn("Invalid slots data from agent %s: %s", agentPath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Keep agent online in grace period of zone since its node might be removed by network blip
+     */
+    private void onAgentLost(Zone zone, AgentPath agentPath, boolean isOwner) {
+        Integer gracePeriod = zone.getAgentGracePeriod();
+        if (gracePeriod == null || gracePeriod <= 0) {
+            if (isOwner) {
+                agentService.report(agentPath, AgentStatus.OFFLINE);
+            } else {
+                agentService.reportNodeData(agentPath, null);
+            }
+            return;
+        }
+
+        agentGraceWheel.schedule(agentPath, TimeUnit.SECONDS.toMillis(gracePeriod));
+        LOGGER.trace("Agent %s lost, will be offline after %s seconds", agentPath, gracePeriod);
+    }
+
+    private void onAgentGraceTimeout(AgentPath agentPath) {
+        // zone owned by other instance which set agent offline, only node data is removed
+        if (!zkCluster.isOwner(agentPath.getZone())) {
+            agentService.reportNodeData(agentPath, null);
+            return;
+        }
+
+        try {
+            agentService.report(agentPath, AgentStatus.OFFLINE);
+            LOGGER.trace("Agent %s offline since grace period timeout", agentPath);
+        } catch (Throwable e) {
+            LOGGER.warn("Unable to set agent %s offline: %s", agentPath, e.getMessage());
+        }
     }
 
     private class ZoneEventListener implements PathChildrenCacheListener {
@@ -246,13 +424,20 @@ public class ZoneServiceImpl implements ZoneService, ContextEvent {
             final String name = ZKHelper.getNameFromPath(path);
             LOGGER.debugMarker("ZoneEventListener", "Receive zookeeper event %s %s", eventType, path);
 
+            // agent status is changed by the owner of zone in cluster, the others apply node data only
+            final boolean isOwner = zkCluster.isOwner(zone.getName());
+
             if (eventType == Type.CHILD_ADDED || eventType == Type.CHILD_UPDATED) {
-                agentService.report(new AgentPath(zone.getName(), name), AgentStatus.IDLE);
+                if (isOwner) {
+                    onAgentAdded(zone, name, path);
+                } else {
+                    onAgentUpdated(new AgentPath(zone.getName(), name), path);
+                }
                 return;
             }
 
             if (eventType == Type.CHILD_REMOVED) {
-                agentService.report(new AgentPath(zone.getName(), name), AgentStatus.OFFLINE);
+                onAgentLost(zone, new AgentPath(zone.getName(), name), isOwner);
                 return;
             }
         }
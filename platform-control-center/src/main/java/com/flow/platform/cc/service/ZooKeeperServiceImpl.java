@@ -19,6 +19,7 @@ package com.flow.platform.cc.service;
 import com.flow.platform.util.zk.ZKServer;
 import com.flow.platform.util.Logger;
 import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKCluster;
 import java.io.IOException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -37,6 +38,9 @@ public class ZooKeeperServiceImpl implements ZooKeeperService {
     @Autowired
     private ZKServer zkServer;
 
+    @Autowired
+    private ZKCluster zkCluster;
+
     @Override
     public void start() {
         // not start since ZKClient been started in zookeeper config
@@ -45,6 +49,7 @@ public class ZooKeeperServiceImpl implements ZooKeeperService {
     @Override
     public void stop() {
         try {
+            zkCluster.close();
             client.close();
             if (zkServer != null) {
                 zkServer.stop();
@@ -17,6 +17,7 @@
 package com.flow.platform.cc.util;
 
 import com.flow.platform.domain.AgentPath;
+import com.flow.platform.util.zk.ZKMailbox;
 import javax.annotation.PostConstruct;
 import org.apache.curator.utils.ZKPaths;
 import org.springframework.beans.factory.annotation.Value;
@@ -53,6 +54,13 @@ public class ZKHelper {
         return ZKPaths.makePath(ROOT_NODE, agentPath.getZone(), agentPath.getName());
     }
 
+    /**
+     * Get cmd mailbox path for agent, ex: /flow-agents-mailbox/{zone}/{name}
+     */
+    public static String buildMailboxPath(AgentPath agentPath) {
+        return ZKPaths.makePath(ROOT_NODE + ZKMailbox.ROOT_SUFFIX, agentPath.getZone(), agentPath.getName());
+    }
+
     public static String getNameFromPath(String path) {
         return ZKPaths.getNodeFromPath(path);
     }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.util;
+
+import com.flow.platform.cloud.InstanceManager;
+import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.Zone;
+import com.flow.platform.util.Logger;
+import com.google.common.base.Strings;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+
+/**
+ * Scaling controller of zone, the target num of agents is computed from cmd queue depth, cmd arrival
+ * rate and average cmd duration:
+ *
+ * - expected busy agents = arrival rate * average running duration (Little's law)
+ * - target = max(busy + queued, expected busy) + min pool size, and pre-warm size ahead of crontab
+ *
+ * The queued cmds are part of the arrivals already counted by expected busy agents, so they are not
+ * added on top of it
+ *
+ * Scale up immediately if under the target, scale down only if over the target by the margin,
+ * both are limited by the cooldown of zone
+ *
+ * @author yang
+ */
+public class ZoneScaler {
+
+    private final static Logger LOGGER = new Logger(ZoneScaler.class);
+
+    /**
+     * Weight of the latest sample in moving average
+     */
+    private final static double SAMPLE_WEIGHT = 0.3;
+
+    /**
+     * Scale down only if num of agents over target by the ratio, at least one
+     */
+    private final static double SCALE_DOWN_MARGIN = 0.2;
+
+    /**
+     * Instance not registered as agent within the timeout is not counted as capacity
+     */
+    private final static long PROVISION_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+    private final static long NEVER = -1;
+
+    private final Zone zone;
+
+    private final AtomicInteger arrivals = new AtomicInteger(0);
+
+    /**
+     * Instance name to started time which not registered as agent yet
+     */
+    private final Map<String, Long> provisioning = new HashMap<>();
+
+    private volatile double arrivalRate = 0; // num of cmd per second
+
+    private volatile double avgDuration = 0; // in seconds
+
+    private long lastSample = NEVER;
+
+    private long lastScaleUp = NEVER;
+
+    private long lastScaleDown = NEVER;
+
+    private CronSequenceGenerator prewarmCron;
+
+    public ZoneScaler(Zone zone) {
+        this.zone = zone;
+
+        String crontab = zone.getPrewarmCrontab();
+        if (!Strings.isNullOrEmpty(crontab)) {
+            try {
+                prewarmCron = new CronSequenceGenerator(crontab);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Illegal pre-warm crontab '%s' of zone %s: %s", crontab, zone.getName(), e.getMessage());
+            }
+        }
+    }
+
+    public Zone getZone() {
+        return zone;
+    }
+
+    public double getArrivalRate() {
+        return arrivalRate;
+    }
+
+    public double getAvgDuration() {
+        return avgDuration;
+    }
+
+    public synchronized int getProvisioning() {
+        return provisioning.size();
+    }
+
+    /**
+     * Time of last sample in millis, -1 if not sampled
+     */
+    public synchronized long getLastSample() {
+        return lastSample;
+    }
+
+    /**
+     * Record num of cmd created in the zone since last sample
+     */
+    public void onArrival(int numOfArrival) {
+        arrivals.addAndGet(numOfArrival);
+    }
+
+    /**
+     * Record average running duration of cmd finished since last sample
+     */
+    public void onDuration(double seconds) {
+        seconds = Math.max(0, seconds);
+
+        // racy update is acceptable for moving average
+        avgDuration = avgDuration == 0 ? seconds : avgDuration * (1 - SAMPLE_WEIGHT) + seconds * SAMPLE_WEIGHT;
+    }
+
+    /**
+     * Target num of agents include busy and provisioning ones
+     *
+     * @param queued num of cmd waiting in queue lane of zone
+     * @param busy num of busy agents
+     * @param now current time in millis
+     */
+    public int target(int queued, int busy, long now) {
+        int expectedBusy = (int) Math.ceil(arrivalRate * avgDuration);
+        int target = Math.max(busy + queued, expectedBusy) + zone.getMinPoolSize();
+
+        if (isPrewarm(now)) {
+            target = Math.max(target, busy + zone.getPrewarmSize());
+        }
+
+        return Math.min(target, Math.max(zone.getMaxAgentSize(), busy));
+    }
+
+    /**
+     * Start instances if agents not enough, the idle agents to shutdown are not handled since it needs
+     * to send cmd to agent
+     *
+     * @param queued num of cmd waiting in queue lane of zone
+     * @param online online agents of zone
+     * @param now current time in millis
+     * @return num of instance started if positive, num of idle agent to shutdown if negative
+     */
+    public synchronized int scale(InstanceManager instanceManager, int queued, List<Agent> online, long now) {
+        sample(now);
+        expireProvisioning(online, now);
+
+        int busy = 0;
+        for (Agent agent : online) {
+            if (!agent.isAvailable()) {
+                busy++;
+            }
+        }
+
+        int idle = online.size() - busy;
+        int capacity = online.size() + provisioning.size();
+        int target = target(queued, busy, now);
+
+        LOGGER.debug("Zone %s: queued=%s, busy=%s, idle=%s, provisioning=%s, rate=%.3f/s, duration=%.1fs, target=%s",
+            zone.getName(), queued, busy, idle, provisioning.size(), arrivalRate, avgDuration, target);
+
+        if (capacity < target) {
+            if (!isCooldown(lastScaleUp, zone.getScaleUpCooldown(), now)) {
+                return 0;
+            }
+
+            int started = scaleUp(instanceManager, target - capacity, now);
+            if (started > 0) {
+                lastScaleUp = now;
+            }
+            return started;
+        }
+
+        int margin = Math.max(1, (int) Math.ceil(target * SCALE_DOWN_MARGIN));
+        int numOfRemove = Math.min(capacity - target, idle - zone.getMinPoolSize());
+
+        if (capacity - target < margin || numOfRemove <= 0) {
+            return 0;
+        }
+
+        if (!isCooldown(lastScaleDown, zone.getScaleDownCooldown(), now)) {
+            return 0;
+        }
+
+        lastScaleDown = now;
+        return -numOfRemove;
+    }
+
+    private int scaleUp(InstanceManager instanceManager, int numOfStart, long now) {
+        int started = 0;
+
+        while (started < numOfStart) {
+            List<String> names = instanceManager.batchStartInstance(zone);
+            if (names == null || names.isEmpty()) {
+                break;
+            }
+
+            for (String name : names) {
+                provisioning.put(name, now);
+            }
+            started += names.size();
+        }
+
+        LOGGER.trace("Zone %s scale up with %s instances", zone.getName(), started);
+        return started;
+    }
+
+    /**
+     * Update arrival rate by num of arrivals since last sample
+     */
+    private void sample(long now) {
+        int numOfArrival = arrivals.getAndSet(0);
+
+        if (lastSample != NEVER && now > lastSample) {
+            double rate = numOfArrival * 1000.0 / (now - lastSample);
+            arrivalRate = arrivalRate * (1 - SAMPLE_WEIGHT) + rate * SAMPLE_WEIGHT;
+        }
+
+        lastSample = now;
+    }
+
+    /**
+     * Remove provisioning instance which registered as agent with instance name or timeout
+     */
+    private void expireProvisioning(List<Agent> online, long now) {
+        Set<String> names = new HashSet<>(online.size());
+        for (Agent agent : online) {
+            names.add(agent.getName());
+        }
+
+        Iterator<Map.Entry<String, Long>> iterator = provisioning.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (names.contains(entry.getKey()) || now - entry.getValue() > PROVISION_TIMEOUT) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean isPrewarm(long now) {
+        if (prewarmCron == null || zone.getPrewarmSize() <= 0) {
+            return false;
+        }
+
+        long next = prewarmCron.next(new Date(now)).getTime();
+        return next - now <= TimeUnit.SECONDS.toMillis(zone.getPrewarmLeadTime());
+    }
+
+    private static boolean isCooldown(long last, int cooldownInSeconds, long now) {
+        return last == NEVER || now - last >= TimeUnit.SECONDS.toMillis(cooldownInSeconds);
+    }
+}
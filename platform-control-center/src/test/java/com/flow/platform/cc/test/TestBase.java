@@ -18,16 +18,19 @@ package com.flow.platform.cc.test;
 
 import com.flow.platform.cc.config.WebConfig;
 import com.flow.platform.cc.dao.AgentDao;
+import com.flow.platform.cc.dao.AgentSessionDao;
 import com.flow.platform.cc.dao.CmdDao;
 import com.flow.platform.cc.dao.CmdResultDao;
 import com.flow.platform.cc.resource.PropertyResourceLoader;
 import com.flow.platform.cc.util.ZKHelper;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKMailbox;
 import com.google.gson.Gson;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
 import org.apache.curator.test.TestingServer;
@@ -90,6 +93,9 @@ public abstract class TestBase {
     @Autowired
     protected AgentDao agentDao;
 
+    @Autowired
+    protected AgentSessionDao agentSessionDao;
+
     @Autowired
     protected CmdDao cmdDao;
 
@@ -119,6 +125,7 @@ public abstract class TestBase {
     @After
     public void afterEach() {
         agentDao.deleteAll();
+        agentSessionDao.deleteAll();
         cmdDao.deleteAll();
         cmdResultDao.deleteAll();
     }
@@ -143,6 +150,15 @@ public abstract class TestBase {
         return agentPath;
     }
 
+    /**
+     * Get data of latest cmd in agent mailbox, null if mailbox is empty
+     */
+    protected byte[] getLatestCmdData(AgentPath agentPath) {
+        ZKMailbox mailbox = new ZKMailbox(zkClient, ZKHelper.buildMailboxPath(agentPath));
+        List<String> names = mailbox.list();
+        return names.isEmpty() ? null : mailbox.read(names.get(names.size() - 1));
+    }
+
     protected void deleteNodeWithChildren(String node) {
         if (!zkClient.exist(node)) {
             return;
@@ -112,8 +112,8 @@ public class CmdQueueConsumerTest extends TestBase {
         // then: webhook been invoked
         verify(1, postRequestedFor(urlEqualTo("/node/callback")));
 
-        // then: cmd should received in zookeeper agent node
-        byte[] raw = zkClient.getData(ZKHelper.buildPath(agentPath));
+        // then: cmd should received in zookeeper agent mailbox
+        byte[] raw = getLatestCmdData(agentPath);
         Cmd received = Cmd.parse(raw, Cmd.class);
         Assert.assertNotNull(received);
         Assert.assertNotNull(received.getId());
@@ -31,6 +31,7 @@ import com.flow.platform.cc.util.ZKHelper;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.AgentStatus;
 import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdBatchResult;
 import com.flow.platform.domain.CmdInfo;
 import com.flow.platform.domain.CmdReport;
 import com.flow.platform.domain.CmdResult;
@@ -39,11 +40,15 @@ import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Jsonable;
 import com.flow.platform.domain.Zone;
 import com.flow.platform.core.exception.IllegalParameterException;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
@@ -119,6 +124,41 @@ public class CmdControllerTest extends TestBase {
         Assert.assertTrue(loaded.getStatus().equals(CmdStatus.EXECUTED));
     }
 
+    @Test
+    public void should_update_cmd_status_in_batch_and_ack_max_seq() throws Throwable {
+        // given:
+        String zone = "test-mos-mac";
+        String agent = "test-002";
+
+        AgentPath path = new AgentPath(zone, agent);
+        agentService.report(path, AgentStatus.IDLE);
+        Thread.sleep(1000);
+
+        Cmd first = cmdService.create(new CmdInfo(zone, agent, CmdType.STOP, null));
+        Cmd second = cmdService.create(new CmdInfo(zone, agent, CmdType.STOP, null));
+
+        // when:
+        List<CmdReport> reports = new ArrayList<>(2);
+        reports.add(new CmdReport(first.getId(), CmdStatus.EXECUTED, new CmdResult()));
+        reports.add(new CmdReport(second.getId(), CmdStatus.LOGGED, new CmdResult()));
+        reports.get(0).setSeq(10L);
+        reports.get(1).setSeq(11L);
+
+        MockHttpServletRequestBuilder content = post("/cmd/report/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(Jsonable.GSON_CONFIG.toJson(reports));
+
+        MvcResult result = this.mockMvc.perform(content).andExpect(status().isOk()).andReturn();
+
+        // then: max seq is acked
+        Assert.assertEquals("11", result.getResponse().getContentAsString());
+
+        // then: wait queue processing and check status
+        Thread.sleep(2000);
+        Assert.assertEquals(CmdStatus.EXECUTED, cmdService.find(first.getId()).getStatus());
+        Assert.assertEquals(CmdStatus.LOGGED, cmdService.find(second.getId()).getStatus());
+    }
+
     @Test
     public void should_send_cmd_to_agent() throws Throwable {
         // given:
@@ -157,8 +197,8 @@ public class CmdControllerTest extends TestBase {
         Assert.assertEquals(2, cmdInfo.getInputs().size());
         Assert.assertEquals("/user/flow", cmdInfo.getWorkingDir());
 
-        // then: check node data
-        byte[] raw = zkClient.getData(path);
+        // then: check cmd data in mailbox
+        byte[] raw = getLatestCmdData(cmdInfo.getAgentPath());
         Assert.assertNotNull(raw);
 
         Cmd received = Jsonable.parse(raw, Cmd.class);
@@ -168,6 +208,143 @@ public class CmdControllerTest extends TestBase {
         Assert.assertEquals("/user/flow", received.getWorkingDir());
     }
 
+    @Test
+    public void should_send_batch_cmd() throws Throwable {
+        // given:
+        zoneService.createZone(new Zone("test-zone-batch", "mock-cloud-provider-name"));
+        Thread.sleep(1000);
+
+        List<CmdInfo> cmds = new ArrayList<>(3);
+        for (int i = 0; i < 3; i++) {
+            cmds.add(new CmdInfo("test-zone-batch", null, CmdType.RUN_SHELL, "echo " + i));
+        }
+
+        // when: send batch to queue
+        MvcResult result = this.mockMvc.perform(post("/cmd/batch")
+            .param("priority", "1")
+            .param("retry", "0")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(Jsonable.GSON_CONFIG.toJson(cmds)))
+            .andDo(print())
+            .andExpect(status().isOk())
+            .andReturn();
+
+        // then: result of each cmd in the same order
+        CmdBatchResult[] results = Jsonable.parseArray(result.getResponse().getContentAsString(), CmdBatchResult[].class);
+        Assert.assertEquals(3, results.length);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertNull(results[i].getError());
+            Assert.assertEquals("echo " + i, results[i].getCmd().getCmd());
+            Assert.assertNotNull(cmdService.find(results[i].getCmd().getId()));
+        }
+
+        // when: send batch directly to agent which not existed
+        result = this.mockMvc.perform(post("/cmd/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(Jsonable.GSON_CONFIG.toJson(cmds.subList(0, 1))))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        // then: error of cmd returned instead of http error
+        results = Jsonable.parseArray(result.getResponse().getContentAsString(), CmdBatchResult[].class);
+        Assert.assertEquals(1, results.length);
+        Assert.assertFalse(results[0].hasSuccess());
+        Assert.assertNull(results[0].getCmd());
+
+        // when: send batch with illegal priority
+        this.mockMvc.perform(post("/cmd/batch")
+            .param("priority", "0")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(Jsonable.GSON_CONFIG.toJson(cmds)))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void should_not_create_cmd_again_when_batch_retried() throws Throwable {
+        // given:
+        zoneService.createZone(new Zone("test-zone-batch-retry", "mock-cloud-provider-name"));
+        Thread.sleep(1000);
+
+        CmdInfo cmdInfo = new CmdInfo("test-zone-batch-retry", null, CmdType.RUN_SHELL, "echo");
+        cmdInfo.setCustomizedId(UUID.randomUUID().toString());
+        String content = Jsonable.GSON_CONFIG.toJson(Lists.newArrayList(cmdInfo));
+
+        // when: send the same batch twice
+        CmdBatchResult[] results = null;
+        for (int i = 0; i < 2; i++) {
+            MvcResult result = this.mockMvc.perform(post("/cmd/batch")
+                .param("priority", "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(content))
+                .andExpect(status().isOk())
+                .andReturn();
+
+            results = Jsonable.parseArray(result.getResponse().getContentAsString(), CmdBatchResult[].class);
+        }
+
+        // then: the cmd created by first request returned
+        Assert.assertTrue(results[0].hasSuccess());
+        Assert.assertEquals(cmdInfo.getCustomizedId(), results[0].getCmd().getId());
+    }
+
+    @Test
+    public void should_return_failure_again_when_batch_retried_for_rejected_cmd() throws Throwable {
+        // given:
+        zoneService.createZone(new Zone("test-zone-batch-rejected", "mock-cloud-provider-name"));
+        Thread.sleep(1000);
+
+        CmdInfo cmdInfo = new CmdInfo("test-zone-batch-rejected", null, CmdType.RUN_SHELL, "echo");
+        cmdInfo.setCustomizedId(UUID.randomUUID().toString());
+        String content = Jsonable.GSON_CONFIG.toJson(Lists.newArrayList(cmdInfo));
+
+        // when: send the same batch directly twice while no agent in zone
+        CmdBatchResult[] results = null;
+        for (int i = 0; i < 2; i++) {
+            MvcResult result = this.mockMvc.perform(post("/cmd/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(content))
+                .andExpect(status().isOk())
+                .andReturn();
+
+            results = Jsonable.parseArray(result.getResponse().getContentAsString(), CmdBatchResult[].class);
+            Assert.assertFalse(results[0].hasSuccess());
+        }
+
+        // then: the rejected cmd created by first request returned with failure
+        Assert.assertEquals(cmdInfo.getCustomizedId(), results[0].getCmd().getId());
+        Assert.assertEquals(CmdStatus.REJECTED, results[0].getCmd().getStatus());
+    }
+
+    @Test
+    public void should_response_429_when_cmd_rate_limit_reached() throws Throwable {
+        // given:
+        zoneService.createZone(new Zone("test-zone-admission", "mock-cloud-provider-name"));
+        Thread.sleep(1000);
+
+        CmdInfo cmdInfo = new CmdInfo("test-zone-admission", null, CmdType.RUN_SHELL, "echo");
+        cmdInfo.setExtra("flow-admission/step");
+
+        // when: send cmd over burst size 20, more than burst since tokens refilled while sending
+        MvcResult result = null;
+        for (int i = 0; i < 100; i++) {
+            result = this.mockMvc.perform(post("/cmd/queue/send")
+                .param("priority", "5")
+                .param("retry", "0")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(cmdInfo.toJson()))
+                .andReturn();
+
+            if (result.getResponse().getStatus() != 200) {
+                break;
+            }
+        }
+
+        // then: response 429 with retry after hint
+        Assert.assertEquals(429, result.getResponse().getStatus());
+        Assert.assertNotNull(result.getResponse().getHeader("Retry-After"));
+    }
+
     @Test
     public void should_upload_and_download_zipped_log() throws Throwable {
         // given:
@@ -26,6 +26,7 @@ import com.flow.platform.core.sysinfo.GroupSystemInfo;
 import com.flow.platform.core.sysinfo.JvmLoader.JvmGroup;
 import com.flow.platform.core.sysinfo.MQLoader.MQGroup;
 import com.flow.platform.core.sysinfo.PropertySystemInfo;
+import com.flow.platform.core.sysinfo.QueueLoader.QueueGroup;
 import com.flow.platform.core.sysinfo.SystemInfo;
 import com.flow.platform.core.sysinfo.SystemInfo.Status;
 import com.flow.platform.core.sysinfo.SystemInfo.Type;
@@ -136,4 +137,20 @@ public class WelcomeControllerTest extends TestBase {
         Assert.assertEquals(Status.RUNNING, mqInfo.getStatus());
         Assert.assertEquals(3, mqInfo.get(MQGroup.RABBITMQ).size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void should_load_cmd_queue_info() throws Throwable {
+        // when: load cmd queue info
+        MvcResult result = this.mockMvc.perform(get("/sys/info/queue"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+        // then:
+        String content = result.getResponse().getContentAsString();
+        GroupSystemInfo queueInfo = SystemInfo.parse(content, GroupSystemInfo.class);
+        Assert.assertNotNull(queueInfo);
+        Assert.assertEquals(Type.QUEUE, queueInfo.getType());
+        Assert.assertEquals(4, queueInfo.get(QueueGroup.QUEUE).size());
+        Assert.assertNotNull(queueInfo.get(QueueGroup.LANES));
+    }
+}
@@ -26,6 +26,7 @@ import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -143,4 +144,30 @@ public class CmdDaoTest extends TestBase {
         // then:
         Assert.assertEquals(2, list.size());
     }
+
+    @Test
+    public void should_count_cmd_by_zone_type_and_created_date() {
+        // given: shell cmds created 1 hour ago and now, and shutdown cmd
+        ZonedDateTime now = ZonedDateTime.now();
+
+        Cmd earlier = new Cmd("zone-count", "agent", CmdType.RUN_SHELL, "echo");
+        earlier.setId(UUID.randomUUID().toString());
+        earlier.setCreatedDate(now.minusHours(1));
+        cmdDao.save(earlier);
+
+        Cmd shell = new Cmd("zone-count", "agent", CmdType.RUN_SHELL, "echo");
+        shell.setId(UUID.randomUUID().toString());
+        shell.setCreatedDate(now);
+        cmdDao.save(shell);
+
+        Cmd shutdown = new Cmd("zone-count", "agent", CmdType.SHUTDOWN, "echo");
+        shutdown.setId(UUID.randomUUID().toString());
+        shutdown.setCreatedDate(now);
+        cmdDao.save(shutdown);
+
+        // then:
+        Assert.assertEquals(1, cmdDao.count("zone-count", CmdType.RUN_SHELL, now.minusMinutes(1), now.plusMinutes(1)));
+        Assert.assertEquals(2, cmdDao.count("zone-count", CmdType.RUN_SHELL, now.minusHours(2), now.plusMinutes(1)));
+        Assert.assertEquals(0, cmdDao.count("other-zone", CmdType.RUN_SHELL, now.minusHours(2), now.plusMinutes(1)));
+    }
 }
@@ -16,7 +16,9 @@
 
 package com.flow.platform.cc.test.dao;
 
+import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdResult;
+import com.flow.platform.domain.CmdType;
 import com.google.common.collect.Lists;
 import java.time.ZonedDateTime;
 import java.util.HashMap;
@@ -106,6 +108,34 @@ public class CmdResultDaoTest extends TestBase {
         Assert.assertEquals(2, loaded.getExceptions().size());
     }
 
+    @Test
+    public void should_get_avg_duration_of_cmd_finished_in_zone() throws Throwable {
+        // given: shell cmds finished 1 hour ago and now, and cmd of other zone
+        ZonedDateTime now = ZonedDateTime.now();
+        saveFinished("zone-duration", CmdType.RUN_SHELL, now.minusHours(1), 100);
+        saveFinished("zone-duration", CmdType.RUN_SHELL, now, 10);
+        saveFinished("zone-duration", CmdType.RUN_SHELL, now, 20);
+        saveFinished("other-zone", CmdType.RUN_SHELL, now, 60);
+
+        // then:
+        Assert.assertEquals(15.0, cmdResultDao
+            .avgDuration("zone-duration", CmdType.RUN_SHELL, now.minusMinutes(1), now.plusMinutes(1)), 0.001);
+        Assert.assertNull(cmdResultDao
+            .avgDuration("zone-duration", CmdType.SHUTDOWN, now.minusMinutes(1), now.plusMinutes(1)));
+    }
+
+    private void saveFinished(String zone, CmdType type, ZonedDateTime finishTime, long seconds) {
+        Cmd cmd = new Cmd(zone, "agent", type, "echo");
+        cmd.setId(UUID.randomUUID().toString());
+        cmdDao.save(cmd);
+
+        CmdResult result = new CmdResult();
+        result.setCmdId(cmd.getId());
+        result.setStartTime(finishTime.minusSeconds(seconds));
+        result.setFinishTime(finishTime);
+        cmdResultDao.save(result);
+    }
+
     @After
     public void after() {
         cmdResultDao.deleteAll();
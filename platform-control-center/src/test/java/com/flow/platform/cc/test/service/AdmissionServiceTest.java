@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.test.service;
+
+import com.flow.platform.cc.service.AdmissionService;
+import com.flow.platform.cc.test.TestBase;
+import com.flow.platform.core.exception.TooManyRequestsException;
+import com.flow.platform.domain.CmdInfo;
+import com.flow.platform.domain.CmdType;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * @author yang
+ */
+public class AdmissionServiceTest extends TestBase {
+
+    @Autowired
+    private AdmissionService admissionService;
+
+    @Test
+    public void should_isolate_noisy_flow_from_quiet_flow() throws Throwable {
+        // given: noisy flow sends 400 cmd concurrently while quiet flow sends 10 cmd
+        final int numOfNoisy = 400;
+        final AtomicInteger noisyAdmitted = new AtomicInteger(0);
+        final AtomicInteger quietAdmitted = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(numOfNoisy + 10);
+        final ExecutorService executor = Executors.newFixedThreadPool(5);
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < numOfNoisy; i++) {
+            executor.execute(() -> {
+                if (tryAdmit(new CmdInfo("default", null, CmdType.RUN_SHELL, "echo"), "noisy-flow")) {
+                    noisyAdmitted.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+
+        for (int i = 0; i < 10; i++) {
+            executor.execute(() -> {
+                if (tryAdmit(new CmdInfo("default", null, CmdType.RUN_SHELL, "echo"), "quiet-flow")) {
+                    quietAdmitted.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+
+        Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdownNow();
+        long duration = System.currentTimeMillis() - start;
+
+        // then: noisy flow limited by burst 20 and rate 10/s, quiet flow not affected
+        Assert.assertEquals(10, quietAdmitted.get());
+        Assert.assertTrue(noisyAdmitted.get() <= 20 + (duration / 1000 + 1) * 10);
+        Assert.assertTrue(noisyAdmitted.get() < numOfNoisy);
+    }
+
+    @Test
+    public void should_shed_low_priority_when_queue_time_over_slo() {
+        // when: queue time over 60 seconds SLO
+        for (int i = 0; i < 30; i++) {
+            admissionService.recordQueueTime(90 * 1000);
+        }
+
+        CmdInfo cmdInfo = new CmdInfo("default", null, CmdType.RUN_SHELL, "echo");
+        cmdInfo.setExtra("slo-flow/step");
+
+        // then: low priority shed with retry after hint
+        try {
+            admissionService.admit(cmdInfo, 1, "127.0.0.1");
+            Assert.fail("Low priority cmd should be shed");
+        } catch (TooManyRequestsException e) {
+            Assert.assertEquals(60, e.getRetryAfter());
+        }
+
+        // then: normal and high priority still admitted
+        admissionService.admit(cmdInfo, 5, "127.0.0.1");
+        admissionService.admit(cmdInfo, 10, "127.0.0.1");
+    }
+
+    @Test
+    public void should_admit_low_priority_after_queue_drained() throws Throwable {
+        // given: queue time over 60 seconds SLO and low priority shed
+        for (int i = 0; i < 30; i++) {
+            admissionService.recordQueueTime(90 * 1000);
+        }
+
+        CmdInfo cmdInfo = new CmdInfo("default", null, CmdType.RUN_SHELL, "echo");
+        cmdInfo.setExtra("drained-flow/step");
+
+        try {
+            admissionService.admit(cmdInfo, 1, "127.0.0.1");
+            Assert.fail("Low priority cmd should be shed");
+        } catch (TooManyRequestsException ignore) {
+        }
+
+        // when: no cmd dispatched since queue drained, queue time decays with 2 seconds half life
+        Thread.sleep(3000);
+
+        // then: low priority admitted again
+        Assert.assertTrue(admissionService.getQueueTime() < 60 * 1000);
+        admissionService.admit(cmdInfo, 1, "127.0.0.1");
+    }
+
+    @Test
+    public void should_share_bucket_for_cmd_of_same_flow_from_different_callers() {
+        // given: cmd of the same flow with and without node path in extra
+        CmdInfo session = new CmdInfo("default", null, CmdType.CREATE_SESSION, null);
+        session.setExtra("shared-flow");
+
+        CmdInfo shell = new CmdInfo("default", null, CmdType.RUN_SHELL, "echo");
+        shell.getInputs().put("FLOW_NAME", "shared-flow");
+
+        // when: use up burst 20 from different api instances
+        int admitted = 0;
+        for (int i = 0; i < 100; i++) {
+            try {
+                admissionService.admit(i % 2 == 0 ? session : shell, 5, "10.0.0." + i);
+                admitted++;
+            } catch (TooManyRequestsException e) {
+                break;
+            }
+        }
+
+        // then: limited by the same bucket
+        Assert.assertTrue(admitted < 100);
+    }
+
+    @After
+    public void waitQueueTimeDecay() throws Throwable {
+        while (admissionService.getQueueTime() > 30 * 1000) {
+            Thread.sleep(500);
+        }
+    }
+
+    private boolean tryAdmit(CmdInfo cmdInfo, String flow) {
+        cmdInfo.getInputs().put("FLOW_NAME", flow);
+        try {
+            admissionService.admit(cmdInfo, 5, "127.0.0.1");
+            return true;
+        } catch (TooManyRequestsException e) {
+            return false;
+        }
+    }
+}
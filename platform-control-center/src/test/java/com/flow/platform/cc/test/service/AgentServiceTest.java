@@ -23,15 +23,23 @@ import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 
+import com.flow.platform.cc.domain.CmdStatusItem;
 import com.flow.platform.cc.exception.AgentErr;
 import com.flow.platform.cc.service.AgentService;
+import com.flow.platform.cc.service.CmdService;
 import com.flow.platform.cc.service.ZoneService;
 import com.flow.platform.cc.test.TestBase;
 import com.flow.platform.cc.util.ZKHelper;
 import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentMetrics;
 import com.flow.platform.domain.AgentPath;
 import com.flow.platform.domain.AgentSettings;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.AgentStatus;
+import com.flow.platform.domain.Cmd;
+import com.flow.platform.domain.CmdInfo;
+import com.flow.platform.domain.CmdStatus;
+import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Jsonable;
 import com.flow.platform.domain.Zone;
 import com.flow.platform.util.DateUtil;
@@ -39,6 +47,7 @@ import com.flow.platform.util.http.HttpURL;
 import com.github.tomakehurst.wiremock.client.CountMatchingStrategy;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import java.time.ZonedDateTime;
+import java.util.Collections;
 import java.util.List;
 import org.apache.zookeeper.KeeperException;
 import org.junit.Assert;
@@ -66,6 +75,9 @@ public class AgentServiceTest extends TestBase {
     @Autowired
     private ZoneService zoneService;
 
+    @Autowired
+    private CmdService cmdService;
+
     @Autowired
     private List<Zone> defaultZones;
 
@@ -149,7 +161,9 @@ public class AgentServiceTest extends TestBase {
     public void should_batch_report_agent() throws Throwable {
         // given: define zones
         String zone_1 = "zone-1";
-        zoneService.createZone(new Zone(zone_1, MOCK_PROVIDER_NAME));
+        Zone zoneWithoutGrace = new Zone(zone_1, MOCK_PROVIDER_NAME);
+        zoneWithoutGrace.setAgentGracePeriod(0);
+        zoneService.createZone(zoneWithoutGrace);
         String zone_2 = "zone-2";
         zoneService.createZone(new Zone(zone_2, MOCK_PROVIDER_NAME));
 
@@ -222,6 +236,197 @@ public class AgentServiceTest extends TestBase {
         Assert.assertEquals(AgentStatus.BUSY, exit.getStatus());
     }
 
+    @Test
+    public void should_select_available_agent_by_host_metrics() throws Throwable {
+        // given: agents with different host load in zone
+        String zoneName = defaultZones.get(0).getName();
+        String[] agentNames = {"test-agent-for-overload", "test-agent-for-load-50", "test-agent-for-load-10"};
+        int[] cpuUsages = {99, 50, 10};
+
+        for (int i = 0; i < agentNames.length; i++) {
+            AgentMetrics metrics = new AgentMetrics();
+            metrics.setCpu(cpuUsages[i]);
+            metrics.setMemTotal(1024);
+            metrics.setMemFree(512);
+            metrics.setDiskFree(10240);
+
+            AgentSlots slots = new AgentSlots(1, 0, 0, metrics);
+            zkClient.createEphemeral(ZKHelper.buildPath(zoneName, agentNames[i]), slots.toBytes());
+        }
+        Thread.sleep(1000);
+
+        // then: metrics are kept in memory
+        Assert.assertEquals(3, agentService.listMetrics(zoneName).size());
+        Assert.assertEquals(99, agentService.findMetrics(new AgentPath(zoneName, agentNames[0])).getCpu());
+
+        // then: overloaded agent is skipped and the others sorted by load
+        List<Agent> selected = agentService.selectAvailable(zoneName);
+        Assert.assertEquals(2, selected.size());
+        Assert.assertEquals(agentNames[2], selected.get(0).getName());
+        Assert.assertEquals(agentNames[1], selected.get(1).getName());
+        Assert.assertEquals(3, agentService.findAvailable(zoneName).size());
+
+        // when: agent offline
+        for (String agentName : agentNames) {
+            zkClient.delete(ZKHelper.buildPath(zoneName, agentName), false);
+        }
+        Thread.sleep(1000);
+
+        // then: metrics are removed
+        Assert.assertEquals(0, agentService.listMetrics(zoneName).size());
+    }
+
+    @Test
+    public void should_keep_agent_in_grace_period_and_resume() throws Throwable {
+        // given: agent online in zone with grace period
+        Zone zone = defaultZones.get(0);
+        zone.setAgentGracePeriod(2);
+
+        String agentNodePath = ZKHelper.buildPath(zone.getName(), "test-agent-for-grace");
+        AgentPath agentPath = new AgentPath(zone.getName(), "test-agent-for-grace");
+
+        try {
+            zkClient.createEphemeral(agentNodePath, new AgentSlots(1, 0, 0).withRunId("run-1").toBytes());
+            Thread.sleep(1000);
+            Assert.assertTrue(isAvailable(agentPath));
+
+            // when: agent node removed
+            zkClient.delete(agentNodePath, false);
+            Thread.sleep(1000);
+
+            // then: agent still idle but not available for dispatch
+            Assert.assertEquals(AgentStatus.IDLE, agentService.find(agentPath).getStatus());
+            Assert.assertFalse(isAvailable(agentPath));
+
+            // when: agent registered again with the same run id
+            zkClient.createEphemeral(agentNodePath, new AgentSlots(1, 0, 0).withRunId("run-1").toBytes());
+            Thread.sleep(1000);
+
+            // then: agent available again
+            Assert.assertTrue(isAvailable(agentPath));
+
+            // when: agent in session restarted within grace period
+            Agent agent = agentService.find(agentPath);
+            agent.setSessionId("session-for-grace");
+            agentService.saveWithStatus(agent, AgentStatus.BUSY);
+
+            zkClient.delete(agentNodePath, false);
+            Thread.sleep(500);
+            zkClient.createEphemeral(agentNodePath, new AgentSlots(1, 0, 0).withRunId("run-2").toBytes());
+            Thread.sleep(1000);
+
+            // then: session before restart is released
+            agent = agentService.find(agentPath);
+            Assert.assertEquals(AgentStatus.IDLE, agent.getStatus());
+            Assert.assertNull(agent.getSessionId());
+
+            // when: agent node removed and not come back in grace period
+            zkClient.delete(agentNodePath, false);
+            Thread.sleep(4000);
+
+            // then: agent offline
+            Assert.assertEquals(AgentStatus.OFFLINE, agentService.find(agentPath).getStatus());
+        } finally {
+            zone.setAgentGracePeriod(0);
+            if (zkClient.exist(agentNodePath)) {
+                zkClient.delete(agentNodePath, false);
+            }
+        }
+    }
+
+    @Test
+    public void should_fail_cmds_not_in_flight_when_agent_resumed_in_grace_period() throws Throwable {
+        // given: agent online in zone with grace period and two working cmds
+        Zone zone = defaultZones.get(0);
+        zone.setAgentGracePeriod(2);
+
+        String agentName = "test-agent-for-restart";
+        String agentNodePath = ZKHelper.buildPath(zone.getName(), agentName);
+        AgentPath agentPath = new AgentPath(zone.getName(), agentName);
+
+        try {
+            zkClient.createEphemeral(agentNodePath, new AgentSlots(2, 0, 0).withRunId("run-1").toBytes());
+            Thread.sleep(1000);
+
+            Cmd inFlight = cmdService.create(new CmdInfo(zone.getName(), agentName, CmdType.RUN_SHELL, "echo 1"));
+            Cmd lost = cmdService.create(new CmdInfo(zone.getName(), agentName, CmdType.RUN_SHELL, "echo 2"));
+            Cmd running = cmdService.create(new CmdInfo(zone.getName(), agentName, CmdType.RUN_SHELL, "echo 3"));
+            running.setStatus(CmdStatus.RUNNING);
+            cmdService.save(running);
+
+            // then: run id of agent process is kept on agent record
+            Assert.assertEquals("run-1", agentService.find(agentPath).getRunId());
+
+            // when: agent resumed with the same run id before grace period timeout
+            zkClient.delete(agentNodePath, false);
+            Thread.sleep(500);
+            zkClient.createEphemeral(agentNodePath, new AgentSlots(2, 0, 0).withRunId("run-1").toBytes());
+            Thread.sleep(1000);
+
+            // then: cmds not started yet are kept, running cmd not in-flight on agent is failed
+            Assert.assertEquals(CmdStatus.PENDING, cmdService.find(inFlight.getId()).getStatus());
+            Assert.assertEquals(CmdStatus.PENDING, cmdService.find(lost.getId()).getStatus());
+            Assert.assertEquals(CmdStatus.EXCEPTION, cmdService.find(running.getId()).getStatus());
+
+            // when: agent restarted with new run id and only one cmd in-flight
+            List<String> cmds = Collections.singletonList(inFlight.getId());
+            zkClient.delete(agentNodePath, false);
+            Thread.sleep(500);
+            zkClient.createEphemeral(agentNodePath, new AgentSlots(2, 1, 0, cmds).withRunId("run-2").toBytes());
+            Thread.sleep(1000);
+
+            // then: cmd not in-flight on new agent process is failed
+            Assert.assertEquals(CmdStatus.PENDING, cmdService.find(inFlight.getId()).getStatus());
+            Assert.assertEquals(CmdStatus.EXCEPTION, cmdService.find(lost.getId()).getStatus());
+        } finally {
+            zone.setAgentGracePeriod(0);
+            if (zkClient.exist(agentNodePath)) {
+                zkClient.delete(agentNodePath, false);
+            }
+        }
+    }
+
+    @Test
+    public void should_accept_report_arrived_after_agent_resumed_with_unacked_cmd() throws Throwable {
+        // given: agent online in zone with grace period and running cmd
+        Zone zone = defaultZones.get(0);
+        zone.setAgentGracePeriod(2);
+
+        String agentName = "test-agent-for-unacked-report";
+        String agentNodePath = ZKHelper.buildPath(zone.getName(), agentName);
+        AgentPath agentPath = new AgentPath(zone.getName(), agentName);
+
+        try {
+            zkClient.createEphemeral(agentNodePath, new AgentSlots(1, 0, 0).withRunId("run-1").toBytes());
+            Thread.sleep(1000);
+
+            Cmd finished = cmdService.create(new CmdInfo(zone.getName(), agentName, CmdType.RUN_SHELL, "echo 1"));
+            finished.setStatus(CmdStatus.RUNNING);
+            cmdService.save(finished);
+
+            // when: agent resumed with cmd finished but its report not acked
+            List<String> cmds = Collections.singletonList(finished.getId());
+            zkClient.delete(agentNodePath, false);
+            Thread.sleep(500);
+            zkClient.createEphemeral(agentNodePath, new AgentSlots(1, 0, 0, cmds).withRunId("run-1").toBytes());
+            Thread.sleep(1000);
+
+            // then: cmd is kept running
+            Assert.assertEquals(CmdStatus.RUNNING, cmdService.find(finished.getId()).getStatus());
+
+            // when: report of cmd arrived after resumed
+            cmdService.updateStatus(new CmdStatusItem(finished.getId(), CmdStatus.LOGGED, null, false, false), false);
+
+            // then: cmd is finished by the report
+            Assert.assertEquals(CmdStatus.LOGGED, cmdService.find(finished.getId()).getStatus());
+        } finally {
+            zone.setAgentGracePeriod(0);
+            if (zkClient.exist(agentNodePath)) {
+                zkClient.delete(agentNodePath, false);
+            }
+        }
+    }
+
     @Test(expected = AgentErr.NotFoundException.class)
     public void should_raise_not_found_exception_when_report_status() {
         String zoneName = defaultZones.get(0).getName();
@@ -262,4 +467,13 @@ public class AgentServiceTest extends TestBase {
         agentService.delete(created);
         Assert.assertNull(agentService.find(new AgentPath(zoneName, agentName)));
     }
+
+    private boolean isAvailable(AgentPath path) {
+        for (Agent agent : agentService.selectAvailable(path.getZone())) {
+            if (agent.getPath().equals(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
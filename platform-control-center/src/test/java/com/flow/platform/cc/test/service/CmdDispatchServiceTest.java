@@ -29,6 +29,7 @@ import com.flow.platform.core.exception.FlowException;
 import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.domain.Agent;
 import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.AgentStatus;
 import com.flow.platform.domain.Cmd;
 import com.flow.platform.domain.CmdInfo;
@@ -38,6 +39,8 @@ import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Zone;
 import com.flow.platform.queue.PlatformQueue;
+import com.flow.platform.util.zk.ZKMailbox;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.After;
 import org.junit.Assert;
@@ -100,7 +103,9 @@ public class CmdDispatchServiceTest extends TestBase {
     @Test
     public void should_broadcast_agent_resource_event_if_no_available_agent() throws Throwable {
         // given: make no available agent resource
-        Assert.assertEquals(true, cmdQueue.isRunning());
+        String zoneName = agentPath.getZone();
+        String otherZoneName = defaultZones.get(1).getName();
+        Assert.assertEquals(true, cmdQueue.isRunning(zoneName));
 
         // when: send create session cmd
         Cmd cmdToCreateSession = cmdService.create(new CmdInfo(agentPath, CmdType.CREATE_SESSION, null));
@@ -111,8 +116,9 @@ public class CmdDispatchServiceTest extends TestBase {
 
         }
 
-        // then: queue should be pause since no available
-        Assert.assertEquals(false, cmdQueue.isRunning());
+        // then: queue lane of zone should be pause since no available, other zone still running
+        Assert.assertEquals(false, cmdQueue.isRunning(zoneName));
+        Assert.assertEquals(true, cmdQueue.isRunning(otherZoneName));
 
         // when: send delete session to release agent
         CmdInfo cmd = new CmdInfo(agentPath, CmdType.DELETE_SESSION, null);
@@ -120,8 +126,8 @@ public class CmdDispatchServiceTest extends TestBase {
         Cmd cmdToDeleteSession = cmdService.create(cmd);
         cmdDispatchService.dispatch(cmdToDeleteSession);
 
-        // then: queue should be resumed since agent resource released
-        Assert.assertEquals(true, cmdQueue.isRunning());
+        // then: queue lane should be resumed since agent resource released
+        Assert.assertEquals(true, cmdQueue.isRunning(zoneName));
     }
 
     @Test
@@ -169,7 +175,7 @@ public class CmdDispatchServiceTest extends TestBase {
         cmdDispatchService.dispatch(cmdService.create(cmdToDelSession));
 
         // then: new kill cmd should been sent to agent
-        Cmd killCmd = Cmd.parse(zkClient.getData(ZKHelper.buildPath(agentPath)), Cmd.class);
+        Cmd killCmd = Cmd.parse(getLatestCmdData(agentPath), Cmd.class);
         Assert.assertNotNull(killCmd);
         Assert.assertEquals(CmdType.KILL, killCmd.getType());
         Assert.assertNotEquals(cmd.getId(), killCmd.getId());
@@ -199,7 +205,7 @@ public class CmdDispatchServiceTest extends TestBase {
         cmdDispatchService.dispatch(cmdService.create(cmdToDelSession));
 
         // then: cmd in agent not changed
-        Cmd notChangeCmd = Cmd.parse(zkClient.getData(ZKHelper.buildPath(agentPath)), Cmd.class);
+        Cmd notChangeCmd = Cmd.parse(getLatestCmdData(agentPath), Cmd.class);
         Assert.assertNotNull(notChangeCmd);
         Assert.assertEquals(CmdType.RUN_SHELL, notChangeCmd.getType());
         Assert.assertEquals(cmd.getId(), notChangeCmd.getId());
@@ -210,10 +216,85 @@ public class CmdDispatchServiceTest extends TestBase {
         Assert.assertEquals(AgentStatus.IDLE, sessionShouldReleased.getStatus());
     }
 
+    @Test
+    public void should_dispatch_sessions_up_to_agent_slots() throws Throwable {
+        // when: agent advertise two slots by node data
+        zkClient.setData(ZKHelper.buildPath(agentPath), new AgentSlots(2, 0, 0).toBytes());
+        Thread.sleep(1000); // wait for node data been received
+
+        // then: agent has one free slot
+        Agent agent = agentService.find(agentPath);
+        Assert.assertEquals(2, agent.getConcurrentProc().intValue());
+        Assert.assertEquals(1, agent.getUsedSlots().intValue());
+        Assert.assertEquals(AgentStatus.IDLE, agent.getStatus());
+
+        // when: create second session
+        Cmd second = cmdService.create(new CmdInfo(agentPath, CmdType.CREATE_SESSION, null));
+        second = cmdDispatchService.dispatch(second);
+
+        // then: agent is full and both sessions point to the agent
+        agent = agentService.find(agentPath);
+        Assert.assertEquals(AgentStatus.BUSY, agent.getStatus());
+        Assert.assertEquals(2, agentService.listSessions(agentPath).size());
+        Assert.assertEquals(agentPath, agentService.find(target.getSessionId()).getPath());
+        Assert.assertEquals(agentPath, agentService.find(second.getSessionId()).getPath());
+
+        // when: create third session
+        try {
+            cmdDispatchService.dispatch(cmdService.create(new CmdInfo(agentPath, CmdType.CREATE_SESSION, null)));
+            fail();
+        } catch (Throwable e) {
+            Assert.assertEquals(AgentErr.NotAvailableException.class, e.getClass());
+        }
+
+        // when: delete the first session
+        CmdInfo cmdToDelSession = new CmdInfo(agentPath, CmdType.DELETE_SESSION, null);
+        cmdToDelSession.setSessionId(target.getSessionId());
+        cmdDispatchService.dispatch(cmdService.create(cmdToDelSession));
+
+        // then: slot released and the second session still on agent
+        agent = agentService.find(agentPath);
+        Assert.assertEquals(AgentStatus.IDLE, agent.getStatus());
+        Assert.assertEquals(1, agent.getUsedSlots().intValue());
+        Assert.assertEquals(second.getSessionId(), agent.getSessionId());
+        Assert.assertNull(agentService.find(target.getSessionId()));
+    }
+
+    @Test
+    public void should_keep_all_cmds_in_mailbox_when_send_in_burst() throws Throwable {
+        // given:
+        ZKMailbox mailbox = new ZKMailbox(zkClient, ZKHelper.buildMailboxPath(agentPath));
+        Assert.assertEquals(0, mailbox.list().size());
+
+        // when: send kill cmds to the same agent without delay
+        List<Cmd> sent = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Cmd cmd = cmdService.create(new CmdInfo(agentPath, CmdType.KILL, null));
+            sent.add(cmdDispatchService.dispatch(cmd));
+        }
+
+        // then: no cmd been overwritten and the order is kept
+        List<String> names = mailbox.list();
+        Assert.assertEquals(10, names.size());
+
+        for (int i = 0; i < sent.size(); i++) {
+            Cmd received = Cmd.parse(mailbox.read(names.get(i)), Cmd.class);
+            Assert.assertEquals(sent.get(i).getId(), received.getId());
+        }
+
+        // when: ack the first one
+        mailbox.ack(names.get(0)).join();
+
+        // then:
+        Assert.assertEquals(9, mailbox.list().size());
+        Assert.assertNull(mailbox.read(names.get(0)));
+    }
+
     @After
     public void cleanMockAgent() throws Throwable {
         String path = ZKHelper.buildPath(agentPath);
         zkClient.delete(path, false);
+        zkClient.delete(ZKHelper.buildMailboxPath(agentPath), true);
     }
 
     private Cmd startRunShell(String zone, String sessionId) {
@@ -35,9 +35,15 @@ import com.flow.platform.domain.CmdResult;
 import com.flow.platform.domain.CmdStatus;
 import com.flow.platform.domain.CmdType;
 import com.flow.platform.domain.Jsonable;
+import com.flow.platform.domain.LogCodec;
 import com.flow.platform.domain.Zone;
 import com.flow.platform.core.exception.IllegalParameterException;
+import com.flow.platform.core.exception.IllegalStatusException;
+import com.flow.platform.util.TimerWheel;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
@@ -76,6 +82,9 @@ public class CmdServiceTest extends TestBase {
     @Autowired
     private Path cmdLogDir;
 
+    @Autowired
+    private TimerWheel<String> cmdTimeoutWheel;
+
     private final static String MOCK_PROVIDER_NAME = "mock-cloud-provider";
 
     private Process mockProcess = new Process() {
@@ -268,6 +277,30 @@ public class CmdServiceTest extends TestBase {
         Assert.assertEquals(CmdStatus.TIMEOUT_KILL, cmdService.find(cmd.getId()).getStatus());
     }
 
+    @Test
+    public void should_kill_cmd_by_timeout_wheel() throws Throwable {
+        // given:
+        String zoneName = defaultZones.get(0).getName();
+        String agentName = "test-agent-for-timeout-wheel";
+
+        String agentPath = ZKHelper.buildPath(zoneName, agentName);
+        zkClient.createEphemeral(agentPath, null);
+        Thread.sleep(500);
+
+        // when: send cmd with 1 second timeout
+        CmdInfo cmdInfo = new CmdInfo(zoneName, agentName, CmdType.RUN_SHELL, "test");
+        cmdInfo.setTimeout(1);
+        Cmd cmd = send(cmdInfo);
+
+        // then: timeout scheduled in wheel
+        Assert.assertTrue(cmdTimeoutWheel.contains(cmd.getId()));
+
+        // then: killed by timeout wheel without table scan
+        Thread.sleep(3000);
+        Assert.assertEquals(CmdStatus.TIMEOUT_KILL, cmdService.find(cmd.getId()).getStatus());
+        Assert.assertFalse(cmdTimeoutWheel.contains(cmd.getId()));
+    }
+
     @Test
     public void should_update_agent_status_by_cmd_status() throws Throwable {
         // given
@@ -320,6 +353,7 @@ public class CmdServiceTest extends TestBase {
 
             // reset agent status
             relatedAgent.setStatus(AgentStatus.IDLE);
+            relatedAgent.setUsedSlots(0);
             agentDao.update(relatedAgent);
         }
     }
@@ -350,8 +384,8 @@ public class CmdServiceTest extends TestBase {
         // then: check agent status
         Assert.assertEquals(AgentStatus.BUSY, agentService.find(cmd.getAgentPath()).getStatus());
 
-        // then: check zk node received the same cmd
-        byte[] raw = zkClient.getData(agentPath);
+        // then: check zk mailbox received the same cmd
+        byte[] raw = getLatestCmdData(cmd.getAgentPath());
         Cmd loaded = Jsonable.parse(raw, Cmd.class);
         Assert.assertEquals(cmdInfo, loaded);
         Thread.sleep(1000); // mock network delay
@@ -473,12 +507,47 @@ public class CmdServiceTest extends TestBase {
         MockMultipartFile mockMultipartFile = new MockMultipartFile("file", originalFilename, "application/zip", mockData);
 
         // when:
-        cmdService.saveLog(created.getId(), mockMultipartFile);
+        cmdService.saveLog(created.getId(), LogCodec.ZIP, mockMultipartFile);
 
         // then:
         Assert.assertTrue(Files.exists(Paths.get(cmdLogDir.toString(), originalFilename)));
     }
 
+    @Test
+    public void should_append_log_chunks_in_sequence() throws Throwable {
+        // given:
+        String zoneName = defaultZones.get(0).getName();
+        CmdInfo baseInfo = new CmdInfo(zoneName, "test-agent-006", CmdType.RUN_SHELL, "/test.sh");
+        Cmd created = cmdService.create(baseInfo);
+
+        // when: append two gzip chunks
+        cmdService.appendLog(created.getId(), LogCodec.GZIP, 0, gzipChunk("hello\n"));
+        cmdService.appendLog(created.getId(), LogCodec.GZIP, 1, gzipChunk("world\n"));
+
+        // then: concatenated chunks can be decoded with codec
+        Cmd loaded = cmdService.find(created.getId());
+        Assert.assertEquals(LogCodec.GZIP, loaded.getLogCodec());
+
+        try (InputStream in = loaded.getLogCodec().decode(Files.newInputStream(Paths.get(loaded.getLogPath())))) {
+            Assert.assertEquals("hello\nworld\n", new String(ByteStreams.toByteArray(in)));
+        }
+
+        // then: chunk out of sequence is rejected
+        try {
+            cmdService.appendLog(created.getId(), LogCodec.GZIP, 3, gzipChunk("lost\n"));
+            fail();
+        } catch (IllegalStatusException ignore) {
+        }
+    }
+
+    private MockMultipartFile gzipChunk(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = LogCodec.GZIP.encode(bytes, -1, null)) {
+            out.write(content.getBytes());
+        }
+        return new MockMultipartFile("file", "chunk", LogCodec.GZIP.getContentType(), bytes.toByteArray());
+    }
+
     private Cmd send(CmdInfo info) {
         Cmd cmd = cmdService.create(info);
         cmdDispatchService.dispatch(cmd);
@@ -16,10 +16,19 @@
 
 package com.flow.platform.cc.test.service;
 
+import com.flow.platform.cc.service.AgentService;
 import com.flow.platform.cc.service.ZoneService;
 import com.flow.platform.cc.test.TestBase;
+import com.flow.platform.cc.util.ZKHelper;
+import com.flow.platform.domain.AgentMetrics;
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.AgentSlots;
 import com.flow.platform.domain.Zone;
+import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKCluster;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 import org.junit.Assert;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -32,6 +41,12 @@ public class ZoneServiceTest extends TestBase {
     @Autowired
     private ZoneService zoneService;
 
+    @Autowired
+    private ZKCluster zkCluster;
+
+    @Autowired
+    private AgentService agentService;
+
     @Test
     public void should_create_and_get_zones() {
         // when: create zone;
@@ -48,4 +63,91 @@ public class ZoneServiceTest extends TestBase {
         Assert.assertNotNull(zones);
         Assert.assertTrue(zones.size() >= 4); // 2 for default, 2 for created
     }
+
+    @Test
+    public void should_share_zones_with_other_instance_and_take_over_when_it_left() throws Throwable {
+        List<Zone> zones = zoneService.getZones();
+        Assert.assertEquals(zones.size(), zoneService.getOwnedZones().size());
+        waitFor(() -> zkCluster.isLeader());
+
+        // when: other instance joined cluster
+        ZKClient otherClient = new ZKClient("127.0.0.1:2181");
+        otherClient.start();
+        ZKCluster other = new ZKCluster(otherClient, "/flow-agents" + ZKCluster.ROOT_SUFFIX, "cc-test-other");
+
+        try {
+            other.start();
+            waitFor(() -> zkCluster.getMembers().size() == 2);
+
+            // then: each zone owned by one of instances and leader not changed
+            for (Zone zone : zones) {
+                Assert.assertTrue(zkCluster.isOwner(zone.getName()) ^ other.isOwner(zone.getName()));
+                Assert.assertEquals(zkCluster.isOwner(zone.getName()), zoneService.getOwnedZones().contains(zone));
+            }
+            Assert.assertTrue(zkCluster.isLeader());
+            Assert.assertFalse(other.isLeader());
+        } finally {
+            other.close();
+            otherClient.close();
+        }
+
+        // then: all zones taken over after other instance left
+        waitFor(() -> zkCluster.getMembers().size() == 1);
+        Assert.assertEquals(zones.size(), zoneService.getOwnedZones().size());
+    }
+
+    @Test
+    public void should_apply_agent_node_data_for_zone_owned_by_other_instance() throws Throwable {
+        // given: other instance in cluster
+        ZKClient otherClient = new ZKClient("127.0.0.1:2181");
+        otherClient.start();
+        ZKCluster other = new ZKCluster(otherClient, "/flow-agents" + ZKCluster.ROOT_SUFFIX, "cc-test-other");
+
+        try {
+            other.start();
+            waitFor(() -> zkCluster.getMembers().size() == 2);
+
+            // given: zone owned by other instance
+            Zone zone = null;
+            for (int i = 0; i < 50 && zone == null; i++) {
+                if (other.isOwner("test-zone-of-other-" + i)) {
+                    zone = new Zone("test-zone-of-other-" + i, "mock-provider-name");
+                }
+            }
+            Assert.assertNotNull(zone);
+            zone.setAgentGracePeriod(0);
+            zoneService.createZone(zone);
+
+            // when: agent online with host metrics
+            AgentMetrics metrics = new AgentMetrics();
+            metrics.setCpu(80);
+            AgentPath agentPath = new AgentPath(zone.getName(), "test-agent-of-other");
+            String path = ZKHelper.buildPath(agentPath.getZone(), agentPath.getName());
+            zkClient.createEphemeral(path, new AgentSlots(1, 0, 0, metrics).toBytes());
+
+            // then: metrics applied for dispatch but agent status is reported by the owner only
+            waitFor(() -> agentService.findMetrics(agentPath) != null);
+            Assert.assertEquals(80, agentService.findMetrics(agentPath).getCpu());
+            Assert.assertNull(agentService.find(agentPath));
+
+            // when: agent node removed
+            zkClient.delete(path, false);
+
+            // then: metrics removed
+            waitFor(() -> agentService.findMetrics(agentPath) == null);
+        } finally {
+            other.close();
+            otherClient.close();
+        }
+
+        waitFor(() -> zkCluster.getMembers().size() == 1);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(condition.getAsBoolean());
+    }
 }
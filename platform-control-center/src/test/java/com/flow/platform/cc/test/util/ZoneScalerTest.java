@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.cc.test.util;
+
+import com.flow.platform.cc.util.ZoneScaler;
+import com.flow.platform.cloud.InstanceManager;
+import com.flow.platform.domain.Agent;
+import com.flow.platform.domain.AgentPath;
+import com.flow.platform.domain.AgentStatus;
+import com.flow.platform.domain.Instance;
+import com.flow.platform.domain.Zone;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class ZoneScalerTest {
+
+    private final static String ZONE = "scaling-zone";
+
+    private Zone zone;
+
+    private SimulatedInstanceManager instanceManager;
+
+    @Before
+    public void init() {
+        zone = new Zone(ZONE, "simulated");
+        zone.setMinPoolSize(1);
+        zone.setNumOfStart(2);
+        zone.setMaxAgentSize(10);
+        zone.setScaleUpCooldown(60);
+        zone.setScaleDownCooldown(300);
+
+        instanceManager = new SimulatedInstanceManager();
+    }
+
+    @Test
+    public void should_scale_up_by_queue_depth_and_count_provisioning_instances() {
+        ZoneScaler scaler = new ZoneScaler(zone);
+
+        // when: 5 cmd in queue without agent
+        int started = scaler.scale(instanceManager, 5, new LinkedList<>(), 0);
+
+        // then: start 6 instances in batch of 2 for 5 cmd and 1 idle
+        Assert.assertEquals(6, started);
+        Assert.assertEquals(6, instanceManager.started.size());
+        Assert.assertEquals(6, scaler.getProvisioning());
+
+        // when: scale again after cooldown before instances registered
+        Assert.assertEquals(0, scaler.scale(instanceManager, 5, new LinkedList<>(), minutes(2)));
+        Assert.assertEquals(6, instanceManager.started.size());
+
+        // when: instances registered as agents and 5 of them took the cmd
+        List<Agent> online = agents(instanceManager.started.subList(0, 5), AgentStatus.BUSY);
+        online.addAll(agents(instanceManager.started.subList(5, 6), AgentStatus.IDLE));
+        Assert.assertEquals(0, scaler.scale(instanceManager, 0, online, minutes(3)));
+        Assert.assertEquals(0, scaler.getProvisioning());
+    }
+
+    @Test
+    public void should_not_scale_up_within_cooldown() {
+        ZoneScaler scaler = new ZoneScaler(zone);
+        Assert.assertEquals(2, scaler.scale(instanceManager, 1, new LinkedList<>(), 0));
+
+        // when: more cmd in queue within cooldown
+        List<Agent> online = agents(instanceManager.started, AgentStatus.BUSY);
+        Assert.assertEquals(0, scaler.scale(instanceManager, 3, online, TimeUnit.SECONDS.toMillis(30)));
+
+        // then: scale up after cooldown
+        Assert.assertEquals(4, scaler.scale(instanceManager, 3, online, TimeUnit.SECONDS.toMillis(61)));
+    }
+
+    @Test
+    public void should_scale_down_idle_agents_out_of_margin() {
+        zone.setMinPoolSize(0);
+        zone.setMaxAgentSize(20);
+        ZoneScaler scaler = new ZoneScaler(zone);
+
+        // when: 10 busy agents and 1 idle agent, target is 10 with margin 2
+        List<Agent> online = agents(names("busy", 10), AgentStatus.BUSY);
+        online.addAll(agents(names("idle", 1), AgentStatus.IDLE));
+
+        // then: keep the idle agent since within margin
+        Assert.assertEquals(0, scaler.scale(instanceManager, 0, online, 0));
+
+        // when: 3 idle agents
+        online.addAll(agents(names("more-idle", 2), AgentStatus.IDLE));
+
+        // then: shutdown all idle agents
+        Assert.assertEquals(-3, scaler.scale(instanceManager, 0, online, minutes(1)));
+
+        // then: not scale down again within cooldown
+        Assert.assertEquals(0, scaler.scale(instanceManager, 0, online, minutes(2)));
+    }
+
+    @Test
+    public void should_keep_expected_busy_agents_by_arrival_rate_and_duration() {
+        ZoneScaler scaler = new ZoneScaler(zone);
+        scaler.scale(instanceManager, 0, agents(names("idle", 1), AgentStatus.IDLE), 0);
+        Assert.assertEquals(1, scaler.target(0, 0, 0));
+
+        // when: 10 cmd arrived in 10 seconds and each takes 20 seconds
+        for (int i = 0; i < 10; i++) {
+            scaler.onArrival(1);
+        }
+        scaler.onDuration(20);
+        scaler.scale(instanceManager, 0, agents(names("idle", 1), AgentStatus.IDLE), TimeUnit.SECONDS.toMillis(10));
+
+        // then: arrival rate is moving average of 1 cmd per second, expected 6 busy agents and 1 idle
+        Assert.assertEquals(0.3, scaler.getArrivalRate(), 0.001);
+        Assert.assertEquals(20.0, scaler.getAvgDuration(), 0.001);
+        Assert.assertEquals(7, scaler.target(0, 0, TimeUnit.SECONDS.toMillis(10)));
+
+        // then: queued cmd not added on top of expected busy agents
+        Assert.assertEquals(7, scaler.target(3, 2, TimeUnit.SECONDS.toMillis(10)));
+        Assert.assertEquals(9, scaler.target(3, 5, TimeUnit.SECONDS.toMillis(10)));
+
+        // then: target never over max agent size
+        Assert.assertEquals(10, scaler.target(20, 0, TimeUnit.SECONDS.toMillis(10)));
+    }
+
+    @Test
+    public void should_prewarm_instances_ahead_of_crontab() {
+        zone.setPrewarmCrontab("0 0 2 * * *");
+        zone.setPrewarmSize(5);
+        zone.setPrewarmLeadTime(300);
+        ZoneScaler scaler = new ZoneScaler(zone);
+
+        long beforeLead = millis(LocalDateTime.of(2017, 10, 1, 1, 50));
+        long inLead = millis(LocalDateTime.of(2017, 10, 1, 1, 56));
+
+        Assert.assertEquals(1, scaler.target(0, 0, beforeLead));
+        Assert.assertEquals(5, scaler.target(0, 0, inLead));
+
+        // then: start pre-warm instances in lead time
+        Assert.assertEquals(6, scaler.scale(instanceManager, 0, new LinkedList<>(), inLead));
+    }
+
+    private static long minutes(int minutes) {
+        return TimeUnit.MINUTES.toMillis(minutes);
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static List<String> names(String prefix, int size) {
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(prefix + "-" + i);
+        }
+        return names;
+    }
+
+    private static List<Agent> agents(Collection<String> names, AgentStatus status) {
+        List<Agent> agents = new ArrayList<>(names.size());
+        for (String name : names) {
+            Agent agent = new Agent(ZONE, name);
+            agent.setStatus(status);
+            agents.add(agent);
+        }
+        return agents;
+    }
+
+    /**
+     * Instance manager start instances in memory by num of start of zone
+     */
+    private static class SimulatedInstanceManager implements InstanceManager {
+
+        private final List<String> started = new ArrayList<>();
+
+        @Override
+        public String instanceName() {
+            return "instance-" + started.size();
+        }
+
+        @Override
+        public Instance find(String name) {
+            return null;
+        }
+
+        @Override
+        public Instance find(AgentPath agentPath) {
+            return null;
+        }
+
+        @Override
+        public Collection<Instance> instances() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public List<String> batchStartInstance(Zone zone) {
+            List<String> names = new ArrayList<>(zone.getNumOfStart());
+            for (int i = 0; i < zone.getNumOfStart(); i++) {
+                String name = instanceName();
+                started.add(name);
+                names.add(name);
+            }
+            return names;
+        }
+
+        @Override
+        public void addToCleanList(Instance instance) {
+        }
+
+        @Override
+        public void cleanFromProvider(long maxAliveDuration, String status) {
+        }
+
+        @Override
+        public void cleanAll() {
+        }
+
+        @Override
+        public void cleanInstanceTask() {
+        }
+    }
+}
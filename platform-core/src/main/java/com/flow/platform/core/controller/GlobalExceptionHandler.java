@@ -18,8 +18,11 @@ package com.flow.platform.core.controller;
 
 import com.flow.platform.core.response.ResponseError;
 import com.flow.platform.core.exception.FlowException;
+import com.flow.platform.core.exception.TooManyRequestsException;
 import com.flow.platform.util.Logger;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -41,6 +44,14 @@ public class GlobalExceptionHandler {
         return new ResponseError(e.getMessage());
     }
 
+    @ExceptionHandler(TooManyRequestsException.class)
+    @ResponseStatus(value = HttpStatus.TOO_MANY_REQUESTS)
+    @ResponseBody
+    public ResponseError handleTooManyRequestsException(HttpServletResponse response, TooManyRequestsException e) {
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfter()));
+        return new ResponseError(e.getMessage());
+    }
+
     @ExceptionHandler(Throwable.class)
     @ResponseStatus(value = HttpStatus.INTERNAL_SERVER_ERROR)
     @ResponseBody
@@ -59,6 +59,14 @@ public abstract class AbstractBaseDao<K extends Serializable, T> implements Base
 
     protected abstract String getKeyName();
 
+    /**
+     * Should list queries of entity be stored in hibernate query cache,
+     * override to true for read-mostly entities which mapped with cache region
+     */
+    protected boolean isQueryCacheable() {
+        return false;
+    }
+
     @Override
     public List<T> list(final Collection<K> keys) {
         return execute(session -> {
@@ -68,7 +76,7 @@ public abstract class AbstractBaseDao<K extends Serializable, T> implements Base
             Root<T> from = select.from(getEntityClass());
             select.where(from.get(getKeyName()).in(keys));
 
-            return session.createQuery(select).list();
+            return session.createQuery(select).setCacheable(isQueryCacheable()).list();
         });
     }
 
@@ -142,7 +150,7 @@ public abstract class AbstractBaseDao<K extends Serializable, T> implements Base
             CriteriaBuilder builder = session.getCriteriaBuilder();
             CriteriaQuery<T> select = builder.createQuery(getEntityClass());
             select.from(getEntityClass());
-            return session.createQuery(select).list();
+            return session.createQuery(select).setCacheable(isQueryCacheable()).list();
         });
     }
 }
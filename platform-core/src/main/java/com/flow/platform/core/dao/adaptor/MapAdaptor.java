@@ -16,9 +16,11 @@
 
 package com.flow.platform.core.dao.adaptor;
 
+import com.flow.platform.domain.EnvMap;
 import com.google.gson.reflect.TypeToken;
 import java.lang.reflect.Type;
 import java.util.Map;
+import org.hibernate.HibernateException;
 
 /**
  * @author gy@fir.im
@@ -35,4 +37,20 @@ public class MapAdaptor extends BaseAdaptor {
         TypeToken<Map<String, String>> typeToken = new TypeToken<Map<String, String>>() {};
         return typeToken.getType();
     }
+
+    @Override
+    protected Object jsonToObject(String json) {
+        return EnvMap.of((Map<String, String>) super.jsonToObject(json));
+    }
+
+    /**
+     * Snapshot of env map is an overlay sharing the sealed layers instead of full serialization copy
+     */
+    @Override
+    public Object deepCopy(Object value) throws HibernateException {
+        if (value instanceof EnvMap) {
+            return ((EnvMap) value).overlay();
+        }
+        return super.deepCopy(value);
+    }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.exception;
+
+/**
+ * Request rejected by rate limit or load shedding, response with 429
+ *
+ * @author yang
+ */
+public class TooManyRequestsException extends FlowException {
+
+    // hint for client to retry after in seconds
+    private final long retryAfter;
+
+    public TooManyRequestsException(String description, long retryAfter) {
+        super(description, null);
+        this.retryAfter = retryAfter;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
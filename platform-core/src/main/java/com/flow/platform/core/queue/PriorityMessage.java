@@ -25,12 +25,28 @@ import org.springframework.amqp.core.MessageProperties;
  */
 public class PriorityMessage extends Message implements PriorityQueueItem {
 
+    /**
+     * Message header for queue lane
+     */
+    public final static String HEADER_LANE = "lane";
+
+    /**
+     * Message header for num of retry
+     */
+    public final static String HEADER_ATTEMPT = "attempt";
+
     public static PriorityMessage create(byte[] content, int priority) {
         MessageProperties properties = new MessageProperties();
         properties.setPriority(priority);
         return new PriorityMessage(content, properties);
     }
 
+    public static PriorityMessage create(byte[] content, int priority, String lane) {
+        PriorityMessage message = create(content, priority);
+        message.getMessageProperties().setHeader(HEADER_LANE, lane);
+        return message;
+    }
+
     public PriorityMessage(Message message) {
         super(message.getBody(), message.getMessageProperties());
     }
@@ -39,6 +55,26 @@ public class PriorityMessage extends Message implements PriorityQueueItem {
         super(body, messageProperties);
     }
 
+    /**
+     * Get queue lane from header, null if not defined
+     */
+    public String getLane() {
+        Object lane = getMessageProperties().getHeaders().get(HEADER_LANE);
+        return lane == null ? null : lane.toString();
+    }
+
+    /**
+     * Get num of retry from header, 0 for first delivery
+     */
+    public int getAttempt() {
+        Object attempt = getMessageProperties().getHeaders().get(HEADER_ATTEMPT);
+        return attempt == null ? 0 : Integer.parseInt(attempt.toString());
+    }
+
+    public void setAttempt(int attempt) {
+        getMessageProperties().setHeader(HEADER_ATTEMPT, attempt);
+    }
+
     @Override
     public Integer getPriority() {
         return getMessageProperties().getPriority();
@@ -20,11 +20,20 @@ import com.flow.platform.core.context.ContextEvent;
 import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.queue.QueueListener;
 import com.flow.platform.util.Logger;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Properties;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.amqp.AmqpException;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageListener;
 import org.springframework.amqp.core.Queue;
@@ -34,6 +43,8 @@ import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 /**
@@ -43,25 +54,38 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
 
     private final static Logger LOGGER = new Logger(RabbitQueue.class);
 
-    private final static int DEFAULT_CONCURRENCY = 1;
+    private final static MessagePropertiesConverter PROPERTIES_CONVERTER = new DefaultMessagePropertiesConverter();
 
     private final String host;
 
-    private final String name;
+    private final RabbitQueueSettings settings;
 
-    private final int maxPriority;
+    private CachingConnectionFactory connectionFactory;
+
+    private RabbitAdmin rabbitAdmin;
 
     private RabbitTemplate template;
 
     private SimpleMessageListenerContainer container;
 
-    private volatile AtomicInteger size = new AtomicInteger(0);
+    private final AtomicLong numOfPublished = new AtomicLong(0);
+
+    private final AtomicLong numOfConsumed = new AtomicLong(0);
+
+    private final long createdAt = System.currentTimeMillis();
 
     public RabbitQueue(ThreadPoolTaskExecutor executor, String host, int maxSize, int maxPriority, String queueName) {
+        this(executor, host, maxSize, queueName, defaultSettings(maxPriority));
+    }
+
+    public RabbitQueue(ThreadPoolTaskExecutor executor,
+                       String host,
+                       int maxSize,
+                       String queueName,
+                       RabbitQueueSettings settings) {
         super(executor, maxSize, queueName);
         this.host = host;
-        this.name = queueName;
-        this.maxPriority = maxPriority;
+        this.settings = settings;
 
         try {
             initRabbitMQ();
@@ -70,15 +94,21 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
         }
     }
 
+    public RabbitQueueSettings getSettings() {
+        return settings;
+    }
+
     @Override
     public void start() {
         container.start();
+        startDelayThread();
         LOGGER.trace("RabbitMQ ready to process");
     }
 
     @Override
     public void stop() {
         cleanListener();
+        stopDelayThread();
         container.stop();
     }
 
@@ -98,18 +128,65 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
 
     @Override
     public void enqueue(PriorityMessage item) {
-        template.send("", name, item);
-        size.incrementAndGet();
+        enqueueAll(Collections.singletonList(item));
+    }
+
+    /**
+     * Publish messages, wait for publisher confirms for every confirm batch size if enabled
+     */
+    @Override
+    public void enqueueAll(Collection<PriorityMessage> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        final int batchSize = settings.getConfirmBatchSize();
+
+        if (batchSize <= 0) {
+            for (PriorityMessage item : items) {
+                template.send("", name, item);
+            }
+            numOfPublished.addAndGet(items.size());
+            return;
+        }
+
+        template.execute(channel -> {
+            channel.confirmSelect();
+
+            int numOfUnconfirmed = 0;
+            for (PriorityMessage item : items) {
+                publish(channel, item);
+
+                if (++numOfUnconfirmed == batchSize) {
+                    waitForConfirms(channel);
+                    numOfUnconfirmed = 0;
+                }
+            }
+
+            if (numOfUnconfirmed > 0) {
+                waitForConfirms(channel);
+            }
+
+            numOfPublished.addAndGet(items.size());
+            return null;
+        });
     }
 
     @Override
     public PriorityMessage dequeue() {
-        throw new UnsupportedOperationException();
+        Message message = template.receive(name);
+        if (message == null) {
+            return null;
+        }
+
+        numOfConsumed.incrementAndGet();
+        return new PriorityMessage(message);
     }
 
     @Override
     public void clean() {
-        throw new UnsupportedOperationException();
+        cleanDelayed();
+        rabbitAdmin.purgeQueue(name, false);
     }
 
     @Override
@@ -117,27 +194,86 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
         return container.isRunning();
     }
 
+    /**
+     * Num of messages loaded from broker, unacked messages are not included for RabbitMQ
+     */
     @Override
     public int size() {
-        return size.get();
+        Properties properties = rabbitAdmin.getQueueProperties(name);
+        if (properties == null) {
+            return 0;
+        }
+
+        Object count = properties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT);
+        return count == null ? 0 : Integer.parseInt(count.toString());
+    }
+
+    public long getNumOfPublished() {
+        return numOfPublished.get();
+    }
+
+    public long getNumOfConsumed() {
+        return numOfConsumed.get();
+    }
+
+    /**
+     * Average num of published messages per second since queue created
+     */
+    public double getPublishRate() {
+        return rate(numOfPublished.get());
+    }
+
+    /**
+     * Average num of consumed messages per second since queue created
+     */
+    public double getConsumeRate() {
+        return rate(numOfConsumed.get());
+    }
+
+    private double rate(long count) {
+        long duration = System.currentTimeMillis() - createdAt;
+        return duration <= 0 ? 0 : count * 1000.0 / duration;
+    }
+
+    private void publish(Channel channel, PriorityMessage item) throws IOException {
+        AMQP.BasicProperties properties = PROPERTIES_CONVERTER
+            .fromMessageProperties(item.getMessageProperties(), StandardCharsets.UTF_8.name());
+        channel.basicPublish("", name, properties, item.getBody());
+    }
+
+    private void waitForConfirms(Channel channel) throws IOException, InterruptedException {
+        try {
+            channel.waitForConfirmsOrDie(settings.getConfirmTimeout());
+        } catch (TimeoutException e) {
+            throw new AmqpException("Publisher confirms timeout for queue " + name, e);
+        }
     }
 
     private void initRabbitMQ() throws URISyntaxException {
-        CachingConnectionFactory connectionFactory = new CachingConnectionFactory(new URI(host));
+        connectionFactory = new CachingConnectionFactory(new URI(host));
 
         Map<String, Object> cmdQueueArgs = new HashMap<>();
         cmdQueueArgs.put("x-max-length", maxSize);
-        cmdQueueArgs.put("x-max-priority", maxPriority);
+
+        if (settings.getMaxPriority() > 0) {
+            cmdQueueArgs.put("x-max-priority", settings.getMaxPriority());
+        }
+
+        if (settings.isLazy()) {
+            cmdQueueArgs.put("x-queue-mode", "lazy");
+        }
+
         Queue cmdQueue = new Queue(name, true, false, false, cmdQueueArgs);
 
-        RabbitAdmin rabbitAdmin = new RabbitAdmin(connectionFactory);
+        rabbitAdmin = new RabbitAdmin(connectionFactory);
         rabbitAdmin.declareQueue(cmdQueue);
 
         // setup listener container factory
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
-        factory.setConcurrentConsumers(DEFAULT_CONCURRENCY);
-        factory.setMaxConcurrentConsumers(DEFAULT_CONCURRENCY);
+        factory.setConcurrentConsumers(settings.getConcurrency());
+        factory.setMaxConcurrentConsumers(settings.getMaxConcurrency());
+        factory.setPrefetchCount(settings.getPrefetch());
         factory.setTaskExecutor(executor);
         factory.setAutoStartup(false);
 
@@ -151,14 +287,20 @@ public class RabbitQueue extends PlatformQueue<PriorityMessage> implements Conte
 
         container = factory.createListenerContainer(simpleEndpoint);
         container.setQueueNames(name);
-        LOGGER.trace("RabbitMQ initialized on '%s' with queue name '%s'", host, name);
+        LOGGER.trace("RabbitMQ initialized on '%s' with queue name '%s' and %s", host, name, settings);
+    }
+
+    private static RabbitQueueSettings defaultSettings(int maxPriority) {
+        RabbitQueueSettings settings = new RabbitQueueSettings();
+        settings.setMaxPriority(maxPriority);
+        return settings;
     }
 
     private class RabbitMessageListener implements MessageListener {
 
         @Override
         public void onMessage(Message message) {
-            size.decrementAndGet();
+            numOfConsumed.incrementAndGet();
             for (QueueListener<PriorityMessage> listener : listeners) {
                 listener.onQueueItem(new PriorityMessage(message));
             }
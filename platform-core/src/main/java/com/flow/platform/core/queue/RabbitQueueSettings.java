@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.queue;
+
+/**
+ * Settings of RabbitQueue
+ *
+ * @author yang
+ */
+public class RabbitQueueSettings {
+
+    /**
+     * Num of consumers
+     */
+    private int concurrency = 1;
+
+    /**
+     * Max num of consumers, consumers will be added on demand until max concurrency
+     */
+    private int maxConcurrency = 1;
+
+    /**
+     * Num of unacked messages for each consumer
+     */
+    private int prefetch = 1;
+
+    /**
+     * Num of messages published before waiting for publisher confirms, 0 to disable confirm
+     */
+    private int confirmBatchSize = 0;
+
+    /**
+     * Timeout in millis of waiting for publisher confirms
+     */
+    private long confirmTimeout = 5000;
+
+    /**
+     * Queue argument 'x-max-priority', 0 to declare queue without priority
+     */
+    private int maxPriority = 0;
+
+    /**
+     * Queue argument 'x-queue-mode' to lazy that keep messages on disk
+     */
+    private boolean lazy = false;
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return Math.max(maxConcurrency, concurrency);
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(int prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    public int getConfirmBatchSize() {
+        return confirmBatchSize;
+    }
+
+    public void setConfirmBatchSize(int confirmBatchSize) {
+        this.confirmBatchSize = confirmBatchSize;
+    }
+
+    public long getConfirmTimeout() {
+        return confirmTimeout;
+    }
+
+    public void setConfirmTimeout(long confirmTimeout) {
+        this.confirmTimeout = confirmTimeout;
+    }
+
+    public int getMaxPriority() {
+        return maxPriority;
+    }
+
+    public void setMaxPriority(int maxPriority) {
+        this.maxPriority = maxPriority;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    @Override
+    public String toString() {
+        return "RabbitQueueSettings{" +
+            "concurrency=" + concurrency +
+            ", maxConcurrency=" + maxConcurrency +
+            ", prefetch=" + prefetch +
+            ", confirmBatchSize=" + confirmBatchSize +
+            ", maxPriority=" + maxPriority +
+            ", lazy=" + lazy +
+            '}';
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.sysinfo;
+
+import com.flow.platform.core.sysinfo.SystemInfo.Status;
+import com.flow.platform.core.sysinfo.SystemInfo.Type;
+import java.util.HashMap;
+import java.util.Map;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Load hibernate second level cache and query cache statistics
+ *
+ * @author yang
+ */
+public class HibernateCacheLoader implements SystemInfoLoader {
+
+    public enum CacheGroup implements GroupName {
+        SECOND_LEVEL,
+
+        QUERY,
+
+        REGIONS
+    }
+
+    private final SessionFactory sessionFactory;
+
+    public HibernateCacheLoader(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public SystemInfo load() {
+        Statistics statistics = sessionFactory.getStatistics();
+
+        if (!statistics.isStatisticsEnabled()) {
+            return new SystemInfo(Status.OFFLINE, Type.CACHE);
+        }
+
+        GroupSystemInfo info = new GroupSystemInfo(Status.RUNNING, Type.CACHE);
+        info.setName("Hibernate Cache");
+
+        long l2Hit = statistics.getSecondLevelCacheHitCount();
+        long l2Miss = statistics.getSecondLevelCacheMissCount();
+
+        Map<String, String> secondLevel = new HashMap<>();
+        secondLevel.put("cache.hit", Long.toString(l2Hit));
+        secondLevel.put("cache.miss", Long.toString(l2Miss));
+        secondLevel.put("cache.put", Long.toString(statistics.getSecondLevelCachePutCount()));
+        secondLevel.put("cache.hit.ratio", hitRatio(l2Hit, l2Miss));
+        info.put(CacheGroup.SECOND_LEVEL, secondLevel);
+
+        long queryHit = statistics.getQueryCacheHitCount();
+        long queryMiss = statistics.getQueryCacheMissCount();
+
+        Map<String, String> query = new HashMap<>();
+        query.put("cache.hit", Long.toString(queryHit));
+        query.put("cache.miss", Long.toString(queryMiss));
+        query.put("cache.put", Long.toString(statistics.getQueryCachePutCount()));
+        query.put("cache.hit.ratio", hitRatio(queryHit, queryMiss));
+        query.put("query.execution", Long.toString(statistics.getQueryExecutionCount()));
+        info.put(CacheGroup.QUERY, query);
+
+        Map<String, String> regions = new HashMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            SecondLevelCacheStatistics regionStats = statistics.getSecondLevelCacheStatistics(region);
+            if (regionStats == null) {
+                continue;
+            }
+
+            regions.put(region, String.format("hit=%s, miss=%s, put=%s, size=%s",
+                regionStats.getHitCount(),
+                regionStats.getMissCount(),
+                regionStats.getPutCount(),
+                regionStats.getElementCountInMemory()));
+        }
+        info.put(CacheGroup.REGIONS, regions);
+
+        return info;
+    }
+
+    private static String hitRatio(long hit, long miss) {
+        long total = hit + miss;
+        if (total == 0) {
+            return "0.00";
+        }
+        return String.format("%.2f", (double) hit / total);
+    }
+}
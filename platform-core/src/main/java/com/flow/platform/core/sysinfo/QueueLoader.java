@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.sysinfo;
+
+import com.flow.platform.core.queue.RabbitQueue;
+import com.flow.platform.core.sysinfo.SystemInfo.Status;
+import com.flow.platform.core.sysinfo.SystemInfo.Type;
+import com.flow.platform.queue.LaneQueue;
+import com.flow.platform.queue.PlatformQueue;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load queue depth, delayed and dead letter size, the depth of each lane is loaded for LaneQueue
+ * and the publish/consume throughput is loaded for RabbitQueue
+ *
+ * @author yang
+ */
+public class QueueLoader implements SystemInfoLoader {
+
+    public enum QueueGroup implements GroupName {
+        QUEUE,
+
+        LANES,
+
+        THROUGHPUT
+    }
+
+    private final PlatformQueue<?> queue;
+
+    public QueueLoader(PlatformQueue<?> queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public SystemInfo load() {
+        GroupSystemInfo info = new GroupSystemInfo(queue.isRunning() ? Status.RUNNING : Status.OFFLINE, Type.QUEUE);
+        info.setName(queue.getName());
+
+        Map<String, String> summary = new HashMap<>();
+        summary.put("queue.size", Integer.toString(queue.size()));
+        summary.put("queue.running", Boolean.toString(queue.isRunning()));
+        summary.put("queue.delayed", Integer.toString(queue.delayedSize()));
+        summary.put("queue.dead_letters", Integer.toString(queue.getDeadLetters().size()));
+        info.put(QueueGroup.QUEUE, summary);
+
+        if (queue instanceof RabbitQueue) {
+            RabbitQueue rabbitQueue = (RabbitQueue) queue;
+            Map<String, String> throughput = new LinkedHashMap<>();
+            throughput.put("published", Long.toString(rabbitQueue.getNumOfPublished()));
+            throughput.put("consumed", Long.toString(rabbitQueue.getNumOfConsumed()));
+            throughput.put("publish_rate", String.format("%.2f/s", rabbitQueue.getPublishRate()));
+            throughput.put("consume_rate", String.format("%.2f/s", rabbitQueue.getConsumeRate()));
+            info.put(QueueGroup.THROUGHPUT, throughput);
+        }
+
+        if (!(queue instanceof LaneQueue)) {
+            return info;
+        }
+
+        LaneQueue<?> laneQueue = (LaneQueue<?>) queue;
+        Map<String, String> lanes = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : laneQueue.sizes().entrySet()) {
+            String lane = entry.getKey();
+            lanes.put(lane, String.format("size=%s, max=%s, running=%s",
+                entry.getValue(),
+                laneQueue.getMaxSize(lane),
+                laneQueue.isRunning(lane)));
+        }
+        info.put(QueueGroup.LANES, lanes);
+
+        return info;
+    }
+}
@@ -56,6 +56,10 @@ public class SystemInfo extends Jsonable {
         ZK,
 
         MQ,
+
+        CACHE,
+
+        QUEUE,
     }
 
     @Expose
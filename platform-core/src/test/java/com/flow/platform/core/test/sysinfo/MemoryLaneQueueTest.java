@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.core.test.sysinfo;
+
+import com.flow.platform.core.queue.MemoryLaneQueue;
+import com.flow.platform.core.queue.PriorityMessage;
+import com.flow.platform.queue.QueueFullException;
+import com.flow.platform.queue.RetryPolicy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class MemoryLaneQueueTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private MemoryLaneQueue queue;
+
+    @Before
+    public void init() {
+        queue = new MemoryLaneQueue(executor, 10, "testLaneQueue");
+    }
+
+    @Test
+    public void should_process_other_lane_when_lane_paused() throws Throwable {
+        // given:
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> processed = new CopyOnWriteArrayList<>();
+        queue.register(item -> {
+            processed.add(new String(item.getBody()));
+            latch.countDown();
+        });
+
+        // when: pause zone-a and enqueue to both zone
+        queue.pause("zone-a");
+        queue.enqueue(PriorityMessage.create("a".getBytes(), 1, "zone-a"));
+        queue.enqueue(PriorityMessage.create("b".getBytes(), 1, "zone-b"));
+        queue.start();
+
+        // then: only item of zone-b processed
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, processed.size());
+        Assert.assertEquals("b", processed.get(0));
+        Assert.assertEquals(1, queue.size("zone-a"));
+        Assert.assertFalse(queue.isRunning("zone-a"));
+        Assert.assertTrue(queue.isRunning("zone-b"));
+
+        // when: resume zone-a
+        queue.resume("zone-a");
+        Thread.sleep(500);
+
+        // then:
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals("a", processed.get(1));
+    }
+
+    @Test
+    public void should_drain_lanes_in_round_robin() throws Throwable {
+        // given:
+        for (int i = 0; i < 3; i++) {
+            queue.enqueue(PriorityMessage.create(("a" + i).getBytes(), 3 - i, "zone-a"));
+        }
+        queue.enqueue(PriorityMessage.create("b0".getBytes(), 1, "zone-b"));
+        queue.enqueue(PriorityMessage.create("c0".getBytes(), 1, "zone-c"));
+
+        // when:
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            order.append(new String(queue.dequeue().getBody())).append(' ');
+        }
+
+        // then: each lane take one turn
+        Assert.assertEquals("b0 c0 a0 a1 a2 ", order.toString());
+    }
+
+    @Test
+    public void should_process_items_when_lanes_created_concurrently() throws Throwable {
+        // given:
+        final int numOfLanes = 200;
+        CountDownLatch latch = new CountDownLatch(numOfLanes);
+        queue.register(item -> latch.countDown());
+        queue.start();
+
+        // when: enqueue to new lane from multiple threads while processor running
+        ExecutorService producers = Executors.newFixedThreadPool(10);
+        for (int i = 0; i < numOfLanes; i++) {
+            final String lane = "zone-" + i;
+            producers.execute(() -> queue.enqueue(PriorityMessage.create(lane.getBytes(), 1, lane)));
+        }
+
+        // then: processor not broken by lane creation
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(numOfLanes, queue.sizes().size());
+        producers.shutdownNow();
+    }
+
+    @Test(expected = QueueFullException.class)
+    public void should_reject_when_lane_is_full() {
+        queue.setMaxSize("zone-a", 1);
+        queue.enqueue(PriorityMessage.create("b".getBytes(), 1, "zone-b"));
+        queue.enqueue(PriorityMessage.create("a".getBytes(), 1, "zone-a"));
+        queue.enqueue(PriorityMessage.create("a".getBytes(), 1, "zone-a"));
+    }
+
+    @Test
+    public void should_redeliver_with_backoff_and_move_to_dead_letters() throws Throwable {
+        // given:
+        queue.setRetryPolicy(new RetryPolicy(100, 2.0, 1000, 2));
+        CountDownLatch latch = new CountDownLatch(2);
+        queue.register(item -> latch.countDown());
+        queue.start();
+
+        // when: retry twice without blocking caller
+        long start = System.currentTimeMillis();
+        Assert.assertTrue(queue.retry(PriorityMessage.create("1".getBytes(), 1, "zone-a"), 1));
+        Assert.assertTrue(queue.retry(PriorityMessage.create("2".getBytes(), 1, "zone-a"), 2));
+        Assert.assertEquals(2, queue.delayedSize());
+
+        // then: delivered after delay
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+        Assert.assertEquals(0, queue.delayedSize());
+
+        // when: over max retry
+        Assert.assertFalse(queue.retry(PriorityMessage.create("3".getBytes(), 1, "zone-a"), 3));
+
+        // then:
+        Assert.assertEquals(1, queue.getDeadLetters().size());
+        Assert.assertEquals("3", new String(queue.getDeadLetters().get(0).getBody()));
+    }
+
+    @Test
+    public void should_not_move_delayed_item_to_queue_after_stop() throws Throwable {
+        // given:
+        queue.start();
+        queue.enqueue(PriorityMessage.create("1".getBytes(), 1, "zone-a"), 200);
+
+        // when: stop before delay reached
+        queue.stop();
+        Thread.sleep(500);
+
+        // then: item kept in delayed
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(1, queue.delayedSize());
+
+        // when: clean queue
+        queue.clean();
+
+        // then:
+        Assert.assertEquals(0, queue.delayedSize());
+    }
+
+    @Test
+    public void should_not_start_delay_thread_by_delayed_enqueue_after_stop() throws Throwable {
+        // given:
+        queue.start();
+        queue.stop();
+
+        // when: enqueue with delay after stop
+        queue.enqueue(PriorityMessage.create("1".getBytes(), 1, "zone-a"), 100);
+        Thread.sleep(300);
+
+        // then: item kept in delayed and no delay thread alive
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(1, queue.delayedSize());
+        Assert.assertFalse(Thread.getAllStackTraces().keySet().stream()
+            .anyMatch(thread -> thread.getName().equals("testLaneQueue-delay")));
+
+        // when: start queue again
+        queue.start();
+        Thread.sleep(300);
+
+        // then: delayed item moved to queue
+        Assert.assertEquals(0, queue.delayedSize());
+    }
+
+    @After
+    public void clean() {
+        queue.stop();
+        queue.clean();
+        executor.shutdownNow();
+    }
+}
@@ -17,11 +17,17 @@
 package com.flow.platform.core.test.sysinfo;
 
 import com.flow.platform.core.queue.PriorityMessage;
+import com.flow.platform.core.queue.RabbitQueue;
+import com.flow.platform.core.sysinfo.GroupSystemInfo;
+import com.flow.platform.core.sysinfo.QueueLoader;
+import com.flow.platform.core.sysinfo.QueueLoader.QueueGroup;
+import com.flow.platform.core.util.ThreadUtil;
 import com.flow.platform.queue.PlatformQueue;
 import com.flow.platform.queue.QueueListener;
 import com.flow.platform.util.ObjectWrapper;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.After;
@@ -45,14 +51,17 @@ public class PlatformQueueTest {
     @Autowired
     private PlatformQueue<PriorityMessage> rabbitQueue;
 
+    @Autowired
+    private RabbitQueue confirmRabbitQueue;
+
     @Test
     public void should_enqueue_for_in_memory_queue() throws Throwable {
         // given: queue listener
         CountDownLatch latch = new CountDownLatch(1);
         ObjectWrapper<PriorityMessage> result = new ObjectWrapper<>();
         QueueListener<PriorityMessage> listener = item -> {
-            latch.countDown();
             result.setInstance(item);
+            latch.countDown();
         };
 
         inMemoryQueue.register(listener);
@@ -68,6 +77,7 @@ public class PlatformQueueTest {
 
         // when: pause and enqueue again
         inMemoryQueue.pause();
+        Thread.sleep(1500); // wait for in-flight poll timeout
         inMemoryQueue.enqueue(PriorityMessage.create("Pause".getBytes(), 1));
         Assert.assertEquals(1, inMemoryQueue.size());
 
@@ -82,11 +92,11 @@ public class PlatformQueueTest {
         // given: queue listener
         int size = 2;
         CountDownLatch latch = new CountDownLatch(size);
-        List<String> prioritizedList = new ArrayList<>(size);
+        List<String> prioritizedList = new CopyOnWriteArrayList<>();
 
         QueueListener<PriorityMessage> listener = item -> {
-            latch.countDown();
             prioritizedList.add(new String(item.getBody()));
+            latch.countDown();
         };
 
         // when:
@@ -108,8 +118,8 @@ public class PlatformQueueTest {
         CountDownLatch latch = new CountDownLatch(1);
         ObjectWrapper<PriorityMessage> result = new ObjectWrapper<>();
         QueueListener<PriorityMessage> listener = item -> {
-            latch.countDown();
             result.setInstance(item);
+            latch.countDown();
         };
 
         rabbitQueue.register(listener);
@@ -118,8 +128,9 @@ public class PlatformQueueTest {
         // when: enqueue
         rabbitQueue.enqueue(PriorityMessage.create("hello".getBytes(), 1));
 
-        // then:
+        // then: wait for message acked since size is loaded from broker
         latch.await(10, TimeUnit.SECONDS);
+        Thread.sleep(500);
         Assert.assertEquals(0, rabbitQueue.size());
         Assert.assertNotNull(result.getInstance());
         Assert.assertEquals("hello", new String(result.getInstance().getBody(), "UTF-8"));
@@ -135,6 +146,45 @@ public class PlatformQueueTest {
         Assert.assertEquals(0, rabbitQueue.size());
     }
 
+    @Test
+    public void should_batch_enqueue_with_confirms_for_rabbit_queue() throws Throwable {
+        // when: publish 12 messages with confirm batch size 5
+        List<PriorityMessage> messages = new ArrayList<>(12);
+        for (int i = 0; i < 12; i++) {
+            messages.add(PriorityMessage.create(Integer.toString(i).getBytes(), 1));
+        }
+        confirmRabbitQueue.enqueueAll(messages);
+
+        // then: all messages confirmed by broker
+        Assert.assertEquals(12, confirmRabbitQueue.size());
+        Assert.assertEquals(12, confirmRabbitQueue.getNumOfPublished());
+
+        // when: dequeue without listener
+        PriorityMessage first = confirmRabbitQueue.dequeue();
+
+        // then:
+        Assert.assertEquals("0", new String(first.getBody()));
+        Assert.assertEquals(11, confirmRabbitQueue.size());
+
+        // when: clean
+        confirmRabbitQueue.clean();
+        Assert.assertEquals(0, confirmRabbitQueue.size());
+        Assert.assertNull(confirmRabbitQueue.dequeue());
+
+        // then: consumed by concurrent consumers
+        CountDownLatch latch = new CountDownLatch(3);
+        confirmRabbitQueue.register(item -> latch.countDown());
+        confirmRabbitQueue.start();
+        confirmRabbitQueue.enqueueAll(messages.subList(0, 3));
+
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(4, confirmRabbitQueue.getNumOfConsumed());
+
+        // then: throughput loaded
+        GroupSystemInfo info = (GroupSystemInfo) new QueueLoader(confirmRabbitQueue).load();
+        Assert.assertEquals("15", info.get(QueueGroup.THROUGHPUT).get("published"));
+    }
+
     @After
     public void clean() {
         inMemoryQueue.stop();
@@ -142,6 +192,10 @@ public class PlatformQueueTest {
         inMemoryQueue.cleanListener();
 
         rabbitQueue.stop();
+        confirmRabbitQueue.stop();
+
+        // wait for queue processor exit which polls item in every second
+        ThreadUtil.sleep(1500);
     }
 
 }
@@ -19,6 +19,7 @@ package com.flow.platform.core.test.sysinfo;
 import com.flow.platform.core.queue.MemoryQueue;
 import com.flow.platform.core.queue.PriorityMessage;
 import com.flow.platform.core.queue.RabbitQueue;
+import com.flow.platform.core.queue.RabbitQueueSettings;
 import com.flow.platform.core.util.ThreadUtil;
 import com.flow.platform.queue.PlatformQueue;
 import org.springframework.beans.factory.annotation.Configurable;
@@ -43,8 +44,25 @@ public class TestConfig {
         return new MemoryQueue(executor, 1, "testInMemoryQueue");
     }
 
+    @Bean(destroyMethod = "stop")
+    public EmbeddedBroker embeddedBroker() throws Exception {
+        EmbeddedBroker broker = new EmbeddedBroker(5682);
+        broker.start();
+        return broker;
+    }
+
+    @Bean
+    public PlatformQueue<PriorityMessage> rabbitQueue(EmbeddedBroker embeddedBroker) {
+        return new RabbitQueue(executor, embeddedBroker.getHost(), 1, 1, "ut-queue");
+    }
+
     @Bean
-    public PlatformQueue<PriorityMessage> rabbitQueue() {
-        return new RabbitQueue(executor, "amqp://localhost:5672", 1, 1, "ut-queue");
+    public RabbitQueue confirmRabbitQueue(EmbeddedBroker embeddedBroker) {
+        RabbitQueueSettings settings = new RabbitQueueSettings();
+        settings.setConcurrency(2);
+        settings.setPrefetch(10);
+        settings.setConfirmBatchSize(5);
+        settings.setLazy(true);
+        return new RabbitQueue(executor, embeddedBroker.getHost(), 100, "ut-confirm-queue", settings);
     }
 }
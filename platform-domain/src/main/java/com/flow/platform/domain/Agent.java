@@ -31,11 +31,17 @@ public class Agent extends Webhookable {
     private AgentPath path;
 
     /**
-     * Max concurrent proc number
+     * Max concurrent proc number, as num of execution slots
      */
     @Expose
     private Integer concurrentProc = 1;
 
+    /**
+     * Num of slots occupied by sessions and running cmds without session
+     */
+    @Expose
+    private Integer usedSlots = 0;
+
     /**
      * Agent busy or idle
      */
@@ -60,6 +66,11 @@ public class Agent extends Webhookable {
     @Expose
     private String token;
 
+    /**
+     * Run id of agent process, changed when agent process restarted
+     */
+    private String runId;
+
     /**
      * Created date
      */
@@ -91,6 +102,14 @@ public class Agent extends Webhookable {
         this.token = token;
     }
 
+    public String getRunId() {
+        return runId;
+    }
+
+    public void setRunId(String runId) {
+        this.runId = runId;
+    }
+
     public AgentPath getPath() {
         return path;
     }
@@ -115,6 +134,23 @@ public class Agent extends Webhookable {
         this.concurrentProc = concurrentProc;
     }
 
+    public Integer getUsedSlots() {
+        return usedSlots;
+    }
+
+    public void setUsedSlots(Integer usedSlots) {
+        this.usedSlots = usedSlots;
+    }
+
+    /**
+     * Num of slots can be used for new session or cmd
+     */
+    public int getFreeSlots() {
+        int total = concurrentProc == null ? 1 : concurrentProc;
+        int used = usedSlots == null ? 0 : usedSlots;
+        return Math.max(total - used, 0);
+    }
+
     public AgentStatus getStatus() {
         return status;
     }
@@ -156,7 +192,7 @@ public class Agent extends Webhookable {
     }
 
     public boolean isAvailable() {
-        return getStatus() == AgentStatus.IDLE;
+        return getStatus() == AgentStatus.IDLE && getFreeSlots() > 0;
     }
 
     @Override
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain;
+
+import com.google.gson.annotations.Expose;
+
+/**
+ * Host metrics sampled by agent periodically, advertised with agent slots
+ *
+ * @author yang
+ */
+public class AgentMetrics extends Jsonable {
+
+    public final static int UNKNOWN = -1;
+
+    /**
+     * Host cpu usage in percent since last sample
+     */
+    @Expose
+    private int cpu = UNKNOWN;
+
+    /**
+     * Host load average of last minute
+     */
+    @Expose
+    private double load = UNKNOWN;
+
+    /**
+     * Num of available processors
+     */
+    @Expose
+    private int cores = UNKNOWN;
+
+    /**
+     * Total memory in MB
+     */
+    @Expose
+    private long memTotal = UNKNOWN;
+
+    /**
+     * Available memory in MB
+     */
+    @Expose
+    private long memFree = UNKNOWN;
+
+    /**
+     * Free disk space of agent workspace in MB
+     */
+    @Expose
+    private long diskFree = UNKNOWN;
+
+    /**
+     * Num of runnable processes on host
+     */
+    @Expose
+    private int procs = UNKNOWN;
+
+    /**
+     * Num of busy cmd io threads of agent
+     */
+    @Expose
+    private int ioThreads = UNKNOWN;
+
+    /**
+     * Total num of cmd io tasks run on overflow threads since agent started
+     */
+    @Expose
+    private long ioOverflow = UNKNOWN;
+
+    public AgentMetrics() {
+    }
+
+    public int getCpu() {
+        return cpu;
+    }
+
+    public void setCpu(int cpu) {
+        this.cpu = cpu;
+    }
+
+    public double getLoad() {
+        return load;
+    }
+
+    public void setLoad(double load) {
+        this.load = load;
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public void setCores(int cores) {
+        this.cores = cores;
+    }
+
+    public long getMemTotal() {
+        return memTotal;
+    }
+
+    public void setMemTotal(long memTotal) {
+        this.memTotal = memTotal;
+    }
+
+    public long getMemFree() {
+        return memFree;
+    }
+
+    public void setMemFree(long memFree) {
+        this.memFree = memFree;
+    }
+
+    public long getDiskFree() {
+        return diskFree;
+    }
+
+    public void setDiskFree(long diskFree) {
+        this.diskFree = diskFree;
+    }
+
+    public int getProcs() {
+        return procs;
+    }
+
+    public void setProcs(int procs) {
+        this.procs = procs;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public long getIoOverflow() {
+        return ioOverflow;
+    }
+
+    public void setIoOverflow(long ioOverflow) {
+        this.ioOverflow = ioOverflow;
+    }
+
+    /**
+     * Memory usage in percent, or UNKNOWN
+     */
+    public int getMemUsage() {
+        if (memTotal <= 0 || memFree < 0) {
+            return UNKNOWN;
+        }
+        return (int) ((memTotal - memFree) * 100 / memTotal);
+    }
+
+    /**
+     * Load average per core in percent, or UNKNOWN
+     */
+    public int getLoadUsage() {
+        if (load < 0 || cores <= 0) {
+            return UNKNOWN;
+        }
+        return (int) (load * 100 / cores);
+    }
+
+    @Override
+    public String toString() {
+        return "AgentMetrics{" +
+            "cpu=" + cpu +
+            ", load=" + load +
+            ", cores=" + cores +
+            ", memTotal=" + memTotal +
+            ", memFree=" + memFree +
+            ", diskFree=" + diskFree +
+            ", procs=" + procs +
+            ", ioThreads=" + ioThreads +
+            ", ioOverflow=" + ioOverflow +
+            '}';
+    }
+}
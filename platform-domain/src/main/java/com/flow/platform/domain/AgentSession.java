@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain;
+
+import com.google.gson.annotations.Expose;
+import java.time.ZonedDateTime;
+
+/**
+ * Session of agent, each session occupies one execution slot of agent
+ *
+ * @author yang
+ */
+public class AgentSession extends Jsonable {
+
+    @Expose
+    private String sessionId;
+
+    @Expose
+    private AgentPath agentPath;
+
+    @Expose
+    private ZonedDateTime createdDate;
+
+    public AgentSession() {
+    }
+
+    public AgentSession(String sessionId, AgentPath agentPath, ZonedDateTime createdDate) {
+        this.sessionId = sessionId;
+        this.agentPath = agentPath;
+        this.createdDate = createdDate;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public AgentPath getAgentPath() {
+        return agentPath;
+    }
+
+    public void setAgentPath(AgentPath agentPath) {
+        this.agentPath = agentPath;
+    }
+
+    public ZonedDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(ZonedDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        AgentSession that = (AgentSession) o;
+        return sessionId.equals(that.sessionId);
+    }
+
+    @Override
+    public int hashCode() {
+        return sessionId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "AgentSession{" +
+            "sessionId='" + sessionId + '\'' +
+            ", agentPath=" + agentPath +
+            '}';
+    }
+}
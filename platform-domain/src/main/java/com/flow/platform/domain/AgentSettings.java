@@ -43,12 +43,24 @@ public class AgentSettings extends Jsonable {
     @Expose
     private String cmdStatusUrl;
 
+    /**
+     * Url for report batch of cmd status with sequence number
+     */
+    @Expose
+    private String cmdStatusBatchUrl;
+
     /**
      * Url for upload full zipped cmd log
      */
     @Expose
     private String cmdLogUrl;
 
+    /**
+     * Url for upload chunk of cmd log while cmd running
+     */
+    @Expose
+    private String cmdLogChunkUrl;
+
     /**
      * Url for zookeeper
      */
@@ -103,6 +115,14 @@ public class AgentSettings extends Jsonable {
         this.cmdStatusUrl = cmdStatusUrl;
     }
 
+    public String getCmdStatusBatchUrl() {
+        return cmdStatusBatchUrl;
+    }
+
+    public void setCmdStatusBatchUrl(String cmdStatusBatchUrl) {
+        this.cmdStatusBatchUrl = cmdStatusBatchUrl;
+    }
+
     public String getCmdLogUrl() {
         return cmdLogUrl;
     }
@@ -111,12 +131,21 @@ public class AgentSettings extends Jsonable {
         this.cmdLogUrl = cmdLogUrl;
     }
 
+    public String getCmdLogChunkUrl() {
+        return cmdLogChunkUrl;
+    }
+
+    public void setCmdLogChunkUrl(String cmdLogChunkUrl) {
+        this.cmdLogChunkUrl = cmdLogChunkUrl;
+    }
+
     @Override
     public String toString() {
         return "AgentSettings{" +
             "agentPath=" + agentPath +
             ", webSocketUrl='" + webSocketUrl + '\'' +
             ", cmdStatusUrl='" + cmdStatusUrl + '\'' +
+            ", cmdStatusBatchUrl='" + cmdStatusBatchUrl + '\'' +
             ", cmdLogUrl='" + cmdLogUrl + '\'' +
             ", zookeeperUrl='" + zookeeperUrl + '\'' +
             "} " + super.toString();
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain;
+
+import com.google.gson.annotations.Expose;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Execution slots advertised by agent through its zookeeper node data, with in-flight cmds and
+ * run id of agent process to resume agent after zookeeper session lost
+ *
+ * @author yang
+ */
+public class AgentSlots extends Jsonable {
+
+    /**
+     * Num of cmds can be executed in parallel
+     */
+    @Expose
+    private int total;
+
+    /**
+     * Num of cmds executing
+     */
+    @Expose
+    private int used;
+
+    /**
+     * Num of cmds waiting in local queue
+     */
+    @Expose
+    private int queued;
+
+    /**
+     * Id of cmds executing or waiting in local queue
+     */
+    @Expose
+    private List<String> cmds;
+
+    /**
+     * Unique id of agent process, changed when agent restarted
+     */
+    @Expose
+    private String runId;
+
+    /**
+     * Host metrics of agent, null if agent not sample metrics
+     */
+    @Expose
+    private AgentMetrics metrics;
+
+    public AgentSlots() {
+    }
+
+    public AgentSlots(int total, int used, int queued) {
+        this(total, used, queued, Collections.emptyList(), null, null);
+    }
+
+    public AgentSlots(int total, int used, int queued, AgentMetrics metrics) {
+        this(total, used, queued, Collections.emptyList(), null, metrics);
+    }
+
+    public AgentSlots(int total, int used, int queued, List<String> cmds) {
+        this(total, used, queued, cmds, null, null);
+    }
+
+    private AgentSlots(int total, int used, int queued, List<String> cmds, String runId, AgentMetrics metrics) {
+        this.total = total;
+        this.used = used;
+        this.queued = queued;
+        this.cmds = cmds;
+        this.runId = runId;
+        this.metrics = metrics;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getUsed() {
+        return used;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public List<String> getCmds() {
+        return cmds == null ? Collections.emptyList() : cmds;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public AgentMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Copy slots with host metrics
+     */
+    public AgentSlots withMetrics(AgentMetrics metrics) {
+        return new AgentSlots(total, used, queued, cmds, runId, metrics);
+    }
+
+    /**
+     * Copy slots with run id of agent process
+     */
+    public AgentSlots withRunId(String runId) {
+        return new AgentSlots(total, used, queued, cmds, runId, metrics);
+    }
+
+    /**
+     * Cmds, run id and metrics are not compared since they are not capacity of agent
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        AgentSlots that = (AgentSlots) o;
+        return total == that.total && used == that.used && queued == that.queued;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = total;
+        result = 31 * result + used;
+        result = 31 * result + queued;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "AgentSlots{" +
+            "total=" + total +
+            ", used=" + used +
+            ", queued=" + queued +
+            ", cmds=" + cmds +
+            ", runId='" + runId + '\'' +
+            ", metrics=" + metrics +
+            '}';
+    }
+}
@@ -57,6 +57,11 @@ public class Cmd extends CmdBase {
 
     private String logPath;
 
+    /**
+     * Codec of log file in log path
+     */
+    private LogCodec logCodec;
+
     /**
      * Retry time if cmd with cmd queue
      */
@@ -105,6 +110,14 @@ public class Cmd extends CmdBase {
         this.logPath = logPath;
     }
 
+    public LogCodec getLogCodec() {
+        return logCodec;
+    }
+
+    public void setLogCodec(LogCodec logCodec) {
+        this.logCodec = logCodec;
+    }
+
     public Integer getRetry() {
         return retry;
     }
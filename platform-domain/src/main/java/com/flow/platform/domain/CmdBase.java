@@ -16,7 +16,6 @@
 
 package com.flow.platform.domain;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -63,7 +62,7 @@ public abstract class CmdBase extends Webhookable {
      * Input parameter, deal with export XX=XX before cmd execute
      * Add input: getInputs().add(key, value)
      */
-    protected Map<String, String> inputs = new HashMap<>();
+    protected Map<String, String> inputs = new EnvMap();
 
     /**
      * Cmd working dir, default is user.home
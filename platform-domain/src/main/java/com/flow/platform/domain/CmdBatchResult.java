@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain;
+
+/**
+ * Result of each cmd in batch submission, either cmd or error is set
+ *
+ * @author yang
+ */
+public class CmdBatchResult extends Jsonable {
+
+    // created cmd
+    private Cmd cmd;
+
+    // error message if cmd cannot be created or sent
+    private String error;
+
+    // seconds to retry after if cmd rejected by rate limit
+    private Long retryAfter;
+
+    public CmdBatchResult() {
+    }
+
+    public CmdBatchResult(Cmd cmd, String error) {
+        this.cmd = cmd;
+        this.error = error;
+    }
+
+    public CmdBatchResult(String error, Long retryAfter) {
+        this.error = error;
+        this.retryAfter = retryAfter;
+    }
+
+    public Cmd getCmd() {
+        return cmd;
+    }
+
+    public void setCmd(Cmd cmd) {
+        this.cmd = cmd;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public Long getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public boolean hasSuccess() {
+        return error == null;
+    }
+}
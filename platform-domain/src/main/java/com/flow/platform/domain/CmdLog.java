@@ -25,6 +25,13 @@ public class CmdLog extends Jsonable {
 
     private String logPath;
 
+    private LogCodec codec;
+
+    /**
+     * Num of log chunks appended to log path
+     */
+    private Integer chunks;
+
     public CmdLog() {
     }
 
@@ -49,6 +56,22 @@ public class CmdLog extends Jsonable {
         this.logPath = logPath;
     }
 
+    public LogCodec getCodec() {
+        return codec;
+    }
+
+    public void setCodec(LogCodec codec) {
+        this.codec = codec;
+    }
+
+    public Integer getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(Integer chunks) {
+        this.chunks = chunks;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -73,6 +96,7 @@ public class CmdLog extends Jsonable {
         return "CmdLog{" +
             "cmdId='" + cmdId + '\'' +
             ", logPath='" + logPath + '\'' +
+            ", codec=" + codec +
             '}';
     }
 }
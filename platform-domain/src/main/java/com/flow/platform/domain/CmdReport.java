@@ -32,6 +32,9 @@ public class CmdReport extends Jsonable {
     // reported result
     private CmdResult result;
 
+    // sequence number of report from agent, null if reported without batch
+    private Long seq;
+
     public CmdReport() {
     }
 
@@ -64,4 +67,12 @@ public class CmdReport extends Jsonable {
     public void setResult(CmdResult result) {
         this.result = result;
     }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
 }
@@ -39,7 +39,7 @@ public enum CmdType implements Serializable {
     DELETE_SESSION("DELETE_SESSION"),
 
     /**
-     * KILL current running processes
+     * KILL running process of cmd which id is in cmd content, or all processes if content is empty
      */
     KILL("KILL"),
 
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Copy-on-write layered env variable map
+ * <p>
+ * Writes go to a private top layer, the layers below are sealed and shared between maps.
+ * {@link #overlay()} seals the top layer and returns a new map on top of it in O(1), the
+ * flattened view is built on first read of entries and cached until next write.
+ * The iteration order is same as LinkedHashMap with the same put/remove sequence.
+ * <p>
+ * Not thread safe, same as LinkedHashMap
+ *
+ * @author yang
+ */
+public class EnvMap extends AbstractMap<String, String> implements Serializable {
+
+    /**
+     * Max sealed layers, the chain will be compacted to single layer when exceeded
+     */
+    private final static int MAX_DEPTH = 8;
+
+    /**
+     * Wrap map to EnvMap, return itself if it is EnvMap already
+     */
+    public static EnvMap of(Map<String, String> map) {
+        if (map instanceof EnvMap) {
+            return (EnvMap) map;
+        }
+
+        EnvMap envMap = new EnvMap();
+        if (map != null) {
+            envMap.putAll(map);
+        }
+        return envMap;
+    }
+
+    /**
+     * Sealed layers shared with other maps
+     */
+    private transient Layer parent;
+
+    /**
+     * Private top layer
+     */
+    private transient LinkedHashMap<String, String> local = new LinkedHashMap<>();
+
+    /**
+     * Keys removed from the sealed layers
+     */
+    private transient Set<String> removed = new HashSet<>();
+
+    /**
+     * Cached flattened entries, never modified in place
+     */
+    private transient Map<String, String> flattened;
+
+    private transient Set<Entry<String, String>> entrySet;
+
+    public EnvMap() {
+    }
+
+    public EnvMap(Map<String, String> map) {
+        putAll(map);
+    }
+
+    private EnvMap(Layer parent, Map<String, String> flattened) {
+        this.parent = parent;
+        this.flattened = flattened;
+    }
+
+    /**
+     * Create a new map on top of current entries, the changes of new map will not
+     * affect this map and vice versa
+     */
+    public EnvMap overlay() {
+        seal();
+        return new EnvMap(parent, flattened);
+    }
+
+    /**
+     * Number of sealed layers
+     */
+    public int depth() {
+        return parent == null ? 0 : parent.depth;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (local.containsKey(key)) {
+            return local.get(key);
+        }
+
+        if (removed.contains(key) || parent == null) {
+            return null;
+        }
+
+        Map<String, String> layer = parent.find(key);
+        return layer == null ? null : layer.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (local.containsKey(key)) {
+            return true;
+        }
+
+        if (removed.contains(key) || parent == null) {
+            return false;
+        }
+
+        return parent.find(key) != null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        String previous = get(key);
+        local.put(key, value);
+        flattened = null;
+        return previous;
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (!containsKey(key)) {
+            return null;
+        }
+
+        String previous = get(key);
+        local.remove(key);
+
+        if (parent != null && parent.find(key) != null) {
+            removed.add((String) key);
+        }
+
+        flattened = null;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        parent = null;
+        local = new LinkedHashMap<>();
+        removed = new HashSet<>();
+        flattened = null;
+    }
+
+    @Override
+    public int size() {
+        if (parent == null) {
+            return local.size();
+        }
+        return flatten().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o instanceof EnvMap) {
+            EnvMap other = (EnvMap) o;
+            if (isSealed() && other.isSealed() && parent == other.parent) {
+                return true;
+            }
+        }
+
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return flatten().hashCode();
+    }
+
+    private boolean isSealed() {
+        return local.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Move top layer to sealed layers
+     */
+    private void seal() {
+        if (isSealed()) {
+            return;
+        }
+
+        Layer layer = new Layer(local, removed, parent);
+        if (layer.depth > MAX_DEPTH) {
+            layer = new Layer(flatten(), Collections.emptySet(), null);
+        }
+
+        parent = layer;
+        local = new LinkedHashMap<>();
+        removed = new HashSet<>();
+    }
+
+    private Map<String, String> flatten() {
+        if (flattened != null) {
+            return flattened;
+        }
+
+        List<Layer> layers = new ArrayList<>(depth());
+        for (Layer layer = parent; layer != null; layer = layer.parent) {
+            layers.add(layer);
+        }
+
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            Layer layer = layers.get(i);
+            apply(result, layer.entries, layer.removed);
+        }
+        apply(result, local, removed);
+
+        flattened = Collections.unmodifiableMap(result);
+        return flattened;
+    }
+
+    private static void apply(Map<String, String> target, Map<String, String> entries, Set<String> removed) {
+        for (String key : removed) {
+            target.remove(key);
+        }
+        target.putAll(entries);
+    }
+
+    /**
+     * Only flattened entries are written
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        Map<String, String> entries = flatten();
+        out.writeInt(entries.size());
+        for (Entry<String, String> entry : entries.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        int size = in.readInt();
+        local = new LinkedHashMap<>(size * 4 / 3 + 1);
+        removed = new HashSet<>();
+
+        for (int i = 0; i < size; i++) {
+            local.put((String) in.readObject(), (String) in.readObject());
+        }
+    }
+
+    private final static class Layer {
+
+        private final Map<String, String> entries;
+
+        private final Set<String> removed;
+
+        private final Layer parent;
+
+        private final int depth;
+
+        Layer(Map<String, String> entries, Set<String> removed, Layer parent) {
+            this.entries = entries;
+            this.removed = removed;
+            this.parent = parent;
+            this.depth = parent == null ? 1 : parent.depth + 1;
+        }
+
+        /**
+         * Find entries of layer which contains the key, null if key not existed
+         */
+        Map<String, String> find(Object key) {
+            for (Layer layer = this; layer != null; layer = layer.parent) {
+                if (layer.entries.containsKey(key)) {
+                    return layer.entries;
+                }
+
+                if (layer.removed.contains(key)) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, String>> {
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            final Iterator<Entry<String, String>> iterator = flatten().entrySet().iterator();
+
+            return new Iterator<Entry<String, String>>() {
+
+                private Entry<String, String> current;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    current = new EnvEntry(iterator.next());
+                    return current;
+                }
+
+                @Override
+                public void remove() {
+                    if (current == null) {
+                        throw new IllegalStateException();
+                    }
+                    EnvMap.this.remove(current.getKey());
+                    current = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return EnvMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            Object key = entry.getKey();
+            return containsKey(key) && Objects.equals(get(key), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            EnvMap.this.clear();
+        }
+    }
+
+    /**
+     * Entry write through to the map
+     */
+    private final class EnvEntry extends SimpleEntry<String, String> {
+
+        EnvEntry(Entry<String, String> entry) {
+            super(entry);
+        }
+
+        @Override
+        public String setValue(String value) {
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Codec of cmd log file which uploaded from agent
+ *
+ * @author yang
+ */
+public enum LogCodec implements Serializable {
+
+    /**
+     * Plain text
+     */
+    NONE("none", "text/plain", ".log", true),
+
+    /**
+     * Zip file with single entry, it's the default codec
+     */
+    ZIP("zip", "application/zip", ".zip", false),
+
+    /**
+     * Gzip members, each encoded chunk is a member and can be decoded after concatenated
+     */
+    GZIP("gzip", "application/gzip", ".gz", true);
+
+    /**
+     * Http header of codec name for log download
+     */
+    public final static String HTTP_HEADER = "X-Log-Codec";
+
+    /**
+     * Get codec by name, ZIP for null or empty name
+     *
+     * @throws IllegalArgumentException if codec name not found
+     */
+    public static LogCodec of(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return ZIP;
+        }
+
+        for (LogCodec codec : values()) {
+            if (codec.name.equalsIgnoreCase(name.trim())) {
+                return codec;
+            }
+        }
+
+        throw new IllegalArgumentException("Unsupported log codec: " + name);
+    }
+
+    private String name;
+
+    private String contentType;
+
+    private String extension;
+
+    private boolean chunked;
+
+    LogCodec(String name, String contentType, String extension, boolean chunked) {
+        this.name = name;
+        this.contentType = contentType;
+        this.extension = extension;
+        this.chunked = chunked;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Is the encoded chunks can be concatenated and decoded as single stream
+     */
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * Wrap output stream to encode, the returned stream must be closed to finish encoding
+     *
+     * @param level compression level from 0 to 9, -1 for default
+     * @param entryName name of entry for zip
+     */
+    public OutputStream encode(OutputStream out, final int level, String entryName) throws IOException {
+        switch (this) {
+            case ZIP:
+                ZipOutputStream zipStream = new ZipOutputStream(out);
+                zipStream.setLevel(level);
+                zipStream.putNextEntry(new ZipEntry(entryName));
+                return zipStream;
+
+            case GZIP:
+                return new GZIPOutputStream(out) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Wrap input stream to read decoded content
+     */
+    public InputStream decode(InputStream in) throws IOException {
+        switch (this) {
+            case ZIP:
+                ZipInputStream zipStream = new ZipInputStream(in);
+                zipStream.getNextEntry();
+                return zipStream;
+
+            case GZIP:
+                return new GZIPInputStream(in);
+
+            default:
+                return in;
+        }
+    }
+}
@@ -71,6 +71,62 @@ public class Zone extends Jsonable {
      */
     private Integer defaultCmdTimeout = 600;
 
+    /**
+     * Max num of cmd waiting in cmd queue lane of zone
+     */
+    private Integer maxQueueSize = 100;
+
+    /**
+     * Seconds to keep agent online after its zookeeper node removed, running cmds and sessions are
+     * kept if agent registered again within the period
+     */
+    private Integer agentGracePeriod = 60;
+
+    /**
+     * Max cpu or load usage of agent host in percent, cmd not dispatched to agent over it
+     */
+    private Integer agentMaxCpuUsage = 90;
+
+    /**
+     * Max memory usage of agent host in percent, cmd not dispatched to agent over it
+     */
+    private Integer agentMaxMemUsage = 95;
+
+    /**
+     * Min free disk in MB of agent workspace, cmd not dispatched to agent under it
+     */
+    private Integer agentMinDiskFree = 1024;
+
+    /**
+     * Max num of agents include busy ones while scaling by cmd queue depth
+     */
+    private Integer maxAgentSize = 10;
+
+    /**
+     * Min seconds between two scale up of zone
+     */
+    private Integer scaleUpCooldown = 60;
+
+    /**
+     * Min seconds between two scale down of zone
+     */
+    private Integer scaleDownCooldown = 300;
+
+    /**
+     * Crontab of known schedule, instances are started before it with pre-warm lead time
+     */
+    private String prewarmCrontab;
+
+    /**
+     * Num of idle agents to keep ahead of pre-warm crontab
+     */
+    private Integer prewarmSize = 0;
+
+    /**
+     * Seconds to start pre-warm instances before crontab
+     */
+    private Integer prewarmLeadTime = 300;
+
     /**
      * Extra settings for zone
      */
@@ -156,6 +212,108 @@ public class Zone extends Jsonable {
         this.defaultCmdTimeout = defaultCmdTimeout;
     }
 
+    public Integer getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(Integer maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public Integer getAgentGracePeriod() {
+        return agentGracePeriod;
+    }
+
+    public void setAgentGracePeriod(Integer agentGracePeriod) {
+        this.agentGracePeriod = agentGracePeriod;
+    }
+
+    public Integer getAgentMaxCpuUsage() {
+        return agentMaxCpuUsage;
+    }
+
+    public void setAgentMaxCpuUsage(Integer agentMaxCpuUsage) {
+        this.agentMaxCpuUsage = agentMaxCpuUsage;
+    }
+
+    public Integer getAgentMaxMemUsage() {
+        return agentMaxMemUsage;
+    }
+
+    public void setAgentMaxMemUsage(Integer agentMaxMemUsage) {
+        this.agentMaxMemUsage = agentMaxMemUsage;
+    }
+
+    public Integer getAgentMinDiskFree() {
+        return agentMinDiskFree;
+    }
+
+    public void setAgentMinDiskFree(Integer agentMinDiskFree) {
+        this.agentMinDiskFree = agentMinDiskFree;
+    }
+
+    public Integer getMaxAgentSize() {
+        return maxAgentSize;
+    }
+
+    public void setMaxAgentSize(Integer maxAgentSize) {
+        this.maxAgentSize = maxAgentSize;
+    }
+
+    public Integer getScaleUpCooldown() {
+        return scaleUpCooldown;
+    }
+
+    public void setScaleUpCooldown(Integer scaleUpCooldown) {
+        this.scaleUpCooldown = scaleUpCooldown;
+    }
+
+    public Integer getScaleDownCooldown() {
+        return scaleDownCooldown;
+    }
+
+    public void setScaleDownCooldown(Integer scaleDownCooldown) {
+        this.scaleDownCooldown = scaleDownCooldown;
+    }
+
+    public String getPrewarmCrontab() {
+        return prewarmCrontab;
+    }
+
+    public void setPrewarmCrontab(String prewarmCrontab) {
+        this.prewarmCrontab = prewarmCrontab;
+    }
+
+    public Integer getPrewarmSize() {
+        return prewarmSize;
+    }
+
+    public void setPrewarmSize(Integer prewarmSize) {
+        this.prewarmSize = prewarmSize;
+    }
+
+    public Integer getPrewarmLeadTime() {
+        return prewarmLeadTime;
+    }
+
+    public void setPrewarmLeadTime(Integer prewarmLeadTime) {
+        this.prewarmLeadTime = prewarmLeadTime;
+    }
+
+    /**
+     * Is agent host over the thresholds of zone, agent without metrics is never overloaded
+     */
+    public boolean isOverloaded(AgentMetrics metrics) {
+        if (metrics == null) {
+            return false;
+        }
+
+        return metrics.getCpu() > agentMaxCpuUsage
+            || metrics.getLoadUsage() > agentMaxCpuUsage
+            || metrics.getMemUsage() > agentMaxMemUsage
+            || (metrics.getDiskFree() != AgentMetrics.UNKNOWN && metrics.getDiskFree() < agentMinDiskFree);
+    }
+
     public Map<String, String> getSettings() {
         return settings;
     }
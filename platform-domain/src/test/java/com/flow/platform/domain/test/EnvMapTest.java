@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.domain.test;
+
+import com.flow.platform.domain.CmdInfo;
+import com.flow.platform.domain.CmdType;
+import com.flow.platform.domain.EnvMap;
+import com.flow.platform.domain.Jsonable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class EnvMapTest {
+
+    @Test
+    public void should_isolate_overlay_from_parent() {
+        // given:
+        EnvMap job = new EnvMap();
+        job.put("FLOW_NAME", "flow");
+        job.put("FLOW_BRANCH", "master");
+
+        // when:
+        EnvMap step = job.overlay();
+        step.put("FLOW_BRANCH", "develop");
+        step.put("STEP_NAME", "build");
+        step.remove("FLOW_NAME");
+        job.put("FLOW_STATUS", "RUNNING");
+
+        // then: step only see envs before overlay
+        Assert.assertEquals(2, step.size());
+        Assert.assertEquals("develop", step.get("FLOW_BRANCH"));
+        Assert.assertEquals("build", step.get("STEP_NAME"));
+        Assert.assertFalse(step.containsKey("FLOW_NAME"));
+        Assert.assertFalse(step.containsKey("FLOW_STATUS"));
+
+        // then: job not affected by step
+        Assert.assertEquals(3, job.size());
+        Assert.assertEquals("flow", job.get("FLOW_NAME"));
+        Assert.assertEquals("master", job.get("FLOW_BRANCH"));
+        Assert.assertNull(job.get("STEP_NAME"));
+    }
+
+    @Test
+    public void should_keep_same_order_as_linked_hash_map() {
+        EnvMap envMap = new EnvMap();
+        Map<String, String> expected = new LinkedHashMap<>();
+
+        for (int i = 0; i < 20; i++) {
+            envMap.put("KEY_" + i, "VALUE_" + i);
+            expected.put("KEY_" + i, "VALUE_" + i);
+
+            if (i % 3 == 0) {
+                envMap.remove("KEY_" + (i / 2));
+                expected.remove("KEY_" + (i / 2));
+            }
+
+            if (i % 4 == 0) {
+                envMap.put("KEY_0", "VALUE_" + i);
+                expected.put("KEY_0", "VALUE_" + i);
+            }
+
+            envMap = envMap.overlay();
+        }
+
+        Assert.assertEquals(expected, envMap);
+        Assert.assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(envMap.keySet()));
+        Assert.assertTrue(envMap.depth() <= 8);
+    }
+
+    @Test
+    public void should_write_through_entry_iterator() {
+        EnvMap envMap = new EnvMap();
+        envMap.put("A", "1");
+        envMap.put("B", "2");
+        envMap = envMap.overlay();
+
+        Iterator<Map.Entry<String, String>> iterator = envMap.entrySet().iterator();
+        iterator.next().setValue("10");
+        iterator.next();
+        iterator.remove();
+
+        Assert.assertEquals(1, envMap.size());
+        Assert.assertEquals("10", envMap.get("A"));
+        Assert.assertFalse(envMap.containsKey("B"));
+    }
+
+    @Test
+    public void should_serialize_flattened_entries() throws Throwable {
+        // given:
+        EnvMap envMap = new EnvMap();
+        envMap.put("A", "1");
+        envMap = envMap.overlay();
+        envMap.put("B", "2");
+
+        // when: java serialization
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(envMap);
+        }
+
+        EnvMap copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (EnvMap) in.readObject();
+        }
+
+        // then:
+        Assert.assertEquals(envMap, copy);
+        Assert.assertEquals(0, copy.depth());
+
+        // when: json serialization
+        CmdInfo cmdInfo = new CmdInfo("zone", "agent", CmdType.RUN_SHELL, "echo hello");
+        cmdInfo.setInputs(envMap);
+        CmdInfo fromJson = Jsonable.parse(cmdInfo.toJson(), CmdInfo.class);
+
+        // then:
+        Assert.assertEquals(envMap, fromJson.getInputs());
+    }
+}
@@ -38,8 +38,6 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 })
 public class PluginConfig {
 
-    private final static ThreadPoolTaskExecutor executor = initExecutor();
-
     @Value("${api.git.cache}")
     private String gitCloneCache;
 
@@ -49,6 +47,9 @@ public class PluginConfig {
     @Value("${plugins.repository}")
     private String pluginRepoUrl;
 
+    @Value("${plugins.install.parallel}")
+    private Integer installParallel;
+
     @Bean
     public Path gitCacheWorkspace() {
         try {
@@ -72,15 +73,14 @@ public class PluginConfig {
         return HttpURL.build(pluginRepoUrl).toString();
     }
 
+    /**
+     * Executor to install plugins, max num of plugins installed at the same time is plugins.install.parallel
+     */
     @Bean
     public ThreadPoolTaskExecutor pluginPoolExecutor() {
-        return executor;
-    }
-
-    private static ThreadPoolTaskExecutor initExecutor() {
         ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
-        taskExecutor.setCorePoolSize(5);
-        taskExecutor.setMaxPoolSize(5);
+        taskExecutor.setCorePoolSize(installParallel);
+        taskExecutor.setMaxPoolSize(installParallel);
         taskExecutor.setQueueCapacity(100);
         taskExecutor.setThreadNamePrefix("plugin-");
         taskExecutor.setDaemon(true);
@@ -39,14 +39,14 @@ public interface PluginDao {
     Plugin get(String name);
 
     /**
-     * update plugin
+     * update plugin, the change is appended to journal file
      * @param plugin
      * @return
      */
     Plugin update(Plugin plugin);
 
     /**
-     * dump cache to file
+     * dump cache to file and clean journal
      */
     void dumpCacheToFile();
 
@@ -28,7 +28,9 @@ import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.annotations.SerializedName;
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.LinkedList;
@@ -36,6 +38,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
@@ -49,6 +52,13 @@ public class PluginDaoImpl implements PluginDao {
 
     private final static String PLUGIN_STORE_FILE = "plugin_cache.json";
 
+    private final static String PLUGIN_JOURNAL_FILE = "plugin_journal.log";
+
+    /**
+     * Dump cache to file and clean journal when num of journal entries reached
+     */
+    private final static int JOURNAL_COMPACT_SIZE = 1000;
+
     private final static Logger LOGGER = new Logger(PluginDao.class);
 
     private final static Gson GSON = new GsonBuilder().create();
@@ -63,10 +73,16 @@ public class PluginDaoImpl implements PluginDao {
 
     private Path storePath;
 
+    private Path journalPath;
+
+    private final AtomicInteger journalSize = new AtomicInteger(0);
+
     @PostConstruct
     private void init() {
         this.storePath = Paths.get(gitWorkspace.toString(), PLUGIN_STORE_FILE);
+        this.journalPath = Paths.get(gitWorkspace.toString(), PLUGIN_JOURNAL_FILE);
         loadFileToCache();
+        loadJournalToCache();
     }
 
     @Override
@@ -118,14 +134,28 @@ public class PluginDaoImpl implements PluginDao {
     }
 
     @Override
-    public Plugin update(Plugin plugin) {
+    public synchronized Plugin update(Plugin plugin) {
         pluginCache.put(plugin.getName(), plugin);
+
+        // append plugin to journal instead of write whole cache to file
+        FileUtil.append(plugin, journalPath);
+        if (journalSize.incrementAndGet() >= JOURNAL_COMPACT_SIZE) {
+            dumpCacheToFile();
+        }
+
         return plugin;
     }
 
     @Override
-    public void dumpCacheToFile() {
+    public synchronized void dumpCacheToFile() {
         FileUtil.write(pluginCache, storePath);
+
+        try {
+            Files.deleteIfExists(journalPath);
+            journalSize.set(0);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to clean plugin journal: " + e.getMessage());
+        }
     }
 
     /**
@@ -165,6 +195,17 @@ public class PluginDaoImpl implements PluginDao {
         return false;
     }
 
+    /**
+     * Replay plugin changes from journal after loaded from file
+     */
+    private void loadJournalToCache() {
+        List<Plugin> changes = FileUtil.readLines(Plugin.class, journalPath);
+        for (Plugin plugin : changes) {
+            pluginCache.put(plugin.getName(), plugin);
+        }
+        journalSize.set(changes.size());
+    }
+
     private class PluginRepository {
 
         @SerializedName("packages")
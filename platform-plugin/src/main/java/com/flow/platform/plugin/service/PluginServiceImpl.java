@@ -183,6 +183,13 @@ public class PluginServiceImpl extends ApplicationEventService implements Plugin
             // update plugin status to INSTALLING
             updatePluginStatus(plugin, INSTALLING);
 
+            // the tag already in local git repo, do not fetch it again
+            if (hasTag(gitRepoPath(plugin), plugin.getTag())) {
+                LOGGER.trace("Plugin %s with tag %s found in local git repo", plugin.getName(), plugin.getTag());
+                updatePluginStatus(plugin, INSTALLED);
+                return;
+            }
+
             for (Processor processor : processors) {
                 processor.exec(plugin);
             }
@@ -227,6 +234,21 @@ public class PluginServiceImpl extends ApplicationEventService implements Plugin
         dispatchEvent(new PluginStatusChangeEvent(this, plugin.getName(), plugin.getTag(), target));
     }
 
+    /**
+     * Check the tag is existed in git repo
+     */
+    private boolean hasTag(Path gitPath, String tag) {
+        if (tag == null || !gitPath.toFile().exists()) {
+            return false;
+        }
+
+        try {
+            return JGitUtil.tags(gitPath).contains(tag);
+        } catch (GitException e) {
+            return false;
+        }
+    }
+
     /**
      * Git bare repos workspace
      */
@@ -324,9 +346,22 @@ public class PluginServiceImpl extends ApplicationEventService implements Plugin
 
         @Override
         public void exec(Plugin plugin) {
+            Path cachePath = gitCachePath(plugin);
+            String tag = plugin.getTag();
+
+            // the tag been fetched to cache
+            if (hasTag(cachePath, tag)) {
+                LOGGER.traceMarker("FetchProcessor", "Tag %s Found In Cache", tag);
+                return;
+            }
+
             LOGGER.traceMarker("FetchProcessor", "Start Fetch Tags");
             try {
-                JGitUtil.fetchTags(gitCachePath(plugin), ORIGIN_REMOTE);
+                if (tag == null) {
+                    JGitUtil.fetchTags(cachePath, ORIGIN_REMOTE);
+                } else {
+                    JGitUtil.fetchTag(cachePath, ORIGIN_REMOTE, tag);
+                }
             } catch (Throwable e) {
                 LOGGER.error("Git Fetch", e);
                 throw new PluginException("Git Fetch", e);
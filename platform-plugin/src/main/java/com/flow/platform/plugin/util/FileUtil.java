@@ -21,9 +21,13 @@ import com.google.common.base.Charsets;
 import com.google.common.io.Files;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author yh@firim
@@ -51,4 +55,43 @@ public class FileUtil {
             throw new PluginException("IOException: " + e.getMessage());
         }
     }
+
+    /**
+     * Append object as single json line to file, create file if not exist
+     */
+    synchronized public static <T> void append(T object, Path path) {
+        try {
+            byte[] line = (GSON.toJson(object) + "\n").getBytes(Charsets.UTF_8);
+            java.nio.file.Files.write(path, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new PluginException("IOException: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read json lines from file, the illegal line is ignored since it might be half written
+     */
+    synchronized public static <T> List<T> readLines(Class<T> clazz, Path path) {
+        List<T> objects = new ArrayList<>();
+        if (!path.toFile().exists()) {
+            return objects;
+        }
+
+        try {
+            for (String line : Files.readLines(path.toFile(), Charsets.UTF_8)) {
+                try {
+                    T object = GSON.fromJson(line, clazz);
+                    if (object != null) {
+                        objects.add(object);
+                    }
+                } catch (JsonParseException ignore) {
+                    // skip broken line
+                }
+            }
+        } catch (IOException e) {
+            throw new PluginException("IOException: " + e.getMessage());
+        }
+
+        return objects;
+    }
 }
@@ -26,6 +26,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.FileUtils;
@@ -151,6 +152,51 @@ public class PluginServiceTest extends TestBase {
         Assert.assertEquals(false, plugin.getStopped());
     }
 
+    @Test
+    public void should_install_from_local_repo_without_fetch_again() throws Throwable {
+        // given: plugin installed
+        Plugin plugin = pluginService.find("flowCliD");
+        pluginService.execInstallOrUpdate(plugin);
+        Assert.assertEquals(PluginStatus.INSTALLED, pluginService.find("flowCliD").getStatus());
+
+        // when: install again with unreachable git url
+        String details = plugin.getDetails();
+        plugin.setDetails("/not/exist/flowCliD");
+        plugin.setStatus(PluginStatus.PENDING);
+        pluginService.execInstallOrUpdate(plugin);
+
+        // then: plugin is installed from local repo
+        Assert.assertEquals(PluginStatus.INSTALLED, pluginService.find("flowCliD").getStatus());
+        plugin.setDetails(details);
+    }
+
+    @Test
+    public void should_append_status_change_to_journal() throws Throwable {
+        Path journal = Paths.get(gitWorkspace.toString(), "plugin_journal.log");
+        pluginDao.dumpCacheToFile();
+        Assert.assertFalse(Files.exists(journal));
+
+        // when: update plugin status
+        Plugin plugin = pluginService.find("flowCliA");
+        plugin.setStatus(PluginStatus.IN_QUEUE);
+        pluginDao.update(plugin);
+
+        // then: plugin status is appended to journal
+        List<String> lines = Files.readAllLines(journal);
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0).contains("IN_QUEUE"));
+
+        // when: dump cache to file
+        pluginDao.dumpCacheToFile();
+
+        // then: journal is cleaned
+        Assert.assertFalse(Files.exists(journal));
+        Assert.assertTrue(Files.exists(Paths.get(gitWorkspace.toString(), "plugin_cache.json")));
+
+        plugin.setStatus(PluginStatus.PENDING);
+        pluginDao.update(plugin);
+    }
+
     private void resetPluginStatus() {
         Plugin plugin = pluginService.find("fircli");
         plugin.setStatus(PluginStatus.PENDING);
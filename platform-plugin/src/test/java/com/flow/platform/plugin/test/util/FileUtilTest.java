@@ -8,8 +8,10 @@ import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
@@ -63,6 +65,25 @@ public class FileUtilTest {
         cleanFile(basePath);
     }
 
+    @Test
+    public void should_append_and_read_lines() throws IOException {
+        File file = temporaryFolder.newFolder("test");
+        Path filePath = Paths.get(file.toString(), "journal.log");
+
+        FileUtil.append(new Plugin("first", "test", Arrays.asList("1"), "a", Arrays.asList("a")), filePath);
+        FileUtil.append(new Plugin("second", "test", Arrays.asList("1"), "a", Arrays.asList("a")), filePath);
+
+        // mock half written line
+        Files.write(filePath, "{\"name\":".getBytes(), StandardOpenOption.APPEND);
+
+        List<Plugin> plugins = FileUtil.readLines(Plugin.class, filePath);
+        Assert.assertEquals(2, plugins.size());
+        Assert.assertEquals("first", plugins.get(0).getName());
+        Assert.assertEquals("second", plugins.get(1).getName());
+
+        cleanFile(file.toPath());
+    }
+
     private void cleanFile(Path path) throws IOException {
         FileUtils.deleteDirectory(path.toFile());
     }
@@ -51,11 +51,13 @@ public class InMemoryQueue<T extends Comparable> extends PlatformQueue<T> {
     public void start() {
         stop = false;
         executor.execute(new QueueProcessor());
+        startDelayThread();
     }
 
     @Override
     public void stop() {
         cleanListener();
+        stopDelayThread();
         stop = true;
     }
 
@@ -102,6 +104,7 @@ public class InMemoryQueue<T extends Comparable> extends PlatformQueue<T> {
 
     @Override
     public void clean() {
+        cleanDelayed();
         queue.clear();
     }
 
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue;
+
+import com.flow.platform.util.Logger;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.function.Function;
+
+/**
+ * In memory queue split into lanes by item key, each lane has its own pause/resume and max size,
+ * the queue processor drains not paused lanes in round-robin
+ *
+ * @author yang
+ */
+public class LaneQueue<T extends Comparable> extends PlatformQueue<T> {
+
+    public final static String DEFAULT_LANE = "default";
+
+    private final static long IDLE_WAIT = 1000; // in millis
+
+    private final Logger LOGGER = new Logger(LaneQueue.class);
+
+    private final Function<T, String> laneKey;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Lane names in creation order for round-robin
+     */
+    private final List<String> order = new CopyOnWriteArrayList<>();
+
+    private final Map<String, Integer> laneMaxSize = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    private int cursor = 0;
+
+    private volatile boolean stop = false;
+
+    private volatile boolean pause = false;
+
+    /**
+     * @param maxSize default max size of each lane
+     * @param laneKey get lane name from item, null for default lane
+     */
+    public LaneQueue(Executor executor, int maxSize, String name, Function<T, String> laneKey) {
+        super(executor, maxSize, name);
+        this.laneKey = laneKey;
+    }
+
+    /**
+     * Set max size of lane, the default max size applied if not set
+     */
+    public void setMaxSize(String lane, int maxSize) {
+        laneMaxSize.put(lane, maxSize);
+        Lane existed = lanes.get(lane);
+        if (existed != null) {
+            existed.maxSize = maxSize;
+        }
+    }
+
+    public int getMaxSize(String lane) {
+        return laneMaxSize.getOrDefault(lane, maxSize);
+    }
+
+    @Override
+    public void start() {
+        stop = false;
+        executor.execute(new QueueProcessor());
+        startDelayThread();
+    }
+
+    @Override
+    public void stop() {
+        cleanListener();
+        stopDelayThread();
+        stop = true;
+        signal();
+    }
+
+    /**
+     * Put item to lane
+     *
+     * @throws QueueFullException if lane reached its max size
+     */
+    @Override
+    public void enqueue(T item) {
+        Lane lane = lane(laneKey.apply(item));
+
+        synchronized (lane) {
+            if (lane.queue.size() >= lane.maxSize) {
+                throw new QueueFullException(name, lane.name, lane.maxSize);
+            }
+            lane.queue.offer(item);
+        }
+
+        signal();
+    }
+
+    @Override
+    public T dequeue() {
+        synchronized (lock) {
+            T item = next();
+            if (item != null) {
+                return item;
+            }
+
+            try {
+                lock.wait(IDLE_WAIT);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+
+        return next();
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Lane lane : lanes.values()) {
+            size += lane.queue.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int size(String lane) {
+        Lane existed = lanes.get(lane);
+        return existed == null ? 0 : existed.queue.size();
+    }
+
+    /**
+     * Size of each lane in creation order
+     */
+    public Map<String, Integer> sizes() {
+        Map<String, Integer> sizes = new LinkedHashMap<>(order.size());
+        for (String name : order) {
+            Lane lane = lanes.get(name);
+            if (lane != null) {
+                sizes.put(name, lane.queue.size());
+            }
+        }
+        return sizes;
+    }
+
+    @Override
+    public void pause() {
+        pause = true;
+    }
+
+    @Override
+    public void resume() {
+        pause = false;
+        signal();
+    }
+
+    @Override
+    public void pause(String lane) {
+        lane(lane).pause = true;
+        LOGGER.trace("Lane '%s' of queue '%s' paused", lane, name);
+    }
+
+    @Override
+    public void resume(String lane) {
+        lane(lane).pause = false;
+        signal();
+        LOGGER.trace("Lane '%s' of queue '%s' resumed", lane, name);
+    }
+
+    @Override
+    public void clean() {
+        cleanDelayed();
+        for (Lane lane : lanes.values()) {
+            lane.queue.clear();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !pause && !stop;
+    }
+
+    @Override
+    public boolean isRunning(String lane) {
+        Lane existed = lanes.get(lane);
+        return isRunning() && (existed == null || !existed.pause);
+    }
+
+    private Lane lane(String name) {
+        final String laneName = name == null ? DEFAULT_LANE : name;
+
+        Lane existed = lanes.get(laneName);
+        if (existed != null) {
+            return existed;
+        }
+
+        // publish lane before its name, so the name in order always has a lane
+        synchronized (order) {
+            Lane lane = lanes.computeIfAbsent(laneName, key -> new Lane(key, getMaxSize(key)));
+            if (!order.contains(laneName)) {
+                order.add(laneName);
+            }
+            return lane;
+        }
+    }
+
+    /**
+     * Poll item from next not paused lane in round-robin, null if no item available
+     */
+    private T next() {
+        if (pause) {
+            return null;
+        }
+
+        synchronized (order) {
+            int numOfLanes = order.size();
+
+            for (int i = 0; i < numOfLanes; i++) {
+                cursor = (cursor + 1) % numOfLanes;
+                Lane lane = lanes.get(order.get(cursor));
+
+                if (lane == null || lane.pause) {
+                    continue;
+                }
+
+                T item = lane.queue.poll();
+                if (item != null) {
+                    return item;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void signal() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    private class Lane {
+
+        private final String name;
+
+        private final PriorityBlockingQueue<T> queue = new PriorityBlockingQueue<>();
+
+        private volatile int maxSize;
+
+        private volatile boolean pause = false;
+
+        Lane(String name, int maxSize) {
+            this.name = name;
+            this.maxSize = maxSize;
+        }
+    }
+
+    private class QueueProcessor implements Runnable {
+
+        @Override
+        public void run() {
+            while (!stop) {
+                T item = dequeue();
+
+                if (item == null) {
+                    continue;
+                }
+
+                for (QueueListener<T> listener : listeners) {
+                    try {
+                        listener.onQueueItem(item);
+                    } catch (Throwable e) {
+                        LOGGER.warn("Exception on queue item of '%s': %s", name, e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+}
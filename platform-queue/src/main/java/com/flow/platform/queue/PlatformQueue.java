@@ -16,15 +16,23 @@
 
 package com.flow.platform.queue;
 
+import com.flow.platform.util.Logger;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author yang
  */
 public abstract class PlatformQueue<T> {
 
+    private final static Logger LOGGER = new Logger(PlatformQueue.class);
+
     protected final List<QueueListener<T>> listeners = new LinkedList<>();
 
     protected final Executor executor;
@@ -33,6 +41,23 @@ public abstract class PlatformQueue<T> {
 
     protected final String name;
 
+    /**
+     * Items waiting for not-before time, moved to queue by delay thread
+     */
+    private final DelayQueue<DelayedItem<T>> delayed = new DelayQueue<>();
+
+    /**
+     * Items over max retry, keep latest max size items
+     */
+    private final LinkedList<T> deadLetters = new LinkedList<>();
+
+    private volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+
+    private Thread delayThread;
+
+    // delay thread not started by delayed enqueue after queue stopped
+    private boolean delayStopped = false;
+
     public PlatformQueue(Executor executor, int maxSize, String name) {
         this.executor = executor;
         this.maxSize = maxSize;
@@ -43,6 +68,72 @@ public abstract class PlatformQueue<T> {
         return name;
     }
 
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Put item to queue after delay in millis, the caller is not blocked.
+     * The item is kept in delayed until queue started again if queue stopped
+     */
+    public void enqueue(T item, long delay) {
+        if (delay <= 0) {
+            enqueue(item);
+            return;
+        }
+
+        delayed.offer(new DelayedItem<>(item, System.currentTimeMillis() + delay));
+        runDelayThread();
+    }
+
+    /**
+     * Re-enqueue item with backoff delay of retry policy
+     *
+     * @param attempt num of retry start from 1
+     * @return false if over max retry and item moved to dead letters
+     */
+    public boolean retry(T item, int attempt) {
+        RetryPolicy policy = retryPolicy;
+
+        if (!policy.canRetry(attempt)) {
+            deadLetter(item);
+            return false;
+        }
+
+        enqueue(item, policy.delay(attempt));
+        return true;
+    }
+
+    /**
+     * Put item to dead letters for inspection
+     */
+    public void deadLetter(T item) {
+        synchronized (deadLetters) {
+            deadLetters.addLast(item);
+            while (deadLetters.size() > maxSize) {
+                deadLetters.removeFirst();
+            }
+        }
+        LOGGER.warn("Item moved to dead letters of queue '%s'", name);
+    }
+
+    public List<T> getDeadLetters() {
+        synchronized (deadLetters) {
+            return new ArrayList<>(deadLetters);
+        }
+    }
+
+    /**
+     * Num of items waiting for delay
+     */
+    public int delayedSize() {
+        return delayed.size();
+    }
+
     /**
      * Register queue item listener
      */
@@ -69,6 +160,15 @@ public abstract class PlatformQueue<T> {
      */
     public abstract void enqueue(T item);
 
+    /**
+     * Put items to queue in order
+     */
+    public void enqueueAll(Collection<T> items) {
+        for (T item : items) {
+            enqueue(item);
+        }
+    }
+
     /**
      * Get top item from queue
      */
@@ -89,6 +189,34 @@ public abstract class PlatformQueue<T> {
      */
     public abstract void resume();
 
+    /**
+     * Hold items of lane only, the whole queue is hold if lane not supported
+     */
+    public void pause(String lane) {
+        pause();
+    }
+
+    /**
+     * Resume items of lane, the whole queue is resumed if lane not supported
+     */
+    public void resume(String lane) {
+        resume();
+    }
+
+    /**
+     * Queue processor is running for lane
+     */
+    public boolean isRunning(String lane) {
+        return isRunning();
+    }
+
+    /**
+     * Get current size of lane, the whole queue size if lane not supported
+     */
+    public int size(String lane) {
+        return size();
+    }
+
     /**
      * Remove all items from queue
      */
@@ -98,4 +226,88 @@ public abstract class PlatformQueue<T> {
      * Queue processor is running
      */
     public abstract boolean isRunning();
+
+    /**
+     * Start delay thread if there are delayed items, should be called on queue start
+     */
+    protected synchronized void startDelayThread() {
+        delayStopped = false;
+        runDelayThread();
+    }
+
+    /**
+     * Stop delay thread, the delayed items are kept until queue started again,
+     * should be called on queue stop
+     */
+    protected synchronized void stopDelayThread() {
+        delayStopped = true;
+
+        if (delayThread == null) {
+            return;
+        }
+
+        delayThread.interrupt();
+        delayThread = null;
+    }
+
+    private synchronized void runDelayThread() {
+        if (delayStopped || delayThread != null || delayed.isEmpty()) {
+            return;
+        }
+
+        delayThread = new Thread(new DelayProcessor(), name + "-delay");
+        delayThread.setDaemon(true);
+        delayThread.start();
+    }
+
+    /**
+     * Remove all delayed items, should be called on queue clean
+     */
+    protected void cleanDelayed() {
+        delayed.clear();
+    }
+
+    private class DelayProcessor implements Runnable {
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                T item;
+                try {
+                    item = delayed.take().item;
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                try {
+                    enqueue(item);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Unable to enqueue delayed item to '%s': %s", name, e.getMessage());
+                    deadLetter(item);
+                }
+            }
+        }
+    }
+
+    private static class DelayedItem<T> implements Delayed {
+
+        private final T item;
+
+        private final long notBefore; // in millis
+
+        DelayedItem(T item, long notBefore) {
+            this.item = item;
+            this.notBefore = notBefore;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(notBefore - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), o.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue;
+
+/**
+ * Raised when queue or lane of queue reached its max size
+ *
+ * @author yang
+ */
+public class QueueFullException extends RuntimeException {
+
+    private final String lane;
+
+    public QueueFullException(String queue, String lane, int maxSize) {
+        super(String.format("Lane '%s' of queue '%s' is full with max size %s", lane, queue, maxSize));
+        this.lane = lane;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.queue;
+
+/**
+ * Exponential backoff for queue item redelivery
+ *
+ * @author yang
+ */
+public class RetryPolicy {
+
+    public final static RetryPolicy DEFAULT = new RetryPolicy(1000, 2.0, 30000, 5);
+
+    /**
+     * Delay of first retry in millis
+     */
+    private final long initialDelay;
+
+    private final double multiplier;
+
+    /**
+     * Max delay in millis
+     */
+    private final long maxDelay;
+
+    /**
+     * Max num of retry, item will be moved to dead letters when exceeded
+     */
+    private final int maxRetry;
+
+    public RetryPolicy(long initialDelay, double multiplier, long maxDelay, int maxRetry) {
+        this.initialDelay = initialDelay;
+        this.multiplier = multiplier;
+        this.maxDelay = maxDelay;
+        this.maxRetry = maxRetry;
+    }
+
+    public int getMaxRetry() {
+        return maxRetry;
+    }
+
+    /**
+     * Is able to retry for num of attempt which start from 1
+     */
+    public boolean canRetry(int attempt) {
+        return attempt > 0 && attempt <= maxRetry;
+    }
+
+    /**
+     * Get delay in millis for num of attempt which start from 1
+     */
+    public long delay(int attempt) {
+        double delay = initialDelay * Math.pow(multiplier, Math.max(attempt - 1, 0));
+        return (long) Math.min(delay, maxDelay);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+            "initialDelay=" + initialDelay +
+            ", multiplier=" + multiplier +
+            ", maxDelay=" + maxDelay +
+            ", maxRetry=" + maxRetry +
+            '}';
+    }
+}
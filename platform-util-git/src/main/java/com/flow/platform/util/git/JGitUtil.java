@@ -196,4 +196,23 @@ public class JGitUtil {
 
         return path;
     }
+
+    /**
+     * Fetch single tag from remote, only objects not in local repo are transferred
+     */
+    public static Path fetchTag(Path path, String remoteName, String tag) throws GitException {
+        String tagRef = "refs/tags/" + tag;
+
+        try (Git git = Git.open(path.toFile())) {
+            git.fetch()
+                .setRemote(remoteName)
+                .setRefSpecs(new RefSpec(tagRef + ":" + tagRef))
+                .setTagOpt(TagOpt.NO_TAGS)
+                .call();
+        } catch (Throwable throwable) {
+            throw new GitException("fetch tag error", throwable);
+        }
+
+        return path;
+    }
 }
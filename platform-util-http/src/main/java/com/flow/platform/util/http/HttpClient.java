@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -39,6 +40,7 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 
 /**
@@ -67,18 +69,43 @@ public class HttpClient {
 
     private final static int HTTP_TIMEOUT = 5 * 1000;
 
-    private final RequestConfig config = RequestConfig.custom()
+    private final static int KEEP_ALIVE_MAX_PER_ROUTE = 20;
+
+    private final static int KEEP_ALIVE_MAX_TOTAL = 100;
+
+    private final static RequestConfig config = RequestConfig.custom()
         .setConnectTimeout(HTTP_TIMEOUT)
         .setConnectionRequestTimeout(HTTP_TIMEOUT)
         .setSocketTimeout(HTTP_TIMEOUT)
         .build();
 
+    /**
+     * Shared http client with pooled connections for keep alive requests, never closed
+     */
+    private static class KeepAliveClient {
+
+        private final static CloseableHttpClient INSTANCE;
+
+        static {
+            PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+            manager.setDefaultMaxPerRoute(KEEP_ALIVE_MAX_PER_ROUTE);
+            manager.setMaxTotal(KEEP_ALIVE_MAX_TOTAL);
+
+            INSTANCE = HttpClientBuilder.create()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(config)
+                .build();
+        }
+    }
+
     private final String url;
 
     private HttpRequestBase httpRequest;
 
     private int numOfRetry = 0;
 
+    private boolean keepAlive = false;
+
     private int retried = 0;
 
     private CloseableHttpResponse failureResponse;
@@ -94,6 +121,14 @@ public class HttpClient {
         return this;
     }
 
+    /**
+     * Send request on shared persistent connection rather than open new connection for each request
+     */
+    public HttpClient keepAlive() {
+        this.keepAlive = true;
+        return this;
+    }
+
     public HttpClient post(String body) throws UnsupportedEncodingException {
         HttpPost httpPost = new HttpPost(url);
         HttpEntity entity = new StringEntity(body);
@@ -159,7 +194,8 @@ public class HttpClient {
             try {
                 int statusCode = httpResponse.getStatusLine().getStatusCode();
                 String body = EntityUtils.toString(httpResponse.getEntity(), "UTF-8");
-                wrapper.add(new HttpResponse<>(retried, statusCode, exceptions, body));
+                wrapper.add(new HttpResponse<>(retried, statusCode, exceptions, body)
+                    .withHeaders(headers(httpResponse)));
             } catch (IOException e) {
                 exceptions.add(e);
                 wrapper.add(new HttpResponse<>(retried, EXCEPTION_STATUS_CODE, exceptions, StringUtil.EMPTY));
@@ -179,7 +215,8 @@ public class HttpClient {
             try {
                 int statusCode = httpResponse.getStatusLine().getStatusCode();
                 InputStream content = httpResponse.getEntity().getContent();
-                response.accept(new HttpResponse<>(retried, statusCode, exceptions, content));
+                response.accept(new HttpResponse<>(retried, statusCode, exceptions, content)
+                    .withHeaders(headers(httpResponse)));
             } catch (IOException e) {
                 exceptions.add(e);
                 response.accept(new HttpResponse<>(retried, EXCEPTION_STATUS_CODE, exceptions, null));
@@ -196,18 +233,14 @@ public class HttpClient {
             return;
         }
 
-        try (CloseableHttpClient httpClient = HttpClientBuilder.create().setDefaultRequestConfig(config).build()) {
-            try (CloseableHttpResponse response = httpClient.execute(httpRequest)) {
-                int statusCode = response.getStatusLine().getStatusCode();
-
-                if (statusCode == 200) {
-                    consumer.accept(response);
-                    return;
-                }
+        try {
+            if (keepAlive) {
+                exec(KeepAliveClient.INSTANCE, consumer);
+                return;
+            }
 
-                failureResponse = response;
-                retried++;
-                exec(consumer);
+            try (CloseableHttpClient httpClient = HttpClientBuilder.create().setDefaultRequestConfig(config).build()) {
+                exec(httpClient, consumer);
             }
         } catch (IOException e) {
             exceptions.add(e);
@@ -217,6 +250,29 @@ public class HttpClient {
         }
     }
 
+    private void exec(CloseableHttpClient httpClient, Consumer<CloseableHttpResponse> consumer) throws IOException {
+        try (CloseableHttpResponse response = httpClient.execute(httpRequest)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+
+            if (statusCode == 200) {
+                consumer.accept(response);
+                return;
+            }
+
+            failureResponse = response;
+            retried++;
+            exec(consumer);
+        }
+    }
+
+    private static Map<String, String> headers(CloseableHttpResponse httpResponse) {
+        Map<String, String> headers = new HashMap<>();
+        for (Header header : httpResponse.getAllHeaders()) {
+            headers.put(header.getName(), header.getValue());
+        }
+        return headers;
+    }
+
     private void requireHttpRequestInstance() {
         if (httpRequest == null) {
             throw new IllegalArgumentException("The http GET POST PUT DELETE method must be set");
@@ -19,6 +19,8 @@ package com.flow.platform.util.http;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * @author yang
@@ -38,6 +40,11 @@ public class HttpResponse<T> {
 
     private final int retried;
 
+    /**
+     * Response headers with case insensitive name
+     */
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
     HttpResponse(int retried, int statusCode, List<Throwable> exceptions, T body) {
         this.retried = retried;
         this.statusCode = statusCode;
@@ -69,4 +76,16 @@ public class HttpResponse<T> {
     public T getBody() {
         return body;
     }
+
+    /**
+     * Get response header value, null if not existed
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    HttpResponse<T> withHeaders(Map<String, String> headers) {
+        this.headers.putAll(headers);
+        return this;
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util.zk;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache.StartMode;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent.Type;
+import org.apache.curator.utils.ZKPaths;
+
+/**
+ * Broadcast messages to all processes listening a zookeeper path
+ * <p>
+ * Each message is a persistent sequential child node which is delivered to all listeners by the
+ * children watcher, the messages existed before start are not delivered, the oldest messages are
+ * trimmed by the sender over the max num of messages, the listener is reset on reconnected since
+ * messages might be missed while disconnected
+ *
+ * @author yang
+ */
+public class ZKBroadcast implements Closeable {
+
+    /**
+     * Listener of broadcast messages
+     */
+    public interface Listener {
+
+        void onMessage(byte[] data);
+
+        /**
+         * Messages might be missed since connection lost
+         */
+        void onReset();
+    }
+
+    private final static String MESSAGE_PREFIX = "msg-";
+
+    private final static int MAX_MESSAGES = 1000;
+
+    private final static int TRIM_PERIOD = 100; // trim messages on every num of messages sent
+
+    private final ZKClient client;
+
+    private final String path;
+
+    private final AtomicLong numOfSent = new AtomicLong(0);
+
+    private PathChildrenCache cache;
+
+    public ZKBroadcast(ZKClient client, String path) {
+        this.client = client;
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Start to listen messages sent after start
+     */
+    public void start(Listener listener) {
+        client.create(path, null);
+
+        CuratorFramework curator = client.getClient();
+        cache = new PathChildrenCache(curator, path, true);
+        cache.getListenable().addListener((c, event) -> onEvent(event, listener));
+
+        try {
+            cache.start(StartMode.BUILD_INITIAL_CACHE);
+        } catch (Exception e) {
+            throw new ZkException("Unable to listen broadcast on " + path, e);
+        }
+    }
+
+    /**
+     * Send message to all listeners include itself
+     *
+     * @return message name
+     */
+    public String send(byte[] data) {
+        String created = client.createSequential(ZKPaths.makePath(path, MESSAGE_PREFIX), data);
+
+        if (numOfSent.incrementAndGet() % TRIM_PERIOD == 0) {
+            trim();
+        }
+
+        return ZKPaths.getNodeFromPath(created);
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (cache != null) {
+                cache.close();
+            }
+        } catch (Throwable ignore) {
+            // client might be closed
+        }
+    }
+
+    private void onEvent(PathChildrenCacheEvent event, Listener listener) {
+        if (event.getType() == Type.CHILD_ADDED) {
+            ChildData data = event.getData();
+            listener.onMessage(data.getData());
+
+            // message data not needed after delivered
+            cache.clearDataBytes(data.getPath());
+            return;
+        }
+
+        if (event.getType() == Type.CONNECTION_RECONNECTED) {
+            listener.onReset();
+        }
+    }
+
+    /**
+     * Delete the oldest messages over max num of messages
+     */
+    private void trim() {
+        try {
+            List<String> messages = client.getChildren(path);
+            if (messages.size() <= MAX_MESSAGES) {
+                return;
+            }
+
+            // sequence number is in fixed length, so sort by name is sort by sequence
+            Collections.sort(messages);
+
+            for (String message : messages.subList(0, messages.size() - MAX_MESSAGES)) {
+                client.deleteWithoutGuaranteed(ZKPaths.makePath(path, message), false);
+            }
+        } catch (ZkException ignore) {
+            // trimmed by other sender
+        }
+    }
+}
@@ -17,17 +17,23 @@
 package com.flow.platform.util.zk;
 
 import com.flow.platform.util.zk.ZkException.BadVersion;
+import com.flow.platform.util.zk.ZkException.NodeExistException;
 import com.flow.platform.util.zk.ZkException.NotExitException;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.Backgroundable;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.DeleteBuilder;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
 import org.apache.curator.framework.recipes.cache.NodeCache;
@@ -39,12 +45,25 @@ import org.apache.curator.framework.recipes.cache.TreeCacheListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.Code;
+import org.apache.zookeeper.data.Stat;
 
 /**
+ * Zookeeper client
+ * <p>
+ * The sync operations take single round trip and throw NotExitException if node not exist,
+ * the async operations run in background and return CompletableFuture which completed on
+ * zookeeper event thread or the task executor if set
+ *
  * @author yang
  */
 public class ZKClient implements Closeable {
 
+    /**
+     * Version to match any data version
+     */
+    public final static int ANY_VERSION = -1;
+
     private final static int DEFAULT_RETRY_PERIOD = 1000;
     private final static int DEFAULT_RETRY_TIMES = 10;
 
@@ -117,18 +136,38 @@ public class ZKClient implements Closeable {
             data = new byte[0];
         }
 
-        if (exist(path)) {
+        try {
+            return client.create()
+                .creatingParentsIfNeeded()
+                .withMode(CreateMode.PERSISTENT)
+                .forPath(path, data);
+        } catch (KeeperException.NodeExistsException e) {
             setData(path, data);
             return path;
+        } catch (Throwable e) {
+            throw checkException(String.format("Fail to create node: %s", path), e);
+        }
+    }
+
+    /**
+     * Create zookeeper persistent sequential node, the parents are created if not exist
+     *
+     * @param path node path prefix, the sequence number will be appended
+     * @param data node data, it can be set to null
+     * @return zookeeper node path just created with sequence number
+     */
+    public String createSequential(String path, byte[] data) {
+        if (data == null) {
+            data = new byte[0];
         }
 
         try {
             return client.create()
                 .creatingParentsIfNeeded()
-                .withMode(CreateMode.PERSISTENT)
+                .withMode(CreateMode.PERSISTENT_SEQUENTIAL)
                 .forPath(path, data);
         } catch (Throwable e) {
-            throw checkException(String.format("Fail to create node: %s", path), e);
+            throw checkException(String.format("Fail to create sequential node: %s", path), e);
         }
     }
 
@@ -152,6 +191,29 @@ public class ZKClient implements Closeable {
         return createEphemeralPrivate(path, data);
     }
 
+    /**
+     * Create zookeeper ephemeral node only if not exist, the parents are created if not exist
+     *
+     * @param path target zookeeper node path
+     * @param data node data, it can be set to null
+     * @return zookeeper node path just created
+     * @throws NodeExistException if node already exist
+     */
+    public String createEphemeralOnly(String path, byte[] data) {
+        if (data == null) {
+            data = new byte[0];
+        }
+
+        try {
+            return client.create()
+                .creatingParentsIfNeeded()
+                .withMode(CreateMode.EPHEMERAL)
+                .forPath(path, data);
+        } catch (Throwable e) {
+            throw checkException(String.format("Fail to create node: %s", path), e);
+        }
+    }
+
     /**
      * if not create node, will throw exception
      * @param path
@@ -179,23 +241,33 @@ public class ZKClient implements Closeable {
         }
     }
 
+    /**
+     * @throws NotExitException if node not exist
+     */
     public void setData(String path, byte[] data) {
-        if (!exist(path)) {
-            throw new ZkException("Zookeeper node path does not existed", null);
-        }
+        setData(path, data, ANY_VERSION);
+    }
 
+    /**
+     * Set node data if data version matched
+     *
+     * @param version expected data version or ANY_VERSION
+     * @return node stat after data been set
+     * @throws NotExitException if node not exist
+     * @throws BadVersion if data version not matched
+     */
+    public Stat setData(String path, byte[] data, int version) {
         try {
-            client.setData().forPath(path, data);
+            return client.setData().withVersion(version).forPath(path, data);
         } catch (Throwable e) {
             throw checkException(String.format("Fail to set data for node: %s", path), e);
         }
     }
 
+    /**
+     * @throws NotExitException if node not exist
+     */
     public byte[] getData(String path) {
-        if (!exist(path)) {
-            throw new ZkException("Zookeeper node path does not existed", null);
-        }
-
         try {
             return client.getData().forPath(path);
         } catch (Throwable e) {
@@ -203,6 +275,103 @@ public class ZKClient implements Closeable {
         }
     }
 
+    /**
+     * Create transaction to run multiple operations in single round trip
+     */
+    public ZKTransaction transaction() {
+        return new ZKTransaction(client.inTransaction());
+    }
+
+    /**
+     * Curator client for recipes in the package
+     */
+    CuratorFramework getClient() {
+        return client;
+    }
+
+    public CompletableFuture<Boolean> existAsync(String path) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        String message = String.format("Cannot check existing for path: %s", path);
+
+        try {
+            background(client.checkExists(), callback(future, message, event -> event.getStat() != null, Code.NONODE))
+                .forPath(path);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(message, e));
+        }
+        return future;
+    }
+
+    /**
+     * Create node in background, the parents are created if not exist
+     *
+     * @return future of created node path
+     */
+    public CompletableFuture<String> createAsync(String path, byte[] data, CreateMode mode) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        String message = String.format("Fail to create node: %s", path);
+
+        try {
+            background(client.create().creatingParentsIfNeeded().withMode(mode),
+                callback(future, message, CuratorEvent::getName))
+                .forPath(path, data == null ? new byte[0] : data);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(message, e));
+        }
+        return future;
+    }
+
+    /**
+     * Set node data in background, completed exceptionally by NotExitException or BadVersion
+     *
+     * @param version expected data version or ANY_VERSION
+     * @return future of node stat after data been set
+     */
+    public CompletableFuture<Stat> setDataAsync(String path, byte[] data, int version) {
+        CompletableFuture<Stat> future = new CompletableFuture<>();
+        String message = String.format("Fail to set data for node: %s", path);
+
+        try {
+            background(client.setData().withVersion(version), callback(future, message, CuratorEvent::getStat))
+                .forPath(path, data);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(message, e));
+        }
+        return future;
+    }
+
+    /**
+     * Get node data in background, completed exceptionally by NotExitException
+     */
+    public CompletableFuture<byte[]> getDataAsync(String path) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        String message = String.format("Fail to get data for node: %s", path);
+
+        try {
+            background(client.getData(), callback(future, message, CuratorEvent::getData))
+                .forPath(path);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(message, e));
+        }
+        return future;
+    }
+
+    /**
+     * Delete node in background, completed normally if node not exist
+     */
+    public CompletableFuture<Void> deleteAsync(String path) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        String message = String.format("Fail to delete node of path: %s", path);
+
+        try {
+            background(client.delete(), callback(future, message, event -> null, Code.NONODE))
+                .forPath(path);
+        } catch (Throwable e) {
+            future.completeExceptionally(checkException(message, e));
+        }
+        return future;
+    }
+
     public void delete(String path, boolean isDeleteChildren) {
         try {
             if (!exist(path)) {
@@ -345,7 +514,44 @@ public class ZKClient implements Closeable {
         }
     }
 
-    private static ZkException checkException(String defaultMessage, Throwable e) {
+    private <T> T background(Backgroundable<T> builder, BackgroundCallback callback) {
+        if (executor != null) {
+            return builder.inBackground(callback, executor);
+        }
+        return builder.inBackground(callback);
+    }
+
+    /**
+     * Create background callback to complete future by event result
+     *
+     * @param okCodes result codes to be handled as ok besides Code.OK
+     */
+    private static <T> BackgroundCallback callback(CompletableFuture<T> future,
+                                                   String message,
+                                                   Function<CuratorEvent, T> result,
+                                                   Code... okCodes) {
+        return (client, event) -> {
+            Code code = Code.get(event.getResultCode());
+
+            if (code == Code.OK || isOneOf(code, okCodes)) {
+                future.complete(result.apply(event));
+                return;
+            }
+
+            future.completeExceptionally(checkException(message, KeeperException.create(code, event.getPath())));
+        };
+    }
+
+    private static boolean isOneOf(Code code, Code[] codes) {
+        for (Code item : codes) {
+            if (item == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static ZkException checkException(String defaultMessage, Throwable e) {
         if (e instanceof KeeperException) {
             KeeperException zkException = (KeeperException) e;
 
@@ -353,6 +559,10 @@ public class ZKClient implements Closeable {
                 return new NotExitException(defaultMessage, e);
             }
 
+            if (zkException.code() == KeeperException.Code.NODEEXISTS) {
+                return new NodeExistException(defaultMessage, e);
+            }
+
             if (zkException.code() == KeeperException.Code.BADVERSION) {
                 return new BadVersion(e);
             }
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util.zk;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.leader.LeaderSelector;
+import org.apache.curator.framework.recipes.leader.LeaderSelectorListenerAdapter;
+import org.apache.curator.framework.recipes.nodes.PersistentNode;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+
+/**
+ * Membership of multiple processes under a zookeeper path
+ * <p>
+ * Each member keeps an ephemeral node in {path}/members which is created again after session
+ * expired, keys are owned by members in consistent hash ring so only keys of the joined or left
+ * member are moved on membership change, the singleton tasks run on the leader which is elected
+ * by leader selector on {path}/leader
+ * <p>
+ * The member owns no key while connection suspended or lost, since the keys might be moved to
+ * other members after session expired, the ring is rebuilt from live members on reconnected
+ *
+ * @author yang
+ */
+public class ZKCluster implements Closeable {
+
+    /**
+     * Suffix of root node for cluster, ex: /flow-agents-cluster
+     */
+    public final static String ROOT_SUFFIX = "-cluster";
+
+    private final static String MEMBERS = "members";
+
+    private final static String LEADER = "leader";
+
+    private final static int VIRTUAL_NODES = 100;
+
+    private final static int INIT_TIMEOUT = 10; // in seconds
+
+    private final ZKClient client;
+
+    private final String id;
+
+    private final String membersPath;
+
+    private final String leaderPath;
+
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+
+    private final ConnectionStateListener connectionListener = (c, state) -> onConnectionStateChanged(state);
+
+    private PersistentNode memberNode;
+
+    private LeaderSelector leaderSelector;
+
+    private volatile Set<String> members = Collections.emptySet();
+
+    private volatile NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param path root path of cluster
+     * @param id unique member id
+     */
+    public ZKCluster(ZKClient client, String path, String id) {
+        this.client = client;
+        this.id = id;
+        this.membersPath = ZKPaths.makePath(path, MEMBERS);
+        this.leaderPath = ZKPaths.makePath(path, LEADER);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Join the cluster and start leader election, it blocks until member node created
+     */
+    public void start() {
+        client.create(membersPath, null);
+        client.watchChildren(membersPath, (c, event) -> refresh());
+
+        CuratorFramework curator = client.getClient();
+        curator.getConnectionStateListenable().addListener(connectionListener);
+
+        String memberPath = ZKPaths.makePath(membersPath, id);
+        memberNode = new PersistentNode(curator, CreateMode.EPHEMERAL, false, memberPath, new byte[0]);
+        memberNode.start();
+
+        try {
+            if (!memberNode.waitForInitialCreate(INIT_TIMEOUT, TimeUnit.SECONDS)) {
+                throw new ZkException("Timeout to create member node: " + memberPath, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ZkException("Interrupted to create member node: " + memberPath, e);
+        }
+
+        leaderSelector = new LeaderSelector(curator, leaderPath, new LeaderListener());
+        leaderSelector.setId(id);
+        leaderSelector.autoRequeue();
+        leaderSelector.start();
+
+        refresh();
+    }
+
+    public boolean isLeader() {
+        return leaderSelector != null && leaderSelector.hasLeadership();
+    }
+
+    /**
+     * Live member ids in order
+     */
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * Find member id which owns the key, null if no member
+     */
+    public String owner(String key) {
+        NavigableMap<Long, String> current = ring;
+        if (current.isEmpty()) {
+            return null;
+        }
+
+        Map.Entry<Long, String> entry = current.ceilingEntry(hash(key));
+        return entry == null ? current.firstEntry().getValue() : entry.getValue();
+    }
+
+    public boolean isOwner(String key) {
+        return Objects.equals(id, owner(key));
+    }
+
+    /**
+     * Listen membership changes with the new member ids
+     */
+    public void addListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Load members from zookeeper and rebuild hash ring if changed
+     */
+    public synchronized void refresh() {
+        Set<String> latest;
+        try {
+            latest = Collections.unmodifiableSet(new TreeSet<>(client.getChildren(membersPath)));
+        } catch (ZkException e) {
+            // keep the current members since unable to load
+            return;
+        }
+
+        if (latest.equals(members)) {
+            return;
+        }
+
+        NavigableMap<Long, String> latestRing = new TreeMap<>();
+        for (String member : latest) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                latestRing.put(hash(member + "#" + i), member);
+            }
+        }
+
+        ring = latestRing;
+        members = latest;
+        notifyListeners(latest);
+    }
+
+    /**
+     * Drop all members and hash ring, so no key owned until members loaded again
+     */
+    public synchronized void clear() {
+        if (members.isEmpty()) {
+            return;
+        }
+
+        ring = new TreeMap<>();
+        members = Collections.emptySet();
+        notifyListeners(members);
+    }
+
+    @Override
+    public void close() {
+        try {
+            client.getClient().getConnectionStateListenable().removeListener(connectionListener);
+
+            if (leaderSelector != null) {
+                leaderSelector.close();
+            }
+
+            if (memberNode != null) {
+                memberNode.close();
+            }
+        } catch (Throwable ignore) {
+            // client might be closed
+        }
+    }
+
+    private void onConnectionStateChanged(ConnectionState state) {
+        if (state == ConnectionState.SUSPENDED || state == ConnectionState.LOST) {
+            clear();
+            return;
+        }
+
+        if (state == ConnectionState.RECONNECTED) {
+            refresh();
+        }
+    }
+
+    private void notifyListeners(Set<String> latest) {
+        for (Consumer<Set<String>> listener : listeners) {
+            listener.accept(latest);
+        }
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hold leadership until interrupted by close or connection lost
+     */
+    private static class LeaderListener extends LeaderSelectorListenerAdapter {
+
+        @Override
+        public void takeLeadership(CuratorFramework client) throws Exception {
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util.zk;
+
+import com.flow.platform.util.zk.ZkException.NotExitException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+
+/**
+ * Mailbox of persistent sequential nodes under a zookeeper path
+ * <p>
+ * Each message is a new child node so messages posted close together never overwrite each other,
+ * the receiver reads messages in sequence order and acknowledges each one by deleting its node,
+ * the unacknowledged messages are delivered again on next read
+ *
+ * @author yang
+ */
+public class ZKMailbox {
+
+    /**
+     * Suffix of root node for mailboxes, ex: /flow-agents-mailbox/{zone}/{name}
+     */
+    public final static String ROOT_SUFFIX = "-mailbox";
+
+    private final static String MESSAGE_PREFIX = "msg-";
+
+    private final ZKClient client;
+
+    private final String path;
+
+    public ZKMailbox(ZKClient client, String path) {
+        this.client = client;
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Post message to mailbox, the mailbox node is created if not exist
+     *
+     * @return message name
+     */
+    public String post(byte[] data) {
+        String created = client.createSequential(ZKPaths.makePath(path, MESSAGE_PREFIX), data);
+        return ZKPaths.getNodeFromPath(created);
+    }
+
+    /**
+     * Post message only if owner node exists, the check and create are in single round trip
+     *
+     * @param ownerPath path of node which owns the mailbox
+     * @return message name
+     * @throws NotExitException if owner node not exist
+     */
+    public String post(String ownerPath, byte[] data) {
+        try {
+            return postInTransaction(ownerPath, data);
+        } catch (NotExitException e) {
+            if (!client.exist(ownerPath)) {
+                throw e;
+            }
+
+            // mailbox node not created yet
+            client.create(path, null);
+            return postInTransaction(ownerPath, data);
+        }
+    }
+
+    /**
+     * List message names in sequence order
+     */
+    public List<String> list() {
+        if (!client.exist(path)) {
+            return Collections.emptyList();
+        }
+
+        List<String> names = new ArrayList<>();
+        for (String child : client.getChildren(path)) {
+            if (child.startsWith(MESSAGE_PREFIX)) {
+                names.add(child);
+            }
+        }
+
+        // sequence number is zero padded, so that sort by name is sequence order
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Read message data
+     *
+     * @return message data or null if message been acknowledged
+     */
+    public byte[] read(String name) {
+        try {
+            return client.getData(ZKPaths.makePath(path, name));
+        } catch (NotExitException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Acknowledge message by deleting it in background
+     */
+    public CompletableFuture<Void> ack(String name) {
+        return client.deleteAsync(ZKPaths.makePath(path, name));
+    }
+
+    /**
+     * Delete all messages
+     */
+    public void clear() {
+        List<String> names = list();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[names.size()];
+
+        for (int i = 0; i < names.size(); i++) {
+            futures[i] = ack(names.get(i));
+        }
+
+        CompletableFuture.allOf(futures).join();
+    }
+
+    /**
+     * Watch messages of mailbox, the mailbox node is created if not exist
+     *
+     * @return false if mailbox been watched
+     */
+    public boolean watch(PathChildrenCacheListener listener) {
+        if (!client.exist(path)) {
+            client.create(path, null);
+        }
+        return client.watchChildren(path, listener);
+    }
+
+    private String postInTransaction(String ownerPath, byte[] data) {
+        List<String> paths = client.transaction()
+            .check(ownerPath)
+            .create(ZKPaths.makePath(path, MESSAGE_PREFIX), data, CreateMode.PERSISTENT_SEQUENTIAL)
+            .commit();
+
+        return ZKPaths.getNodeFromPath(paths.get(1));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util.zk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.zookeeper.CreateMode;
+
+/**
+ * Zookeeper multi operations committed in single round trip, all or nothing
+ * <p>
+ * The parents of created node must exist since they are not created in transaction
+ *
+ * @author yang
+ */
+public class ZKTransaction {
+
+    private final CuratorTransaction transaction;
+
+    private CuratorTransactionFinal operations;
+
+    ZKTransaction(CuratorTransaction transaction) {
+        this.transaction = transaction;
+    }
+
+    /**
+     * Node must exist
+     */
+    public ZKTransaction check(String path) {
+        try {
+            operations = current().check().forPath(path).and();
+            return this;
+        } catch (Throwable e) {
+            throw ZKClient.checkException(String.format("Fail to check node: %s", path), e);
+        }
+    }
+
+    /**
+     * Node data version must be matched
+     */
+    public ZKTransaction check(String path, int version) {
+        try {
+            operations = current().check().withVersion(version).forPath(path).and();
+            return this;
+        } catch (Throwable e) {
+            throw ZKClient.checkException(String.format("Fail to check node: %s", path), e);
+        }
+    }
+
+    public ZKTransaction create(String path, byte[] data, CreateMode mode) {
+        try {
+            operations = current().create().withMode(mode).forPath(path, data == null ? new byte[0] : data).and();
+            return this;
+        } catch (Throwable e) {
+            throw ZKClient.checkException(String.format("Fail to create node: %s", path), e);
+        }
+    }
+
+    public ZKTransaction setData(String path, byte[] data, int version) {
+        try {
+            operations = current().setData().withVersion(version).forPath(path, data).and();
+            return this;
+        } catch (Throwable e) {
+            throw ZKClient.checkException(String.format("Fail to set data for node: %s", path), e);
+        }
+    }
+
+    public ZKTransaction delete(String path) {
+        try {
+            operations = current().delete().forPath(path).and();
+            return this;
+        } catch (Throwable e) {
+            throw ZKClient.checkException(String.format("Fail to delete node of path: %s", path), e);
+        }
+    }
+
+    /**
+     * Commit all operations
+     *
+     * @return result path of each operation in order, the created path for create operation
+     * @throws ZkException.NotExitException if one of node not exist
+     */
+    public List<String> commit() {
+        if (operations == null) {
+            return new ArrayList<>(0);
+        }
+
+        try {
+            Collection<CuratorTransactionResult> results = operations.commit();
+            List<String> paths = new ArrayList<>(results.size());
+            for (CuratorTransactionResult result : results) {
+                paths.add(result.getResultPath());
+            }
+            return paths;
+        } catch (Throwable e) {
+            throw ZKClient.checkException("Fail to commit transaction", e);
+        }
+    }
+
+    private CuratorTransaction current() {
+        return operations == null ? transaction : operations;
+    }
+}
@@ -46,6 +46,13 @@ public class ZkException extends RuntimeException {
         }
     }
 
+    public static class NodeExistException extends ZkException {
+
+        public NodeExistException(String path, Throwable raw) {
+            super(String.format("Node already exist: %s", path), raw);
+        }
+    }
+
     public static class BadVersion extends ZkException {
 
         public BadVersion(Throwable raw) {
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util.zk.test;
+
+import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKMailbox;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.curator.test.TestingServer;
+import org.apache.curator.utils.ZKPaths;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Throughput of single round trip and async operations against in-process zookeeper server,
+ * it's skipped by default, run it by:
+ *
+ * mvn test -Dtest=ZkClientBenchmarkTest -Dflow.zk.benchmark=true -Dflow.zk.benchmark.ops=3000
+ *
+ * @author yang
+ */
+public class ZkClientBenchmarkTest {
+
+    private final static String ROOT = "/flow-benchmark";
+
+    private final static String OWNER = ZKPaths.makePath(ROOT, "agent");
+
+    private final static String MAILBOX = ZKPaths.makePath(ROOT + ZKMailbox.ROOT_SUFFIX, "agent");
+
+    private final static int OPS = Integer.getInteger("flow.zk.benchmark.ops", 3000);
+
+    private static TestingServer server;
+
+    private ZKClient zkClient;
+
+    @BeforeClass
+    public static void beforeClass() throws Throwable {
+        Assume.assumeTrue(Boolean.getBoolean("flow.zk.benchmark"));
+
+        server = new TestingServer();
+        server.start();
+    }
+
+    @Before
+    public void init() {
+        zkClient = new ZKClient(server.getConnectString());
+        zkClient.start();
+
+        zkClient.create(ROOT, null);
+        zkClient.create(OWNER, null);
+        zkClient.create(MAILBOX, null);
+    }
+
+    @Test
+    public void should_measure_mailbox_post_with_and_without_transaction() {
+        ZKMailbox mailbox = new ZKMailbox(zkClient, MAILBOX);
+        byte[] data = "echo hello".getBytes();
+
+        long exist = run("dispatch, exist + create", () -> {
+            if (zkClient.exist(OWNER)) {
+                mailbox.post(data);
+            }
+        });
+
+        long multi = run("dispatch, check + create multi", () -> mailbox.post(OWNER, data));
+
+        Assert.assertEquals(OPS * 2, mailbox.list().size());
+        assertMeasured(exist, multi);
+    }
+
+    @Test
+    public void should_measure_set_data_with_and_without_exist() {
+        byte[] data = "slots".getBytes();
+
+        long exist = run("exist + setData", () -> {
+            if (zkClient.exist(OWNER)) {
+                zkClient.setData(OWNER, data);
+            }
+        });
+
+        long single = run("setData", () -> zkClient.setData(OWNER, data));
+
+        // pipelined requests share round trips
+        long start = System.nanoTime();
+        List<CompletableFuture<?>> futures = new ArrayList<>(OPS);
+        for (int i = 0; i < OPS; i++) {
+            futures.add(zkClient.setDataAsync(OWNER, data, ZKClient.ANY_VERSION));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[futures.size()])).join();
+        long async = report("setDataAsync, pipelined", System.nanoTime() - start);
+
+        assertMeasured(exist, single, async);
+    }
+
+    @After
+    public void after() throws Throwable {
+        zkClient.delete(ROOT, true);
+        zkClient.delete(ROOT + ZKMailbox.ROOT_SUFFIX, true);
+        zkClient.close();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Throwable {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static long run(String name, Runnable op) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPS; i++) {
+            op.run();
+        }
+        return report(name, System.nanoTime() - start);
+    }
+
+    /**
+     * @return ops per second
+     */
+    private static long report(String name, long nanos) {
+        long opsPerSecond = OPS * 1_000_000_000L / Math.max(1, nanos);
+        System.out.println(String.format("%-35s %8d ops/s", name + ":", opsPerSecond));
+        return opsPerSecond;
+    }
+
+    private static void assertMeasured(long... opsPerSecond) {
+        for (long value : opsPerSecond) {
+            Assert.assertTrue(value > 0);
+        }
+    }
+}
@@ -18,8 +18,10 @@ package com.flow.platform.util.zk.test;
 
 import com.flow.platform.util.zk.ZKClient;
 import com.flow.platform.util.zk.ZkException;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -33,6 +35,8 @@ import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent.Type;
 import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
 import org.apache.curator.test.TestingServer;
 import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.data.Stat;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -110,6 +114,24 @@ public class ZkClientTest {
         zkClient.delete(root, true);
     }
 
+    @Test
+    public void should_create_ephemeral_only_if_not_exist() throws Throwable {
+        String path = "/flow-ephemeral-only/agent";
+
+        // when: create ephemeral node with parents
+        Assert.assertEquals(path, zkClient.createEphemeralOnly(path, "hello".getBytes()));
+
+        // then: node data not been overwritten by second create
+        try {
+            zkClient.createEphemeralOnly(path, "world".getBytes());
+            Assert.fail();
+        } catch (ZkException.NodeExistException ignore) {
+        }
+        Assert.assertEquals("hello", new String(zkClient.getData(path)));
+
+        zkClient.delete("/flow-ephemeral-only", true);
+    }
+
     @Test
     public void should_create_and_delete_zk_node() throws Throwable {
         // init:
@@ -169,6 +191,87 @@ public class ZkClientTest {
         Assert.assertEquals(false, zkClient.exist(childPath));
     }
 
+    @Test
+    public void should_operate_node_in_background() throws Throwable {
+        String path = "/flow-async-test";
+
+        // when: create node in background
+        String created = zkClient.createAsync(path, "hello".getBytes(), CreateMode.PERSISTENT).get();
+
+        // then:
+        Assert.assertEquals(path, created);
+        Assert.assertTrue(zkClient.existAsync(path).get());
+        Assert.assertEquals("hello", new String(zkClient.getDataAsync(path).get()));
+
+        // when: set data with version
+        Stat stat = zkClient.setDataAsync(path, "world".getBytes(), 0).get();
+        Assert.assertEquals(1, stat.getVersion());
+
+        // then: should fail with bad version
+        try {
+            zkClient.setDataAsync(path, "world".getBytes(), 0).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertEquals(ZkException.BadVersion.class, e.getCause().getClass());
+        }
+
+        // when: delete node
+        zkClient.deleteAsync(path).get();
+
+        // then: should fail with not exist on get data
+        Assert.assertFalse(zkClient.existAsync(path).get());
+        try {
+            zkClient.getDataAsync(path).get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertEquals(ZkException.NotExitException.class, e.getCause().getClass());
+        }
+
+        // then: delete not existed node should be ok
+        zkClient.deleteAsync(path).get();
+    }
+
+    @Test
+    public void should_commit_operations_in_transaction() throws Throwable {
+        String owner = "/flow-transaction-owner";
+        String target = "/flow-transaction-target";
+        zkClient.create(owner, null);
+
+        // when: check owner and create target
+        List<String> paths = zkClient.transaction()
+            .check(owner)
+            .create(target, "hello".getBytes(), CreateMode.PERSISTENT)
+            .setData(owner, "world".getBytes(), ZKClient.ANY_VERSION)
+            .commit();
+
+        // then:
+        Assert.assertEquals(3, paths.size());
+        Assert.assertEquals(target, paths.get(1));
+        Assert.assertEquals("hello", new String(zkClient.getData(target)));
+        Assert.assertEquals("world", new String(zkClient.getData(owner)));
+
+        // when: commit with not existed node
+        zkClient.delete(target, false);
+        try {
+            zkClient.transaction()
+                .check("/flow-transaction-not-exist")
+                .create(target, null, CreateMode.PERSISTENT)
+                .commit();
+            Assert.fail();
+        } catch (ZkException.NotExitException ignore) {
+        }
+
+        // then: nothing been created
+        Assert.assertFalse(zkClient.exist(target));
+
+        // then: sync set data on not existed node should throw not exist
+        try {
+            zkClient.setData(target, null);
+            Assert.fail();
+        } catch (ZkException.NotExitException ignore) {
+        }
+    }
+
     @Test
     public void should_listen_node_change_event() throws Throwable {
         // init: create node and watch it
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util.zk.test;
+
+import com.flow.platform.util.zk.ZKClient;
+import com.flow.platform.util.zk.ZKCluster;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.test.KillSession;
+import org.apache.curator.test.TestingServer;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class ZkClusterTest {
+
+    private final static String CLUSTER_PATH = "/flow-test" + ZKCluster.ROOT_SUFFIX;
+
+    private final static int NUM_OF_MEMBERS = 3;
+
+    private static TestingServer server;
+
+    private final List<ZKClient> clients = new ArrayList<>(NUM_OF_MEMBERS);
+
+    private final List<ZKCluster> clusters = new ArrayList<>(NUM_OF_MEMBERS);
+
+    @BeforeClass
+    public static void beforeClass() throws Throwable {
+        server = new TestingServer();
+        server.start();
+    }
+
+    @Before
+    public void init() {
+        for (int i = 0; i < NUM_OF_MEMBERS; i++) {
+            ZKClient client = new ZKClient(server.getConnectString());
+            client.start();
+            clients.add(client);
+
+            ZKCluster cluster = new ZKCluster(client, CLUSTER_PATH, "cc-" + i);
+            cluster.start();
+            clusters.add(cluster);
+        }
+
+        waitFor(() -> clusters.stream().allMatch(c -> c.getMembers().size() == NUM_OF_MEMBERS));
+    }
+
+    @Test
+    public void should_elect_single_leader_and_elect_again_when_leader_left() {
+        waitFor(() -> numOfLeader() == 1);
+
+        // when: leader left
+        ZKCluster leader = clusters.stream().filter(ZKCluster::isLeader).findFirst().get();
+        leader.close();
+        clusters.remove(leader);
+
+        // then: another member become leader
+        waitFor(() -> numOfLeader() == 1);
+        Assert.assertFalse(leader.isLeader());
+    }
+
+    @Test
+    public void should_own_key_by_single_member_and_handoff_when_member_left() {
+        List<String> zones = new ArrayList<>(100);
+        for (int i = 0; i < 100; i++) {
+            zones.add("zone-" + i);
+        }
+
+        // then: each zone owned by exactly one member and all members agree on owner
+        Map<String, String> owners = new HashMap<>();
+        for (String zone : zones) {
+            int numOfOwner = 0;
+            for (ZKCluster cluster : clusters) {
+                Assert.assertEquals(owners.computeIfAbsent(zone, clusters.get(0)::owner), cluster.owner(zone));
+                numOfOwner += cluster.isOwner(zone) ? 1 : 0;
+            }
+            Assert.assertEquals(1, numOfOwner);
+        }
+
+        // then: zones spread to all members
+        Assert.assertEquals(NUM_OF_MEMBERS, owners.values().stream().distinct().count());
+
+        // when: member left
+        List<Set<String>> changes = new CopyOnWriteArrayList<>();
+        clusters.get(0).addListener(changes::add);
+
+        ZKCluster left = clusters.remove(NUM_OF_MEMBERS - 1);
+        left.close();
+
+        // then: listener notified and zones of the left member moved to others
+        waitFor(() -> !changes.isEmpty());
+        Assert.assertFalse(changes.get(0).contains(left.getId()));
+
+        waitFor(() -> clusters.stream().allMatch(c -> c.getMembers().size() == NUM_OF_MEMBERS - 1));
+        for (String zone : zones) {
+            String owner = clusters.get(0).owner(zone);
+            Assert.assertNotEquals(left.getId(), owner);
+            Assert.assertEquals(owner, clusters.get(1).owner(zone));
+
+            // zones of the remaining members are not moved
+            if (!owners.get(zone).equals(left.getId())) {
+                Assert.assertEquals(owners.get(zone), owner);
+            }
+        }
+    }
+
+    @Test
+    public void should_drop_ownership_when_session_expired_and_own_again_on_reconnected() throws Throwable {
+        ZKCluster member = clusters.get(0);
+        int index = 0;
+        while (!member.isOwner("zone-" + index)) {
+            index++;
+        }
+        String zone = "zone-" + index;
+
+        List<Set<String>> changes = new CopyOnWriteArrayList<>();
+        member.addListener(changes::add);
+
+        // when: session of member expired
+        expireSession(clients.get(0));
+
+        // then: member not own any zone before reconnected
+        waitFor(() -> changes.stream().anyMatch(Set::isEmpty));
+
+        // then: member own the zone again after rejoined the cluster
+        waitFor(() -> clusters.stream().allMatch(c -> c.getMembers().size() == NUM_OF_MEMBERS));
+        Assert.assertTrue(member.isOwner(zone));
+        Assert.assertEquals(1, clusters.stream().filter(c -> c.isOwner(zone)).count());
+    }
+
+    @After
+    public void after() throws Throwable {
+        for (ZKCluster cluster : clusters) {
+            cluster.close();
+        }
+
+        for (ZKClient client : clients) {
+            client.close();
+        }
+    }
+
+    @AfterClass
+    public static void afterClass() throws Throwable {
+        server.close();
+    }
+
+    private static void expireSession(ZKClient client) throws Exception {
+        Method getClient = ZKClient.class.getDeclaredMethod("getClient");
+        getClient.setAccessible(true);
+
+        CuratorFramework curator = (CuratorFramework) getClient.invoke(client);
+        KillSession.kill(curator.getZookeeperClient().getZooKeeper(), server.getConnectString());
+    }
+
+    private int numOfLeader() {
+        return (int) clusters.stream().filter(ZKCluster::isLeader).count();
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Condition not reached in 10 seconds");
+            }
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed hierarchical timer wheel for timeouts by key, O(1) to schedule and cancel
+ * <p>
+ * Four levels with 64 slots each, the slot of level n covers 64^n ticks. Timeouts of higher level
+ * are cascaded to lower level when the lower level wraps around, timeouts over the range of all
+ * levels are parked in the top level and re-placed on cascading.
+ *
+ * @author yang
+ */
+public class TimerWheel<K> {
+
+    public interface TimeoutListener<K> {
+
+        void onTimeout(K key);
+    }
+
+    private final static Logger LOGGER = new Logger(TimerWheel.class);
+
+    private final static int SLOT_BITS = 6;
+
+    private final static int NUM_OF_SLOTS = 1 << SLOT_BITS;
+
+    private final static int SLOT_MASK = NUM_OF_SLOTS - 1;
+
+    private final static int NUM_OF_LEVELS = 4;
+
+    private final String name;
+
+    private final Executor executor;
+
+    private final long tickMillis;
+
+    private final LongSupplier clock;
+
+    private final Slot<K>[][] wheels;
+
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+
+    private final List<TimeoutListener<K>> listeners = new CopyOnWriteArrayList<>();
+
+    private long currentTick;
+
+    private volatile Thread worker;
+
+    public TimerWheel(String name, Executor executor, long tickMillis) {
+        this(name, executor, tickMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param executor to run timeout listeners
+     * @param clock current time in millis
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(String name, Executor executor, long tickMillis, LongSupplier clock) {
+        this.name = name;
+        this.executor = executor;
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.currentTick = clock.getAsLong() / tickMillis;
+
+        this.wheels = new Slot[NUM_OF_LEVELS][NUM_OF_SLOTS];
+        for (int level = 0; level < NUM_OF_LEVELS; level++) {
+            for (int i = 0; i < NUM_OF_SLOTS; i++) {
+                wheels[level][i] = new Slot<>();
+            }
+        }
+    }
+
+    public void register(TimeoutListener<K> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Start thread to advance the wheel in every tick
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+
+        worker = new Thread(() -> {
+            while (worker == Thread.currentThread()) {
+                try {
+                    Thread.sleep(tickMillis);
+                    advance();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Throwable e) {
+                    LOGGER.warn("Unexpected error on timer wheel '%s': %s", name, e.getMessage());
+                }
+            }
+        }, name + "-timer");
+
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        if (worker == null) {
+            return;
+        }
+
+        worker.interrupt();
+        worker = null;
+    }
+
+    /**
+     * Schedule timeout for key, the previous timeout of the key will be replaced
+     */
+    public void schedule(K key, long delayMillis) {
+        long deadline = (clock.getAsLong() + Math.max(delayMillis, 0) + tickMillis - 1) / tickMillis;
+
+        synchronized (this) {
+            Entry<K> existed = entries.remove(key);
+            if (existed != null) {
+                existed.unlink();
+            }
+
+            Entry<K> entry = new Entry<>(key, Math.max(deadline, currentTick + 1));
+            entries.put(key, entry);
+            place(entry);
+        }
+    }
+
+    /**
+     * Cancel timeout of key
+     *
+     * @return false if key not scheduled or already expired
+     */
+    public synchronized boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+
+        entry.unlink();
+        return true;
+    }
+
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Advance the wheel to current time and notify listeners for expired keys
+     */
+    public void advance() {
+        final long targetTick = clock.getAsLong() / tickMillis;
+        final List<K> expired = new ArrayList<>();
+
+        synchronized (this) {
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade();
+
+                Slot<K> slot = wheels[0][(int) (currentTick & SLOT_MASK)];
+                for (Entry<K> entry = slot.head.next; entry != slot.head; ) {
+                    Entry<K> next = entry.next;
+                    entry.unlink();
+
+                    if (entry.deadline <= currentTick) {
+                        entries.remove(entry.key);
+                        expired.add(entry.key);
+                    } else {
+                        place(entry);
+                    }
+
+                    entry = next;
+                }
+            }
+        }
+
+        for (K key : expired) {
+            for (TimeoutListener<K> listener : listeners) {
+                executor.execute(() -> listener.onTimeout(key));
+            }
+        }
+    }
+
+    /**
+     * Move timeouts from higher level to lower level when lower level wraps around
+     */
+    private void cascade() {
+        for (int level = 1; level < NUM_OF_LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+
+            Slot<K> slot = wheels[level][(int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK)];
+            for (Entry<K> entry = slot.head.next; entry != slot.head; ) {
+                Entry<K> next = entry.next;
+                entry.unlink();
+                place(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void place(Entry<K> entry) {
+        for (int level = 0; level < NUM_OF_LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+
+            // compare by slot span of level, the current slot of level has been cascaded
+            if ((entry.deadline >> shift) - (currentTick >> shift) < NUM_OF_SLOTS) {
+                int index = (int) ((entry.deadline >> shift) & SLOT_MASK);
+                wheels[level][index].add(entry);
+                return;
+            }
+        }
+
+        // out of range, park to the slot before the current one of top level, which is cascaded last
+        // after a full round of top level, then the timeout is placed again
+        int top = NUM_OF_LEVELS - 1;
+        int index = (int) (((currentTick >> (SLOT_BITS * top)) - 1) & SLOT_MASK);
+        wheels[top][index].add(entry);
+    }
+
+    private final static class Slot<K> {
+
+        private final Entry<K> head = new Entry<>(null, 0);
+
+        Slot() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        void add(Entry<K> entry) {
+            entry.prev = head.prev;
+            entry.next = head;
+            head.prev.next = entry;
+            head.prev = entry;
+        }
+    }
+
+    private final static class Entry<K> {
+
+        private final K key;
+
+        private final long deadline;
+
+        private Entry<K> prev;
+
+        private Entry<K> next;
+
+        Entry(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        void unlink() {
+            if (prev == null) {
+                return;
+            }
+
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+}
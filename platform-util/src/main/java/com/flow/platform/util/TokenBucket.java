@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util;
+
+/**
+ * Token bucket refilled at fixed rate up to burst size, thread safe
+ *
+ * @author yang
+ */
+public class TokenBucket {
+
+    private final static double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final double rate;
+
+    private final double burst;
+
+    private double tokens;
+
+    private long lastRefill;
+
+    /**
+     * @param rate num of tokens refilled per second
+     * @param burst max num of tokens, the bucket starts full
+     */
+    public TokenBucket(double rate, double burst) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Token bucket rate must be positive and burst must be at least 1");
+        }
+
+        this.rate = rate;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public double getBurst() {
+        return burst;
+    }
+
+    /**
+     * Take num of permits if available
+     */
+    public synchronized boolean tryAcquire(double permits) {
+        refill();
+
+        if (tokens < permits) {
+            return false;
+        }
+
+        tokens -= permits;
+        return true;
+    }
+
+    /**
+     * Millis to wait until num of permits available, 0 if available now
+     */
+    public synchronized long waitMillis(double permits) {
+        refill();
+
+        if (tokens >= permits) {
+            return 0;
+        }
+
+        return (long) Math.ceil((permits - tokens) / rate * 1000);
+    }
+
+    public synchronized double available() {
+        refill();
+        return tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) / NANOS_PER_SECOND * rate);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util.test;
+
+import com.flow.platform.util.TimerWheel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class TimerWheelTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private final List<String> expired = new CopyOnWriteArrayList<>();
+
+    private TimerWheel<String> wheel;
+
+    @Before
+    public void init() {
+        wheel = new TimerWheel<>("test", Runnable::run, 1000, clock::get);
+        wheel.register(expired::add);
+    }
+
+    @Test
+    public void should_expire_on_time_and_cancel() {
+        // given:
+        wheel.schedule("a", 3000);
+        wheel.schedule("b", 5000);
+        wheel.schedule("c", 5000);
+        Assert.assertEquals(3, wheel.size());
+
+        // when: cancel c and advance 3 seconds
+        Assert.assertTrue(wheel.cancel("c"));
+        Assert.assertFalse(wheel.cancel("not-existed"));
+        moveSeconds(2);
+        Assert.assertTrue(expired.isEmpty());
+        moveSeconds(1);
+
+        // then:
+        Assert.assertEquals(1, expired.size());
+        Assert.assertEquals("a", expired.get(0));
+
+        // when: reschedule b
+        wheel.schedule("b", 10 * 1000);
+        moveSeconds(9);
+        Assert.assertEquals(1, expired.size());
+        moveSeconds(1);
+
+        // then:
+        Assert.assertEquals(2, expired.size());
+        Assert.assertEquals("b", expired.get(1));
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void should_expire_across_levels_with_second_precision() {
+        // given: random timeouts from 1 second to 4 days
+        Random random = new Random(7);
+        List<Long> delays = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long delay = (1 + random.nextInt(4 * 24 * 3600)) * 1000L;
+            delays.add(delay);
+            wheel.schedule(Integer.toString(i), delay);
+        }
+
+        // then: each key expired exactly at its second
+        long start = clock.get();
+        long last = start + 4 * 24 * 3600 * 1000L;
+
+        while (clock.get() < last) {
+            moveSeconds(1);
+
+            for (String key : expired) {
+                long delay = delays.get(Integer.parseInt(key));
+                Assert.assertEquals(start + delay, clock.get());
+            }
+            expired.clear();
+        }
+
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    private void moveSeconds(int seconds) {
+        for (int i = 0; i < seconds; i++) {
+            clock.addAndGet(1000);
+            wheel.advance();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 flow.ci
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flow.platform.util.test;
+
+import com.flow.platform.util.TokenBucket;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author yang
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void should_acquire_up_to_burst_and_refill_by_rate() throws Throwable {
+        // given: 10 tokens per second with burst 5
+        TokenBucket bucket = new TokenBucket(10, 5);
+
+        // then: burst available at once
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(bucket.tryAcquire(1));
+        }
+        Assert.assertFalse(bucket.tryAcquire(1));
+        Assert.assertTrue(bucket.waitMillis(1) > 0);
+        Assert.assertTrue(bucket.waitMillis(1) <= 100);
+
+        // when: wait for refill
+        Thread.sleep(250);
+
+        // then: refilled about 2 tokens
+        Assert.assertTrue(bucket.tryAcquire(2));
+        Assert.assertEquals(0, bucket.waitMillis(0));
+
+        // when: wait longer than burst
+        Thread.sleep(1000);
+
+        // then: not over burst
+        Assert.assertTrue(bucket.available() <= 5);
+        Assert.assertFalse(bucket.tryAcquire(6));
+    }
+}
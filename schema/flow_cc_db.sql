@@ -6,9 +6,11 @@ CREATE TABLE `agent` (
   `agent_zone` varchar(50) NOT NULL,
   `agent_name` varchar(100) NOT NULL,
   `concurrent_proc` int(11) DEFAULT NULL,
+  `used_slots` int(11) DEFAULT NULL,
   `session_id` varchar(50) DEFAULT NULL,
   `session_date` datetime DEFAULT NULL,
   `token` varchar(255) DEFAULT NULL,
+  `run_id` varchar(50) DEFAULT NULL,
   `webhook` varchar(255) DEFAULT NULL,
   `status` varchar(10) NOT NULL,
   `created_date` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
@@ -18,6 +20,19 @@ CREATE TABLE `agent` (
 
 
 
+# ------------------------------------------------------------
+
+CREATE TABLE `agent_session` (
+  `session_id` varchar(50) NOT NULL,
+  `agent_zone` varchar(50) NOT NULL,
+  `agent_name` varchar(100) NOT NULL,
+  `created_date` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`session_id`),
+  KEY `idx_agent_session_agent` (`agent_zone`,`agent_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+
+
 # ------------------------------------------------------------
 
 CREATE TABLE `cmd` (
@@ -32,6 +47,8 @@ CREATE TABLE `cmd` (
   `working_dir` varchar(255) DEFAULT NULL,
   `output_env_filter` longtext,
   `log_path` varchar(255) DEFAULT NULL,
+  `log_codec` varchar(20) DEFAULT NULL,
+  `log_chunks` int(11) DEFAULT NULL,
   `inputs` longtext,
   `webhook` varchar(255) DEFAULT NULL,
   `extra` varchar(255) DEFAULT NULL,
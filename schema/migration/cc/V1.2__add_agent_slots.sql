@@ -0,0 +1,16 @@
+USE flow_cc_db;
+
+ALTER TABLE agent ADD COLUMN used_slots int(11) DEFAULT NULL AFTER concurrent_proc;
+
+CREATE TABLE `agent_session` (
+  `session_id` varchar(50) NOT NULL,
+  `agent_zone` varchar(50) NOT NULL,
+  `agent_name` varchar(100) NOT NULL,
+  `created_date` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`session_id`),
+  KEY `idx_agent_session_agent` (`agent_zone`,`agent_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO agent_session (session_id, agent_zone, agent_name, created_date)
+SELECT session_id, agent_zone, agent_name, COALESCE(session_date, CURRENT_TIMESTAMP)
+FROM agent WHERE session_id IS NOT NULL;
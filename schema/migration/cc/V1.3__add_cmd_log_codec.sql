@@ -0,0 +1,4 @@
+USE flow_cc_db;
+
+ALTER TABLE cmd ADD COLUMN log_codec varchar(20) DEFAULT NULL AFTER log_path;
+ALTER TABLE cmd ADD COLUMN log_chunks int(11) DEFAULT NULL AFTER log_codec;
@@ -0,0 +1,3 @@
+USE flow_cc_db;
+
+ALTER TABLE agent ADD COLUMN run_id varchar(50) DEFAULT NULL AFTER token;